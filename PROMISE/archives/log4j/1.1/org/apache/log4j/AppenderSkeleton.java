@@ -60,6 +60,11 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
    */
   protected boolean closed = false;
 
+  /**
+     Resolve caller location information by walking the stack frames?
+   */
+  protected boolean stackWalkLocation = false;
+
 
   /**
      Derived appenders should override this method if option structure
@@ -211,15 +216,40 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
   }
 
 
+  /**
+     Returns <code>true</code> if the {@link #append} method of this
+     appender may be called by several threads at once, in which case
+     {@link #doAppend} does not synchronize on the appender. The
+     default is <code>false</code>; appenders that protect their own
+     state, or have none, may override this to let logging threads
+     proceed in parallel.
+
+     @since 1.1 */
+  protected
+  boolean isThreadSafe() {
+    return false;
+  }
+
   /**
      This method performs threshold checks and invokes filters before
      delegating actual logging to the sub-classes specific {@link
-     AppenderSkeleton#append} method.
+     AppenderSkeleton#append} method. It is synchronized on the
+     appender unless the appender {@link #isThreadSafe is thread-safe}.
 
    */
   public
-  synchronized 
   void doAppend(LoggingEvent event) {
+    if(isThreadSafe()) {
+      filterAndAppend(event);
+    } else {
+      synchronized(this) {
+	filterAndAppend(event);
+      }
+    }
+  }
+
+  private
+  void filterAndAppend(LoggingEvent event) {
     if(closed) {
       LogLog.error("Attempted to append to closed appender named ["+name+"].");
     }
@@ -239,6 +269,9 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
       }
     }
     
+    if(stackWalkLocation) {
+      event.getLocationInformation(true);
+    }
     this.append(event);    
   }
 
@@ -301,4 +334,30 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
   void setThreshold(Priority threshold) {
     this.threshold = threshold;
   }  
+
+  /**
+     The <b>StackWalkLocation</b> option takes a boolean value. If
+     true, caller location information needed by this appender, for
+     example by the <code>%C</code>, <code>%M</code>, <code>%F</code>
+     or <code>%L</code> conversions of a {@link PatternLayout}, is
+     found by walking the stack frames and cached per call site
+     instead of being parsed from a printed stack trace. This is much
+     faster. The location is then found as soon as the event reaches
+     this appender. It requires JDK 1.4, the option has no effect on
+     older platforms. It is false by default.
+
+     @since 1.1 */
+  public
+  void setStackWalkLocation(boolean flag) {
+    stackWalkLocation = flag;
+  }
+
+  /**
+     Returns the value of the <b>StackWalkLocation</b> option.
+
+     @since 1.1 */
+  public
+  boolean getStackWalkLocation() {
+    return stackWalkLocation;
+  }
 }
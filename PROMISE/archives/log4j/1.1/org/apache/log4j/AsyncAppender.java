@@ -23,6 +23,8 @@ import java.util.Enumeration;
    <p>Refer to the results in {@link org.apache.log4j.performance.Logging}
    for the impact of using this appender.
 
+   <p>For higher throughput, see the {@link RingBufferAppender}.
+
    <p><b>Important note:</b> The <code>AsyncAppender</code> can only
    be script configured using the {@link
    org.apache.log4j.xml.DOMConfigurator}. Refer to example  configuration
@@ -94,6 +96,7 @@ public class AsyncAppender extends AppenderSkeleton
   void append(LoggingEvent event) {
     event.getNDC();
     event.getThreadName();
+    event.getMDCCopy();
     if(locationInfo) {
       event.getLocationInformation();	
     }
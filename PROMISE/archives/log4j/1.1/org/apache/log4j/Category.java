@@ -9,6 +9,7 @@ import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.NullEnumeration;
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.FormattedMessage;
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.or.RendererMap;
 import org.apache.log4j.or.ObjectRenderer;
@@ -150,7 +151,8 @@ public class Category implements AppenderAttachable {
   protected Hierarchy hierarchy;
 
 
-  AppenderAttachableImpl aai;
+  /** Read without locking by {@link #callAppenders}. */
+  volatile AppenderAttachableImpl aai;
 
   /** Additivity is set to true by default, that is children inherit
       the appenders of their ancestors by default. If this variable is
@@ -159,7 +161,15 @@ public class Category implements AppenderAttachable {
       of this category will inherit its appenders, unless the children
       have their additivity flag set to <code>false</code> too. See
       the user manual for more details. */
-  protected boolean additive = true;
+  volatile protected boolean additive = true;
+
+  /**
+     The cached result of {@link #getThreshold}, the configuration
+     version of the hierarchy it was computed for in the upper 32 bits
+     and the threshold in the lower 32 bits. A single volatile long is
+     read and written atomically, so that the two halves always
+     match. The initial value matches no version.  */
+  volatile private long threshold = -1L;
   
   /**
      This constructor created a new <code>Category</code> instance and
@@ -215,6 +225,12 @@ public class Category implements AppenderAttachable {
      <p>This method calls all the appenders inherited from the
      hierarchy circumventing any evaluation of whether to log or not
      to log the particular log request.
+
+     <p>No category is locked during the walk, so that threads logging
+     through the same categories do not serialize here; the appender
+     lists are copy-on-write. Appenders must therefore protect
+     themselves, as {@link AppenderSkeleton} does unless it is
+     declared thread-safe.
      
      @param LoggingEvent the event to log.  */
   public
@@ -222,13 +238,12 @@ public class Category implements AppenderAttachable {
     int writes = 0;
 
     for(Category c = this; c != null; c=c.parent) {
-      synchronized(c) {
-	if(c.aai != null) {
-	  writes += c.aai.appendLoopOnAppenders(event);
-	}
-	if(!c.additive) {
-	  break;
-	}
+      AppenderAttachableImpl a = c.aai;
+      if(a != null) {
+	writes += a.appendLoopOnAppenders(event);
+      }
+      if(!c.additive) {
+	break;
       }
     }
     if(!hierarchy.emittedNoAppenderWarning && writes == 0) {
@@ -277,9 +292,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log. */
   public
   void debug(Object message) {
-    if(hierarchy.disable >=  Priority.DEBUG_INT) 
-      return;    
-    if(Priority.DEBUG.isGreaterOrEqual(this.getChainedPriority())) {
+    if(Priority.DEBUG_INT >= getThreshold()) {
       forcedLog(FQCN, Priority.DEBUG, message, null);
     }
   }
@@ -296,11 +309,35 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */  
   public
   void debug(Object message, Throwable t) {
-    if(hierarchy.disable >=  Priority.DEBUG_INT) return;
-    if(this.isEnabledFor(Priority.DEBUG))
+    if(Priority.DEBUG_INT >= getThreshold())
       forcedLog(FQCN, Priority.DEBUG, message, t);    
   }
 
+  /**
+     Log a parameterized message with the <code>DEBUG</code> priority.
+
+     <p>The message is formatted with {@link
+     MessageFormat#format(String,Object[])}, but only once an
+     appender needs it, so that requests dropped by the priority
+     check or by filters cost neither the formatting nor the
+     concatenation of the arguments. For example,
+     <pre>
+       cat.debugf("Entry {0} of {1}.", new Object[] {key, table});
+     </pre>
+
+     <p>The parameterized methods have names of their own, so that a
+     call such as <code>cat.debug(msg, null)</code> still resolves to
+     {@link #debug(Object,Throwable)}.
+
+     @param pattern the <code>MessageFormat</code> pattern of the message.
+     @param params the arguments of the pattern.
+     @since 1.1 */
+  public
+  void debugf(String pattern, Object[] params) {
+    if(Priority.DEBUG_INT >= getThreshold())
+      forcedLog(FQCN, Priority.DEBUG, new FormattedMessage(pattern, params), null);
+  }
+
   
   /** 
     Log a message object with the {@link Priority#ERROR ERROR} priority.
@@ -322,8 +359,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void error(Object message) {
-    if(hierarchy.disable >=  Priority.ERROR_INT) return;
-    if(this.isEnabledFor(Priority.ERROR))
+    if(Priority.ERROR_INT >= getThreshold())
       forcedLog(FQCN, Priority.ERROR, message, null);
   }
 
@@ -338,12 +374,22 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */  
   public
   void error(Object message, Throwable t) {
-    if(hierarchy.disable >=  Priority.ERROR_INT) return;
-    if(this.isEnabledFor(Priority.ERROR))
+    if(Priority.ERROR_INT >= getThreshold())
       forcedLog(FQCN, Priority.ERROR, message, t);
     
   }
 
+  /**
+     Log a parameterized message with the <code>ERROR</code> priority.
+     See {@link #debugf(String,Object[])} for more detailed information.
+
+     @since 1.1 */
+  public
+  void errorf(String pattern, Object[] params) {
+    if(Priority.ERROR_INT >= getThreshold())
+      forcedLog(FQCN, Priority.ERROR, new FormattedMessage(pattern, params), null);
+  }
+
 
   /**
      If the named category exists (in the default hierarchy) then it
@@ -378,8 +424,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void fatal(Object message) {
-    if(hierarchy.disable >=  Priority.FATAL_INT) return;    
-    if(Priority.FATAL.isGreaterOrEqual(this.getChainedPriority()))
+    if(Priority.FATAL_INT >= getThreshold())
       forcedLog(FQCN, Priority.FATAL, message, null);
   }
   
@@ -394,11 +439,21 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void fatal(Object message, Throwable t) {
-    if(hierarchy.disable >=  Priority.FATAL_INT) return;   
-    if(Priority.FATAL.isGreaterOrEqual(this.getChainedPriority()))
+    if(Priority.FATAL_INT >= getThreshold())
       forcedLog(FQCN, Priority.FATAL, message, t);
   }
 
+  /**
+     Log a parameterized message with the <code>FATAL</code> priority.
+     See {@link #debugf(String,Object[])} for more detailed information.
+
+     @since 1.1 */
+  public
+  void fatalf(String pattern, Object[] params) {
+    if(Priority.FATAL_INT >= getThreshold())
+      forcedLog(FQCN, Priority.FATAL, new FormattedMessage(pattern, params), null);
+  }
+
 
   /**
      This method creates a new logging event and logs the event
@@ -628,6 +683,37 @@ public class Category implements AppenderAttachable {
       }
     }
   }
+
+  /**
+     Returns the level of the lowest priority this category is enabled
+     for, taking into account both the chained priority and the
+     disabled priorities of the hierarchy.
+
+     <p>The threshold is computed once and cached until the
+     configuration of the hierarchy changes, see {@link
+     Hierarchy#configurationChanged}, so that checking whether a
+     request is enabled costs a volatile read and a comparison
+     whatever the depth of the category.
+
+     @since 1.1 */
+  final
+  protected
+  int getThreshold() {
+    long t = threshold;
+    int version = hierarchy.configurationVersion;
+    if((int) (t >>> 32) == version) {
+      return (int) t;
+    }
+    // Read the version before the configuration, so that a change
+    // made while computing leaves a stale version in the cache.
+    int level = getChainedPriority().level;
+    int disable = hierarchy.disable;
+    if(disable >= level) {
+      level = disable + 1;
+    }
+    threshold = ((long) version << 32) | (level & 0xffffffffL);
+    return level;
+  }
   
   /** 
     Log a message object with the {@link Priority#INFO INFO} priority.
@@ -649,8 +735,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log */
   public
   void info(Object message) {
-    if(hierarchy.disable >=  Priority.INFO_INT) return;    
-    if(Priority.INFO.isGreaterOrEqual(this.getChainedPriority()))
+    if(Priority.INFO_INT >= getThreshold())
       forcedLog(FQCN, Priority.INFO, message, null);
   }
   
@@ -665,11 +750,21 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void info(Object message, Throwable t) {
-    if(hierarchy.disable >=  Priority.INFO_INT) return;   
-    if(Priority.INFO.isGreaterOrEqual(this.getChainedPriority()))
+    if(Priority.INFO_INT >= getThreshold())
       forcedLog(FQCN, Priority.INFO, message, t);
   }
 
+  /**
+     Log a parameterized message with the <code>INFO</code> priority.
+     See {@link #debugf(String,Object[])} for more detailed information.
+
+     @since 1.1 */
+  public
+  void infof(String pattern, Object[] params) {
+    if(Priority.INFO_INT >= getThreshold())
+      forcedLog(FQCN, Priority.INFO, new FormattedMessage(pattern, params), null);
+  }
+
   /**
      Check whether this category is enabled for the <code>DEBUG</code>
      priority.
@@ -707,9 +802,7 @@ public class Category implements AppenderAttachable {
    */
   public
   boolean isDebugEnabled() {
-    if(hierarchy.disable >=  Priority.DEBUG_INT)
-      return false;   
-    return Priority.DEBUG.isGreaterOrEqual(this.getChainedPriority());
+    return Priority.DEBUG_INT >= getThreshold();
   }
   
   /**
@@ -722,10 +815,7 @@ public class Category implements AppenderAttachable {
   */
   public
   boolean isEnabledFor(Priority priority) {
-    if(hierarchy.disable >= priority.level) {
-      return false;
-    }
-    return priority.isGreaterOrEqual(this.getChainedPriority());
+    return priority.level >= getThreshold();
   }
 
   /**
@@ -737,9 +827,7 @@ public class Category implements AppenderAttachable {
   */
   public
   boolean isInfoEnabled() {
-    if(hierarchy.disable >= Priority.INFO_INT)
-      return false;   
-    return Priority.INFO.isGreaterOrEqual(this.getChainedPriority());
+    return Priority.INFO_INT >= getThreshold();
   }
 
 
@@ -753,10 +841,7 @@ public class Category implements AppenderAttachable {
      @since 0.8.4 */
   public
   void l7dlog(Priority priority, String key, Throwable t) {
-    if(hierarchy.disable >= priority.level) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getChainedPriority())) {
+    if(priority.level >= getThreshold()) {
       String msg = getResourceBundleString(key);
       if(msg == null) {
 	msg = key;
@@ -775,10 +860,7 @@ public class Category implements AppenderAttachable {
   */
   public
   void l7dlog(Priority priority, String key,  Object[] params, Throwable t) {
-    if(hierarchy.disable >= priority.level) {
-      return;
-    }    
-    if(priority.isGreaterOrEqual(this.getChainedPriority())) {
+    if(priority.level >= getThreshold()) {
       String pattern = getResourceBundleString(key);
       String msg;
       if(pattern == null) 
@@ -794,10 +876,7 @@ public class Category implements AppenderAttachable {
    */
   public
   void log(Priority priority, Object message, Throwable t) {
-    if(hierarchy.disable >= priority.level) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getChainedPriority())) 
+    if(priority.level >= getThreshold()) 
       forcedLog(FQCN, priority, message, t);
   }
   
@@ -806,10 +885,7 @@ public class Category implements AppenderAttachable {
  */
   public
   void log(Priority priority, Object message) {
-    if(hierarchy.disable >= priority.level) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getChainedPriority()))
+    if(priority.level >= getThreshold())
       forcedLog(FQCN, priority, message, null);
   }
 
@@ -824,14 +900,23 @@ public class Category implements AppenderAttachable {
      @param t The throwable of the logging request, may be null.  */
   public
   void log(String callerFQCN, Priority priority, Object message, Throwable t) {
-    if(hierarchy.disable >= priority.level) {
-      return;
-    }
-    if(priority.isGreaterOrEqual(this.getChainedPriority())) {
+    if(priority.level >= getThreshold()) {
       forcedLog(callerFQCN, priority, message, t);
     }
   }
 
+  /**
+     Log a parameterized message, formatted only once an appender
+     needs it. See {@link #debugf(String,Object[])}.
+
+     @since 1.1 */
+  public
+  void log(Priority priority, String pattern, Object[] params, Throwable t) {
+    if(priority.level >= getThreshold()) {
+      forcedLog(FQCN, priority, new FormattedMessage(pattern, params), t);
+    }
+  }
+
 
   /**
      Remove all previously added appenders from this Category
@@ -897,7 +982,12 @@ public class Category implements AppenderAttachable {
   */
   public
   void setPriority(Priority priority) {
-    this.priority = priority;
+    if(this.priority != priority) {
+      this.priority = priority;
+      if(hierarchy != null) {
+	hierarchy.configurationChanged();
+      }
+    }
   }
 
 
@@ -957,7 +1047,7 @@ public class Category implements AppenderAttachable {
     @param message the message object to log.  */
   public
   void warn(Object message) {
-    if(this.isEnabledFor(Priority.WARN))
+    if(Priority.WARN_INT >= getThreshold())
       forcedLog(FQCN, Priority.WARN, message, null);
   }
   
@@ -972,7 +1062,18 @@ public class Category implements AppenderAttachable {
    @param t the exception to log, including its stack trace.  */
   public
   void warn(Object message, Throwable t) {
-    if(this.isEnabledFor(Priority.WARN))
+    if(Priority.WARN_INT >= getThreshold())
       forcedLog(FQCN, Priority.WARN, message, t);
   }
+
+  /**
+     Log a parameterized message with the <code>WARN</code> priority.
+     See {@link #debugf(String,Object[])} for more detailed information.
+
+     @since 1.1 */
+  public
+  void warnf(String pattern, Object[] params) {
+    if(Priority.WARN_INT >= getThreshold())
+      forcedLog(FQCN, Priority.WARN, new FormattedMessage(pattern, params), null);
+  }
 }
@@ -0,0 +1,92 @@
+package org.apache.log4j;
+
+/**
+   A read-mostly table of the categories of a {@link Hierarchy}, by
+   name. {@link #get} takes no lock, so that looking up existing
+   categories does not serialize threads. Changes are synchronized.
+
+   <p>Entries are never modified once published; a change builds new
+   entries and publishes them by writing the volatile
+   <code>table</code> variable. A reader may miss a category that is
+   being added concurrently, in which case the caller falls back to
+   the synchronized lookup of the hierarchy.
+
+   @since 1.1 */
+class CategoryTable {
+
+  static final int INITIAL_CAPACITY = 64;
+
+  volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+  int count = 0;
+
+  /**
+     Return the category named <code>name</code>, or <code>null</code>
+     if there is none in the table.  */
+  Category get(String name) {
+    int hash = name.hashCode();
+    Entry[] t = table;
+    for(Entry e = t[hash & (t.length - 1)]; e != null; e = e.next) {
+      if(e.hash == hash && name.equals(e.name)) {
+	return e.category;
+      }
+    }
+    return null;
+  }
+
+  /**
+     Add <code>category</code> to the table, unless a category of the
+     same name is already present.  */
+  synchronized
+  void put(Category category) {
+    String name = category.getName();
+    if(get(name) != null) {
+      return;
+    }
+    Entry[] t = table;
+    if(count >= t.length - (t.length >> 2)) {
+      t = rehash(t);
+    }
+    int hash = name.hashCode();
+    int i = hash & (t.length - 1);
+    t[i] = new Entry(name, hash, category, t[i]);
+    count++;
+    table = t; // publishes the new entry
+  }
+
+  /**
+     Remove all categories from the table. */
+  synchronized
+  void clear() {
+    table = new Entry[INITIAL_CAPACITY];
+    count = 0;
+  }
+
+  /**
+     Return a copy of <code>t</code> with twice the capacity. The old
+     table is left untouched for concurrent readers. */
+  static
+  Entry[] rehash(Entry[] t) {
+    Entry[] n = new Entry[t.length << 1];
+    for(int i = 0; i < t.length; i++) {
+      for(Entry e = t[i]; e != null; e = e.next) {
+	int j = e.hash & (n.length - 1);
+	n[j] = new Entry(e.name, e.hash, e.category, n[j]);
+      }
+    }
+    return n;
+  }
+
+  static final class Entry {
+    final String name;
+    final int hash;
+    final Category category;
+    final Entry next;
+
+    Entry(String name, int hash, Category category, Entry next) {
+      this.name = name;
+      this.hash = hash;
+      this.category = category;
+      this.next = next;
+    }
+  }
+}
@@ -0,0 +1,668 @@
+package org.apache.log4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Vector;
+import java.util.zip.GZIPOutputStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import org.apache.log4j.helpers.OptionConverter;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.CountingQuietWriter;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   CompressingRollingFileAppender extends {@link FileAppender} to roll
+   the log file over when it reaches a certain size, when the period
+   given by the <b>DatePattern</b> option changes, or both.
+
+   <p>Unlike the {@link RollingFileAppender} and the {@link
+   DailyRollingFileAppender}, the logging thread does very little work
+   at rollover: it closes the file, renames it once to a new archive
+   name and reopens <b>File</b>. Existing archives are never renamed.
+   Compressing the archive with gzip and deleting old archives is left
+   to a background thread, so rollover does not stall the threads that
+   log.
+
+   <p>Archives are named after <b>File</b>, followed by the date of the
+   period they cover, formatted with the <b>DatePattern</b> if set,
+   and by a sequence number, for example
+   <code>/foo/bar.log.2001-03-09.1.gz</code> with the DatePattern
+   <code>'.'yyyy-MM-dd</code>, or <code>/foo/bar.log.7.gz</code>
+   without DatePattern. See {@link DailyRollingFileAppender} for the
+   rollover schedules the DatePattern can express.
+
+   <p>The <b>MaxBackups</b> and <b>MaxTotalSize</b> options limit the
+   number and the total size of the archives; when either is exceeded
+   the oldest archives, by period and then by sequence number, are
+   deleted. Only files named exactly as this appender names its
+   archives are counted or deleted. Archives left uncompressed by a
+   previous run are compressed when the appender is activated.
+
+   <p>If the file cannot be renamed, the appender keeps on appending
+   to it and tries again only once it grew by another
+   <b>MaxFileSize</b>, or at the next period.
+
+   @since 1.1 */
+public class CompressingRollingFileAppender extends FileAppender {
+
+  /**
+     The default maximum file size is 10MB.
+  */
+  protected long maxFileSize = 10*1024*1024;
+
+  /**
+     The limits on the archives. Zero means no limit.
+  */
+  protected int maxBackups = 0;
+  protected long maxTotalSize = 0;
+
+  protected boolean compress = true;
+
+  String datePattern;
+  SimpleDateFormat sdf;
+  RollingCalendar rc;
+  Date now = new Date();
+  long nextCheck;
+
+  /** The date of the period being logged, formatted with sdf. */
+  String period = "";
+
+  /** The last sequence number used in the current period. */
+  int sequence = 0;
+
+  /** The size of the file when a rollover last failed, added to
+      <b>MaxFileSize</b> so as not to retry on every event. */
+  long failedSize = 0;
+
+  Archiver archiver;
+
+  /**
+     The default constructor does nothing. */
+  public
+  CompressingRollingFileAppender() {
+  }
+
+  /**
+    Instantiate a <code>CompressingRollingFileAppender</code> and open
+    the file designated by <code>filename</code>. The opened filename
+    will become the ouput destination for this appender.
+    */
+  public
+  CompressingRollingFileAppender(Layout layout, String filename,
+				 String datePattern) throws IOException {
+    super(layout, filename, true);
+    this.datePattern = datePattern;
+    activateOptions();
+  }
+
+  public
+  void activateOptions() {
+    if(datePattern != null) {
+      sdf = new SimpleDateFormat(datePattern);
+      rc = new RollingCalendar();
+      rc.setType(computeCheckPeriod(sdf));
+      // An existing file belongs to the period it was last written in.
+      long start = System.currentTimeMillis();
+      if(fileName != null && fileAppend) {
+	File f = new File(fileName);
+	if(f.exists()) {
+	  start = Math.min(start, f.lastModified());
+	}
+      }
+      now.setTime(start);
+      period = sdf.format(now);
+      nextCheck = rc.getNextCheckMillis(now);
+    } else {
+      sdf = null;
+      period = "";
+    }
+    sequence = 0;
+    failedSize = 0;
+
+    super.activateOptions();
+
+    if(fileName != null) {
+      Archiver a;
+      synchronized(this) {
+	if(archiver == null) {
+	  archiver = new Archiver(this);
+	  archiver.start();
+	} else {
+	  archiver.configure(this);
+	}
+	a = archiver;
+      }
+      File[] archives = a.listArchives();
+      synchronized(this) {
+	sequence = lastSequence(archives);
+      }
+      if(compress) {
+	for(int i = 0; i < archives.length; i++) {
+	  if(!archives[i].getName().endsWith(Archiver.SUFFIX)) {
+	    a.add(archives[i]);
+	  }
+	}
+      }
+      a.add(null); // enforces the limits
+    }
+  }
+
+  /**
+     Return the highest sequence number of the given archives that
+     belong to the current period, or zero. New archives then sort
+     after the existing ones, and are not the first to be purged, even
+     when the lower numbered archives were purged before a restart.  */
+  int lastSequence(File[] archives) {
+    String prefix = new File(fileName).getName() + period + ".";
+    int last = 0;
+    for(int i = 0; i < archives.length; i++) {
+      String name = archives[i].getName();
+      if(name.endsWith(Archiver.SUFFIX)) {
+	name = name.substring(0, name.length() - Archiver.SUFFIX.length());
+      }
+      if(name.startsWith(prefix)) {
+	try {
+	  last = Math.max(last, Integer.parseInt(name.substring(prefix.length())));
+	} catch(NumberFormatException e) {
+	  // not of the current period
+	}
+      }
+    }
+    return last;
+  }
+
+  /**
+     Close this appender. Waits for the background thread to finish
+     compressing the pending archives.  */
+  public
+  void close() {
+    super.close();
+    Archiver a;
+    synchronized(this) {
+      a = archiver;
+      archiver = null;
+    }
+    if(a != null) {
+      a.close();
+      try {
+	a.join();
+      } catch(InterruptedException e) {
+	LogLog.error("Got an InterruptedException while waiting for the "+
+		     "archiver to finish.", e);
+      }
+    }
+  }
+
+  /**
+     Roll the current file over to a new archive and queue the archive
+     for compression. Only a single rename is made on the calling
+     thread.  */
+  public
+  synchronized
+  void rollOver() {
+    if(fileName == null) {
+      return;
+    }
+    this.closeFile();
+
+    File file = new File(fileName);
+    File target = nextArchive();
+    boolean renamed = file.renameTo(target);
+    if(renamed) {
+      LogLog.debug(fileName +" -> "+ target);
+      failedSize = 0;
+    } else {
+      LogLog.error("Failed to rename ["+fileName+"] to ["+target+"].");
+      failedSize = file.length();
+      sequence--;
+    }
+
+    try {
+      // If the rename failed, keep on appending to the same file.
+      this.setFile(fileName, !renamed);
+    }
+    catch(IOException e) {
+      errorHandler.error("setFile("+fileName+", false) call failed.");
+    }
+
+    if(renamed && archiver != null) {
+      archiver.add(target);
+    }
+  }
+
+  /**
+     Return the first unused archive name of the current period. */
+  File nextArchive() {
+    String base = fileName + period + ".";
+    while(true) {
+      String name = base + (++sequence);
+      if(!new File(name).exists() &&
+	 !new File(name + Archiver.SUFFIX).exists()) {
+	return new File(name);
+      }
+    }
+  }
+
+  public
+  synchronized
+  void setFile(String fileName, boolean append) throws IOException {
+    super.setFile(fileName, append);
+    if(append) {
+      File f = new File(fileName);
+      ((CountingQuietWriter) qw).setCount(f.length());
+    }
+  }
+
+  protected
+  void setQWForFiles(Writer writer) {
+     this.qw = new CountingQuietWriter(writer, errorHandler);
+  }
+
+  /**
+     Roll over when the period changes, before writing the event, and
+     when the file reaches <b>MaxFileSize</b>, after writing it.  */
+  protected
+  void subAppend(LoggingEvent event) {
+    if(sdf != null) {
+      long n = System.currentTimeMillis();
+      if(n >= nextCheck) {
+	if(((CountingQuietWriter) qw).getCount() > 0) {
+	  rollOver();
+	}
+	now.setTime(n);
+	nextCheck = rc.getNextCheckMillis(now);
+	period = sdf.format(now);
+	sequence = 0;
+      }
+    }
+    super.subAppend(event);
+    if(maxFileSize > 0 && fileName != null &&
+       ((CountingQuietWriter) qw).getCount() >= failedSize + maxFileSize) {
+      rollOver();
+    }
+  }
+
+  /**
+     Return the rollover schedule of the given date format, one of the
+     <code>TOP_OF_</code> constants of {@link
+     DailyRollingFileAppender}.  */
+  static
+  int computeCheckPeriod(SimpleDateFormat sdf) {
+    RollingCalendar c = new RollingCalendar();
+    Date epoch = new Date(0);
+    for(int i = DailyRollingFileAppender.TOP_OF_MINUTE;
+	i <= DailyRollingFileAppender.TOP_OF_MONTH; i++) {
+      String r0 = sdf.format(epoch);
+      c.setType(i);
+      Date next = new Date(c.getNextCheckMillis(epoch));
+      String r1 = sdf.format(next);
+      if(r0 != null && r1 != null && !r0.equals(r1)) {
+	return i;
+      }
+    }
+    LogLog.error("Unknown periodicity for DatePattern ["+sdf.toPattern()+"].");
+    return DailyRollingFileAppender.TOP_OF_DAY;
+  }
+
+  /**
+     The <b>DatePattern</b> takes a string in the same format as
+     expected by {@link SimpleDateFormat}. If set, the file is rolled
+     over at the start of each period, see {@link
+     DailyRollingFileAppender}. It is not set by default.
+   */
+  public
+  void setDatePattern(String pattern) {
+    datePattern = pattern;
+  }
+
+  /** Returns the value of the <b>DatePattern</b> option. */
+  public
+  String getDatePattern() {
+    return datePattern;
+  }
+
+  /**
+     The <b>MaxFileSize</b> option takes a long integer with an
+     optional suffix "KB", "MB" or "GB", see {@link
+     RollingFileAppender#setMaxFileSize(String)}. Zero disables rolling
+     over on size. The default is 10MB.
+   */
+  public
+  void setMaxFileSize(String value) {
+    maxFileSize = OptionConverter.toFileSize(value, maxFileSize + 1);
+  }
+
+  /**
+     Returns the value of the <b>MaxFileSize</b> option, in bytes.
+   */
+  public
+  long getMaximumFileSize() {
+    return maxFileSize;
+  }
+
+  /**
+     The <b>MaxTotalSize</b> option takes a size in the same format as
+     <b>MaxFileSize</b>, the maximum total size of the archives, not
+     counting the current file. Zero, the default, means no limit.
+   */
+  public
+  void setMaxTotalSize(String value) {
+    maxTotalSize = OptionConverter.toFileSize(value, maxTotalSize + 1);
+  }
+
+  /**
+     Returns the value of the <b>MaxTotalSize</b> option, in bytes.
+   */
+  public
+  long getMaximumTotalSize() {
+    return maxTotalSize;
+  }
+
+  /**
+     The <b>MaxBackups</b> option takes a non-negative integer, the
+     number of archives to keep. Zero, the default, means no limit.
+   */
+  public
+  void setMaxBackups(int maxBackups) {
+    this.maxBackups = maxBackups;
+  }
+
+  /**
+     Returns the value of the <b>MaxBackups</b> option.
+   */
+  public
+  int getMaxBackups() {
+    return maxBackups;
+  }
+
+  /**
+     The <b>Compress</b> option takes a boolean value. If true, the
+     default, archives are compressed with gzip.
+   */
+  public
+  void setCompress(boolean compress) {
+    this.compress = compress;
+  }
+
+  /**
+     Returns the value of the <b>Compress</b> option.
+   */
+  public
+  boolean getCompress() {
+    return compress;
+  }
+}
+
+/**
+   The Archiver compresses the archives of a {@link
+   CompressingRollingFileAppender} and deletes the oldest ones, one at
+   a time, on its own thread.
+ */
+class Archiver extends Thread {
+
+  static final String SUFFIX = ".gz";
+  static final int BUFFER_SIZE = 8192;
+
+  String baseName;
+  File dir;
+  SimpleDateFormat sdf;
+  boolean compress;
+  int maxBackups;
+  long maxTotalSize;
+
+  final Vector queue = new Vector();
+  boolean interrupted = false;
+
+  Archiver(CompressingRollingFileAppender appender) {
+    configure(appender);
+    this.setDaemon(true);
+    this.setName("Archiver-"+getName());
+  }
+
+  /**
+     Take the file name and the options of <code>appender</code>,
+     which may have changed since the last time it was activated. The
+     archives already queued are still compressed.  */
+  synchronized
+  void configure(CompressingRollingFileAppender appender) {
+    File file = new File(appender.fileName);
+    String parent = file.getParent();
+    this.baseName = file.getName();
+    this.dir = new File(parent == null ? "." : parent);
+    if(appender.datePattern == null) {
+      this.sdf = null;
+    } else {
+      this.sdf = new SimpleDateFormat(appender.datePattern);
+      this.sdf.setLenient(false);
+    }
+    this.compress = appender.compress;
+    this.maxBackups = appender.maxBackups;
+    this.maxTotalSize = appender.maxTotalSize;
+  }
+
+  /**
+     Queue <code>archive</code> for compression. A <code>null</code>
+     archive only enforces the limits.  */
+  synchronized
+  void add(File archive) {
+    queue.addElement(archive == null ? dir : archive);
+    notify();
+  }
+
+  synchronized
+  void close() {
+    interrupted = true;
+    notify();
+  }
+
+  public
+  void run() {
+    while(true) {
+      File archive;
+      boolean compress;
+      synchronized(this) {
+	while(queue.isEmpty()) {
+	  if(interrupted) {
+	    return;
+	  }
+	  try {
+	    wait();
+	  } catch(InterruptedException e) {
+	    LogLog.error("The archiver should not be interrupted.");
+	    return;
+	  }
+	}
+	archive = (File) queue.elementAt(0);
+	queue.removeElementAt(0);
+	compress = this.compress;
+      }
+      try {
+	if(archive != dir && compress) {
+	  compress(archive);
+	}
+	purge();
+      } catch(Exception e) {
+	LogLog.error("Could not archive ["+archive+"].", e);
+      }
+    }
+  }
+
+  /**
+     Compress <code>archive</code> to a file of the same name with the
+     ".gz" suffix, then delete it. The original is only deleted once the
+     compressed file is complete.  */
+  void compress(File archive) throws IOException {
+    if(!archive.exists()) {
+      return;
+    }
+    File gz = new File(archive.getPath() + SUFFIX);
+    InputStream in = new FileInputStream(archive);
+    OutputStream out = null;
+    boolean done = false;
+    try {
+      out = new GZIPOutputStream(new FileOutputStream(gz), BUFFER_SIZE);
+      byte[] buf = new byte[BUFFER_SIZE];
+      int n;
+      while((n = in.read(buf)) >= 0) {
+	out.write(buf, 0, n);
+      }
+      out.close();
+      out = null;
+      done = true;
+    } finally {
+      in.close();
+      if(out != null) {
+	out.close();
+      }
+      if(!done) {
+	gz.delete();
+      }
+    }
+    if(!archive.delete()) {
+      LogLog.warn("Could not delete ["+archive+"] after compressing it.");
+    }
+    LogLog.debug(archive +" -> "+ gz);
+  }
+
+  /**
+     Delete the oldest archives until the <b>MaxBackups</b> and
+     <b>MaxTotalSize</b> limits are respected. Archives are ordered by
+     the period in their name, then by their sequence number, as
+     modification times change when archives are compressed or
+     copied.  */
+  void purge() {
+    int maxBackups;
+    long maxTotalSize;
+    synchronized(this) {
+      maxBackups = this.maxBackups;
+      maxTotalSize = this.maxTotalSize;
+    }
+    if(maxBackups <= 0 && maxTotalSize <= 0) {
+      return;
+    }
+    File[] archives = listArchives();
+    long[] periods = new long[archives.length];
+    long[] sequences = new long[archives.length];
+    long total = 0;
+    for(int i = 0; i < archives.length; i++) {
+      long[] key = parseArchive(archives[i].getName());
+      periods[i] = key[0];
+      sequences[i] = key[1];
+      total += archives[i].length();
+    }
+
+    // Oldest first; there are few archives, an insertion sort will do.
+    for(int i = 1; i < archives.length; i++) {
+      File f = archives[i];
+      long p = periods[i];
+      long s = sequences[i];
+      int j = i - 1;
+      for(; j >= 0 && (periods[j] > p ||
+		       (periods[j] == p && sequences[j] > s)); j--) {
+	archives[j+1] = archives[j];
+	periods[j+1] = periods[j];
+	sequences[j+1] = sequences[j];
+      }
+      archives[j+1] = f;
+      periods[j+1] = p;
+      sequences[j+1] = s;
+    }
+
+    int count = archives.length;
+    for(int i = 0; i < archives.length; i++) {
+      if((maxBackups <= 0 || count <= maxBackups) &&
+	 (maxTotalSize <= 0 || total <= maxTotalSize)) {
+	break;
+      }
+      long length = archives[i].length();
+      if(archives[i].delete()) {
+	LogLog.debug("Deleted old archive ["+archives[i]+"].");
+	count--;
+	total -= length;
+      } else {
+	LogLog.warn("Could not delete old archive ["+archives[i]+"].");
+      }
+    }
+  }
+
+  /**
+     Return the archives of the appender's file, compressed or not,
+     see {@link #isArchive}.  */
+  File[] listArchives() {
+    File dir;
+    synchronized(this) {
+      dir = this.dir;
+    }
+    String[] names = dir.list();
+    if(names == null) {
+      return new File[0];
+    }
+    Vector archives = new Vector();
+    for(int i = 0; i < names.length; i++) {
+      if(isArchive(names[i])) {
+	archives.addElement(new File(dir, names[i]));
+      }
+    }
+    File[] result = new File[archives.size()];
+    archives.copyInto(result);
+    return result;
+  }
+
+  /**
+     An archive is named after the file, followed by a period exactly
+     as formatted with the <b>DatePattern</b>, or nothing without
+     DatePattern, a dot and a sequence number, and optionally by
+     ".gz".  */
+  boolean isArchive(String name) {
+    return parseArchive(name) != null;
+  }
+
+  /**
+     Return the start of the period and the sequence number of the
+     archive called <code>name</code>, or <code>null</code> if it is
+     not an archive of this appender's file.  */
+  synchronized
+  long[] parseArchive(String name) {
+    if(!name.startsWith(baseName)) {
+      return null;
+    }
+    if(name.endsWith(SUFFIX)) {
+      name = name.substring(0, name.length() - SUFFIX.length());
+    }
+    int dot = name.lastIndexOf('.');
+    if(dot < baseName.length() || dot == name.length() - 1 ||
+       name.length() - dot > 10) {
+      return null;
+    }
+    for(int i = dot + 1; i < name.length(); i++) {
+      if(!Character.isDigit(name.charAt(i))) {
+	return null;
+      }
+    }
+    long sequence = Long.parseLong(name.substring(dot + 1));
+
+    String period = name.substring(baseName.length(), dot);
+    long start = 0;
+    if(sdf == null) {
+      if(period.length() != 0) {
+	return null;
+      }
+    } else {
+      ParsePosition pos = new ParsePosition(0);
+      Date date = sdf.parse(period, pos);
+      if(date == null || pos.getIndex() != period.length() ||
+	 !sdf.format(date).equals(period)) {
+	return null;
+      }
+      start = date.getTime();
+    }
+    return new long[] {start, sequence};
+  }
+}
@@ -49,11 +49,19 @@ public class Hierarchy {
 
 
   Hashtable ht;
+  /** Lock-free view of the categories in <code>ht</code>, for lookups
+      of existing categories. */
+  CategoryTable categories = new CategoryTable();
   Category root;
   RendererMap rendererMap;
   
   int disable;
 
+  /**
+     Incremented whenever a priority or the disable threshold changes,
+     invalidating the thresholds cached by the categories. */
+  volatile int configurationVersion = 0;
+
   boolean emittedNoAppenderWarning = false;
   boolean emittedNoResourceBundleWarning = false;  
 
@@ -92,7 +100,10 @@ public class Hierarchy {
      @since 0.9.0 */
   public
   void clear() {
-    ht.clear();
+    synchronized(ht) {
+      ht.clear();
+      categories.clear();
+    }
   }
 
   /**
@@ -104,6 +115,10 @@ public class Hierarchy {
   */
   public
   Category exists(String name) {    
+    Category c = categories.get(name);
+    if(c != null) {
+      return c;
+    }
     Object o = ht.get(new CategoryKey(name));
     if(o instanceof Category) {
       return (Category) o;
@@ -121,7 +136,7 @@ public class Hierarchy {
     if(disable != DISABLE_OVERRIDE) {  
       Priority p = Priority.toPriority(priorityStr, null);
       if(p != null) {
-	disable = p.level;
+	setDisable(p.level);
       } else {
 	LogLog.warn("Could not convert ["+priorityStr+"] to Priority.");
       }
@@ -157,7 +172,7 @@ public class Hierarchy {
   public
   void disable(Priority p) {
     if((disable != DISABLE_OVERRIDE) && (p != null)) {
-      disable = p.level;
+      setDisable(p.level);
     }
   }
   
@@ -209,7 +224,7 @@ public class Hierarchy {
      @since 0.8.5 */
   public
   void enableAll() {
-    disable = DISABLE_OFF;
+    setDisable(DISABLE_OFF);
   }
   
   /**
@@ -227,7 +242,7 @@ public class Hierarchy {
 		   override +"\".");
       if(OptionConverter.toBoolean(override, true)) {
 	LogLog.debug("Overriding all disable methods.");
-	disable = DISABLE_OVERRIDE;
+	setDisable(DISABLE_OVERRIDE);
       }
     }
   }
@@ -258,14 +273,21 @@ public class Hierarchy {
      <code>factory</code> parameter and linked with its existing
      ancestors as well as children.
      
+     <p>Looking up an existing category takes no lock. Only creating a
+     category, and linking it into the hierarchy, is synchronized.
+     
      @param name The name of the category to retreive.
      @param factory The factory that will make the new category instance.
 
  */
   public
   Category getInstance(String name, CategoryFactory factory) {
+    Category category = categories.get(name);
+    if(category != null) {
+      return category;
+    }
+
     CategoryKey key = new CategoryKey(name);    
-    Category category;
     
     synchronized(ht) {
       Object o = ht.get(key);
@@ -274,15 +296,20 @@ public class Hierarchy {
 	category.setHierarchy(this);
 	ht.put(key, category);      
 	updateParents(category);
+	categoryLinked(category);
+	categories.put(category);
 	return category;
       } else if(o instanceof Category) {
+	categories.put((Category) o);
 	return (Category) o;
       } else if (o instanceof ProvisionNode) {
 	category = factory.makeNewCategoryInstance(name);
 	category.setHierarchy(this); 
 	ht.put(key, category);
 	updateChildren((ProvisionNode) o, category);
-	updateParents(category);	
+	updateParents(category);
+	categoryLinked(category);
+	categories.put(category);
 	return category;
       }
       else {
@@ -312,6 +339,41 @@ public class Hierarchy {
   }
 
 
+  /**
+     Invalidate the thresholds cached by the categories of this
+     hierarchy, see {@link Category#getThreshold}. Called after any
+     change of a priority or of the disable threshold, not when
+     categories are merely created, so that the caches stay valid
+     while an application is starting.
+
+     @since 1.1 */
+  synchronized
+  void configurationChanged() {
+    configurationVersion++;
+  }
+
+  /**
+     Set the disable threshold, invalidating the cached thresholds
+     only if it changes. */
+  private
+  void setDisable(int level) {
+    if(disable != level) {
+      disable = level;
+      configurationChanged();
+    }
+  }
+
+  /**
+     A category was linked into the hierarchy. Its descendants inherit
+     from it from now on, which changes their thresholds only if it
+     has a priority, as when the factory set one. */
+  private
+  void categoryLinked(Category category) {
+    if(category.priority != null) {
+      configurationChanged();
+    }
+  }
+
   public
   boolean isDisabled(int level) {
     return disable >=  level;
@@ -356,7 +418,7 @@ public class Hierarchy {
 
     getRoot().setPriority(Priority.DEBUG);
     root.setResourceBundle(null);
-    disable = Hierarchy.DISABLE_OFF;
+    setDisable(Hierarchy.DISABLE_OFF);
     
     synchronized(ht) {    
     
@@ -380,7 +442,7 @@ public class Hierarchy {
   void setDisableOverride(String override) {
     if(OptionConverter.toBoolean(override, true)) {
       LogLog.debug("Overriding disable.");
-      disable =  DISABLE_OVERRIDE;
+      setDisable(DISABLE_OVERRIDE);
     }
   }
 
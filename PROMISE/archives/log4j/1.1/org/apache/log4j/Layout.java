@@ -2,6 +2,8 @@ package org.apache.log4j;
 
 import org.apache.log4j.spi.OptionHandler;
 import org.apache.log4j.spi.LoggingEvent;
+import java.io.Writer;
+import java.io.IOException;
 
 /**
    Extend this abstract class to create your own log layout format.
@@ -23,6 +25,19 @@ public abstract class Layout implements OptionHandler {
   public
   String format(LoggingEvent event);
 
+  /**
+     Formats <code>event</code> straight into <code>out</code>. The
+     base class writes the string returned by {@link
+     #format(LoggingEvent)}; layouts that can do without building a
+     new string per event, such as {@link PatternLayout}, override
+     this method.
+
+     @since 1.1 */
+  public
+  void format(LoggingEvent event, Writer out) throws IOException {
+    out.write(format(event));
+  }
+
   /**
      Returns the content type output by this layout. The base class
      returns "text/plain". 
@@ -0,0 +1,75 @@
+package org.apache.log4j;
+
+import org.apache.log4j.helpers.ContextMap;
+import org.apache.log4j.helpers.LogLog;
+
+/**
+   The MDC class holds a mapped diagnostic context: a per thread map of
+   keys to values, which layouts can output with every logging event,
+   for example with the <code>%X{key}</code> conversion of the {@link
+   PatternLayout}.
+
+   <p>The context of a thread is an immutable {@link ContextMap}. Each
+   change replaces it with a modified copy, so that a logging event can
+   keep the context of its thread by copying a single reference, see
+   {@link org.apache.log4j.spi.LoggingEvent#getMDCCopy}. Threads
+   inherit the context of the thread that created them.
+
+   <p>The MDC requires JDK 1.2 or later.
+
+   @since 1.1 */
+public class MDC {
+
+  static final ThreadLocal context = new InheritableThreadLocal();
+
+  private MDC() {}
+
+  /**
+     Put <code>value</code> under <code>key</code> in the context of
+     the current thread. A <code>null</code> value removes the key. A
+     <code>null</code> key is ignored with a warning.  */
+  public
+  static
+  void put(String key, Object value) {
+    if(key == null) {
+      LogLog.warn("Ignoring an MDC value put under a null key.");
+      return;
+    }
+    context.set(getContext().with(key, value));
+  }
+
+  /**
+     Returns the value of <code>key</code> in the context of the
+     current thread, or <code>null</code>.  */
+  public
+  static
+  Object get(String key) {
+    return getContext().get(key);
+  }
+
+  /**
+     Remove <code>key</code> from the context of the current thread. */
+  public
+  static
+  void remove(String key) {
+    context.set(getContext().without(key));
+  }
+
+  /**
+     Remove all keys from the context of the current thread. */
+  public
+  static
+  void clear() {
+    context.set(null);
+  }
+
+  /**
+     Returns the context of the current thread. The returned map is
+     immutable and may be kept and passed to other threads.  */
+  public
+  static
+  ContextMap getContext() {
+    ContextMap map = (ContextMap) context.get();
+    return map == null ? ContextMap.EMPTY : map;
+  }
+}
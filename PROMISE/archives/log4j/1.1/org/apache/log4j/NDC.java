@@ -1,11 +1,6 @@
 package org.apache.log4j;
 
-import java.util.Hashtable;
 import java.util.Stack;
-import java.util.Enumeration;
-import java.util.Vector;
-
-import org.apache.log4j.helpers.LogLog;
 
 /**
    The NDC class implements <i>nested diagnostic contexts</i> as
@@ -57,13 +52,14 @@ import org.apache.log4j.helpers.LogLog;
    the same category) can still be distinguished because each client
    request will have a different NDC tag.
 
-   <p>Heavy duty systems should call the {@link #remove} method when
-   leaving the run method of a thread. This ensures that the memory
-   used by the thread can be freed by the Java garbage collector. In
-   version 0.8.5, we have added a meachanism to lazily remove
-   references to dead threads. In practice, this means that you can be
-   a little sloppy and sometimes forget to call {@link #remove} before
-   exiting a thread.
+   <p>The context of each thread is kept in a thread local variable
+   as an immutable chain of entries, the innermost first. Pushing adds
+   an entry in front of the chain, popping drops it, so that the
+   context of a thread is never modified in place and the value of
+   {@link #get} can be kept by logging events without copying. The
+   memory used by the context of a thread is freed with the thread; it
+   is no longer necessary to call {@link #remove}. The NDC requires JDK
+   1.2 or later.
    
    <p>A thread may inherit the nested diagnostic context of another
    (possibly parent) thread using the {@link #inherit inherit}
@@ -78,12 +74,8 @@ import org.apache.log4j.helpers.LogLog;
  
 public class NDC {
 
-
-
-  static Hashtable ht = new Hashtable();
-
-
-  static final int REAP_THRESHOLD = 5;
+  /** The innermost DiagnosticContext of each thread. */
+  static final ThreadLocal current = new ThreadLocal();
   
   private NDC() {}
 
@@ -100,9 +92,7 @@ public class NDC {
   public
   static
   void clear() {
-    Stack stack = (Stack) ht.get(Thread.currentThread());    
-    if(stack != null) 
-      stack.setSize(0);    
+    current.set(null);
   }
 
   
@@ -123,13 +113,15 @@ public class NDC {
   public
   static
   Stack cloneStack() {
-    Object o = ht.get(Thread.currentThread());
-    if(o == null)
+    DiagnosticContext dc = (DiagnosticContext) current.get();
+    if(dc == null)
       return null;
-    else {
-      Stack stack = (Stack) o;
-      return (Stack) stack.clone();
+    Stack stack = new Stack();
+    stack.setSize(dc.depth);
+    for(; dc != null; dc = dc.parent) {
+      stack.setElementAt(dc, dc.depth - 1);
     }
+    return stack;
   }
 
   
@@ -141,9 +133,8 @@ public class NDC {
      communicate this information to its child so that it may inherit
      the parent's diagnostic context.
 
-     <p>The parent's diagnostic context is cloned before being
-     inherited. In other words, once inherited, the two diagnostic
-     contexts can be managed independently.
+     <p>The entries of a diagnostic context are immutable, so the two
+     contexts can be managed independently once inherited.
      
      <p>In java, a child thread cannot obtain a reference to its
      parent, unless it is directly handed the reference. Consequently,
@@ -156,8 +147,11 @@ public class NDC {
   public
   static
   void inherit(Stack stack) {
-    if(stack != null)
-      ht.put(Thread.currentThread(), stack);
+    if(stack != null) {
+      Object top = stack.isEmpty() ? null : stack.peek();
+      if(top == null || top instanceof DiagnosticContext)
+	current.set(top);
+    }
   }
 
 
@@ -167,11 +161,8 @@ public class NDC {
   static
   public
   String get() {
-    Stack s = (Stack) ht.get(Thread.currentThread());
-    if(s != null && !s.isEmpty()) 
-      return ((DiagnosticContext) s.peek()).fullMessage;
-    else
-      return null;
+    DiagnosticContext dc = (DiagnosticContext) current.get();
+    return dc == null ? null : dc.fullMessage;
   }
   
   /**
@@ -183,44 +174,8 @@ public class NDC {
   public
   static
   int getDepth() {
-    Stack stack = (Stack) ht.get(Thread.currentThread());          
-    if(stack == null)
-      return 0;
-    else
-      return stack.size();      
-  }
-
-  private
-  static
-  void lazyRemove() {
-     
-    Vector v;
-    
-    synchronized(ht) {
-      if(++pushCounter >= REAP_THRESHOLD) {
-      } else {
-      }
-
-      int misses = 0;
-      v = new Vector(); 
-      Enumeration enum = ht.keys();
-      while(enum.hasMoreElements() && (misses <= 4)) {
-	Thread t = (Thread) enum.nextElement();
-	if(t.isAlive()) {
-	  misses++;
-	} else {
-	  misses = 0;
-	  v.addElement(t);
-	}
-      }
-
-    int size = v.size();
-    for(int i = 0; i < size; i++) {
-      Thread t = (Thread) v.elementAt(i);
-      LogLog.debug("Lazy NDC removal for thread [" + t.getName() + "] ("+ 
-		   ht.size() + ").");
-      ht.remove(t);
-    }
+    DiagnosticContext dc = (DiagnosticContext) current.get();
+    return dc == null ? 0 : dc.depth;
   }
 
   /**
@@ -236,12 +191,11 @@ public class NDC {
   public
   static
   String pop() {
-    Thread key = Thread.currentThread();
-    Stack stack = (Stack) ht.get(key);
-    if(stack != null && !stack.isEmpty()) 
-      return ((DiagnosticContext) stack.pop()).message;
-    else
+    DiagnosticContext dc = (DiagnosticContext) current.get();
+    if(dc == null)
       return "";
+    current.set(dc.parent);
+    return dc.message;
   }
 
   /**
@@ -254,46 +208,21 @@ public class NDC {
   public
   static
   void push(String message) {
-    Thread key = Thread.currentThread();
-    Stack stack = (Stack) ht.get(key);
-      
-    if(stack == null) {
-      DiagnosticContext dc = new DiagnosticContext(message, null);      
-      stack = new Stack();
-      ht.put(key, stack);
-      stack.push(dc);
-    } else if (stack.isEmpty()) {
-      DiagnosticContext dc = new DiagnosticContext(message, null);            
-      stack.push(dc);
-    } else {
-      DiagnosticContext parent = (DiagnosticContext) stack.peek();
-      stack.push(new DiagnosticContext(message, parent));
-    }    
+    DiagnosticContext parent = (DiagnosticContext) current.get();
+    current.set(new DiagnosticContext(message, parent));
   }
 
   /**
      Remove the diagnostic context for this thread.
 
-     <p>Each thread that created a diagnostic context by calling
-     {@link #pop} should call this method before exiting. Otherwise,
-     the memory used by the diagnostic context for the <b>thread</b>
-     cannot be reclaimed by the VM.
-
-     <p>As this is such an important problem in heavy duty systems and
-     because it is difficult to always guarantee that the remove
-     method is called before exiting a thread, this method has been
-     augmented to lazily remove references to dead threads. In
-     practice, this means that you can be a little sloppy and
-     occasionally forget to call {@link #remove} before exiting a
-     thread.
-     
+     <p>The diagnostic context of a thread is freed with the thread,
+     so calling this method is no longer necessary. It is equivalent
+     to {@link #clear}.
   */
   static
   public
   void remove() {
-    ht.remove(Thread.currentThread());
-    
-    lazyRemove();    
+    current.set(null);
   }
 
   /**
@@ -326,24 +255,32 @@ public class NDC {
   static
   public
   void setMaxDepth(int maxDepth) {
-    Stack stack = (Stack) ht.get(Thread.currentThread());    
-    if(stack != null && maxDepth < stack.size()) 
-      stack.setSize(maxDepth);
+    DiagnosticContext dc = (DiagnosticContext) current.get();
+    if(dc == null || maxDepth >= dc.depth)
+      return;
+    while(dc != null && dc.depth > maxDepth) {
+      dc = dc.parent;
+    }
+    current.set(dc);
   }
   
-   private static class DiagnosticContext {
+  private static class DiagnosticContext {
 
-    String fullMessage;
-    String message;
+    final String fullMessage;
+    final String message;
+    final DiagnosticContext parent;
+    final int depth;
     
     DiagnosticContext(String message, DiagnosticContext parent) {
       this.message = message;
+      this.parent = parent;
       if(parent != null) {
 	fullMessage = parent.fullMessage + ' ' + message;
+	depth = parent.depth + 1;
       } else {
 	fullMessage = message;
+	depth = 1;
       }
     }
   }
 }
-
@@ -17,6 +17,8 @@ import java.util.Date;
 import java.util.TimeZone;
 import java.util.Vector;
 import java.text.FieldPosition;
+import java.io.Writer;
+import java.io.IOException;
 
 
 /**
@@ -246,6 +248,16 @@ import java.text.FieldPosition;
      </td>     
    </tr>
 
+   <tr>
+     <td align=center><b>X</b></td>
+
+     <td>Used to output the value associated with a key in the MDC
+     (mapped diagnostic context) of the thread that generated the
+     logging event. The key is given between braces, for example
+     <b>%X{clientNumber}</b>.
+     </td>
+   </tr>
+
    <tr>
 
      <td align=center><b>%</b></td>
@@ -398,12 +410,17 @@ public class PatternLayout extends Layout {
   
 
   private StringBuffer sbuf = new StringBuffer(BUF_SIZE);
+  private char[] chars = new char[BUF_SIZE];
   
   private String pattern;
   
   private PatternConverter head;
 
   private String timezone;
+
+  /** True if a subclass overrides {@link #format(LoggingEvent)}, in
+      which case {@link #format(LoggingEvent, Writer)} must call it. */
+  private final boolean formatOverridden = isFormatOverridden();
   
   /**
      Constructs a PatternLayout using the DEFAULT_LAYOUT_PATTERN.
@@ -514,6 +531,54 @@ public class PatternLayout extends Layout {
      Produces a formatted string as specified by the conversion pattern.
   */
   public String format(LoggingEvent event) {
+    formatIntoBuffer(event);
+    return sbuf.toString();
+  }
+
+  /**
+     Formats <code>event</code> as specified by the conversion pattern
+     and writes the characters to <code>out</code> from a reused
+     array. Unlike {@link #format(LoggingEvent)} no string is created,
+     so that in steady state formatting allocates nothing unless
+     location information is required.
+
+     <p>If a subclass overrides {@link #format(LoggingEvent)}, the
+     string it returns is written instead.
+
+     @since 1.1 */
+  public
+  void format(LoggingEvent event, Writer out) throws IOException {
+    if(formatOverridden) {
+      out.write(format(event));
+      return;
+    }
+    formatIntoBuffer(event);
+    int len = sbuf.length();
+    if(chars.length < len) {
+      chars = new char[len];
+    }
+    sbuf.getChars(0, len, chars, 0);
+    out.write(chars, 0, len);
+    if(chars.length > MAX_CAPACITY) {
+      chars = new char[BUF_SIZE];
+    }
+  }
+
+  private
+  boolean isFormatOverridden() {
+    if(getClass() == PatternLayout.class) {
+      return false;
+    }
+    try {
+      return getClass().getMethod("format", new Class[] {LoggingEvent.class})
+	.getDeclaringClass() != PatternLayout.class;
+    } catch(Exception e) {
+      return true;
+    }
+  }
+
+  private
+  void formatIntoBuffer(LoggingEvent event) {
     if(sbuf.capacity() > MAX_CAPACITY) {
       sbuf = new StringBuffer(BUF_SIZE);
     } else {
@@ -526,6 +591,5 @@ public class PatternLayout extends Layout {
       c.format(sbuf, event);
       c = c.next;
     }
-    return sbuf.toString();
   }
 }
@@ -0,0 +1,356 @@
+package org.apache.log4j;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.RingBuffer;
+import org.apache.log4j.helpers.LogLog;
+import java.util.Enumeration;
+
+/**
+   The RingBufferAppender lets users log events asynchronously, like
+   the {@link AsyncAppender}, but with much higher throughput. Events
+   are placed in a pre-allocated {@link RingBuffer} which a single
+   dispatcher thread drains in batches to the attached appenders.
+
+   <p>Logging threads do not synchronize on this appender and never
+   wait unless the buffer is full. What happens then depends on the
+   <b>Blocking</b> option: by default the logging thread waits for
+   room, otherwise the event is discarded and counted, see {@link
+   #getDiscardedCount}.
+
+   <p>The <b>WaitStrategy</b> option sets how idle threads wait:
+   <b>Blocking</b> (the default) waits on a monitor and uses no CPU
+   while idle, <b>Sleeping</b> spins, yields and then sleeps one
+   millisecond at a time, <b>Yielding</b> spins and yields for the
+   lowest latency at the cost of a busy processor.
+
+   <p>The options must be set before the first event is logged or
+   {@link #activateOptions} is called.
+
+   @since 1.1 */
+public class RingBufferAppender extends AppenderSkeleton
+                                            implements AppenderAttachable {
+
+  /** The default buffer size is set to 1024 events. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  /** The default batch size is set to 128 events. */
+  public static final int DEFAULT_BATCH_SIZE = 128;
+
+  AppenderAttachableImpl aai = new AppenderAttachableImpl();
+  volatile RingBuffer rb;
+  RingDispatcher dispatcher;
+
+  int bufferSize = DEFAULT_BUFFER_SIZE;
+  int batchSize = DEFAULT_BATCH_SIZE;
+  int waitStrategy = RingBuffer.BLOCKING;
+  boolean blocking = true;
+  boolean locationInfo = false;
+
+  long discardedCount = 0;
+  final Object discardedLock = new Object();
+
+  public
+  RingBufferAppender() {
+  }
+
+  /**
+     Create the ring buffer and start the dispatcher thread, unless
+     this appender is already closed. */
+  public
+  synchronized
+  void activateOptions() {
+    if(rb == null && !closed) {
+      RingBuffer buffer = new RingBuffer(bufferSize);
+      dispatcher = new RingDispatcher(buffer, this);
+      dispatcher.start();
+      rb = buffer;
+    }
+  }
+
+  /**
+     Events are queued without synchronizing on this appender. */
+  protected
+  boolean isThreadSafe() {
+    return true;
+  }
+
+  public
+  void append(LoggingEvent event) {
+    RingBuffer buffer = rb;
+    if(buffer == null) {
+      if(closed) {
+	return;
+      }
+      activateOptions();
+      buffer = rb;
+      if(buffer == null) {
+	return;
+      }
+    }
+
+    event.getNDC();
+    event.getThreadName();
+    event.getMDCCopy();
+    if(locationInfo) {
+      event.getLocationInformation();
+    }
+
+    if(buffer.offer(event)) {
+      return;
+    }
+    if(!blocking || !buffer.put(event, waitStrategy)) {
+      synchronized(discardedLock) {
+	discardedCount++;
+      }
+    }
+  }
+
+  /**
+     Close this <code>RingBufferAppender</code>. The dispatcher thread
+     processes all pending events before exiting.  */
+  public
+  void close() {
+    RingDispatcher d;
+    synchronized(this) {
+      if(closed) {
+	return;
+      }
+      closed = true;
+      d = dispatcher;
+      dispatcher = null;
+    }
+    if(d == null) {
+      return;
+    }
+
+    d.close();
+    try {
+      d.join();
+    } catch(InterruptedException e) {
+      LogLog.error("Got an InterruptedException while waiting for the "+
+		   "dispatcher to finish.", e);
+    }
+    aai.removeAllAppenders();
+  }
+
+  /**
+     Returns the number of events that were discarded because the
+     buffer was full and the <b>Blocking</b> option is false, or
+     because a blocked logging thread was interrupted.  */
+  public
+  long getDiscardedCount() {
+    synchronized(discardedLock) {
+      return discardedCount;
+    }
+  }
+
+  /**
+     Returns the number of events waiting to be dispatched. */
+  public
+  int getPendingCount() {
+    RingBuffer buffer = rb;
+    return buffer == null ? 0 : buffer.length();
+  }
+
+  public
+  void addAppender(Appender newAppender) {
+    aai.addAppender(newAppender);
+  }
+
+  public
+  Enumeration getAllAppenders() {
+    return aai.getAllAppenders();
+  }
+
+  public
+  Appender getAppender(String name) {
+    return aai.getAppender(name);
+  }
+
+  public
+  void removeAllAppenders() {
+    aai.removeAllAppenders();
+  }
+
+  public
+  void removeAppender(Appender appender) {
+    aai.removeAppender(appender);
+  }
+
+  public
+  void removeAppender(String name) {
+    aai.removeAppender(name);
+  }
+
+  /**
+     The <code>RingBufferAppender</code> does not require a
+     layout. Hence, this method always returns <code>false</code>. */
+  public
+  boolean requiresLayout() {
+    return false;
+  }
+
+  /**
+     The <b>BufferSize</b> option takes a positive integer value, the
+     number of events the buffer holds, rounded up to a power of
+     two. */
+  public
+  void setBufferSize(int size) {
+    bufferSize = size;
+  }
+
+  /**
+     Returns the current value of the <b>BufferSize</b> option.
+   */
+  public
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+     The <b>BatchSize</b> option takes a positive integer value, the
+     maximum number of events the dispatcher takes out of the buffer
+     at once. */
+  public
+  void setBatchSize(int size) {
+    if(size < 1) {
+      LogLog.warn("BatchSize must be positive, ignoring "+size+".");
+      return;
+    }
+    batchSize = size;
+  }
+
+  /**
+     Returns the current value of the <b>BatchSize</b> option.
+   */
+  public
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+     The <b>Blocking</b> option takes a boolean value. If true, the
+     default, logging threads wait for room when the buffer is full.
+     If false, events that do not fit are discarded. */
+  public
+  void setBlocking(boolean flag) {
+    blocking = flag;
+  }
+
+  /**
+     Returns the current value of the <b>Blocking</b> option.
+   */
+  public
+  boolean getBlocking() {
+    return blocking;
+  }
+
+  /**
+     The <b>WaitStrategy</b> option takes one of the values
+     <b>Blocking</b>, <b>Sleeping</b> or <b>Yielding</b>, case
+     insensitive. */
+  public
+  void setWaitStrategy(String strategy) {
+    if("Blocking".equalsIgnoreCase(strategy)) {
+      waitStrategy = RingBuffer.BLOCKING;
+    } else if("Sleeping".equalsIgnoreCase(strategy)) {
+      waitStrategy = RingBuffer.SLEEPING;
+    } else if("Yielding".equalsIgnoreCase(strategy)) {
+      waitStrategy = RingBuffer.YIELDING;
+    } else {
+      LogLog.warn("Unknown WaitStrategy ["+strategy+"], using Blocking.");
+      waitStrategy = RingBuffer.BLOCKING;
+    }
+  }
+
+  /**
+     Returns the current value of the <b>WaitStrategy</b> option.
+   */
+  public
+  String getWaitStrategy() {
+    switch(waitStrategy) {
+    case RingBuffer.SLEEPING: return "Sleeping";
+    case RingBuffer.YIELDING: return "Yielding";
+    default: return "Blocking";
+    }
+  }
+
+  /**
+     The <b>LocationInfo</b> option takes a boolean value. By default
+     it is false, as extracting location information is very slow.
+     See {@link AsyncAppender#setLocationInfo}. */
+  public
+  void setLocationInfo(boolean flag) {
+    locationInfo = flag;
+  }
+
+  /**
+     Returns the current value of the <b>LocationInfo</b> option.
+  */
+  public
+  boolean getLocationInfo() {
+    return locationInfo;
+  }
+}
+
+class RingDispatcher extends Thread {
+
+  RingBuffer rb;
+  AppenderAttachableImpl aai;
+  LoggingEvent[] batch;
+  int waitStrategy;
+  volatile boolean interrupted = false;
+
+  RingDispatcher(RingBuffer rb, RingBufferAppender container) {
+    this.rb = rb;
+    this.aai = container.aai;
+    this.batch = new LoggingEvent[container.batchSize];
+    this.waitStrategy = container.waitStrategy;
+    this.setDaemon(true);
+    this.setName("RingDispatcher-"+getName());
+  }
+
+  void close() {
+    interrupted = true;
+    rb.wakeUp();
+  }
+
+  /**
+     The dispatching strategy is to take all events available in the
+     buffer, up to the batch size, and to hand them to the appenders
+     without holding any lock, so that logging threads can fill the
+     buffer meanwhile. */
+  public
+  void run() {
+    try {
+      dispatch();
+    } finally {
+      // nobody drains the buffer from now on, let waiting producers go
+      rb.close();
+    }
+  }
+
+  void dispatch() {
+    while(true) {
+      int n = rb.drainTo(batch);
+      if(n == 0) {
+	if(interrupted) {
+	  return;
+	}
+	try {
+	  rb.awaitEvents(waitStrategy);
+	} catch(InterruptedException e) {
+	  LogLog.error("The dispatcher should not be interrupted.");
+	  return;
+	}
+	continue;
+      }
+      for(int i = 0; i < n; i++) {
+	aai.appendLoopOnAppenders(batch[i]);
+	batch[i] = null;
+      }
+    }
+  }
+}
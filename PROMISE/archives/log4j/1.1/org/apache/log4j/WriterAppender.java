@@ -273,7 +273,12 @@ public class WriterAppender extends AppenderSkeleton {
      @since 0.9.0 */
   protected
   void subAppend(LoggingEvent event) {
-    this.qw.write(this.layout.format(event));
+    try {
+      this.layout.format(event, this.qw);
+    } catch(IOException e) {
+      errorHandler.error("Failed to format and write event.", e,
+			 ErrorCode.WRITE_FAILURE);
+    }
 
     if(layout.ignoresThrowable()) {
       String[] s = event.getThrowableStrRep();
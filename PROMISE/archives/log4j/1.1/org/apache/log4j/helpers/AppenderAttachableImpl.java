@@ -11,18 +11,44 @@ import java.util.Enumeration;
    A straightforward implementation of the {@link AppenderAttachable}
    interface.
 
+   <p>The list of appenders is copy-on-write: changes are synchronized
+   and publish a new array of the appenders, which {@link
+   #appendLoopOnAppenders} reads without taking any lock. Changes are
+   expected to be rare compared to logging.
+
    @author Ceki G&uuml;lc&uuml;
    @since version 0.9.1 */
 public class AppenderAttachableImpl implements AppenderAttachable {
   
-  /** Array of appenders. */
-  protected Vector  appenderList;
+  /** Array of appenders. Private, so that every change goes through
+      the methods that publish <code>appenderArray</code>. */
+  private Vector  appenderList;
+
+  /** Snapshot of <code>appenderList</code> read by {@link
+      #appendLoopOnAppenders}, replaced on every change. */
+  private volatile Appender[] appenderArray;
+
+  /**
+     Publish a new snapshot of the appender list. Must be called after
+     every change of <code>appenderList</code>, by a synchronized
+     method.  */
+  private
+  void updateAppenderArray() {
+    if(appenderList == null || appenderList.size() == 0) {
+      appenderArray = null;
+    } else {
+      Appender[] array = new Appender[appenderList.size()];
+      appenderList.copyInto(array);
+      appenderArray = array;
+    }
+  }
 
   /**
      Attach an appender. If the appender is already in the list in
      won't be added again.
   */
   public
+  synchronized
   void addAppender(Appender newAppender) {
     if(newAppender == null)
       return;
@@ -30,25 +56,26 @@ public class AppenderAttachableImpl implements AppenderAttachable {
     if(appenderList == null) {
       appenderList = new Vector(1);
     }
-    if(!appenderList.contains(newAppender))
+    if(!appenderList.contains(newAppender)) {
       appenderList.addElement(newAppender);
+      updateAppenderArray();
+    }
   }
 
   /**
-     Call the <code>doAppend</code> method on all attached appenders.  */
+     Call the <code>doAppend</code> method on all attached appenders.
+     No lock is taken; appenders attached or removed meanwhile may or
+     may not be called.  */
   public
   int appendLoopOnAppenders(LoggingEvent event) {
-    int size = 0;
-    Appender appender;
+    Appender[] array = appenderArray;
+    if(array == null)
+      return 0;
 
-    if(appenderList != null) {
-      size = appenderList.size();
-      for(int i = 0; i < size; i++) {
-	appender = (Appender) appenderList.elementAt(i);
-	appender.doAppend(event);
-      }
-    }    
-    return size;
+    for(int i = 0; i < array.length; i++) {
+      array[i].doAppend(event);
+    }
+    return array.length;
   }
 
 
@@ -60,10 +87,15 @@ public class AppenderAttachableImpl implements AppenderAttachable {
    */
   public
   Enumeration getAllAppenders() {
-    if(appenderList == null)
+    Appender[] array = appenderArray;
+    if(array == null)
       return null;
-    else 
-      return appenderList.elements();    
+
+    Vector v = new Vector(array.length);
+    for(int i = 0; i < array.length; i++) {
+      v.addElement(array[i]);
+    }
+    return v.elements();
   }
 
   /**
@@ -75,15 +107,13 @@ public class AppenderAttachableImpl implements AppenderAttachable {
    */
   public
   Appender getAppender(String name) {
-     if(appenderList == null || name == null)
+     Appender[] array = appenderArray;
+     if(array == null || name == null)
       return null;
 
-     int size = appenderList.size();
-     Appender appender;
-     for(int i = 0; i < size; i++) {
-       appender = (Appender) appenderList.elementAt(i);
-       if(name.equals(appender.getName()))
-	  return appender;
+     for(int i = 0; i < array.length; i++) {
+       if(name.equals(array[i].getName()))
+	  return array[i];
      }
      return null;    
   }
@@ -92,6 +122,7 @@ public class AppenderAttachableImpl implements AppenderAttachable {
      Remove all previously attached appenders.
   */
   public
+  synchronized
   void removeAllAppenders() {
     if(appenderList != null) {
       int len = appenderList.size();      
@@ -101,6 +132,7 @@ public class AppenderAttachableImpl implements AppenderAttachable {
       }
       appenderList.removeAllElements();
       appenderList = null;      
+      updateAppenderArray();
     }
   }
 
@@ -109,10 +141,12 @@ public class AppenderAttachableImpl implements AppenderAttachable {
      Remove the appender passed as parameter form the list of attached
      appenders.  */
   public
+  synchronized
   void removeAppender(Appender appender) {
     if(appender == null || appenderList == null) 
       return;
     appenderList.removeElement(appender);    
+    updateAppenderArray();
   }
 
 
@@ -121,12 +155,14 @@ public class AppenderAttachableImpl implements AppenderAttachable {
     list of appenders.  
   */
   public
+  synchronized
   void removeAppender(String name) {
     if(name == null || appenderList == null) return;
     int size = appenderList.size();
     for(int i = 0; i < size; i++) {
       if(name.equals(((Appender)appenderList.elementAt(i)).getName())) {
 	 appenderList.removeElementAt(i);
+	 updateAppenderArray();
 	 break;
       }
     }
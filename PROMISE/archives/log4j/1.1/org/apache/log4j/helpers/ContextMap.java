@@ -0,0 +1,152 @@
+package org.apache.log4j.helpers;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+   An immutable map from string keys to values, used to hold the
+   mapped diagnostic context of a thread, see {@link
+   org.apache.log4j.MDC}.
+
+   <p>A change returns a new map and leaves the original untouched.
+   Taking a snapshot of a context is therefore just copying a
+   reference, and a snapshot can be shared between threads without
+   synchronization. Contexts hold few entries, so they are kept in
+   plain arrays and searched linearly.
+
+   @since 1.1 */
+public final class ContextMap {
+
+  /** The map without entries. */
+  public static final ContextMap EMPTY = new ContextMap(new String[0],
+							new Object[0]);
+
+  private final String[] keys;
+  private final Object[] values;
+
+  private
+  ContextMap(String[] keys, Object[] values) {
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /**
+     Returns the value of <code>key</code>, or <code>null</code> if
+     there is none.  */
+  public
+  Object get(String key) {
+    int i = indexOf(key);
+    return i < 0 ? null : values[i];
+  }
+
+  /**
+     Returns a map with the entries of this map and <code>key</code>
+     mapped to <code>value</code>. A <code>null</code> value removes
+     the key.
+
+     @throws IllegalArgumentException if <code>key</code> is
+     <code>null</code>.  */
+  public
+  ContextMap with(String key, Object value) {
+    if(key == null) {
+      throw new IllegalArgumentException("Null key.");
+    }
+    if(value == null) {
+      return without(key);
+    }
+    int i = indexOf(key);
+    if(i >= 0) {
+      if(values[i] == value) {
+	return this;
+      }
+      Object[] v = new Object[values.length];
+      System.arraycopy(values, 0, v, 0, values.length);
+      v[i] = value;
+      return new ContextMap(keys, v);
+    }
+    int n = keys.length;
+    String[] k = new String[n + 1];
+    Object[] v = new Object[n + 1];
+    System.arraycopy(keys, 0, k, 0, n);
+    System.arraycopy(values, 0, v, 0, n);
+    k[n] = key;
+    v[n] = value;
+    return new ContextMap(k, v);
+  }
+
+  /**
+     Returns a map with the entries of this map except
+     <code>key</code>.  */
+  public
+  ContextMap without(String key) {
+    int i = indexOf(key);
+    if(i < 0) {
+      return this;
+    }
+    int n = keys.length - 1;
+    if(n == 0) {
+      return EMPTY;
+    }
+    String[] k = new String[n];
+    Object[] v = new Object[n];
+    System.arraycopy(keys, 0, k, 0, i);
+    System.arraycopy(values, 0, v, 0, i);
+    System.arraycopy(keys, i + 1, k, i, n - i);
+    System.arraycopy(values, i + 1, v, i, n - i);
+    return new ContextMap(k, v);
+  }
+
+  /**
+     Returns the number of entries. */
+  public
+  int size() {
+    return keys.length;
+  }
+
+  /**
+     Returns the keys, in the order they were first added. */
+  public
+  Enumeration keys() {
+    return new Enumeration() {
+	int i = 0;
+
+	public
+	boolean hasMoreElements() {
+	  return i < keys.length;
+	}
+
+	public
+	Object nextElement() {
+	  if(i >= keys.length) {
+	    throw new NoSuchElementException();
+	  }
+	  return keys[i++];
+	}
+      };
+  }
+
+  private
+  int indexOf(String key) {
+    if(key == null) {
+      return -1;
+    }
+    for(int i = 0; i < keys.length; i++) {
+      if(key.equals(keys[i])) {
+	return i;
+      }
+    }
+    return -1;
+  }
+
+  public
+  String toString() {
+    StringBuffer sbuf = new StringBuffer("{");
+    for(int i = 0; i < keys.length; i++) {
+      if(i > 0) {
+	sbuf.append(", ");
+      }
+      sbuf.append(keys[i]).append('=').append(values[i]);
+    }
+    return sbuf.append('}').toString();
+  }
+}
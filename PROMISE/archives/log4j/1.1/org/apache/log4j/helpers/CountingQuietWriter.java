@@ -36,6 +36,17 @@ public class CountingQuietWriter extends QuietWriter {
     }
   }
 
+  public
+  void write(char[] cbuf, int off, int len) {
+    try {
+      out.write(cbuf, off, len);
+      count += len;
+    }
+    catch(IOException e) {
+      errorHandler.error("Write failure.", e, ErrorCode.WRITE_FAILURE);
+    }
+  }
+
   public
   long getCount() {
     return count;
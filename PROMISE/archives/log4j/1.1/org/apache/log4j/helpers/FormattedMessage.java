@@ -0,0 +1,64 @@
+package org.apache.log4j.helpers;
+
+import java.text.MessageFormat;
+
+/**
+   A message made of a {@link MessageFormat} pattern and its arguments,
+   formatted the first time it is rendered.
+
+   <p>The parameterized logging methods of {@link
+   org.apache.log4j.Category}, such as {@link
+   org.apache.log4j.Category#debugf(String,Object[])}, log an instance
+   of this class instead of a string. Since a {@link
+   org.apache.log4j.spi.LoggingEvent} renders its message only when a
+   layout or a filter asks for it, the formatting is skipped for
+   events that no appender writes.
+
+   @since 1.1 */
+public class FormattedMessage {
+
+  private final String pattern;
+  private final Object[] params;
+  private String formatted;
+
+  public
+  FormattedMessage(String pattern, Object[] params) {
+    this.pattern = pattern;
+    this.params = params;
+  }
+
+  /**
+     Returns the pattern of this message. */
+  public
+  String getPattern() {
+    return pattern;
+  }
+
+  /**
+     Returns the arguments of this message. */
+  public
+  Object[] getParameters() {
+    return params;
+  }
+
+  /**
+     Returns the formatted message. If <code>pattern</code> is not a
+     valid pattern, it is returned as is.  */
+  public
+  String toString() {
+    if(formatted == null) {
+      if(pattern == null || params == null) {
+	formatted = String.valueOf(pattern);
+      } else {
+	try {
+	  formatted = MessageFormat.format(pattern, params);
+	}
+	catch(IllegalArgumentException e) {
+	  LogLog.warn("Invalid message pattern ["+pattern+"].");
+	  formatted = pattern;
+	}
+      }
+    }
+    return formatted;
+  }
+}
@@ -40,11 +40,30 @@ public abstract class PatternConverter {
   protected
   String convert(LoggingEvent event);
 
+  /**
+     Appends the conversion of <code>e</code> to <code>sbuf</code>
+     when no minimum or maximum width applies. The base class appends
+     the string returned by {@link #convert}; derived converters may
+     override this method to append without creating a string.
+
+     @since 1.1 */
+  protected
+  void append(StringBuffer sbuf, LoggingEvent e) {
+    String s = convert(e);
+    if(s != null)
+      sbuf.append(s);
+  }
+
   /**
      A template method for formatting in a converter specific way.
    */
   public
   void format(StringBuffer sbuf, LoggingEvent e) {
+    if(min <= 0 && max == 0x7FFFFFFF) {
+      append(sbuf, e);
+      return;
+    }
+
     String s = convert(e);
 
     if(s == null) {
@@ -11,6 +11,7 @@ import org.apache.log4j.or.ObjectRenderer;
 import org.apache.log4j.or.RendererMap;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.text.FieldPosition;
 import java.util.Date;
 
 
@@ -301,6 +302,10 @@ public class PatternParser {
       pc = new BasicPatternConverter(formattingInfo, NDC_CONVERTER);
       currentLiteral.setLength(0);
       break;
+    case 'X':
+      pc = new MDCPatternConverter(formattingInfo, extractOption());
+      currentLiteral.setLength(0);
+      break;
     default:
       LogLog.error("Unexpected char [" +c+"] at position "+i
 		   +" in conversion patterrn.");
@@ -328,6 +333,17 @@ public class PatternParser {
       this.type = type;
     }
 
+    protected
+    void append(StringBuffer sbuf, LoggingEvent event) {
+      if(type == RELATIVE_TIME_CONVERTER) {
+	sbuf.append(event.timeStamp - LoggingEvent.getStartTime());
+      } else {
+	String s = convert(event);
+	if(s != null)
+	  sbuf.append(s);
+      }
+    }
+
     public
     String convert(LoggingEvent event) {
       switch(type) {
@@ -366,9 +382,17 @@ public class PatternParser {
     }
   }
 
+  /**
+     Formats the date of an event at most once per millisecond; events
+     of the same millisecond reuse the characters of the previous one.  */
   private static class DatePatternConverter extends PatternConverter {
     private DateFormat df;
     private Date date;
+    private StringBuffer dbuf = new StringBuffer(32);
+    private FieldPosition pos = new FieldPosition(0);
+    private char[] cached = new char[32];
+    private int cachedLength = -1;
+    private long cachedTime;
     
     DatePatternConverter(FormattingInfo formattingInfo, DateFormat df) {
       super(formattingInfo);
@@ -376,17 +400,44 @@ public class PatternParser {
       this.df = df;      
     }
 
-    public
-    String convert(LoggingEvent event) {
+    /**
+       Formats the date of <code>event</code> into <code>cached</code>
+       unless it is the cached one. Returns <code>false</code> if the
+       date could not be formatted. */
+    private
+    boolean update(LoggingEvent event) {
+      if(cachedLength >= 0 && event.timeStamp == cachedTime) {
+	return true;
+      }
       date.setTime(event.timeStamp);
-      String converted = null;
+      dbuf.setLength(0);
       try {
-        converted = df.format(date);
+        df.format(date, dbuf, pos);
       }
       catch (Exception ex) {
         LogLog.error("Error occured while converting date.", ex);
+	cachedLength = -1;
+	return false;
+      }
+      cachedLength = dbuf.length();
+      if(cached.length < cachedLength) {
+	cached = new char[cachedLength];
       }
-      return converted;
+      dbuf.getChars(0, cachedLength, cached, 0);
+      cachedTime = event.timeStamp;
+      return true;
+    }
+
+    protected
+    void append(StringBuffer sbuf, LoggingEvent event) {
+      if(update(event)) {
+	sbuf.append(cached, 0, cachedLength);
+      }
+    }
+
+    public
+    String convert(LoggingEvent event) {
+      return update(event) ? new String(cached, 0, cachedLength) : null;
     }
   }
 
@@ -415,6 +466,21 @@ public class PatternParser {
     }
   }
 
+  private static class MDCPatternConverter extends PatternConverter {
+    String key;
+
+    MDCPatternConverter(FormattingInfo formattingInfo, String key) {
+      super(formattingInfo);
+      this.key = key;
+    }
+
+    public
+    String convert(LoggingEvent event) {
+      Object value = key == null ? null : event.getMDC(key);
+      return value == null ? null : value.toString();
+    }
+  }
+
   private static abstract class NamedPatternConverter extends PatternConverter {
     int precision;
     
@@ -426,22 +492,35 @@ public class PatternParser {
     abstract
     String getFullyQualifiedName(LoggingEvent event);
     
+    /**
+       Returns the index of the first character of the last
+       <code>precision</code> components of <code>n</code>. */
+    int start(String n) {
+      if(precision <= 0)
+	return 0;
+      int end = n.length() - 1;
+      for(int i = precision; i > 0; i--) {	  
+	end = n.lastIndexOf('.', end-1);
+	if(end == -1)
+	  return 0;
+      }
+      return end+1;
+    }
+
+    protected
+    void append(StringBuffer sbuf, LoggingEvent event) {
+      String n = getFullyQualifiedName(event);
+      int len = n.length();
+      for(int i = start(n); i < len; i++) {
+	sbuf.append(n.charAt(i));
+      }
+    }
+
     public
     String convert(LoggingEvent event) {
       String n = getFullyQualifiedName(event);
-      if(precision <= 0)
-	return n;
-      else {
-	int len = n.length();
-
-	int end = len -1 ;
-	for(int i = precision; i > 0; i--) {	  
-	  end = n.lastIndexOf('.', end-1);
-	  if(end == -1)
-	    return n;
-	}
-	return n.substring(end+1, len);
-      }      
+      int start = start(n);
+      return start == 0 ? n : n.substring(start);
     }
   }
   
@@ -35,6 +35,21 @@ public class QuietWriter extends FilterWriter {
     }
   }
 
+  /**
+     Write <code>len</code> characters of <code>cbuf</code> starting
+     at <code>off</code>, without creating a string.
+
+     @since 1.1 */
+  public
+  void write(char[] cbuf, int off, int len) {
+    try {
+      out.write(cbuf, off, len);
+    } catch(IOException e) {
+      errorHandler.error("Failed to write ["+new String(cbuf, off, len)+"].", e,
+			 ErrorCode.WRITE_FAILURE);
+    }
+  }
+
   public
   void flush() {
     try {
@@ -0,0 +1,249 @@
+package org.apache.log4j.helpers;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   <code>RingBuffer</code> is a pre-allocated, bounded buffer of
+   logging events with many producers and a single consumer, used by
+   the {@link org.apache.log4j.RingBufferAppender}.
+
+   <p>Producers claim and fill a slot inside a very short synchronized
+   section, without ever waiting on a monitor unless the buffer is
+   full and they chose to block. The consumer takes no lock at all: it
+   reads the published sequence, drains every available event in one
+   batch and releases the slots with a single volatile write. Idle
+   threads are parked according to one of the wait strategies
+   {@link #BLOCKING}, {@link #SLEEPING} or {@link #YIELDING}.
+
+   @since 1.1 */
+public class RingBuffer {
+
+  /** Waiting threads wait on a monitor and are notified; uses the
+      least CPU but has the highest wake up latency. */
+  public static final int BLOCKING = 0;
+
+  /** Waiting threads spin briefly, then yield, then sleep one
+      millisecond at a time. */
+  public static final int SLEEPING = 1;
+
+  /** Waiting threads spin briefly, then yield the processor; lowest
+      latency, but keeps a processor busy. */
+  public static final int YIELDING = 2;
+
+  static final int SPIN_TRIES = 100;
+  static final int YIELD_TRIES = 100;
+  static final long MAX_BLOCKING_WAIT = 100;
+
+  final LoggingEvent[] slots;
+  final int mask;
+
+  /** Next sequence to claim, guarded by <code>this</code>. */
+  long next = 0;
+
+  /** Last published sequence. */
+  volatile long published = -1;
+
+  /** Last sequence taken by the consumer. */
+  volatile long consumed = -1;
+
+  volatile boolean consumerWaiting = false;
+  volatile boolean alerted = false;
+  volatile boolean closed = false;
+  volatile int producersWaiting = 0;
+
+  final Object consumerSignal = new Object();
+  final Object producerSignal = new Object();
+
+  /**
+     Instantiate a new RingBuffer holding at least
+     <code>minSize</code> events; the size is rounded up to a power
+     of two.  */
+  public
+  RingBuffer(int minSize) {
+    if(minSize < 1) {
+      throw new IllegalArgumentException("The minSize argument ("+minSize+
+					 ") is not a positive integer.");
+    }
+    int size = 1;
+    while(size < minSize) {
+      size <<= 1;
+    }
+    slots = new LoggingEvent[size];
+    mask = size - 1;
+  }
+
+  /**
+     Get the number of events the buffer can hold.  */
+  public
+  int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+     Get the number of events waiting in the buffer. */
+  public
+  int length() {
+    return (int) (published - consumed);
+  }
+
+  /**
+     Place <code>event</code> in the buffer if there is room for it.
+     Returns <code>false</code>, leaving the buffer unchanged, if the
+     buffer is full.  */
+  public
+  boolean offer(LoggingEvent event) {
+    synchronized(this) {
+      if(next - consumed > slots.length) {
+	return false;
+      }
+      slots[(int) next & mask] = event;
+      published = next++;
+    }
+    if(consumerWaiting) {
+      synchronized(consumerSignal) {
+	consumerSignal.notify();
+      }
+    }
+    return true;
+  }
+
+  /**
+     Place <code>event</code> in the buffer, waiting for room with the
+     given wait strategy if the buffer is full. Returns
+     <code>false</code> if the calling thread was interrupted, the
+     interrupt being preserved, or the buffer was {@link #close closed}
+     before the event could be placed.  */
+  public
+  boolean put(LoggingEvent event, int waitStrategy) {
+    int tries = 0;
+    while(!offer(event)) {
+      if(closed) {
+	return false;
+      }
+      if(waitStrategy == BLOCKING) {
+	synchronized(producerSignal) {
+	  producersWaiting++;
+	  try {
+	    if(!closed && length() >= slots.length) {
+	      producerSignal.wait(MAX_BLOCKING_WAIT);
+	    }
+	  } catch(InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return false;
+	  } finally {
+	    producersWaiting--;
+	  }
+	}
+      } else if(!idle(waitStrategy, tries++)) {
+	return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+     Move up to <code>batch.length</code> events, oldest first, into
+     <code>batch</code> and return their number. Must only be called
+     by the single consumer thread.  */
+  public
+  int drainTo(LoggingEvent[] batch) {
+    long from = consumed + 1;
+    long available = published - from + 1;
+    if(available <= 0) {
+      return 0;
+    }
+    int n = (int) Math.min(available, batch.length);
+    for(int i = 0; i < n; i++) {
+      int slot = (int) (from + i) & mask;
+      batch[i] = slots[slot];
+      slots[slot] = null;
+    }
+    consumed = from + n - 1;
+    if(producersWaiting > 0) {
+      synchronized(producerSignal) {
+	producerSignal.notifyAll();
+      }
+    }
+    return n;
+  }
+
+  /**
+     Wait, with the given wait strategy, until events are available
+     or {@link #wakeUp} is called. Spurious returns are possible, the
+     caller should check for events again. Must only be called by the
+     single consumer thread.  */
+  public
+  void awaitEvents(int waitStrategy) throws InterruptedException {
+    if(waitStrategy == BLOCKING) {
+      synchronized(consumerSignal) {
+	consumerWaiting = true;
+	try {
+	  if(published == consumed && !alerted) {
+	    consumerSignal.wait(MAX_BLOCKING_WAIT);
+	  }
+	} finally {
+	  consumerWaiting = false;
+	}
+      }
+    } else {
+      int tries = 0;
+      while(published == consumed && !alerted) {
+	if(!idle(waitStrategy, tries++)) {
+	  throw new InterruptedException();
+	}
+      }
+    }
+    alerted = false;
+  }
+
+  /**
+     Wake the consumer up if it is waiting in {@link #awaitEvents}. */
+  public
+  void wakeUp() {
+    alerted = true;
+    synchronized(consumerSignal) {
+      consumerSignal.notify();
+    }
+  }
+
+  /**
+     Mark the buffer as no longer being drained: producers waiting in
+     {@link #put}, and those that would wait later, give up instead of
+     waiting for room that will never come. Called by the consumer
+     when it stops. */
+  public
+  void close() {
+    closed = true;
+    synchronized(producerSignal) {
+      producerSignal.notifyAll();
+    }
+  }
+
+  /**
+     Returns <code>true</code> if {@link #close} was called. */
+  public
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+     Spend one round of idleness according to the non-blocking wait
+     strategy. Returns <code>false</code> if interrupted.  */
+  static
+  boolean idle(int waitStrategy, int tries) {
+    if(tries < SPIN_TRIES) {
+      return true;
+    }
+    if(waitStrategy == YIELDING || tries < SPIN_TRIES + YIELD_TRIES) {
+      Thread.yield();
+      return !Thread.currentThread().isInterrupted();
+    }
+    try {
+      Thread.sleep(1);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+}
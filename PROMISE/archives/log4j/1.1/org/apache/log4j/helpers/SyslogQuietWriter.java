@@ -38,4 +38,9 @@ public class SyslogQuietWriter extends QuietWriter {
   void write(String string) {
     super.write("<"+(syslogFacility | priority)+">" + string);
   }
+
+  public
+  void write(char[] cbuf, int off, int len) {
+    write(new String(cbuf, off, len));
+  }
 }
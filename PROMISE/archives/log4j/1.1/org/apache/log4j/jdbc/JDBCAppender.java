@@ -0,0 +1,618 @@
+package org.apache.log4j.jdbc;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.helpers.LogLog;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+/**
+   The JDBCAppender writes logging events to a database table. The
+   fields of each event are bound as parameters of a
+   <code>PreparedStatement</code>, never pasted into the SQL text, and
+   the statements are sent in batches by a dedicated thread, so that
+   logging threads do not wait on the database.
+
+   <p>The <b>Sql</b> option is the statement to execute, with one
+   <code>?</code> placeholder per column listed in the <b>Columns</b>
+   option, for example
+   <pre>
+   INSERT INTO LOG (STAMP, PRIORITY, CATEGORY, MESSAGE) VALUES (?, ?, ?, ?)
+   </pre>
+   together with the columns <code>timestamp,priority,category,message</code>.
+   The known columns are <b>timestamp</b>, <b>priority</b>,
+   <b>category</b>, <b>thread</b>, <b>ndc</b>, <b>message</b>,
+   <b>throwable</b> and <b>location</b>.
+
+   <p>Events are written when <b>BatchSize</b> events are waiting or
+   every <b>FlushInterval</b> milliseconds, whichever comes first. Each
+   batch is committed as one transaction. If more than
+   <b>BufferSize</b> events are waiting, logging threads wait for the
+   flush thread to catch up. A batch that fails is reported to the
+   error handler, counted in {@link #getFailedCount} and dropped; the
+   connection is opened again for the next batch. Should the flush
+   thread nevertheless die, the waiting events are dropped and counted
+   as failed, and further events are dropped until {@link
+   #activateOptions} is called again.
+
+   <p>The database driver must support JDBC 2.0 batch updates.
+
+   @since 1.1 */
+public class JDBCAppender extends AppenderSkeleton {
+
+  /** The default batch size is set to 100 events. */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /** The default buffer size is set to 1000 events. */
+  public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+  /** By default batches are flushed at least every second. */
+  public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+  static final int TIMESTAMP = 0;
+  static final int PRIORITY  = 1;
+  static final int CATEGORY  = 2;
+  static final int THREAD    = 3;
+  static final int NDC       = 4;
+  static final int MESSAGE   = 5;
+  static final int THROWABLE = 6;
+  static final int LOCATION  = 7;
+
+  static final String[] COLUMN_NAMES = {"timestamp", "priority", "category",
+					"thread", "ndc", "message",
+					"throwable", "location"};
+
+  static final String LINE_SEP = System.getProperty("line.separator");
+
+  String driver;
+  String url;
+  String user;
+  String password;
+  String sql;
+  int[] columns = {TIMESTAMP, PRIORITY, CATEGORY, THREAD, NDC, MESSAGE};
+  boolean throwableInfo = false;
+  boolean locationInfo = false;
+
+  int batchSize = DEFAULT_BATCH_SIZE;
+  int bufferSize = DEFAULT_BUFFER_SIZE;
+  long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+  /** Events waiting to be written, guarded by <code>this</code>. */
+  Vector buffer = new Vector();
+  JDBCFlusher flusher;
+
+  long rowCount = 0;
+  long failedCount = 0;
+  long writeMillis = 0;
+  final Object statsLock = new Object();
+
+  public
+  JDBCAppender() {
+  }
+
+  /**
+     Load the driver and start the flush thread. */
+  public
+  synchronized
+  void activateOptions() {
+    if(sql == null || url == null) {
+      errorHandler.error("The Sql and URL options must be set for appender ["+
+			 name+"].");
+      return;
+    }
+    if(driver != null) {
+      try {
+	Class.forName(driver);
+      } catch(Exception e) {
+	errorHandler.error("Could not load JDBC driver ["+driver+"].", e,
+			   ErrorCode.GENERIC_FAILURE);
+	return;
+      }
+    }
+    if(flusher == null) {
+      flusher = new JDBCFlusher(this);
+      flusher.start();
+    }
+  }
+
+  /**
+     Queue the event for the flush thread. The parts of the event that
+     depend on the logging thread are extracted first.  */
+  public
+  synchronized
+  void append(LoggingEvent event) {
+    if(flusher == null) {
+      errorHandler.error("Appender ["+name+"] has no flush thread.");
+      return;
+    }
+
+    event.getNDC();
+    event.getThreadName();
+    event.getRenderedMessage();
+    if(throwableInfo) {
+      event.getThrowableStrRep();
+    }
+    if(locationInfo) {
+      event.getLocationInformation();
+    }
+
+    while(buffer.size() >= bufferSize && flusher != null) {
+      try {
+	wait(flushInterval);
+      } catch(InterruptedException e) {
+	Thread.currentThread().interrupt();
+	synchronized(statsLock) {
+	  failedCount++;
+	}
+	return;
+      }
+    }
+    buffer.addElement(event);
+    if(buffer.size() == batchSize) {
+      notifyAll();
+    }
+  }
+
+  /**
+     Take the waiting events out of the buffer, waiting up to
+     <code>timeout</code> milliseconds for a full batch. Returns
+     <code>null</code> once the appender is closed and the buffer
+     empty. Called by the flush thread.  */
+  synchronized
+  Vector takeBatch(long timeout, JDBCFlusher caller) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    while(buffer.size() < batchSize && flusher == caller) {
+      long left = deadline - System.currentTimeMillis();
+      if(left <= 0) {
+	break;
+      }
+      wait(left);
+    }
+    if(buffer.isEmpty()) {
+      return flusher == caller ? buffer : null;
+    }
+    Vector batch = buffer;
+    buffer = new Vector(batchSize);
+    notifyAll();
+    return batch;
+  }
+
+  /**
+     Called by the flush thread when it exits. If it was not stopped by
+     {@link #close}, the waiting events are dropped so that logging
+     threads do not wait for a thread that is gone.  */
+  synchronized
+  void flusherExited(JDBCFlusher caller) {
+    if(flusher != caller) {
+      return;
+    }
+    flusher = null;
+    failed(buffer.size());
+    buffer.removeAllElements();
+    notifyAll();
+  }
+
+  /**
+     Bind the fields of <code>event</code> to the parameters of
+     <code>ps</code>, in the order of the <b>Columns</b> option. */
+  void bind(PreparedStatement ps, LoggingEvent event) throws SQLException {
+    for(int i = 0; i < columns.length; i++) {
+      int p = i + 1;
+      switch(columns[i]) {
+      case TIMESTAMP:
+	ps.setTimestamp(p, new Timestamp(event.timeStamp));
+	break;
+      case PRIORITY:
+	setString(ps, p, event.priority.toString());
+	break;
+      case CATEGORY:
+	setString(ps, p, event.categoryName);
+	break;
+      case THREAD:
+	setString(ps, p, event.getThreadName());
+	break;
+      case NDC:
+	setString(ps, p, event.getNDC());
+	break;
+      case MESSAGE:
+	setString(ps, p, event.getRenderedMessage());
+	break;
+      case THROWABLE:
+	setString(ps, p, join(event.getThrowableStrRep()));
+	break;
+      case LOCATION:
+	LocationInfo li = event.getLocationInformation();
+	setString(ps, p, li == null ? null : li.fullInfo);
+	break;
+      }
+    }
+  }
+
+  static
+  void setString(PreparedStatement ps, int p, String value) throws SQLException {
+    if(value == null) {
+      ps.setNull(p, Types.VARCHAR);
+    } else {
+      ps.setString(p, value);
+    }
+  }
+
+  static
+  String join(String[] lines) {
+    if(lines == null) {
+      return null;
+    }
+    StringBuffer sbuf = new StringBuffer();
+    for(int i = 0; i < lines.length; i++) {
+      if(i > 0) {
+	sbuf.append(LINE_SEP);
+      }
+      sbuf.append(lines[i]);
+    }
+    return sbuf.toString();
+  }
+
+  /**
+     Open a connection to the database. Override to obtain connections
+     elsewhere, for example from a pool.  */
+  protected
+  Connection getConnection() throws SQLException {
+    return DriverManager.getConnection(url, user, password);
+  }
+
+  void written(int rows, long millis) {
+    synchronized(statsLock) {
+      rowCount += rows;
+      writeMillis += millis;
+    }
+  }
+
+  void failed(int rows) {
+    synchronized(statsLock) {
+      failedCount += rows;
+    }
+  }
+
+  /**
+     Returns the number of events written to the database. */
+  public
+  long getRowCount() {
+    synchronized(statsLock) {
+      return rowCount;
+    }
+  }
+
+  /**
+     Returns the number of events that could not be written. */
+  public
+  long getFailedCount() {
+    synchronized(statsLock) {
+      return failedCount;
+    }
+  }
+
+  /**
+     Returns the number of rows written per second spent writing. */
+  public
+  double getRowsPerSecond() {
+    synchronized(statsLock) {
+      return writeMillis == 0 ? 0 : (rowCount * 1000.0) / writeMillis;
+    }
+  }
+
+  /**
+     Returns the number of events waiting to be written. */
+  public
+  synchronized
+  int getPendingCount() {
+    return buffer.size();
+  }
+
+  /**
+     Close this <code>JDBCAppender</code>. The waiting events are
+     written before the flush thread exits.  */
+  public
+  void close() {
+    JDBCFlusher f;
+    synchronized(this) {
+      if(closed) {
+	return;
+      }
+      closed = true;
+      f = flusher;
+      flusher = null;
+      notifyAll();
+    }
+    if(f == null) {
+      return;
+    }
+    try {
+      f.join();
+    } catch(InterruptedException e) {
+      LogLog.error("Got an InterruptedException while waiting for the "+
+		   "flush thread to finish.", e);
+    }
+    LogLog.debug("Appender ["+name+"] wrote "+getRowCount()+" rows at "+
+		 getRowsPerSecond()+" rows/s, "+getFailedCount()+" failed.");
+  }
+
+  /**
+     The <code>JDBCAppender</code> binds the event fields directly and
+     does not require a layout. */
+  public
+  boolean requiresLayout() {
+    return false;
+  }
+
+  /**
+     The <b>Driver</b> option takes the class name of the JDBC driver
+     to load. */
+  public
+  void setDriver(String driver) {
+    this.driver = driver;
+  }
+
+  public
+  String getDriver() {
+    return driver;
+  }
+
+  /**
+     The <b>URL</b> option takes the JDBC URL of the database. */
+  public
+  void setURL(String url) {
+    this.url = url;
+  }
+
+  public
+  String getURL() {
+    return url;
+  }
+
+  /**
+     The <b>User</b> option takes the database user name. */
+  public
+  void setUser(String user) {
+    this.user = user;
+  }
+
+  public
+  String getUser() {
+    return user;
+  }
+
+  /**
+     The <b>Password</b> option takes the password of the database
+     user. */
+  public
+  void setPassword(String password) {
+    this.password = password;
+  }
+
+  /**
+     The <b>Sql</b> option takes the statement executed for each
+     event, with one <code>?</code> placeholder per column. */
+  public
+  void setSql(String sql) {
+    this.sql = sql;
+  }
+
+  public
+  String getSql() {
+    return sql;
+  }
+
+  /**
+     The <b>Columns</b> option takes a comma separated list of the
+     event fields bound to the placeholders of the <b>Sql</b> option,
+     in order. The default is
+     <code>timestamp,priority,category,thread,ndc,message</code>. */
+  public
+  void setColumns(String value) {
+    StringTokenizer st = new StringTokenizer(value, ",");
+    int[] c = new int[st.countTokens()];
+    boolean throwable = false;
+    boolean location = false;
+    for(int i = 0; i < c.length; i++) {
+      String column = st.nextToken().trim();
+      c[i] = -1;
+      for(int j = 0; j < COLUMN_NAMES.length; j++) {
+	if(COLUMN_NAMES[j].equalsIgnoreCase(column)) {
+	  c[i] = j;
+	}
+      }
+      if(c[i] == -1) {
+	LogLog.error("Unknown column ["+column+"], ignoring Columns option.");
+	return;
+      }
+      throwable |= c[i] == THROWABLE;
+      location |= c[i] == LOCATION;
+    }
+    columns = c;
+    throwableInfo = throwable;
+    locationInfo = location;
+  }
+
+  public
+  String getColumns() {
+    StringBuffer sbuf = new StringBuffer();
+    for(int i = 0; i < columns.length; i++) {
+      if(i > 0) {
+	sbuf.append(',');
+      }
+      sbuf.append(COLUMN_NAMES[columns[i]]);
+    }
+    return sbuf.toString();
+  }
+
+  /**
+     The <b>BatchSize</b> option takes a positive integer, the number
+     of events written at once. */
+  public
+  void setBatchSize(int size) {
+    if(size < 1) {
+      LogLog.warn("BatchSize must be positive, ignoring "+size+".");
+      return;
+    }
+    batchSize = size;
+  }
+
+  public
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+     The <b>BufferSize</b> option takes a positive integer, the number
+     of waiting events beyond which logging threads wait. */
+  public
+  void setBufferSize(int size) {
+    if(size < 1) {
+      LogLog.warn("BufferSize must be positive, ignoring "+size+".");
+      return;
+    }
+    bufferSize = size;
+  }
+
+  public
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+     The <b>FlushInterval</b> option takes the maximum number of
+     milliseconds an event waits before being written. */
+  public
+  void setFlushInterval(long millis) {
+    if(millis < 1) {
+      LogLog.warn("FlushInterval must be positive, ignoring "+millis+".");
+      return;
+    }
+    flushInterval = millis;
+  }
+
+  public
+  long getFlushInterval() {
+    return flushInterval;
+  }
+}
+
+/**
+   The flush thread of a {@link JDBCAppender}. It owns the database
+   connection and the prepared statement.  */
+class JDBCFlusher extends Thread {
+
+  JDBCAppender appender;
+  Connection con;
+  PreparedStatement ps;
+
+  JDBCFlusher(JDBCAppender appender) {
+    this.appender = appender;
+    this.setDaemon(true);
+    this.setName("JDBCFlusher-"+getName());
+  }
+
+  public
+  void run() {
+    Vector batch = null;
+    int from = 0;
+    try {
+      while(true) {
+	try {
+	  batch = appender.takeBatch(appender.flushInterval, this);
+	} catch(InterruptedException e) {
+	  LogLog.error("The flush thread should not be interrupted.");
+	  return;
+	}
+	if(batch == null) {
+	  return;
+	}
+	int size = appender.batchSize;
+	for(from = 0; from < batch.size(); from += size) {
+	  write(batch, from, Math.min(batch.size(), from + size));
+	}
+      }
+    } catch(Throwable t) {
+      LogLog.error("The flush thread stopped unexpectedly.", t);
+      if(batch != null) {
+	appender.failed(batch.size() - from);
+      }
+    } finally {
+      closeConnection();
+      appender.flusherExited(this);
+    }
+  }
+
+  /**
+     Write the events <code>from</code> (inclusive) to <code>to</code>
+     (exclusive) of <code>batch</code> in one batch and one
+     transaction.  */
+  void write(Vector batch, int from, int to) {
+    long before = System.currentTimeMillis();
+    try {
+      if(con == null) {
+	con = appender.getConnection();
+	con.setAutoCommit(false);
+	ps = con.prepareStatement(appender.sql);
+      }
+      for(int i = from; i < to; i++) {
+	appender.bind(ps, (LoggingEvent) batch.elementAt(i));
+	ps.addBatch();
+      }
+      ps.executeBatch();
+      con.commit();
+      long millis = System.currentTimeMillis() - before;
+      appender.written(to - from, millis);
+      LogLog.debug("Wrote "+(to - from)+" events in "+millis+" ms.");
+    } catch(SQLException e) {
+      failed(to - from, e);
+    } catch(RuntimeException e) {
+      // e.g. thrown by a faulty driver or renderer
+      failed(to - from, e);
+    }
+  }
+
+  /**
+     Drop a batch of <code>rows</code> events that could not be
+     written, and the connection.  */
+  void failed(int rows, Exception e) {
+    appender.failed(rows);
+    appender.getErrorHandler().error("Could not write "+rows+
+				     " events to the database.", e,
+				     ErrorCode.FLUSH_FAILURE);
+    if(con != null) {
+      try {
+	con.rollback();
+      } catch(SQLException ignored) {
+      } catch(RuntimeException ignored) {
+      }
+    }
+    closeConnection();
+  }
+
+  void closeConnection() {
+    try {
+      if(ps != null) {
+	ps.close();
+      }
+      if(con != null) {
+	con.close();
+      }
+    } catch(SQLException e) {
+      LogLog.warn("Could not close the database connection.", e);
+    } catch(RuntimeException e) {
+      LogLog.warn("Could not close the database connection.", e);
+    }
+    ps = null;
+    con = null;
+  }
+}
@@ -0,0 +1,396 @@
+package org.apache.log4j.net;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   Sends logging events to a remote {@link BinarySocketServer} in the
+   compact format of {@link EventEncoder}, in batches.
+
+   <p>Unlike the {@link SocketAppender}, events are not flushed to the
+   network one by one. They are buffered until <b>BatchSize</b> events
+   are waiting, an event of priority ERROR or higher is logged, or
+   <b>FlushInterval</b> milliseconds have passed, whichever comes
+   first. Events logged while there is no connection are lost, as with
+   the <code>SocketAppender</code>.
+
+   @since 1.1 */
+public class BinarySocketAppender extends AppenderSkeleton {
+
+  /**
+     The default port number of the remote server (4561).
+  */
+  static final int DEFAULT_PORT = 4561;
+
+  /**
+     The default reconnection delay (30000 milliseconds or 30 seconds).
+  */
+  static final int DEFAULT_RECONNECTION_DELAY = 30000;
+
+  static final int DEFAULT_BATCH_SIZE = 64;
+  static final int DEFAULT_FLUSH_INTERVAL = 500;
+  static final int BUFFER_SIZE = 8192;
+
+  String remoteHost;
+  InetAddress address;
+  int port = DEFAULT_PORT;
+  int reconnectionDelay = DEFAULT_RECONNECTION_DELAY;
+  boolean locationInfo = false;
+  int batchSize = DEFAULT_BATCH_SIZE;
+  int flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+  /** The connection, guarded by <code>this</code>. */
+  Socket socket;
+  DataOutputStream out;
+  EventEncoder encoder = new EventEncoder();
+  int pending = 0;
+
+  private Connector connector;
+  private Flusher flusher;
+
+  public
+  BinarySocketAppender() {
+  }
+
+  /**
+     Connects to remote server at <code>host</code> and <code>port</code>.
+  */
+  public
+  BinarySocketAppender(String host, int port) {
+    this.port = port;
+    this.address = SocketAppender.getAddressByName(host);
+    this.remoteHost = host;
+    activateOptions();
+  }
+
+  /**
+     Connect to the specified <b>RemoteHost</b> and <b>Port</b>.
+  */
+  public
+  synchronized
+  void activateOptions() {
+    if(address == null) {
+      return;
+    }
+    try {
+      open(new Socket(address, port));
+    }
+    catch(IOException e) {
+      LogLog.error("Could not connect to remote log4j server at ["
+		   +address.getHostName()+"]. We will try again later.", e);
+      fireConnector();
+    }
+    if(flusher == null) {
+      flusher = new Flusher();
+      flusher.start();
+    }
+  }
+
+  synchronized
+  void open(Socket s) throws IOException {
+    cleanUp();
+    DataOutputStream dos = new DataOutputStream(
+                   new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE));
+    encoder.start(dos);
+    dos.flush();
+    socket = s;
+    out = dos;
+  }
+
+  /**
+     Close this appender, sending the buffered events first.
+  */
+  public
+  synchronized
+  void close() {
+    if(closed) {
+      return;
+    }
+    closed = true;
+    flush();
+    cleanUp();
+    if(connector != null) {
+      connector.interrupted = true;
+      connector = null;
+    }
+    if(flusher != null) {
+      flusher.interrupted = true;
+      flusher.interrupt();
+      flusher = null;
+    }
+  }
+
+  /**
+     Drop the connection to the remote host. */
+  synchronized
+  void cleanUp() {
+    if(out != null) {
+      try {
+	out.close();
+      }
+      catch(IOException e) {
+	LogLog.error("Could not close connection.", e);
+      }
+      out = null;
+      socket = null;
+    }
+    pending = 0;
+  }
+
+  public
+  void append(LoggingEvent event) {
+    if(address == null) {
+      errorHandler.error("No remote host is set for BinarySocketAppender named \""+
+			 this.name+"\".");
+      return;
+    }
+    if(out == null) {
+      return;
+    }
+    try {
+      encoder.encode(event, locationInfo, out);
+      if(++pending >= batchSize || event.priority.isGreaterOrEqual(Priority.ERROR)) {
+	out.flush();
+	pending = 0;
+      }
+    }
+    catch(IOException e) {
+      connectionLost(e);
+    }
+  }
+
+  /**
+     Send the buffered events. */
+  synchronized
+  void flush() {
+    if(out != null && pending > 0) {
+      try {
+	out.flush();
+	pending = 0;
+      }
+      catch(IOException e) {
+	connectionLost(e);
+      }
+    }
+  }
+
+  void connectionLost(IOException e) {
+    cleanUp();
+    LogLog.warn("Detected problem with connection: "+e);
+    if(reconnectionDelay > 0 && !closed) {
+      fireConnector();
+    }
+  }
+
+  void fireConnector() {
+    if(connector == null) {
+      LogLog.debug("Starting a new connector thread.");
+      connector = new Connector();
+      connector.setDaemon(true);
+      connector.setPriority(Thread.MIN_PRIORITY);
+      connector.start();
+    }
+  }
+
+  /**
+     The BinarySocketAppender does not use a layout. Hence, this method
+     returns <code>false</code>.
+  */
+  public
+  boolean requiresLayout() {
+    return false;
+  }
+
+  /**
+     The <b>RemoteHost</b> option takes a string value which should be
+     the host name of the server where a {@link BinarySocketServer} is
+     running.
+   */
+  public
+  void setRemoteHost(String host) {
+    address = SocketAppender.getAddressByName(host);
+    remoteHost = host;
+  }
+
+  /**
+     Returns value of the <b>RemoteHost</b> option.
+   */
+  public
+  String getRemoteHost() {
+    return remoteHost;
+  }
+
+  /**
+     The <b>Port</b> option takes a positive integer representing
+     the port where the server is waiting for connections. The default
+     is 4561.
+   */
+  public
+  void setPort(int port) {
+    this.port = port;
+  }
+
+  /**
+     Returns value of the <b>Port</b> option.
+   */
+  public
+  int getPort() {
+    return port;
+  }
+
+  /**
+     The <b>LocationInfo</b> option takes a boolean value. If true,
+     the information sent to the remote host will include location
+     information. By default no location information is sent to the server.
+   */
+  public
+  void setLocationInfo(boolean locationInfo) {
+    this.locationInfo = locationInfo;
+  }
+
+  /**
+     Returns value of the <b>LocationInfo</b> option.
+   */
+  public
+  boolean getLocationInfo() {
+    return locationInfo;
+  }
+
+  /**
+     The <b>ReconnectionDelay</b> option takes a positive integer
+     representing the number of milliseconds to wait between each
+     failed connection attempt to the server. The default value of
+     this option is 30000 which corresponds to 30 seconds.
+
+     <p>Setting this option to zero turns off reconnection
+     capability.
+   */
+  public
+  void setReconnectionDelay(int delay) {
+    this.reconnectionDelay = delay;
+  }
+
+  /**
+     Returns value of the <b>ReconnectionDelay</b> option.
+   */
+  public
+  int getReconnectionDelay() {
+    return reconnectionDelay;
+  }
+
+  /**
+     The <b>BatchSize</b> option takes a positive integer, the number
+     of events buffered before they are sent. The default is 64.
+   */
+  public
+  void setBatchSize(int batchSize) {
+    if(batchSize < 1) {
+      LogLog.warn("BatchSize must be positive, ignoring "+batchSize+".");
+      return;
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+     Returns value of the <b>BatchSize</b> option.
+   */
+  public
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+     The <b>FlushInterval</b> option takes the maximum number of
+     milliseconds an event stays in the buffer. The default is 500.
+   */
+  public
+  void setFlushInterval(int flushInterval) {
+    if(flushInterval < 1) {
+      LogLog.warn("FlushInterval must be positive, ignoring "+flushInterval+".");
+      return;
+    }
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+     Returns value of the <b>FlushInterval</b> option.
+   */
+  public
+  int getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+     Sends the buffered events every <code>flushInterval</code>
+     milliseconds.  */
+  class Flusher extends Thread {
+
+    boolean interrupted = false;
+
+    Flusher() {
+      setDaemon(true);
+      setName("BinarySocketFlusher-"+getName());
+    }
+
+    public
+    void run() {
+      while(!interrupted) {
+	try {
+	  sleep(flushInterval);
+	}
+	catch(InterruptedException e) {
+	  return;
+	}
+	flush();
+      }
+    }
+  }
+
+  /**
+     Reconnects when the server becomes available again, see {@link
+     SocketAppender.Connector}.  */
+  class Connector extends Thread {
+
+    boolean interrupted = false;
+
+    public
+    void run() {
+      while(!interrupted) {
+	try {
+	  sleep(reconnectionDelay);
+	  LogLog.debug("Attempting connection to "+address.getHostName());
+	  Socket s = new Socket(address, port);
+	  synchronized(BinarySocketAppender.this) {
+	    if(!interrupted) {
+	      open(s);
+	    } else {
+	      s.close();
+	    }
+	    connector = null;
+	    break;
+	  }
+	}
+	catch(InterruptedException e) {
+	  LogLog.debug("Connector interrupted. Leaving loop.");
+	  return;
+	}
+	catch(java.net.ConnectException e) {
+	  LogLog.debug("Remote host "+address.getHostName()
+		       +" refused connection.");
+	}
+	catch(IOException e) {
+	  LogLog.debug("Could not connect to " + address.getHostName()+
+		       ". Exception is " + e);
+	}
+      }
+    }
+  }
+}
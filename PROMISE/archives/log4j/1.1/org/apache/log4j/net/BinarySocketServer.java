@@ -0,0 +1,300 @@
+package org.apache.log4j.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Vector;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   A server receiving logging events sent by {@link
+   BinarySocketAppender}s and logging them locally.
+
+   <p>Unlike the {@link SimpleSocketServer}, which starts a thread per
+   client, connections are multiplexed on a few reader threads with
+   non-blocking channels, so that thousands of clients can be served.
+   Each reader reads whole frames into the buffer of the connection,
+   decodes them and logs the events in the given hierarchy, in the
+   order they were sent by each client.
+
+   <p>This class requires JDK 1.4 or later.
+
+   <p>Usage: <code>java org.apache.log4j.net.BinarySocketServer port
+   configFile [readerThreads]</code>
+
+   @since 1.1 */
+public class BinarySocketServer {
+
+  static Category cat = Category.getInstance(BinarySocketServer.class.getName());
+
+  /** The default number of reader threads. */
+  static final int DEFAULT_READERS = 2;
+
+  int port;
+  Hierarchy hierarchy;
+  BinaryReader[] readers;
+
+  public
+  static
+  void main(String argv[]) {
+    if(argv.length != 2 && argv.length != 3) {
+      usage("Wrong number of arguments.");
+    }
+    int port = 0;
+    int threads = DEFAULT_READERS;
+    try {
+      port = Integer.parseInt(argv[0]);
+      if(argv.length == 3) {
+	threads = Integer.parseInt(argv[2]);
+      }
+    }
+    catch(java.lang.NumberFormatException e) {
+      e.printStackTrace();
+      usage("Could not interpret number ["+ e.getMessage() +"].");
+    }
+    PropertyConfigurator.configure(argv[1]);
+
+    try {
+      new BinarySocketServer(port, Category.getDefaultHierarchy(), threads).run();
+    }
+    catch(Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  static
+  void  usage(String msg) {
+    System.err.println(msg);
+    System.err.println(
+      "Usage: java " +BinarySocketServer.class.getName() +
+      " port configFile [readerThreads]");
+    System.exit(1);
+  }
+
+  public
+  BinarySocketServer(int port, Hierarchy hierarchy, int threads) throws IOException {
+    this.port = port;
+    this.hierarchy = hierarchy;
+    readers = new BinaryReader[Math.max(1, threads)];
+    for(int i = 0; i < readers.length; i++) {
+      readers[i] = new BinaryReader(hierarchy);
+    }
+  }
+
+  /**
+     Start the readers and accept connections, handing them to the
+     readers in turn. Does not return unless accepting fails.  */
+  public
+  void run() throws IOException {
+    for(int i = 0; i < readers.length; i++) {
+      readers[i].start();
+    }
+    ServerSocketChannel server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(port));
+    cat.info("Listening on port " + port);
+    int next = 0;
+    while(true) {
+      SocketChannel channel = server.accept();
+      cat.info("Connected to client at " + channel.socket().getInetAddress());
+      channel.configureBlocking(false);
+      readers[next].add(channel);
+      next = (next + 1) % readers.length;
+    }
+  }
+}
+
+/**
+   Reads the connections registered with its selector and logs the
+   events they carry.  */
+class BinaryReader extends Thread {
+
+  static Category cat = BinarySocketServer.cat;
+
+  /** Frames larger than this are taken for a corrupt stream. */
+  static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+  static final int INITIAL_BUFFER_SIZE = 8192;
+  static final int HEADER_SIZE = 8;
+
+  Hierarchy hierarchy;
+  Selector selector;
+  Vector added = new Vector();
+
+  BinaryReader(Hierarchy hierarchy) throws IOException {
+    this.hierarchy = hierarchy;
+    this.selector = Selector.open();
+    setDaemon(true);
+    setName("BinaryReader-"+getName());
+  }
+
+  void add(SocketChannel channel) {
+    added.addElement(channel);
+    selector.wakeup();
+  }
+
+  public
+  void run() {
+    while(true) {
+      try {
+	selector.select();
+      }
+      catch(IOException e) {
+	cat.error("Selector failed, reader exiting.", e);
+	return;
+      }
+
+      while(!added.isEmpty()) {
+	SocketChannel channel = (SocketChannel) added.elementAt(0);
+	added.removeElementAt(0);
+	try {
+	  channel.register(selector, SelectionKey.OP_READ, new BinaryConnection());
+	}
+	catch(IOException e) {
+	  cat.error("Could not register "+channel, e);
+	  close(channel);
+	}
+      }
+
+      Iterator keys = selector.selectedKeys().iterator();
+      while(keys.hasNext()) {
+	SelectionKey key = (SelectionKey) keys.next();
+	keys.remove();
+	SocketChannel channel = (SocketChannel) key.channel();
+	try {
+	  if(!read(channel, (BinaryConnection) key.attachment())) {
+	    cat.info("Client at "+channel.socket().getInetAddress()+
+		     " closed the connection.");
+	    key.cancel();
+	    close(channel);
+	  }
+	}
+	catch(Exception e) {
+	  cat.error("Unexpected exception. Closing connection.", e);
+	  key.cancel();
+	  close(channel);
+	}
+      }
+    }
+  }
+
+  /**
+     Read what is available on <code>channel</code> and log the
+     complete events. Returns <code>false</code> at end of stream.  */
+  boolean read(SocketChannel channel, BinaryConnection c) throws IOException {
+    if(channel.read(c.buffer) < 0) {
+      return false;
+    }
+    ByteBuffer buf = c.buffer;
+    buf.flip();
+    try {
+      if(!c.started) {
+	if(buf.remaining() < HEADER_SIZE) {
+	  return true;
+	}
+	c.setFrame(buf, HEADER_SIZE);
+	c.decoder.start(c.data);
+	buf.position(buf.position() + HEADER_SIZE);
+	c.started = true;
+      }
+      while(buf.remaining() >= 4) {
+	int length = buf.getInt(buf.position());
+	if(length < 0 || length > MAX_FRAME_SIZE) {
+	  throw new IOException("Invalid frame length "+length+".");
+	}
+	if(buf.remaining() < 4 + length) {
+	  c.ensureCapacity(4 + length);
+	  buf = c.buffer;
+	  break;
+	}
+	buf.position(buf.position() + 4);
+	c.setFrame(buf, length);
+	LoggingEvent event = c.decoder.decode(c.data, hierarchy);
+	buf.position(buf.position() + length);
+	dispatch(event);
+      }
+    }
+    finally {
+      buf.compact();
+    }
+    return true;
+  }
+
+  void dispatch(LoggingEvent event) {
+    Category remoteCategory = event.category;
+    if(event.priority.isGreaterOrEqual(remoteCategory.getChainedPriority())) {
+      remoteCategory.callAppenders(event);
+    }
+  }
+
+  static
+  void close(SocketChannel channel) {
+    try {
+      channel.close();
+    }
+    catch(IOException e) {
+      cat.info("Could not close connection.", e);
+    }
+  }
+}
+
+/**
+   The state of one client connection: the bytes read so far and the
+   decoder of its stream.  */
+class BinaryConnection {
+
+  ByteBuffer buffer = ByteBuffer.allocate(BinaryReader.INITIAL_BUFFER_SIZE);
+  boolean started = false;
+  EventDecoder decoder = new EventDecoder();
+  FrameInputStream frame = new FrameInputStream();
+  DataInputStream data = new DataInputStream(frame);
+
+  /**
+     Make the next <code>length</code> bytes of <code>buf</code> the
+     input of the decoder. */
+  void setFrame(ByteBuffer buf, int length) {
+    frame.setFrame(buf.array(), buf.arrayOffset() + buf.position(), length);
+  }
+
+  /**
+     Make sure the buffer, which is being read, can hold
+     <code>size</code> bytes. */
+  void ensureCapacity(int size) {
+    if(buffer.capacity() < size) {
+      int capacity = buffer.capacity();
+      while(capacity < size) {
+	capacity <<= 1;
+      }
+      ByteBuffer bigger = ByteBuffer.allocate(capacity);
+      bigger.put(buffer);
+      bigger.flip();
+      buffer = bigger;
+    }
+  }
+}
+
+/**
+   A <code>ByteArrayInputStream</code> that can be pointed at another
+   part of an array, so that frames are decoded without copying. */
+class FrameInputStream extends ByteArrayInputStream {
+
+  FrameInputStream() {
+    super(new byte[0]);
+  }
+
+  void setFrame(byte[] b, int offset, int length) {
+    buf = b;
+    pos = offset;
+    count = offset + length;
+    mark = offset;
+  }
+}
@@ -0,0 +1,162 @@
+package org.apache.log4j.net;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Priority;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.ThrowableInformation;
+import org.apache.log4j.helpers.ContextMap;
+
+import java.io.DataInput;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Vector;
+
+/**
+   Reads logging events written by an {@link EventEncoder}.
+
+   <p>A decoder keeps the names interned by the encoder, so it must be
+   used for a single stream and is not thread safe.
+
+   @since 1.1 */
+public class EventDecoder {
+
+  Vector interned = new Vector();
+  int version = EventEncoder.VERSION;
+
+  /**
+     Read and check the header of a new stream and forget the names
+     interned in the previous one.  */
+  public
+  void start(DataInput in) throws IOException {
+    interned.removeAllElements();
+    int magic = in.readInt();
+    int version = in.readInt();
+    if(magic != EventEncoder.MAGIC) {
+      throw new StreamCorruptedException("Not a binary event stream.");
+    }
+    if(version < 1 || version > EventEncoder.VERSION) {
+      throw new StreamCorruptedException("Unsupported version "+version+".");
+    }
+    this.version = version;
+  }
+
+  /**
+     Read the body of one frame, that is everything after the length,
+     and return the event it holds. The category of the event is taken
+     from <code>hierarchy</code>.
+
+     <p>When <code>in</code> is an <code>InputStream</code> holding
+     just the frame, the counts read from the frame are checked
+     against its remaining bytes, so that a corrupt frame throws a
+     <code>StreamCorruptedException</code> instead of allocating an
+     array of any size.  */
+  public
+  LoggingEvent decode(DataInput in, Hierarchy hierarchy) throws IOException {
+    long timeStamp = in.readLong();
+    Priority priority = Priority.toPriority(in.readInt());
+    String categoryName = readInterned(in);
+    String threadName = readInterned(in);
+    String ndc = readString(in);
+    String message = readString(in);
+
+    ThrowableInformation throwableInfo = null;
+    int n = in.readInt();
+    if(n != -1) {
+      // each line takes at least its tag
+      checkCount(n, 1, in);
+      String[] lines = new String[n];
+      for(int i = 0; i < n; i++) {
+	lines[i] = readString(in);
+      }
+      throwableInfo = new ThrowableInformation(lines);
+    }
+
+    // Never leave the location to be computed on this side.
+    LocationInfo locationInfo = new LocationInfo(null, null);
+    locationInfo.fullInfo = readString(in);
+
+    ContextMap mdc = ContextMap.EMPTY;
+    if(version >= 2) {
+      n = in.readInt();
+      // each entry takes at least its two tags
+      checkCount(n, 2, in);
+      for(int i = 0; i < n; i++) {
+	String key = readInterned(in);
+	String value = readString(in);
+	if(key == null) {
+	  throw new StreamCorruptedException("Null context key.");
+	}
+	mdc = mdc.with(key, value);
+      }
+    }
+
+    Category category = categoryName == null ? hierarchy.getRoot()
+                                             : hierarchy.getInstance(categoryName);
+    return new LoggingEvent(null, category, timeStamp, priority, message,
+			    threadName, ndc, throwableInfo, locationInfo, mdc);
+  }
+
+  String readInterned(DataInput in) throws IOException {
+    byte tag = in.readByte();
+    switch(tag) {
+    case EventEncoder.NEW:
+      String s = in.readUTF();
+      interned.addElement(s);
+      return s;
+    case EventEncoder.REF:
+      int id = in.readInt();
+      if(id < 0 || id >= interned.size()) {
+	throw new StreamCorruptedException("Unknown name "+id+".");
+      }
+      return (String) interned.elementAt(id);
+    default:
+      return readString(tag, in);
+    }
+  }
+
+  String readString(DataInput in) throws IOException {
+    return readString(in.readByte(), in);
+  }
+
+  String readString(byte tag, DataInput in) throws IOException {
+    switch(tag) {
+    case EventEncoder.NULL:
+      return null;
+    case EventEncoder.LITERAL:
+      return in.readUTF();
+    case EventEncoder.CHUNKED:
+      int chunks = in.readInt();
+      // each chunk takes at least its UTF length
+      checkCount(chunks, 2, in);
+      StringBuffer sbuf = new StringBuffer();
+      for(int i = 0; i < chunks; i++) {
+	sbuf.append(in.readUTF());
+      }
+      return sbuf.toString();
+    default:
+      throw new StreamCorruptedException("Unknown string tag "+tag+".");
+    }
+  }
+
+  /**
+     Throw a <code>StreamCorruptedException</code> if
+     <code>count</code> is negative or if <code>count</code> items of
+     at least <code>size</code> bytes each cannot fit in what remains
+     of the frame.  */
+  static
+  void checkCount(int count, int size, DataInput in) throws IOException {
+    if(count < 0) {
+      throw new StreamCorruptedException("Negative count "+count+".");
+    }
+    if(in instanceof InputStream) {
+      int available = ((InputStream) in).available();
+      if(count > available / size) {
+	throw new StreamCorruptedException("Count "+count+" exceeds the "+
+					   available+" bytes left in the frame.");
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package org.apache.log4j.net;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.helpers.ContextMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+   Writes logging events in a compact binary format, read back by
+   {@link EventDecoder}. It is much smaller and faster than Java
+   serialization and needs no periodic <code>reset()</code>.
+
+   <p>A stream starts with a header, {@link #MAGIC} and {@link
+   #VERSION}, written by {@link #start}. Each event follows as a frame:
+   its length in bytes, then the time stamp, the priority, the category
+   and thread names, the NDC, the rendered message, the throwable
+   lines, the location information and the mapped diagnostic context,
+   whose values are sent as strings. Category and thread names and the
+   keys of the context are interned: each distinct name is sent once
+   and then referred to by a number, so that they cost four bytes in
+   later events.
+
+   <p>An encoder keeps the names it sent, so it must be used for a
+   single stream and is not thread safe.
+
+   @since 1.1 */
+public class EventEncoder {
+
+  /** The first int of a stream, "L4JB". */
+  public static final int MAGIC = 0x4c344a42;
+
+  /** The version of the format, the second int of a stream. Version
+      1 streams lack the mapped diagnostic context. */
+  public static final int VERSION = 2;
+
+  static final byte NULL    = 0;
+  static final byte NEW     = 1;
+  static final byte REF     = 2;
+  static final byte LITERAL = 3;
+  static final byte CHUNKED = 4;
+
+  /** The most names interned per stream. Later names are sent in
+      full each time. */
+  static final int MAX_INTERNED = 4096;
+
+  /** The most chars that surely fit in one <code>writeUTF</code>. */
+  static final int MAX_UTF_CHARS = 65535 / 3;
+
+  Hashtable interned = new Hashtable();
+  ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+  DataOutputStream data = new DataOutputStream(body);
+
+  /**
+     Write the header of a new stream to <code>out</code> and forget
+     the names interned in the previous one.  */
+  public
+  void start(DataOutputStream out) throws IOException {
+    interned.clear();
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+  }
+
+  /**
+     Write <code>event</code> as one frame to <code>out</code>. The
+     location information is only written if
+     <code>locationInfo</code> is true.  */
+  public
+  void encode(LoggingEvent event, boolean locationInfo,
+	      DataOutputStream out) throws IOException {
+    body.reset();
+    data.writeLong(event.timeStamp);
+    data.writeInt(event.priority.toInt());
+    writeInterned(event.categoryName);
+    writeInterned(event.getThreadName());
+    writeString(event.getNDC());
+    writeString(event.getRenderedMessage());
+
+    String[] lines = event.getThrowableStrRep();
+    if(lines == null) {
+      data.writeInt(-1);
+    } else {
+      data.writeInt(lines.length);
+      for(int i = 0; i < lines.length; i++) {
+	writeString(lines[i]);
+      }
+    }
+
+    writeString(locationInfo ? event.getLocationInformation().fullInfo : null);
+
+    ContextMap mdc = event.getMDCContext();
+    data.writeInt(mdc.size());
+    for(Enumeration e = mdc.keys(); e.hasMoreElements();) {
+      String key = (String) e.nextElement();
+      writeInterned(key);
+      writeString(String.valueOf(mdc.get(key)));
+    }
+
+    out.writeInt(body.size());
+    body.writeTo(out);
+  }
+
+  void writeInterned(String s) throws IOException {
+    if(s == null) {
+      data.writeByte(NULL);
+      return;
+    }
+    Integer id = (Integer) interned.get(s);
+    if(id != null) {
+      data.writeByte(REF);
+      data.writeInt(id.intValue());
+    } else if(interned.size() < MAX_INTERNED && s.length() <= MAX_UTF_CHARS) {
+      interned.put(s, new Integer(interned.size()));
+      data.writeByte(NEW);
+      data.writeUTF(s);
+    } else {
+      writeString(s);
+    }
+  }
+
+  void writeString(String s) throws IOException {
+    if(s == null) {
+      data.writeByte(NULL);
+    } else if(s.length() <= MAX_UTF_CHARS) {
+      data.writeByte(LITERAL);
+      data.writeUTF(s);
+    } else {
+      // Modified UTF-8 encodes each char on its own, so any split is safe.
+      int chunks = (s.length() + MAX_UTF_CHARS - 1) / MAX_UTF_CHARS;
+      data.writeByte(CHUNKED);
+      data.writeInt(chunks);
+      for(int i = 0; i < chunks; i++) {
+	int from = i * MAX_UTF_CHARS;
+	data.writeUTF(s.substring(from, Math.min(s.length(), from + MAX_UTF_CHARS)));
+      }
+    }
+  }
+}
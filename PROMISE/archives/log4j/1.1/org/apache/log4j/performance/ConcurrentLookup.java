@@ -0,0 +1,135 @@
+package org.apache.log4j.performance;
+
+import org.apache.log4j.Category;
+
+import java.util.Hashtable;
+
+/**
+   Measure how the lookup of existing categories scales with the number
+   of threads doing lookups.
+
+   <p>This program takes two arguments, a comma separated list of
+   thread counts, for example "1,2,4,8", and the number of lookups
+   each thread makes. Each thread repeatedly calls {@link
+   Category#getInstance(String)} on a set of existing categories,
+   which takes no lock. For comparison, the same lookups are then made
+   in a <code>Hashtable</code> under a single monitor, which is how
+   categories used to be looked up.
+
+   <p>The results of the measurement (should) show that lookups in the
+   hierarchy scale with the number of processors, whereas lookups
+   under a single monitor do not.
+
+*/
+public class ConcurrentLookup {
+
+  static int runLength;
+  static int[] threadCounts;
+
+  static String[] NAMES;
+
+  static Hashtable table = new Hashtable();
+
+  static
+  void  Usage() {
+    System.err.println(
+      "Usage: java org.apache.log4j.performance.ConcurrentLookup " +
+      "threadCounts runLength\n" +
+      "  where threadCounts is a comma separated list such as 1,2,4,8\n" +
+      "  and runLength is the number of lookups per thread.\n" +
+      "We suggest that runLength be at least 1'000'000.");
+    System.exit(1);
+  }
+
+  public static void main(String argv[]) throws Exception {
+    if(argv.length != 2) {
+      Usage();
+    }
+    ProgramInit(argv);
+
+    System.out.println();
+    for(int i = 0; i < threadCounts.length; i++) {
+      double rate = measure(threadCounts[i], true);
+      System.out.println("Hierarchy lookups,          " + threadCounts[i] +
+			 " threads: " + rate + " lookups/ms");
+    }
+
+    System.out.println();
+    for(int i = 0; i < threadCounts.length; i++) {
+      double rate = measure(threadCounts[i], false);
+      System.out.println("Synchronized table lookups, " + threadCounts[i] +
+			 " threads: " + rate + " lookups/ms");
+    }
+  }
+
+  /**
+    Program wide initialization method.  */
+  static
+  void ProgramInit(String[] args) {
+    try {
+      runLength = Integer.parseInt(args[1]);
+      java.util.StringTokenizer st = new java.util.StringTokenizer(args[0], ",");
+      threadCounts = new int[st.countTokens()];
+      for(int i = 0; i < threadCounts.length; i++) {
+	threadCounts[i] = Integer.parseInt(st.nextToken().trim());
+      }
+    }
+    catch(java.lang.NumberFormatException e) {
+      System.err.println(e);
+      Usage();
+    }
+
+    NAMES = new String[64];
+    for(int i = 0; i < NAMES.length; i++) {
+      NAMES[i] = "com.foo.module" + (i % 8) + ".Class" + i;
+      Category.getInstance(NAMES[i]);
+      table.put(NAMES[i], NAMES[i]);
+    }
+  }
+
+  /**
+     Run <code>threads</code> threads of <code>runLength</code> lookups
+     each and return the number of lookups per millisecond. */
+  static
+  double measure(int threads, final boolean hierarchy) throws InterruptedException {
+    Thread[] workers = new Thread[threads];
+    for(int t = 0; t < threads; t++) {
+      final int offset = t;
+      workers[t] = new Thread() {
+	  public void run() {
+	    if(hierarchy) {
+	      lookupCategories(offset);
+	    } else {
+	      lookupTable(offset);
+	    }
+	  }
+	};
+    }
+
+    long before = System.currentTimeMillis();
+    for(int t = 0; t < threads; t++) {
+      workers[t].start();
+    }
+    for(int t = 0; t < threads; t++) {
+      workers[t].join();
+    }
+    long elapsed = System.currentTimeMillis() - before;
+    return ((double) threads * runLength) / Math.max(1, elapsed);
+  }
+
+  static
+  void lookupCategories(int offset) {
+    for(int i = 0; i < runLength; i++) {
+      Category.getInstance(NAMES[(i + offset) & 63]);
+    }
+  }
+
+  static
+  void lookupTable(int offset) {
+    for(int i = 0; i < runLength; i++) {
+      synchronized(table) {
+	table.get(NAMES[(i + offset) & 63]);
+      }
+    }
+  }
+}
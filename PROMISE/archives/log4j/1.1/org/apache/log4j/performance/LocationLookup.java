@@ -0,0 +1,88 @@
+package org.apache.log4j.performance;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.LocationInfo;
+
+/**
+   Measure the cost of finding the caller location information of a
+   logging event, as needed by the <code>%C</code>, <code>%M</code>,
+   <code>%F</code> and <code>%L</code> conversions of the
+   <code>PatternLayout</code>.
+
+   <p>This program takes one argument, the run length of the
+   measurement loops. It compares parsing the printed stack trace, the
+   default, with walking the stack frames and caching the location per
+   call site, as enabled by the <b>StackWalkLocation</b> option of
+   appenders.
+
+   <p>The results of the measurement (should) show that walking the
+   stack frames is several times faster. It requires JDK 1.4 or later;
+   on older platforms both measurements are the same.
+
+*/
+public class LocationLookup {
+
+  static int runLength;
+
+  static Category cat = Category.getInstance(LocationLookup.class.getName());
+
+  static
+  void  Usage() {
+    System.err.println(
+      "Usage: java org.apache.log4j.performance.LocationLookup runLength\n" +
+      "  where runLength is an integer.\n" +
+      "We suggest that runLength be at least 100'000.");
+    System.exit(1);
+  }
+
+  public static void main(String argv[]) {
+    if(argv.length != 1) {
+      Usage();
+    }
+    try {
+      runLength = Integer.parseInt(argv[0]);
+    }
+    catch(java.lang.NumberFormatException e) {
+      System.err.println(e);
+      Usage();
+    }
+
+    // Warm up both paths.
+    loop(runLength / 10, false);
+    loop(runLength / 10, true);
+
+    double delta = loop(runLength, false);
+    System.out.println("Parsing the printed stack trace: " + delta +
+		       " micros per event.");
+    delta = loop(runLength, true);
+    System.out.println("Walking the stack frames:        " + delta +
+		       " micros per event.");
+  }
+
+  /**
+     Resolve the location of <code>runLength</code> events and return
+     the average time per event in microseconds. */
+  static
+  double loop(long runLength, boolean walkStack) {
+    long before = System.currentTimeMillis();
+    for(int i = 0; i < runLength; i++) {
+      Caller.resolve(walkStack);
+    }
+    return (System.currentTimeMillis() - before)*1000.0/runLength;
+  }
+
+  /**
+     Stands for the category class; the location found is the line of
+     {@link #loop} that calls it. */
+  static class Caller {
+    static
+    String resolve(boolean walkStack) {
+      LoggingEvent event = new LoggingEvent(Caller.class.getName(), cat,
+					    Priority.INFO, "Hello", null);
+      LocationInfo li = event.getLocationInformation(walkStack);
+      return li.getLineNumber();
+    }
+  }
+}
@@ -33,6 +33,14 @@ import org.apache.log4j.Priority;
    <p> <li>Message argument construction can be an important slowing
    factor while evaluating whether to log or not.
 
+   <p> <li>The parameterized form, {@link
+   Category#debugf(String,Object[])}, avoids the concatenation
+   without an explicit test and costs only the allocation of its
+   argument array.
+
+   <p> <li>Since categories cache their threshold, evaluation costs
+   the same whether the hierarchy is flagged as shipped code or not.
+
    </ul>
 
    @author Ceki G&uuml;lc&uuml;
@@ -102,6 +110,13 @@ public class NotLogging {
       System.out.println("Complex message argument, " + delta + 
 			 " micros. Cat: " + CAT_ARRAY[i].getName());
     }
+
+    System.out.println();
+    for(int i = 0; i < CAT_ARRAY.length; i++) {
+      delta = ParameterizedMessage(CAT_ARRAY[i], runLength);
+      System.out.println("Parameterized message,    " + delta + 
+			 " micros. Cat: " + CAT_ARRAY[i].getName());
+    }
     
   }
   
@@ -165,4 +180,14 @@ public class NotLogging {
     }
     return (System.currentTimeMillis() - before)*1000.0/runLength;    
   }
+
+  static
+  double ParameterizedMessage(Category category, long runLength) {    
+    long before = System.currentTimeMillis();
+    for(int i = 0; i < runLength; i++) {
+      category.debugf("Message{0} bottles of beer standing on the wall.",
+		      new Object[] {new Integer(i)});
+    }
+    return (System.currentTimeMillis() - before)*1000.0/runLength;    
+  }
 }
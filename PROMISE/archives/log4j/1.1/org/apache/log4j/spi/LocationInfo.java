@@ -2,6 +2,8 @@ package org.apache.log4j.spi;
 
 import java.io.StringWriter;
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.Hashtable;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.Layout;
 
@@ -47,6 +49,7 @@ public class LocationInfo implements java.io.Serializable {
 
 
   static boolean inVisualAge = false;
+
   static {
     try {
       Class dummy = Class.forName("com.ibm.uvm.tools.DebugSupport");
@@ -56,6 +59,38 @@ public class LocationInfo implements java.io.Serializable {
     }
   }
 
+  /**
+     The most call sites whose location is cached by {@link
+     #getCallerLocation}. */
+  static final int MAX_CACHED_SITES = 4096;
+
+  /** Resolved locations by stack frame. */
+  static Hashtable siteCache = new Hashtable();
+
+  /* The parameters and arguments of the methods below. */
+  static final Class[] NO_PARAMS = new Class[0];
+  static final Object[] NO_ARGS = new Object[0];
+
+  /* The stack frame methods of JDK 1.4, null when not available. */
+  static Method getStackTrace;
+  static Method frameClassName;
+  static Method frameMethodName;
+  static Method frameFileName;
+  static Method frameLineNumber;
+
+  static {
+    try {
+      Class frame = Class.forName("java.lang.StackTraceElement");
+      frameClassName = frame.getMethod("getClassName", NO_PARAMS);
+      frameMethodName = frame.getMethod("getMethodName", NO_PARAMS);
+      frameFileName = frame.getMethod("getFileName", NO_PARAMS);
+      frameLineNumber = frame.getMethod("getLineNumber", NO_PARAMS);
+      getStackTrace = Throwable.class.getMethod("getStackTrace", NO_PARAMS);
+    } catch(Throwable e) {
+      getStackTrace = null;
+    }
+  }
+
   /**
      Instantiate location information based on a Throwable. We
      expect the Throwable <code>t</code>, to be in the format
@@ -196,4 +231,60 @@ public class LocationInfo implements java.io.Serializable {
       }
       return methodName;
     }
+
+    /**
+       Return the location of the caller of
+       <code>fqnOfCallingClass</code>, found by walking the stack
+       frames of <code>t</code> instead of parsing its printed stack
+       trace. The locations are cached per call site, so that the same
+       instance is returned for every call from a given line.
+
+       <p>Returns <code>null</code> when stack frames are not
+       available, that is before JDK 1.4, or the calling class is not
+       on the stack.
+
+       @since 1.1 */
+    public
+    static
+    LocationInfo getCallerLocation(Throwable t, String fqnOfCallingClass) {
+      if(getStackTrace == null || t == null) {
+	return null;
+      }
+      try {
+	Object[] frames = (Object[]) getStackTrace.invoke(t, NO_ARGS);
+	int i = 0;
+	while(i < frames.length &&
+	      !fqnOfCallingClass.equals(frameClassName.invoke(frames[i], NO_ARGS))) {
+	  i++;
+	}
+	while(i < frames.length &&
+	      fqnOfCallingClass.equals(frameClassName.invoke(frames[i], NO_ARGS))) {
+	  i++;
+	}
+	if(i >= frames.length) {
+	  return null;
+	}
+
+	Object frame = frames[i];
+	LocationInfo li = (LocationInfo) siteCache.get(frame);
+	if(li == null) {
+	  li = new LocationInfo(null, null);
+	  li.className = (String) frameClassName.invoke(frame, NO_ARGS);
+	  li.methodName = (String) frameMethodName.invoke(frame, NO_ARGS);
+	  String file = (String) frameFileName.invoke(frame, NO_ARGS);
+	  li.fileName = file == null ? NA : file;
+	  int line = ((Integer) frameLineNumber.invoke(frame, NO_ARGS)).intValue();
+	  li.lineNumber = line < 0 ? NA : String.valueOf(line);
+	  // Same text as the frame in a printed stack trace.
+	  li.fullInfo = frame.toString();
+	  if(siteCache.size() < MAX_CACHED_SITES) {
+	    siteCache.put(frame, li);
+	  }
+	}
+	return li;
+      } catch(Exception e) {
+	LogLog.debug("Could not walk the stack frames.", e);
+	return null;
+      }
+    }
 }
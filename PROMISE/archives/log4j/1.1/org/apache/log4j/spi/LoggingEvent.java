@@ -3,6 +3,8 @@ package org.apache.log4j.spi;
 import org.apache.log4j.Category;
 import org.apache.log4j.Priority;
 import org.apache.log4j.NDC;
+import org.apache.log4j.MDC;
+import org.apache.log4j.helpers.ContextMap;
 
 import org.apache.log4j.helpers.LogLog;
 
@@ -80,6 +82,9 @@ public class LoggingEvent implements java.io.Serializable {
   /** Location information for the caller. */
   private LocationInfo locationInfo;
 
+  /** The mapped diagnostic context of the event, taken lazily. */
+  transient private ContextMap mdc;
+
   static final long serialVersionUID = -868428216207166145L;
 
   static final Integer[] PARAM_ARRAY = new Integer[1];
@@ -110,6 +115,56 @@ public class LoggingEvent implements java.io.Serializable {
     timeStamp = System.currentTimeMillis();
   }  
 
+  /**
+     Instantiate a LoggingEvent with all its fields given, typically
+     an event received from a remote process.
+
+     @param category The category of this event.
+     @param timeStamp The time of this event.
+     @param priority The priority of this event.
+     @param renderedMessage The rendered message of this event.
+     @param threadName The name of the thread of this event.
+     @param ndc The nested diagnostic context, may be <code>null</code>.
+     @param throwableInfo The throwable information, may be <code>null</code>.
+     @param locationInfo The location information, may be <code>null</code>.
+
+     @since 1.1 */
+  public LoggingEvent(String fqnOfCategoryClass, Category category,
+		      long timeStamp, Priority priority,
+		      String renderedMessage, String threadName, String ndc,
+		      ThrowableInformation throwableInfo,
+		      LocationInfo locationInfo) {
+    this(fqnOfCategoryClass, category, timeStamp, priority, renderedMessage,
+	 threadName, ndc, throwableInfo, locationInfo, ContextMap.EMPTY);
+  }
+
+  /**
+     Instantiate a LoggingEvent with all its fields given, including
+     its mapped diagnostic context, typically an event received from a
+     remote process.
+
+     @param mdc The mapped diagnostic context, may not be <code>null</code>.
+
+     @since 1.1 */
+  public LoggingEvent(String fqnOfCategoryClass, Category category,
+		      long timeStamp, Priority priority,
+		      String renderedMessage, String threadName, String ndc,
+		      ThrowableInformation throwableInfo,
+		      LocationInfo locationInfo, ContextMap mdc) {
+    this.fqnOfCategoryClass = fqnOfCategoryClass;
+    this.category = category;
+    this.categoryName = category.getName();
+    this.timeStamp = timeStamp;
+    this.priority = priority;
+    this.renderedMessage = renderedMessage;
+    this.threadName = threadName;
+    this.ndc = ndc;
+    this.ndcLookupRequired = false;
+    this.throwableInfo = throwableInfo;
+    this.locationInfo = locationInfo;
+    this.mdc = mdc;
+  }
+
 
   /**
      Set the location information for this logging event. The collected
@@ -117,12 +172,43 @@ public class LoggingEvent implements java.io.Serializable {
    */
   public
   LocationInfo getLocationInformation() {
+    return getLocationInformation(false);
+  }
+
+  /**
+     Return the location information for this logging event, computing
+     it if needed. If <code>walkStack</code> is true, it is computed by
+     walking the stack frames, using the cache of {@link
+     LocationInfo#getCallerLocation}, instead of parsing the printed
+     stack trace. Either way the result is cached for future use.
+
+     @since 1.1 */
+  public
+  LocationInfo getLocationInformation(boolean walkStack) {
     if(locationInfo == null) {
-      locationInfo = new LocationInfo(new Throwable(), fqnOfCategoryClass);
+      Throwable t = new Throwable();
+      if(walkStack) {
+	locationInfo = LocationInfo.getCallerLocation(t, fqnOfCategoryClass);
+      }
+      if(locationInfo == null) {
+	locationInfo = new LocationInfo(t, fqnOfCategoryClass);
+      }
     }
     return locationInfo;
   }
 
+  /**
+     Returns true if the location information of this event is known,
+     that is if it was computed or given to the constructor, so that
+     {@link #getLocationInformation} returns it without walking the
+     stack of the current thread.
+
+     @since 1.1 */
+  public
+  boolean hasLocationInformation() {
+    return locationInfo != null;
+  }
+
 
   /**
      Return the message for this logging event. 
@@ -142,6 +228,48 @@ public class LoggingEvent implements java.io.Serializable {
     }
   }
 
+  /**
+     Returns the value of <code>key</code> in the mapped diagnostic
+     context of this event. Unless {@link #getMDCCopy} was called, the
+     context is that of the current thread.
+
+     <p>The mapped diagnostic context is not serialized.
+
+     @since 1.1 */
+  public
+  Object getMDC(String key) {
+    if(mdc == null) {
+      return MDC.get(key);
+    }
+    return mdc.get(key);
+  }
+
+  /**
+     Keep the mapped diagnostic context of the current thread in this
+     event, typically before it is handed to another thread. The
+     context is immutable, so this only copies a reference.
+
+     @since 1.1 */
+  public
+  void getMDCCopy() {
+    if(mdc == null) {
+      mdc = MDC.getContext();
+    }
+  }
+
+  /**
+     Returns the whole mapped diagnostic context of this event. Unless
+     {@link #getMDCCopy} was called, it is that of the current thread.
+
+     @since 1.1 */
+  public
+  ContextMap getMDCContext() {
+    if(mdc == null) {
+      return MDC.getContext();
+    }
+    return mdc;
+  }
+
   public
   String getNDC() {
     if(ndcLookupRequired) {
@@ -238,6 +366,7 @@ public class LoggingEvent implements java.io.Serializable {
 
     if(locationInfo == null)
       locationInfo = new LocationInfo(null, null);
+    mdc = ContextMap.EMPTY;
   }
 
   private
@@ -53,7 +53,7 @@ final public class RootCategory extends Category {
 		   new Throwable());
     }
     else {
-      this.priority = priority;
+      super.setPriority(priority);
     }
   }
 }
@@ -22,6 +22,16 @@ public class ThrowableInformation implements java.io.Serializable {
     this.throwable = throwable;
   }
 
+  /**
+     Instantiate from the string representation of a throwable, for
+     example one received from a remote process.
+
+     @since 1.1 */
+  public
+  ThrowableInformation(String[] rep) {
+    this.rep = rep;
+  }
+
   public
   Throwable getThrowable() {
     return throwable;
@@ -0,0 +1,222 @@
+package org.apache.log4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import org.apache.log4j.*;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   Unit test the rollover and the purge of the {@link
+   CompressingRollingFileAppender}.
+   @since 1.1 */
+public class UnitTestCRFA extends TestCase {
+
+  static Category cat = Category.getInstance("x");
+
+  File dir;
+
+  public UnitTestCRFA(String name) {
+    super(name);
+  }
+
+  protected
+  void setUp() {
+    dir = new File("crfa-" + getName());
+    clean();
+    dir.mkdir();
+  }
+
+  protected
+  void tearDown() {
+    clean();
+  }
+
+  void clean() {
+    String[] names = dir.list();
+    if(names != null) {
+      for(int i = 0; i < names.length; i++) {
+	new File(dir, names[i]).delete();
+      }
+    }
+    dir.delete();
+  }
+
+  void touch(String name) throws IOException {
+    FileOutputStream out = new FileOutputStream(new File(dir, name));
+    out.write(name.getBytes());
+    out.close();
+  }
+
+  boolean exists(String name) {
+    return new File(dir, name).exists();
+  }
+
+  CompressingRollingFileAppender newAppender(String datePattern) {
+    CompressingRollingFileAppender a = new CompressingRollingFileAppender();
+    a.setLayout(new PatternLayout("%m"));
+    a.setFile(new File(dir, "a.log").getPath());
+    a.setDatePattern(datePattern);
+    a.setCompress(false);
+    a.setMaxFileSize("0");
+    return a;
+  }
+
+  void log(Appender a, String msg) {
+    a.doAppend(new LoggingEvent("", cat, Priority.INFO, msg, null));
+  }
+
+  public
+  void testIsArchive() {
+    CompressingRollingFileAppender a = newAppender(null);
+    a.activateOptions();
+    Archiver archiver = a.archiver;
+    assertTrue(archiver.isArchive("a.log.1"));
+    assertTrue(archiver.isArchive("a.log.12.gz"));
+    assertTrue(!archiver.isArchive("a.log"));
+    assertTrue(!archiver.isArchive("a.log.gz"));
+    assertTrue(!archiver.isArchive("a.log."));
+    assertTrue(!archiver.isArchive("a.log.x"));
+    assertTrue(!archiver.isArchive("a.log.old.3"));
+    assertTrue(!archiver.isArchive("a.logx.3"));
+    assertTrue(!archiver.isArchive("a.log.2001-03-09.3"));
+    assertTrue(!archiver.isArchive("a.log.3.tmp"));
+    a.close();
+
+    a = newAppender("'.'yyyy-MM-dd");
+    a.activateOptions();
+    archiver = a.archiver;
+    assertTrue(archiver.isArchive("a.log.2001-03-09.1"));
+    assertTrue(archiver.isArchive("a.log.2001-03-09.7.gz"));
+    assertTrue(!archiver.isArchive("a.log.7"));
+    assertTrue(!archiver.isArchive("a.log.2001-13-09.1"));
+    assertTrue(!archiver.isArchive("a.log.2001-03.1"));
+    assertTrue(!archiver.isArchive("a.log.other.2001-03-09.1"));
+    a.close();
+  }
+
+  /**
+     The oldest archives are the lowest sequence numbers of the
+     earliest period, whatever their modification time.
+   */
+  public
+  void testPurgeBySequence() throws Exception {
+    String[] names = {"a.log.2001-03-10.2", "a.log.2001-03-10.1",
+		      "a.log.2001-03-09.2.gz", "a.log.2001-03-09.10",
+		      "a.log.2001-03-09.9"};
+    for(int i = 0; i < names.length; i++) {
+      touch(names[i]);
+      new File(dir, names[i]).setLastModified(1000000000L - i*1000);
+    }
+    touch("a.log.old.1");
+    touch("b.log.2001-03-09.1");
+
+    CompressingRollingFileAppender a = newAppender("'.'yyyy-MM-dd");
+    a.setMaxBackups(3);
+    a.activateOptions();
+    a.close();
+
+    assertTrue(!exists("a.log.2001-03-09.2.gz"));
+    assertTrue(!exists("a.log.2001-03-09.9"));
+    assertTrue(exists("a.log.2001-03-09.10"));
+    assertTrue(exists("a.log.2001-03-10.1"));
+    assertTrue(exists("a.log.2001-03-10.2"));
+    assertTrue(exists("a.log.old.1"));
+    assertTrue(exists("b.log.2001-03-09.1"));
+  }
+
+  /**
+     Rollover on size numbers the archives in order, and options set
+     before activateOptions is called again reach the archiver.
+   */
+  public
+  void testRollOverBySize() throws Exception {
+    CompressingRollingFileAppender a = newAppender(null);
+    a.setMaxFileSize("10");
+    a.activateOptions();
+    for(int i = 0; i < 5; i++) {
+      log(a, "0123456789");
+    }
+    a.setMaxBackups(2);
+    a.activateOptions();
+    a.close();
+
+    assertTrue(!exists("a.log.1"));
+    assertTrue(!exists("a.log.2"));
+    assertTrue(!exists("a.log.3"));
+    assertTrue(exists("a.log.4"));
+    assertTrue(exists("a.log.5"));
+    assertTrue(!exists("a.log.6"));
+  }
+
+  /**
+     After a restart the numbering goes on after the highest archive
+     left, so the new archive is not the first one purged.
+   */
+  public
+  void testSequenceAfterRestart() throws Exception {
+    touch("a.log.5");
+    touch("a.log.7.gz");
+    CompressingRollingFileAppender a = newAppender(null);
+    a.setMaxFileSize("10");
+    a.setMaxBackups(2);
+    a.activateOptions();
+    log(a, "0123456789");
+    a.close();
+
+    assertTrue(!exists("a.log.5"));
+    assertTrue(exists("a.log.7.gz"));
+    assertTrue(exists("a.log.8"));
+    assertTrue(!exists("a.log.1"));
+  }
+
+  /**
+     After a failed rename, the appender keeps on writing to its file
+     and tries again only once it grew by another MaxFileSize.
+   */
+  public
+  void testFailedRenameBacksOff() throws Exception {
+    CountingCRFA a = new CountingCRFA();
+    a.setLayout(new PatternLayout("%m"));
+    a.setFile(new File(dir, "a.log").getPath());
+    a.setCompress(false);
+    a.setMaxFileSize("100");
+    // the archives would go to the missing directory "a.log/x"
+    a.setDatePattern("'/x/'yyyy-MM-dd");
+    a.activateOptions();
+    for(int i = 0; i < 100; i++) {
+      log(a, "0123456789");
+    }
+    a.close();
+
+    assertEquals(new File(dir, "a.log").length(), 1000);
+    assertTrue("rolled over "+a.rollOvers+" times", a.rollOvers <= 10);
+  }
+
+  static class CountingCRFA extends CompressingRollingFileAppender {
+    int rollOvers;
+
+    public
+    void rollOver() {
+      rollOvers++;
+      super.rollOver();
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestCRFA("testIsArchive"));
+    suite.addTest(new UnitTestCRFA("testPurgeBySequence"));
+    suite.addTest(new UnitTestCRFA("testRollOverBySize"));
+    suite.addTest(new UnitTestCRFA("testFailedRenameBacksOff"));
+    suite.addTest(new UnitTestCRFA("testSequenceAfterRestart"));
+    return suite;
+  }
+}
@@ -0,0 +1,217 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.helpers.ContextMap;
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.NDC;
+import org.apache.log4j.MDC;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.util.Stack;
+
+
+/**
+   Unit test the {@link NDC} and the {@link MDC}: contexts are per
+   thread, inherited by child threads, and not changed by the changes
+   of another thread or of the context they were taken from.
+   @since 1.1 */
+public class UnitTestContext extends TestCase {
+  static Category cat = Category.getInstance("x.y");
+
+  public UnitTestContext(String name) {
+    super(name);
+  }
+
+  protected
+  void tearDown() {
+    NDC.clear();
+    MDC.clear();
+  }
+
+  /**
+     Run <code>r</code> in a new thread and wait for it.  */
+  void runInChild(Runnable r) throws InterruptedException {
+    Thread t = new Thread(r);
+    t.start();
+    t.join();
+  }
+
+  public
+  void testPushPop() {
+    assertTrue(NDC.get() == null);
+    assertEquals(NDC.pop(), "");
+    NDC.push("a");
+    NDC.push("b");
+    NDC.push("c");
+    assertEquals(NDC.get(), "a b c");
+    assertEquals(NDC.getDepth(), 3);
+    assertEquals(NDC.pop(), "c");
+    assertEquals(NDC.get(), "a b");
+    NDC.push("d");
+    NDC.setMaxDepth(1);
+    assertEquals(NDC.get(), "a");
+    assertEquals(NDC.getDepth(), 1);
+    NDC.remove();
+    assertTrue(NDC.get() == null);
+    assertEquals(NDC.getDepth(), 0);
+  }
+
+  /**
+     A child thread starts without a nested context. Once it inherits
+     the stack of its parent, each thread pushes and pops without
+     affecting the other.
+   */
+  public
+  void testNDCInherit() throws InterruptedException {
+    NDC.push("a");
+    NDC.push("b");
+    final Stack stack = NDC.cloneStack();
+    final String[] seen = new String[3];
+
+    runInChild(new Runnable() {
+	public
+	void run() {
+	  seen[0] = NDC.get();
+	  NDC.inherit(stack);
+	  NDC.push("c");
+	  seen[1] = NDC.get();
+	  NDC.pop();
+	  NDC.pop();
+	  seen[2] = NDC.get();
+	}
+      });
+    assertTrue(seen[0] == null);
+    assertEquals(seen[1], "a b c");
+    assertEquals(seen[2], "a");
+    assertEquals(NDC.get(), "a b");
+    assertEquals(NDC.getDepth(), 2);
+
+    NDC.pop();
+    runInChild(new Runnable() {
+	public
+	void run() {
+	  NDC.inherit(stack);
+	  seen[0] = NDC.get();
+	}
+      });
+    assertEquals(seen[0], "a b");
+  }
+
+  /**
+     A child thread inherits the mapped context of its parent when
+     created; later changes in either thread are not seen by the
+     other.
+   */
+  public
+  void testMDCInherit() throws InterruptedException {
+    MDC.put("user", "alice");
+    MDC.put("host", "h1");
+    final Object[] seen = new Object[3];
+
+    Thread child = new Thread() {
+	public
+	void run() {
+	  seen[0] = MDC.get("user");
+	  MDC.put("user", "bob");
+	  MDC.remove("host");
+	  seen[1] = MDC.get("user");
+	  seen[2] = MDC.get("host");
+	}
+      };
+    MDC.put("host", "h2");
+    child.start();
+    child.join();
+
+    assertEquals(seen[0], "alice");
+    assertEquals(seen[1], "bob");
+    assertTrue(seen[2] == null);
+    assertEquals(MDC.get("user"), "alice");
+    assertEquals(MDC.get("host"), "h2");
+  }
+
+  /**
+     An event keeps the context its thread had when
+     <code>getMDCCopy</code> was called, without copying it.
+   */
+  public
+  void testEventSnapshot() throws InterruptedException {
+    MDC.put("k", "1");
+    ContextMap context = MDC.getContext();
+    final LoggingEvent event = new LoggingEvent("", cat, Priority.INFO, "m", null);
+    event.getMDCCopy();
+    MDC.put("k", "2");
+    MDC.put("j", "3");
+
+    assertEquals(event.getMDC("k"), "1");
+    assertTrue(event.getMDC("j") == null);
+    assertEquals(context.get("k"), "1");
+    assertEquals(context.size(), 1);
+    assertTrue(MDC.getContext() != context);
+
+    final Object[] seen = new Object[1];
+    runInChild(new Runnable() {
+	public
+	void run() {
+	  MDC.clear();
+	  seen[0] = event.getMDC("k");
+	}
+      });
+    assertEquals(seen[0], "1");
+  }
+
+  /**
+     Changes that change nothing return the same map.
+   */
+  public
+  void testContextMap() {
+    ContextMap map = ContextMap.EMPTY.with("a", "1").with("b", "2");
+    assertTrue(map.with("a", map.get("a")) == map);
+    assertTrue(map.without("c") == map);
+    assertTrue(map.without("a").without("b") == ContextMap.EMPTY);
+    assertTrue(map.with("a", null).get("a") == null);
+    assertEquals(map.with("a", "3").get("a"), "3");
+    assertEquals(map.get("a"), "1");
+    assertEquals(map.size(), 2);
+  }
+
+  /**
+     A null key is rejected when put and never found, so it cannot
+     break later lookups.
+   */
+  public
+  void testNullKey() {
+    MDC.put(null, "x");
+    assertEquals(MDC.getContext().size(), 0);
+    MDC.put("a", "1");
+    assertTrue(MDC.get(null) == null);
+    MDC.remove(null);
+    assertEquals(MDC.get("a"), "1");
+
+    ContextMap map = ContextMap.EMPTY.with("a", "1");
+    assertTrue(map.get(null) == null);
+    assertTrue(map.without(null) == map);
+    try {
+      map.with(null, "x");
+      fail("Accepted a null key.");
+    }
+    catch(IllegalArgumentException e) {
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestContext("testPushPop"));
+    suite.addTest(new UnitTestContext("testNDCInherit"));
+    suite.addTest(new UnitTestContext("testMDCInherit"));
+    suite.addTest(new UnitTestContext("testEventSnapshot"));
+    suite.addTest(new UnitTestContext("testContextMap"));
+    suite.addTest(new UnitTestContext("testNullKey"));
+    return suite;
+  }
+}
@@ -0,0 +1,239 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.RootCategory;
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Priority;
+import org.apache.log4j.MDC;
+import org.apache.log4j.net.EventEncoder;
+import org.apache.log4j.net.EventDecoder;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+
+/**
+   Unit test the binary event format: what the {@link EventEncoder}
+   writes the {@link EventDecoder} reads back, and corrupt frames are
+   rejected.
+   @since 1.1 */
+public class UnitTestEventCodec extends TestCase {
+  static Category cat = Category.getInstance("x.y");
+
+  // String tags of the format.
+  static final int NULL = 0;
+  static final int CHUNKED = 4;
+
+  Hierarchy hierarchy;
+  ByteArrayOutputStream bytes;
+  DataOutputStream out;
+  DataInputStream in;
+  EventEncoder encoder;
+  EventDecoder decoder;
+
+  public UnitTestEventCodec(String name) {
+    super(name);
+  }
+
+  protected
+  void setUp() throws IOException {
+    hierarchy = new Hierarchy(new RootCategory(Priority.DEBUG));
+    bytes = new ByteArrayOutputStream();
+    out = new DataOutputStream(bytes);
+    encoder = new EventEncoder();
+    decoder = new EventDecoder();
+    encoder.start(out);
+  }
+
+  /**
+     Make the bytes written so far the input and read the header.  */
+  void startReading() throws IOException {
+    in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    decoder.start(in);
+  }
+
+  /**
+     Read the next frame and decode it from a stream holding just
+     that frame, as the server does.  */
+  LoggingEvent readFrame() throws IOException {
+    byte[] frame = new byte[in.readInt()];
+    in.readFully(frame);
+    return decoder.decode(new DataInputStream(new ByteArrayInputStream(frame)),
+			  hierarchy);
+  }
+
+  void assertSameEvent(LoggingEvent expected, LoggingEvent actual) {
+    assertEquals(expected.timeStamp, actual.timeStamp);
+    assertEquals(expected.priority, actual.priority);
+    assertEquals(expected.categoryName, actual.categoryName);
+    assertEquals(expected.getThreadName(), actual.getThreadName());
+    assertEquals(expected.getNDC(), actual.getNDC());
+    assertEquals(expected.getRenderedMessage(), actual.getRenderedMessage());
+    String[] lines = expected.getThrowableStrRep();
+    String[] actualLines = actual.getThrowableStrRep();
+    if(lines == null) {
+      assertTrue(actualLines == null);
+    } else {
+      assertEquals(lines.length, actualLines.length);
+      for(int i = 0; i < lines.length; i++) {
+	assertEquals(lines[i], actualLines[i]);
+      }
+    }
+  }
+
+  /**
+     Events, with interned names sent again, a throwable, a message
+     too long for one <code>writeUTF</code> and the location, read
+     back the same.
+   */
+  public
+  void testRoundTrip() throws IOException {
+    StringBuffer big = new StringBuffer();
+    for(int i = 0; i < 70000; i++) {
+      big.append((char) ('a' + i % 26));
+    }
+    LoggingEvent[] events = {
+      new LoggingEvent("", cat, Priority.INFO, "first", null),
+      new LoggingEvent("", cat, Priority.ERROR, "failed", new Exception("x")),
+      new LoggingEvent("", Category.getInstance("z"), Priority.WARN, null, null),
+      new LoggingEvent("", cat, Priority.DEBUG, big.toString(), null)
+    };
+    for(int i = 0; i < events.length; i++) {
+      encoder.encode(events[i], i == 0, out);
+    }
+
+    startReading();
+    for(int i = 0; i < events.length; i++) {
+      LoggingEvent event = readFrame();
+      assertSameEvent(events[i], event);
+      assertTrue(event.category.getHierarchy() == hierarchy);
+    }
+    assertEquals(in.available(), 0);
+  }
+
+  /**
+     The location is sent only when asked for, and is never computed
+     on the receiving side.
+   */
+  public
+  void testLocation() throws IOException {
+    LoggingEvent event = new LoggingEvent("", cat, Priority.INFO, "m", null);
+    String location = event.getLocationInformation().fullInfo;
+    encoder.encode(event, true, out);
+    encoder.encode(event, false, out);
+
+    startReading();
+    assertEquals(readFrame().getLocationInformation().fullInfo, location);
+    LocationInfo none = readFrame().getLocationInformation();
+    assertTrue(none.fullInfo == null);
+  }
+
+  /**
+     The mapped diagnostic context the event had when it was encoded
+     is sent, its values as strings.
+   */
+  public
+  void testMDC() throws IOException {
+    MDC.put("user", "alice");
+    MDC.put("n", new Integer(3));
+    LoggingEvent event = new LoggingEvent("", cat, Priority.INFO, "m", null);
+    encoder.encode(event, false, out);
+    MDC.clear();
+    encoder.encode(event, false, out);
+
+    startReading();
+    LoggingEvent first = readFrame();
+    MDC.put("user", "bob");
+    assertEquals(first.getMDC("user"), "alice");
+    assertEquals(first.getMDC("n"), "3");
+    assertEquals(first.getMDCContext().size(), 2);
+    assertEquals(readFrame().getMDCContext().size(), 0);
+    MDC.clear();
+  }
+
+  /**
+     Write the start of a frame body up to the throwable lines, with
+     all strings null.  */
+  void writeHead(DataOutputStream body) throws IOException {
+    body.writeLong(0);
+    body.writeInt(Priority.INFO.toInt());
+    for(int i = 0; i < 4; i++) {
+      body.writeByte(NULL);
+    }
+  }
+
+  void assertCorrupt(byte[] frame) throws IOException {
+    try {
+      decoder.decode(new DataInputStream(new ByteArrayInputStream(frame)),
+		     hierarchy);
+      fail("Decoded a corrupt frame.");
+    }
+    catch(StreamCorruptedException e) {
+    }
+  }
+
+  /**
+     A throwable line count larger than the frame could hold is
+     rejected before anything is allocated.
+   */
+  public
+  void testHugeLineCount() throws IOException {
+    bytes.reset();
+    writeHead(out);
+    out.writeInt(Integer.MAX_VALUE);
+    out.writeByte(NULL);
+    assertCorrupt(bytes.toByteArray());
+
+    bytes.reset();
+    writeHead(out);
+    out.writeInt(-2);
+    assertCorrupt(bytes.toByteArray());
+  }
+
+  /**
+     A chunked string with more chunks than the frame could hold is
+     rejected.
+   */
+  public
+  void testHugeChunkCount() throws IOException {
+    bytes.reset();
+    out.writeLong(0);
+    out.writeInt(Priority.INFO.toInt());
+    out.writeByte(NULL);
+    out.writeByte(NULL);
+    out.writeByte(NULL);
+    out.writeByte(CHUNKED);
+    out.writeInt(Integer.MAX_VALUE);
+    out.writeUTF("m");
+    assertCorrupt(bytes.toByteArray());
+
+    bytes.reset();
+    writeHead(out);
+    out.writeInt(1);
+    out.writeByte(CHUNKED);
+    out.writeInt(-1);
+    assertCorrupt(bytes.toByteArray());
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestEventCodec("testRoundTrip"));
+    suite.addTest(new UnitTestEventCodec("testLocation"));
+    suite.addTest(new UnitTestEventCodec("testMDC"));
+    suite.addTest(new UnitTestEventCodec("testHugeLineCount"));
+    suite.addTest(new UnitTestEventCodec("testHugeChunkCount"));
+    return suite;
+  }
+}
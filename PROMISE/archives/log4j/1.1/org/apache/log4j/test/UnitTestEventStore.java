@@ -0,0 +1,208 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.varia.EventStore;
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+   Unit test the {@link EventStore}: events spilled to the file read
+   back the same, a page at a time, and filtered views list the
+   matching events.
+   @since 1.1 */
+public class UnitTestEventStore extends TestCase {
+
+  static Category a = Category.getInstance("a");
+  static Category b = Category.getInstance("b");
+  static Priority[] PRIORITIES = {Priority.DEBUG, Priority.INFO,
+				  Priority.WARN, Priority.ERROR};
+
+  // The store reads pages of 256 events and caches 16 of them.
+  static final int PAGE_SIZE = 256;
+  static final int CACHED_PAGES = 16;
+
+  File file;
+  EventStore store;
+
+  public UnitTestEventStore(String name) {
+    super(name);
+  }
+
+  protected
+  void setUp() throws IOException {
+    file = new File("eventstore-" + getName());
+    store = new EventStore(file, 10);
+  }
+
+  protected
+  void tearDown() throws IOException {
+    store.close();
+  }
+
+  /**
+     Event <code>i</code> is of category a when <code>i</code> is
+     even, of b otherwise, and of the priority <code>i</code> modulo
+     4.  */
+  LoggingEvent event(int i) {
+    Category c = i % 2 == 0 ? a : b;
+    Throwable t = i % 100 == 0 ? new Exception("e"+i) : null;
+    return new LoggingEvent("", c, PRIORITIES[i % 4], "m"+i, t);
+  }
+
+  void add(int from, int to) throws IOException {
+    for(int i = from; i < to; i++) {
+      store.add(event(i));
+    }
+  }
+
+  void assertEvent(int i, LoggingEvent event) {
+    assertEquals(event.getRenderedMessage(), "m"+i);
+    assertEquals(event.priority, PRIORITIES[i % 4]);
+    assertEquals(event.categoryName, i % 2 == 0 ? "a" : "b");
+    assertEquals(event.getThreadName(), Thread.currentThread().getName());
+    if(i % 100 == 0) {
+      assertEquals(event.getThrowableStrRep()[0], "java.lang.Exception: e"+i);
+    } else {
+      assertTrue(event.getThrowableStrRep() == null);
+    }
+  }
+
+  /**
+     Every event reads back the same, whether it is still in memory or
+     read from the file, and in any order.
+   */
+  public
+  void testPaging() throws IOException {
+    int n = 3 * PAGE_SIZE + 5;
+    add(0, n);
+    assertEquals(store.size(), n);
+    for(int i = n - 1; i >= 0; i--) {
+      assertEvent(i, store.get(i));
+    }
+    for(int i = 0; i < n; i += 7) {
+      assertEvent(i, store.get(i));
+    }
+    try {
+      store.get(n);
+      fail("Returned a row past the end.");
+    }
+    catch(IndexOutOfBoundsException e) {
+    }
+  }
+
+  /**
+     Only the last events stay in memory, and only the last pages read
+     stay cached.
+   */
+  public
+  void testEviction() throws IOException {
+    LoggingEvent first = event(0);
+    store.add(first);
+    assertTrue(store.get(0) == first);
+    int n = (CACHED_PAGES + 2) * PAGE_SIZE;
+    add(1, n);
+    LoggingEvent last = event(n);
+    store.add(last);
+    assertTrue(store.get(n) == last);
+
+    LoggingEvent read = store.get(0);
+    assertTrue(read != first);
+    assertEvent(0, read);
+    assertTrue(store.get(1) == store.get(1));
+    assertTrue(store.get(0) == read);
+
+    for(int page = 1; page <= CACHED_PAGES; page++) {
+      store.get(page * PAGE_SIZE);
+    }
+    LoggingEvent again = store.get(0);
+    assertTrue(again != read);
+    assertEvent(0, again);
+  }
+
+  /**
+     The location is stored only for the events that already have it.
+   */
+  public
+  void testLocation() throws IOException {
+    LoggingEvent located = event(1);
+    String location = located.getLocationInformation().fullInfo;
+    store.add(located);
+    store.add(event(2));
+    add(3, 20);
+
+    assertEquals(store.get(0).getLocationInformation().fullInfo, location);
+    assertTrue(store.get(1).getLocationInformation().fullInfo == null);
+  }
+
+  void assertView(EventStore.View view, int size, Priority threshold,
+		  String category) throws IOException {
+    assertEquals(view.size(), size);
+    for(int i = 0; i < size; i++) {
+      LoggingEvent event = view.get(i);
+      if(i > 0) {
+	assertTrue(view.getRow(i) > view.getRow(i - 1));
+      }
+      if(threshold != null) {
+	assertTrue(event.priority.isGreaterOrEqual(threshold));
+      }
+      if(category != null) {
+	assertEquals(event.categoryName, category);
+      }
+    }
+  }
+
+  /**
+     Views filter by priority, by category or both, and take the
+     matching events added since when refreshed, including those of
+     categories that did not exist yet.
+   */
+  public
+  void testViews() throws IOException {
+    add(0, 100);
+    assertEquals(store.count(Priority.WARN), 25);
+    assertEquals(store.count("a"), 50);
+    assertEquals(store.count("c"), 0);
+
+    EventStore.View all = store.newView(null, null);
+    EventStore.View warn = store.newView(Priority.WARN, null);
+    EventStore.View b = store.newView(null, new String[] {"b"});
+    EventStore.View errorB = store.newView(Priority.ERROR, new String[] {"b"});
+    EventStore.View warnA = store.newView(Priority.WARN, new String[] {"a"});
+    EventStore.View c = store.newView(null, new String[] {"c"});
+    assertView(all, 100, null, null);
+    assertView(warn, 50, Priority.WARN, null);
+    assertView(b, 50, null, "b");
+    assertView(errorB, 25, Priority.ERROR, "b");
+    assertView(warnA, 25, Priority.WARN, "a");
+    assertView(c, 0, null, null);
+
+    add(100, 104);
+    store.add(new LoggingEvent("", Category.getInstance("c"), Priority.INFO,
+			       "c", null));
+    assertEquals(warn.refresh(), 2);
+    assertEquals(errorB.refresh(), 1);
+    assertEquals(c.refresh(), 1);
+    assertEquals(c.refresh(), 0);
+    assertView(warn, 52, Priority.WARN, null);
+    assertView(c, 1, null, "c");
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestEventStore("testPaging"));
+    suite.addTest(new UnitTestEventStore("testEviction"));
+    suite.addTest(new UnitTestEventStore("testLocation"));
+    suite.addTest(new UnitTestEventStore("testViews"));
+    return suite;
+  }
+}
@@ -0,0 +1,374 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.jdbc.JDBCAppender;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Vector;
+
+
+/**
+   Unit test the {@link JDBCAppender}: batching, the BatchSize and
+   FlushInterval thresholds, and failing batches. The database is a
+   fake one in memory, built from dynamic proxies, that records the
+   rows committed and the size of each batch.
+   @since 1.1 */
+public class UnitTestJDBCAppender extends TestCase {
+  static Category cat = Category.getInstance("x.y");
+
+  static String SQL = "INSERT INTO LOG (PRIORITY, CATEGORY, MESSAGE) VALUES (?, ?, ?)";
+
+  FakeDatabase db;
+  TestAppender appender;
+
+  public UnitTestJDBCAppender(String name) {
+    super(name);
+  }
+
+  protected
+  void setUp() {
+    db = new FakeDatabase();
+    appender = new TestAppender(db);
+    appender.setName("jdbc");
+    appender.setURL("jdbc:fake");
+    appender.setSql(SQL);
+    appender.setColumns("priority,category,message");
+  }
+
+  protected
+  void tearDown() {
+    appender.close();
+  }
+
+  void log(int count) {
+    for(int i = 0; i < count; i++) {
+      appender.doAppend(new LoggingEvent("", cat, Priority.INFO, "m'"+i, null));
+    }
+  }
+
+  /**
+     Wait up to 5 seconds for <code>rows</code> rows to be written or
+     to fail.  */
+  void waitForRows(long rows) throws InterruptedException {
+    for(int i = 0; i < 500; i++) {
+      if(appender.getRowCount() + appender.getFailedCount() >= rows) {
+	return;
+      }
+      Thread.sleep(10);
+    }
+    fail("Waited for "+rows+" rows, "+appender.getRowCount()+" written.");
+  }
+
+  /**
+     Nothing is written until BatchSize events wait, then they are
+     written in one batch; the rest are written when the appender is
+     closed. The fields are bound in the order of the Columns option.
+   */
+  public
+  void testBatchSize() throws Exception {
+    appender.setBatchSize(10);
+    appender.setFlushInterval(60000);
+    appender.activateOptions();
+
+    log(9);
+    Thread.sleep(100);
+    assertEquals(appender.getRowCount(), 0);
+    assertEquals(appender.getPendingCount(), 9);
+
+    log(1);
+    waitForRows(10);
+    assertEquals(appender.getRowCount(), 10);
+    assertEquals(appender.getPendingCount(), 0);
+
+    log(5);
+    appender.close();
+    assertEquals(appender.getRowCount(), 15);
+    assertEquals(appender.getFailedCount(), 0);
+    assertEquals(db.batchSizes.size(), 2);
+    assertEquals(db.batchSizes.elementAt(0), new Integer(10));
+    assertEquals(db.batchSizes.elementAt(1), new Integer(5));
+    assertEquals(db.rows.size(), 15);
+
+    Object[] row = (Object[]) db.rows.elementAt(7);
+    assertEquals(row[0], "INFO");
+    assertEquals(row[1], "x.y");
+    assertEquals(row[2], "m'7");
+    assertEquals(db.sql, SQL);
+    assertEquals(db.opened, 1);
+    assertEquals(db.closed, 1);
+  }
+
+  /**
+     Events are written after FlushInterval milliseconds even if the
+     batch is not full.
+   */
+  public
+  void testFlushInterval() throws Exception {
+    appender.setBatchSize(100);
+    appender.setFlushInterval(50);
+    appender.activateOptions();
+
+    log(3);
+    waitForRows(3);
+    assertEquals(appender.getRowCount(), 3);
+    assertEquals(appender.getPendingCount(), 0);
+    assertEquals(db.batchSizes.size(), 1);
+    assertEquals(db.batchSizes.elementAt(0), new Integer(3));
+  }
+
+  /**
+     A failing batch is rolled back, counted, reported to the error
+     handler and dropped; the next batch uses a new connection.
+   */
+  public
+  void testFailedBatch() throws Exception {
+    RecordingErrorHandler eh = new RecordingErrorHandler();
+    appender.setErrorHandler(eh);
+    appender.setBatchSize(5);
+    appender.setFlushInterval(60000);
+    appender.activateOptions();
+
+    db.failures = 1;
+    log(5);
+    waitForRows(5);
+    assertEquals(appender.getFailedCount(), 5);
+    assertEquals(appender.getRowCount(), 0);
+    assertEquals(db.rows.size(), 0);
+    assertEquals(db.rolledBack, 1);
+    assertEquals(eh.errorCode, ErrorCode.FLUSH_FAILURE);
+    assertTrue(eh.exception instanceof SQLException);
+
+    log(5);
+    appender.close();
+    assertEquals(appender.getRowCount(), 5);
+    assertEquals(appender.getFailedCount(), 5);
+    assertEquals(db.rows.size(), 5);
+    assertEquals(db.opened, 2);
+    assertEquals(db.closed, 2);
+  }
+
+  /**
+     A batch failing on a RuntimeException is dropped like one failing
+     on an SQLException, and the flush thread goes on.
+   */
+  public
+  void testRuntimeFailure() throws Exception {
+    RecordingErrorHandler eh = new RecordingErrorHandler();
+    appender.setErrorHandler(eh);
+    appender.setBatchSize(5);
+    appender.setFlushInterval(60000);
+    appender.activateOptions();
+
+    db.runtimeFailures = 1;
+    log(5);
+    waitForRows(5);
+    assertEquals(appender.getFailedCount(), 5);
+    assertTrue(eh.exception instanceof RuntimeException);
+
+    log(5);
+    appender.close();
+    assertEquals(appender.getRowCount(), 5);
+    assertEquals(db.rows.size(), 5);
+  }
+
+  /**
+     Once the flush thread died, logging threads drop their events
+     instead of waiting for room in a full buffer, until the appender
+     is activated again.
+   */
+  public
+  void testFlusherDies() throws Exception {
+    RecordingErrorHandler eh = new RecordingErrorHandler();
+    appender.setErrorHandler(eh);
+    appender.setBatchSize(5);
+    appender.setBufferSize(5);
+    appender.setFlushInterval(60000);
+    appender.crash = true;
+    appender.activateOptions();
+
+    log(5);
+    waitForRows(5);
+    log(20);
+    assertEquals(appender.getPendingCount(), 0);
+    assertTrue(eh.message != null);
+
+    appender.crash = false;
+    appender.activateOptions();
+    log(5);
+    appender.close();
+    assertEquals(appender.getRowCount(), 5);
+  }
+
+  /**
+     An appender that was not activated reports an error and drops
+     the event.
+   */
+  public
+  void testNotActivated() {
+    RecordingErrorHandler eh = new RecordingErrorHandler();
+    appender.setErrorHandler(eh);
+    log(1);
+    assertTrue(eh.message != null);
+    assertEquals(appender.getPendingCount(), 0);
+    assertEquals(db.opened, 0);
+  }
+
+  static class TestAppender extends JDBCAppender {
+    FakeDatabase db;
+    volatile boolean crash;
+
+    TestAppender(FakeDatabase db) {
+      this.db = db;
+    }
+
+    protected
+    Connection getConnection() {
+      if(crash) {
+	throw new Error("Fake crash.");
+      }
+      return db.connect();
+    }
+  }
+
+  static class RecordingErrorHandler implements ErrorHandler {
+    String message;
+    Exception exception;
+    int errorCode = -1;
+
+    public
+    void error(String message, Exception e, int errorCode) {
+      this.message = message;
+      this.exception = e;
+      this.errorCode = errorCode;
+    }
+
+    public
+    void error(String message) {
+      this.message = message;
+    }
+
+    public
+    void activateOptions() {
+    }
+
+    public
+    String[] getOptionStrings() {
+      return new String[0];
+    }
+
+    public
+    void setOption(String option, String value) {
+    }
+  }
+
+  /**
+     A database in memory understanding just what the JDBCAppender
+     uses: one prepared statement, batches and transactions. Its
+     fields are guarded by the instance.  */
+  static class FakeDatabase implements InvocationHandler {
+    Vector rows = new Vector();
+    Vector batchSizes = new Vector();
+    String sql;
+    int opened;
+    int closed;
+    int rolledBack;
+    int failures;
+    int runtimeFailures;
+
+    Vector uncommitted = new Vector();
+    Vector batch = new Vector();
+    Object[] row = new Object[3];
+
+    synchronized
+    Connection connect() {
+      opened++;
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+						 new Class[] {Connection.class},
+						 this);
+    }
+
+    public
+    synchronized
+    Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if(name.equals("prepareStatement")) {
+	sql = (String) args[0];
+	return Proxy.newProxyInstance(getClass().getClassLoader(),
+				      new Class[] {PreparedStatement.class},
+				      this);
+      } else if(name.equals("setString") || name.equals("setTimestamp")) {
+	row[((Integer) args[0]).intValue() - 1] = args[1];
+      } else if(name.equals("setNull")) {
+	row[((Integer) args[0]).intValue() - 1] = null;
+      } else if(name.equals("addBatch")) {
+	batch.addElement(row.clone());
+      } else if(name.equals("executeBatch")) {
+	if(failures > 0) {
+	  failures--;
+	  batch.removeAllElements();
+	  throw new SQLException("Fake failure.");
+	}
+	if(runtimeFailures > 0) {
+	  runtimeFailures--;
+	  batch.removeAllElements();
+	  throw new IllegalStateException("Fake failure.");
+	}
+	int[] counts = new int[batch.size()];
+	for(int i = 0; i < counts.length; i++) {
+	  counts[i] = 1;
+	  uncommitted.addElement(batch.elementAt(i));
+	}
+	batchSizes.addElement(new Integer(counts.length));
+	batch.removeAllElements();
+	return counts;
+      } else if(name.equals("commit")) {
+	for(int i = 0; i < uncommitted.size(); i++) {
+	  rows.addElement(uncommitted.elementAt(i));
+	}
+	uncommitted.removeAllElements();
+      } else if(name.equals("rollback")) {
+	rolledBack++;
+	uncommitted.removeAllElements();
+      } else if(name.equals("close") &&
+		method.getDeclaringClass() == Connection.class) {
+	closed++;
+      }
+
+      Class type = method.getReturnType();
+      if(type == Boolean.TYPE) {
+	return Boolean.FALSE;
+      } else if(type == Integer.TYPE) {
+	return new Integer(0);
+      } else if(type.isPrimitive() && type != Void.TYPE) {
+	throw new UnsupportedOperationException(name);
+      }
+      return null;
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestJDBCAppender("testBatchSize"));
+    suite.addTest(new UnitTestJDBCAppender("testFlushInterval"));
+    suite.addTest(new UnitTestJDBCAppender("testFailedBatch"));
+    suite.addTest(new UnitTestJDBCAppender("testRuntimeFailure"));
+    suite.addTest(new UnitTestJDBCAppender("testFlusherDies"));
+    suite.addTest(new UnitTestJDBCAppender("testNotActivated"));
+    return suite;
+  }
+}
@@ -0,0 +1,123 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.RootCategory;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Priority;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+
+/**
+   Unit test the caller location information: walking the stack
+   frames finds the same location as parsing the printed stack trace,
+   and is only used by the appenders that ask for it.
+   @since 1.1 */
+public class UnitTestLocationInfo extends TestCase {
+  static Category cat = Category.getInstance("x");
+
+  public UnitTestLocationInfo(String name) {
+    super(name);
+  }
+
+  void assertSameLocation(LocationInfo expected, LocationInfo actual) {
+    assertEquals(expected.getClassName(), actual.getClassName());
+    assertEquals(expected.getMethodName(), actual.getMethodName());
+    assertEquals(expected.getFileName(), actual.getFileName());
+    assertEquals(expected.getLineNumber(), actual.getLineNumber());
+    assertEquals(expected.fullInfo, actual.fullInfo);
+  }
+
+  /**
+     Both ways find the line calling the category class.
+   */
+  public
+  void testStackWalk() {
+    LocationInfo[] li = {Caller.locate(false), Caller.locate(true)};
+    assertEquals(li[0].getClassName(), UnitTestLocationInfo.class.getName());
+    assertEquals(li[0].getMethodName(), "testStackWalk");
+    assertEquals(li[0].getFileName(), "UnitTestLocationInfo.java");
+    assertSameLocation(li[0], li[1]);
+  }
+
+  /**
+     The location found by walking the stack is cached per call site.
+   */
+  public
+  void testCallSiteCache() {
+    LocationInfo[] li = new LocationInfo[2];
+    for(int i = 0; i < li.length; i++) {
+      li[i] = Caller.locate(true);
+    }
+    assertTrue(li[0] == li[1]);
+    assertTrue(Caller.locate(true) != li[0]);
+  }
+
+  /**
+     The StackWalkLocation option of an appender does not make the
+     location computed for the other appenders.
+   */
+  public
+  void testPerAppender() {
+    Hierarchy h = new Hierarchy(new RootCategory(Priority.DEBUG));
+    Category c = h.getInstance("a");
+    RecordingAppender plain = new RecordingAppender();
+    RecordingAppender walking = new RecordingAppender();
+    walking.setStackWalkLocation(true);
+    c.addAppender(plain);
+    c.addAppender(walking);
+    c.info("m");
+    assertTrue(!plain.hadLocation);
+    assertTrue(walking.hadLocation);
+    assertEquals(walking.location.getMethodName(), "testPerAppender");
+  }
+
+  /**
+     Stands for the category class; the location found is the line
+     that calls {@link #locate}. */
+  static class Caller {
+    static
+    LocationInfo locate(boolean walkStack) {
+      LoggingEvent event = new LoggingEvent(Caller.class.getName(), cat,
+					    Priority.INFO, "m", null);
+      return event.getLocationInformation(walkStack);
+    }
+  }
+
+  static class RecordingAppender extends AppenderSkeleton {
+    boolean hadLocation;
+    LocationInfo location;
+
+    public
+    void append(LoggingEvent event) {
+      hadLocation = event.hasLocationInformation();
+      if(hadLocation) {
+	location = event.getLocationInformation();
+      }
+    }
+
+    public
+    void close() {
+    }
+
+    public
+    boolean requiresLayout() {
+      return false;
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestLocationInfo("testStackWalk"));
+    suite.addTest(new UnitTestLocationInfo("testCallSiteCache"));
+    suite.addTest(new UnitTestLocationInfo("testPerAppender"));
+    return suite;
+  }
+}
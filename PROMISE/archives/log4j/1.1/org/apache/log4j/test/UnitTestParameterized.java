@@ -0,0 +1,201 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootCategory;
+import org.apache.log4j.helpers.FormattedMessage;
+import org.apache.log4j.varia.DenyAllFilter;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Priority;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.util.Vector;
+
+
+/**
+   Unit test the parameterized logging methods of {@link Category},
+   such as {@link Category#debugf}, and the thresholds the categories
+   cache.
+   @since 1.1 */
+public class UnitTestParameterized extends TestCase {
+
+  Hierarchy h;
+  Category root;
+  Category cat;
+  RecordingAppender appender;
+
+  public UnitTestParameterized(String name) {
+    super(name);
+  }
+
+  protected
+  void setUp() {
+    h = new Hierarchy(new RootCategory(Priority.DEBUG));
+    root = h.getRoot();
+    cat = h.getInstance("a.b");
+    appender = new RecordingAppender();
+    root.addAppender(appender);
+  }
+
+  String lastMessage() {
+    LoggingEvent event = (LoggingEvent) appender.events.lastElement();
+    return event.getRenderedMessage();
+  }
+
+  /**
+     Each method logs with its priority and formats its arguments.
+   */
+  public
+  void testFormat() {
+    Object[] params = {"x", new Integer(2)};
+    cat.debugf("d {0} {1}", params);
+    assertEquals(lastMessage(), "d x 2");
+    cat.infof("i {0} {1}", params);
+    assertEquals(lastMessage(), "i x 2");
+    cat.warnf("w {0} {1}", params);
+    assertEquals(lastMessage(), "w x 2");
+    cat.errorf("e {0} {1}", params);
+    assertEquals(lastMessage(), "e x 2");
+    cat.fatalf("f {0} {1}", params);
+    assertEquals(lastMessage(), "f x 2");
+    Exception e = new Exception();
+    cat.log(Priority.WARN, "l {0}", params, e);
+    assertEquals(lastMessage(), "l x");
+
+    Priority[] expected = {Priority.DEBUG, Priority.INFO, Priority.WARN,
+			   Priority.ERROR, Priority.FATAL, Priority.WARN};
+    assertEquals(appender.events.size(), expected.length);
+    for(int i = 0; i < expected.length; i++) {
+      LoggingEvent event = (LoggingEvent) appender.events.elementAt(i);
+      assertEquals(event.priority, expected[i]);
+      assertTrue(event.getMessage() instanceof FormattedMessage);
+    }
+    LoggingEvent last = (LoggingEvent) appender.events.lastElement();
+    assertTrue(last.getThrowableInformation().getThrowable() == e);
+  }
+
+  /**
+     Invalid patterns and missing arguments log the pattern as is, and
+     a null second argument still selects the Throwable methods.
+   */
+  public
+  void testDegenerate() {
+    cat.infof("bad {x", new Object[] {"y"});
+    assertEquals(lastMessage(), "bad {x");
+    cat.infof("none {0}", null);
+    assertEquals(lastMessage(), "none {0}");
+    cat.error("plain {0}", null);
+    assertEquals(lastMessage(), "plain {0}");
+    LoggingEvent event = (LoggingEvent) appender.events.lastElement();
+    assertTrue(event.getMessage() instanceof String);
+  }
+
+  /**
+     The arguments are not formatted for requests below the threshold,
+     nor for events that no appender writes.
+   */
+  public
+  void testDeferred() {
+    Counter counter = new Counter();
+    Object[] params = {counter};
+
+    cat.setPriority(Priority.INFO);
+    cat.debugf("{0}", params);
+    assertEquals(appender.events.size(), 0);
+
+    appender.addFilter(new DenyAllFilter());
+    cat.infof("{0}", params);
+    assertEquals(appender.events.size(), 0);
+    assertEquals(counter.count, 0);
+
+    appender.clearFilters();
+    cat.infof("{0}", params);
+    assertEquals(counter.count, 0);
+    assertEquals(lastMessage(), "1");
+    assertEquals(lastMessage(), "1");
+    assertEquals(counter.count, 1);
+  }
+
+  /**
+     Cached thresholds follow the changes of priorities, of the
+     disable threshold and of the structure of the hierarchy.
+   */
+  public
+  void testThreshold() {
+    assertTrue(cat.isDebugEnabled());
+    root.setPriority(Priority.WARN);
+    assertTrue(!cat.isInfoEnabled());
+    assertTrue(cat.isEnabledFor(Priority.WARN));
+
+    Category a = h.getInstance("a");
+    assertTrue(!cat.isInfoEnabled());
+    a.setPriority(Priority.DEBUG);
+    assertTrue(cat.isDebugEnabled());
+    assertTrue(!root.isInfoEnabled());
+
+    h.disableInfo();
+    assertTrue(!cat.isInfoEnabled());
+    assertTrue(cat.isEnabledFor(Priority.WARN));
+    h.enableAll();
+    assertTrue(cat.isDebugEnabled());
+
+    Category xy = h.getInstance("x.y");
+    assertTrue(!xy.isInfoEnabled());
+    Category x = h.getInstance("x");
+    assertTrue(!xy.isInfoEnabled());
+    x.setPriority(Priority.DEBUG);
+    assertTrue(xy.isDebugEnabled());
+    x.setPriority(null);
+    assertTrue(!xy.isInfoEnabled());
+
+    h.resetConfiguration();
+    assertTrue(a.getPriority() == null);
+    root.setPriority(Priority.ERROR);
+    assertTrue(!xy.isEnabledFor(Priority.WARN));
+    assertTrue(xy.isEnabledFor(Priority.ERROR));
+  }
+
+  /**
+     Counts how many times it is converted to a string. */
+  static class Counter {
+    int count;
+
+    public
+    String toString() {
+      return String.valueOf(++count);
+    }
+  }
+
+  static class RecordingAppender extends AppenderSkeleton {
+    Vector events = new Vector();
+
+    public
+    void append(LoggingEvent event) {
+      events.addElement(event);
+    }
+
+    public
+    void close() {
+    }
+
+    public
+    boolean requiresLayout() {
+      return false;
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestParameterized("testFormat"));
+    suite.addTest(new UnitTestParameterized("testDegenerate"));
+    suite.addTest(new UnitTestParameterized("testDeferred"));
+    suite.addTest(new UnitTestParameterized("testThreshold"));
+    return suite;
+  }
+}
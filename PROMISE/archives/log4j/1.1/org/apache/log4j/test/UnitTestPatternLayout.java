@@ -0,0 +1,105 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+import java.io.StringWriter;
+
+
+/**
+   Unit test the {@link PatternLayout#format(LoggingEvent,
+   java.io.Writer)} path.
+   @since 1.1 */
+public class UnitTestPatternLayout extends TestCase {
+  static Category cat = Category.getInstance("x.y");
+
+  static String PATTERN = "%-5p [%c] %x - %m;";
+
+  public UnitTestPatternLayout(String name) {
+    super(name);
+  }
+
+  LoggingEvent event(String msg) {
+    return new LoggingEvent("", cat, Priority.WARN, msg, null);
+  }
+
+  /**
+     The Writer path writes exactly what format(LoggingEvent)
+     returns, for messages shorter and longer than the buffers.
+   */
+  public
+  void testSameAsString() throws Exception {
+    PatternLayout layout = new PatternLayout(PATTERN);
+    StringBuffer msg = new StringBuffer();
+    for(int i = 0; i < 3000; i += 7) {
+      msg.append("0123456");
+      LoggingEvent e = event(msg.toString());
+      StringWriter sw = new StringWriter();
+      layout.format(e, sw);
+      assertEquals(sw.toString(), layout.format(e));
+    }
+  }
+
+  /**
+     Events formatted one after the other do not leak characters
+     into each other, including after a long one.
+   */
+  public
+  void testSuccessiveEvents() throws Exception {
+    PatternLayout layout = new PatternLayout("%m;");
+    StringBuffer big = new StringBuffer();
+    for(int i = 0; i < 2000; i++) {
+      big.append('x');
+    }
+    StringWriter sw = new StringWriter();
+    layout.format(event("a"), sw);
+    layout.format(event(big.toString()), sw);
+    layout.format(event("b"), sw);
+    assertEquals(sw.toString(), "a;" + big + ";b;");
+  }
+
+  /**
+     A subclass overriding format(LoggingEvent) is honoured by a
+     WriterAppender, which formats through the Writer path.
+   */
+  public
+  void testOverriddenFormat() {
+    StringWriter sw = new StringWriter();
+    WriterAppender appender = new WriterAppender(new UpperCaseLayout("%m"), sw);
+    appender.doAppend(event("hello"));
+    assertEquals(sw.toString(), "HELLO");
+
+    sw = new StringWriter();
+    appender = new WriterAppender(new PatternLayout("%m"), sw);
+    appender.doAppend(event("hello"));
+    assertEquals(sw.toString(), "hello");
+  }
+
+  static class UpperCaseLayout extends PatternLayout {
+    UpperCaseLayout(String pattern) {
+      super(pattern);
+    }
+
+    public
+    String format(LoggingEvent event) {
+      return super.format(event).toUpperCase();
+    }
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestPatternLayout("testSameAsString"));
+    suite.addTest(new UnitTestPatternLayout("testSuccessiveEvents"));
+    suite.addTest(new UnitTestPatternLayout("testOverriddenFormat"));
+    return suite;
+  }
+}
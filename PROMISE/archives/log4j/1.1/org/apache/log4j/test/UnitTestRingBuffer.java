@@ -0,0 +1,232 @@
+package org.apache.log4j.test;
+
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.RingBufferAppender;
+
+import org.apache.log4j.helpers.RingBuffer;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.framework.Test;
+
+
+/**
+   Unit test the {@link RingBuffer}.
+   @since 1.1 */
+public class UnitTestRingBuffer extends TestCase {
+  static Category cat = Category.getInstance("x");
+
+  static int MAX = 1000;
+
+  static LoggingEvent[] e = new LoggingEvent[MAX];
+
+  {
+    for (int i = 0; i < MAX; i++) {
+      e[i] =  new LoggingEvent("", cat, Priority.DEBUG, "e"+i, null);
+    }
+  }
+
+
+  public UnitTestRingBuffer(String name) {
+    super(name);
+  }
+
+
+  public
+  void testCapacity() {
+    assertEquals(new RingBuffer(1).getCapacity(), 1);
+    assertEquals(new RingBuffer(2).getCapacity(), 2);
+    assertEquals(new RingBuffer(3).getCapacity(), 4);
+    assertEquals(new RingBuffer(1000).getCapacity(), 1024);
+    try {
+      new RingBuffer(0);
+      fail("Expected an IllegalArgumentException.");
+    } catch(IllegalArgumentException ex) {
+    }
+  }
+
+  /**
+     Pattern: +++++..-----.. around the ring, with batches of every
+     size.
+   */
+  public
+  void testOfferDrain() {
+    for(int size = 1; size <= 32; size *= 2) {
+      for(int batchSize = 1; batchSize <= 2*size; batchSize++) {
+	RingBuffer rb = new RingBuffer(size);
+	LoggingEvent[] batch = new LoggingEvent[batchSize];
+	assertEquals(rb.drainTo(batch), 0);
+
+	int in = 0;
+	int out = 0;
+	for(int round = 0; round < 4; round++) {
+	  for(int i = 0; i < size; i++) {
+	    assertTrue(rb.offer(e[in++]));
+	    assertEquals(rb.length(), in - out);
+	  }
+	  assertTrue(!rb.offer(e[in]));
+	  assertEquals(rb.length(), size);
+
+	  while(out < in) {
+	    int n = rb.drainTo(batch);
+	    assertEquals(n, Math.min(batchSize, in - out));
+	    for(int i = 0; i < n; i++) {
+	      assertSame(batch[i], e[out++]);
+	    }
+	    assertEquals(rb.length(), in - out);
+	  }
+	  assertEquals(rb.drainTo(batch), 0);
+	}
+      }
+    }
+  }
+
+  /**
+     A producer waiting for room is released by the consumer.
+   */
+  public
+  void testPutWaitsForRoom() throws Exception {
+    int[] strategies = {RingBuffer.BLOCKING, RingBuffer.SLEEPING,
+			RingBuffer.YIELDING};
+    for(int s = 0; s < strategies.length; s++) {
+      final RingBuffer rb = new RingBuffer(2);
+      assertTrue(rb.offer(e[0]));
+      assertTrue(rb.offer(e[1]));
+
+      Producer p = new Producer(rb, e[2], strategies[s]);
+      p.start();
+      Thread.sleep(50);
+      assertTrue(p.isAlive());
+
+      LoggingEvent[] batch = new LoggingEvent[1];
+      assertEquals(rb.drainTo(batch), 1);
+      assertSame(batch[0], e[0]);
+      p.join(5000);
+      assertTrue(!p.isAlive());
+      assertTrue(p.result);
+      assertEquals(rb.length(), 2);
+    }
+  }
+
+  /**
+     Closing a full buffer releases its waiting producers, and later
+     producers do not wait at all.
+   */
+  public
+  void testPutAfterClose() throws Exception {
+    int[] strategies = {RingBuffer.BLOCKING, RingBuffer.SLEEPING,
+			RingBuffer.YIELDING};
+    for(int s = 0; s < strategies.length; s++) {
+      RingBuffer rb = new RingBuffer(1);
+      assertTrue(rb.offer(e[0]));
+
+      Producer p = new Producer(rb, e[1], strategies[s]);
+      p.start();
+      Thread.sleep(50);
+      assertTrue(p.isAlive());
+
+      rb.close();
+      assertTrue(rb.isClosed());
+      p.join(5000);
+      assertTrue(!p.isAlive());
+      assertTrue(!p.result);
+
+      assertTrue(!rb.put(e[2], strategies[s]));
+      assertEquals(rb.length(), 1);
+    }
+  }
+
+  /**
+     Many producers, one consumer: every event arrives, and the events
+     of each producer arrive in order.
+   */
+  public
+  void testManyProducers() throws Exception {
+    final int producers = 4;
+    final int perProducer = MAX / producers;
+    final RingBuffer rb = new RingBuffer(16);
+
+    Thread[] threads = new Thread[producers];
+    for(int t = 0; t < producers; t++) {
+      final int first = t * perProducer;
+      threads[t] = new Thread() {
+	  public void run() {
+	    for(int i = 0; i < perProducer; i++) {
+	      rb.put(e[first + i], RingBuffer.SLEEPING);
+	    }
+	  }
+	};
+      threads[t].start();
+    }
+
+    int[] next = new int[producers];
+    LoggingEvent[] batch = new LoggingEvent[8];
+    int received = 0;
+    while(received < producers * perProducer) {
+      int n = rb.drainTo(batch);
+      if(n == 0) {
+	rb.awaitEvents(RingBuffer.BLOCKING);
+	continue;
+      }
+      for(int i = 0; i < n; i++) {
+	int index = Integer.parseInt(((String) batch[i].getMessage()).substring(1));
+	int t = index / perProducer;
+	assertEquals(index, t * perProducer + next[t]);
+	next[t]++;
+      }
+      received += n;
+    }
+    for(int t = 0; t < producers; t++) {
+      threads[t].join();
+      assertEquals(next[t], perProducer);
+    }
+    assertEquals(rb.length(), 0);
+  }
+
+  static class Producer extends Thread {
+    RingBuffer rb;
+    LoggingEvent event;
+    int waitStrategy;
+    volatile boolean result;
+
+    Producer(RingBuffer rb, LoggingEvent event, int waitStrategy) {
+      this.rb = rb;
+      this.event = event;
+      this.waitStrategy = waitStrategy;
+    }
+
+    public
+    void run() {
+      result = rb.put(event, waitStrategy);
+    }
+  }
+
+  /**
+     An event appended after close, by a thread that raced with it,
+     does not start a dispatcher.
+   */
+  public
+  void testAppendAfterClose() {
+    RingBufferAppender appender = new RingBufferAppender();
+    int threads = Thread.activeCount();
+    appender.close();
+    appender.append(e[0]);
+    appender.activateOptions();
+    assertEquals(Thread.activeCount(), threads);
+  }
+
+  public
+  static
+  Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new UnitTestRingBuffer("testCapacity"));
+    suite.addTest(new UnitTestRingBuffer("testOfferDrain"));
+    suite.addTest(new UnitTestRingBuffer("testPutWaitsForRoom"));
+    suite.addTest(new UnitTestRingBuffer("testPutAfterClose"));
+    suite.addTest(new UnitTestRingBuffer("testManyProducers"));
+    suite.addTest(new UnitTestRingBuffer("testAppendAfterClose"));
+    return suite;
+  }
+}
@@ -0,0 +1,595 @@
+package org.apache.log4j.varia;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Priority;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootCategory;
+import org.apache.log4j.spi.ThrowableInformation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+   A store of received logging events for log viewers, which keeps
+   only the most recent events in memory and spills older ones to a
+   local file.
+
+   <p>Events are numbered in the order they were added. For each event
+   the store keeps its priority and category in memory, together with
+   the list of events of each priority and of each category, so that a
+   filtered {@link View} of millions of events is built without reading
+   a single event back. Events are read from the file only when asked
+   for, a page of consecutive events at a time, and the last pages read
+   are cached, so that a table model can fetch its visible rows lazily
+   as the user scrolls.
+
+   <p>About twenty bytes of memory are used per event, plus the events
+   kept in memory and the cached pages. All methods are thread safe.
+
+   <p>The location information of an event is stored only if the
+   event already has it, see {@link
+   LoggingEvent#hasLocationInformation}; events received from a remote
+   process carry it when the sender was asked to send it. It is never
+   computed when an event is added, which would be costly and, on
+   another thread than the one that logged the event, wrong.
+
+   @since 1.1 */
+public class EventStore {
+
+  /** The default number of events kept in memory. */
+  public static final int DEFAULT_MEMORY_CAPACITY = 10000;
+
+  /** Number of consecutive events read from the file at once. */
+  static final int PAGE_SIZE = 256;
+
+  /** Number of pages kept in memory. */
+  static final int CACHED_PAGES = 16;
+
+  static final byte NULL    = 0;
+  static final byte LITERAL = 1;
+  static final byte CHUNKED = 2;
+  static final int MAX_UTF_CHARS = 65535 / 3;
+
+  static final Priority[] PRIORITIES = {Priority.DEBUG, Priority.INFO,
+					Priority.WARN, Priority.ERROR,
+					Priority.FATAL};
+
+  final RandomAccessFile file;
+  final File path;
+
+  /** The most recent events, a ring indexed by row modulo capacity. */
+  final LoggingEvent[] recent;
+
+  int size = 0;
+
+  /* Per row, in memory. */
+  long[] offsets = new long[1024];
+  byte[] priorities = new byte[1024];
+  int[] categories = new int[1024];
+
+  /* Rows by priority index and by category id. */
+  final RowList[] byPriority = new RowList[PRIORITIES.length];
+  final Vector byCategory = new Vector();
+
+  /* Interned category and thread names. */
+  final Hashtable categoryIds = new Hashtable();
+  final Vector categoryList = new Vector();
+  final Hashtable threadIds = new Hashtable();
+  final Vector threadNames = new Vector();
+
+  /** Categories of the events read back, of a private hierarchy. */
+  final Hierarchy hierarchy = new Hierarchy(new RootCategory(Priority.DEBUG));
+
+  /* Cache of pages read from the file, by page number. */
+  final Hashtable pages = new Hashtable();
+  final Vector pageOrder = new Vector();
+
+  long fileLength = 0;
+  final ByteArrayOutputStream frame = new ByteArrayOutputStream(256);
+  final DataOutputStream frameData = new DataOutputStream(frame);
+
+  /**
+     Create a store spilling to <code>path</code>, which is truncated,
+     and keeping the last <code>memoryCapacity</code> events in
+     memory.  */
+  public
+  EventStore(File path, int memoryCapacity) throws IOException {
+    if(memoryCapacity < 1) {
+      throw new IllegalArgumentException("The memoryCapacity argument ("+
+					 memoryCapacity+") is not positive.");
+    }
+    this.path = path;
+    this.file = new RandomAccessFile(path, "rw");
+    this.file.setLength(0);
+    this.recent = new LoggingEvent[memoryCapacity];
+    for(int i = 0; i < byPriority.length; i++) {
+      byPriority[i] = new RowList();
+    }
+  }
+
+  /**
+     Add <code>event</code> to the store. It is written to the file
+     right away, but read back only once it is no longer among the
+     most recent events.  */
+  public
+  synchronized
+  void add(LoggingEvent event) throws IOException {
+    int row = size;
+    if(row == offsets.length) {
+      grow();
+    }
+    int p = priorityIndex(event.priority);
+    int c = categoryId(event.categoryName);
+
+    offsets[row] = fileLength;
+    fileLength += write(event, c);
+    priorities[row] = (byte) p;
+    categories[row] = c;
+    byPriority[p].add(row);
+    ((RowList) byCategory.elementAt(c)).add(row);
+
+    recent[row % recent.length] = event;
+    size++;
+  }
+
+  /**
+     Returns the number of events in the store. */
+  public
+  synchronized
+  int size() {
+    return size;
+  }
+
+  /**
+     Returns the event of the given row, reading it from the file if it
+     is no longer in memory.  */
+  public
+  synchronized
+  LoggingEvent get(int row) throws IOException {
+    if(row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row "+row+" of "+size+".");
+    }
+    if(row >= size - recent.length) {
+      return recent[row % recent.length];
+    }
+    Integer page = new Integer(row / PAGE_SIZE);
+    LoggingEvent[] events = (LoggingEvent[]) pages.get(page);
+    if(events == null || events[row % PAGE_SIZE] == null) {
+      // Not cached, or cached before this row was added.
+      pages.remove(page);
+      pageOrder.removeElement(page);
+      events = readPage(page.intValue());
+      if(pageOrder.size() == CACHED_PAGES) {
+	pages.remove(pageOrder.elementAt(0));
+	pageOrder.removeElementAt(0);
+      }
+      pages.put(page, events);
+    } else {
+      pageOrder.removeElement(page);
+    }
+    pageOrder.addElement(page);
+    return events[row % PAGE_SIZE];
+  }
+
+  /**
+     Returns the number of events of the given priority. */
+  public
+  synchronized
+  int count(Priority priority) {
+    return byPriority[priorityIndex(priority)].size;
+  }
+
+  /**
+     Returns the number of events of the given category. */
+  public
+  synchronized
+  int count(String categoryName) {
+    Integer id = (Integer) categoryIds.get(categoryName);
+    return id == null ? 0 : ((RowList) byCategory.elementAt(id.intValue())).size;
+  }
+
+  /**
+     Returns the names of the categories of the stored events. */
+  public
+  synchronized
+  String[] getCategoryNames() {
+    String[] names = new String[categoryList.size()];
+    categoryList.copyInto(names);
+    return names;
+  }
+
+  /**
+     Returns a view of the events of priority <code>threshold</code> or
+     higher and, unless <code>categoryNames</code> is
+     <code>null</code>, of one of the given categories. A
+     <code>null</code> threshold accepts all priorities.  */
+  public
+  View newView(Priority threshold, String[] categoryNames) {
+    return new View(threshold, categoryNames);
+  }
+
+  /**
+     Close the store and delete its file. */
+  public
+  synchronized
+  void close() throws IOException {
+    file.close();
+    path.delete();
+  }
+
+  void grow() {
+    int n = offsets.length * 2;
+    long[] o = new long[n];
+    byte[] p = new byte[n];
+    int[] c = new int[n];
+    System.arraycopy(offsets, 0, o, 0, size);
+    System.arraycopy(priorities, 0, p, 0, size);
+    System.arraycopy(categories, 0, c, 0, size);
+    offsets = o;
+    priorities = p;
+    categories = c;
+  }
+
+  static
+  int priorityIndex(Priority priority) {
+    if(priority == null) {
+      return 0;
+    }
+    for(int i = PRIORITIES.length - 1; i > 0; i--) {
+      if(priority.isGreaterOrEqual(PRIORITIES[i])) {
+	return i;
+      }
+    }
+    return 0;
+  }
+
+  int categoryId(String name) {
+    Integer id = (Integer) categoryIds.get(name);
+    if(id == null) {
+      id = new Integer(categoryList.size());
+      categoryIds.put(name, id);
+      categoryList.addElement(name);
+      byCategory.addElement(new RowList());
+    }
+    return id.intValue();
+  }
+
+  int threadId(String name) {
+    if(name == null) {
+      return -1;
+    }
+    Integer id = (Integer) threadIds.get(name);
+    if(id == null) {
+      id = new Integer(threadNames.size());
+      threadIds.put(name, id);
+      threadNames.addElement(name);
+    }
+    return id.intValue();
+  }
+
+  /**
+     Append <code>event</code> to the file and return the number of
+     bytes written. Category and thread names are written as ids. */
+  int write(LoggingEvent event, int categoryId) throws IOException {
+    frame.reset();
+    frameData.writeInt(0); // length, filled in below
+    frameData.writeLong(event.timeStamp);
+    frameData.writeInt(event.priority.toInt());
+    frameData.writeInt(categoryId);
+    frameData.writeInt(threadId(event.getThreadName()));
+    writeString(event.getNDC());
+    writeString(event.getRenderedMessage());
+    String[] lines = event.getThrowableStrRep();
+    if(lines == null) {
+      frameData.writeInt(-1);
+    } else {
+      frameData.writeInt(lines.length);
+      for(int i = 0; i < lines.length; i++) {
+	writeString(lines[i]);
+      }
+    }
+    if(event.hasLocationInformation()) {
+      writeString(event.getLocationInformation().fullInfo);
+    } else {
+      frameData.writeByte(NULL);
+    }
+
+    byte[] bytes = frame.toByteArray();
+    int length = bytes.length - 4;
+    bytes[0] = (byte) (length >>> 24);
+    bytes[1] = (byte) (length >>> 16);
+    bytes[2] = (byte) (length >>> 8);
+    bytes[3] = (byte) length;
+    file.seek(fileLength);
+    file.write(bytes);
+    return bytes.length;
+  }
+
+  void writeString(String s) throws IOException {
+    if(s == null) {
+      frameData.writeByte(NULL);
+    } else if(s.length() <= MAX_UTF_CHARS) {
+      frameData.writeByte(LITERAL);
+      frameData.writeUTF(s);
+    } else {
+      int chunks = (s.length() + MAX_UTF_CHARS - 1) / MAX_UTF_CHARS;
+      frameData.writeByte(CHUNKED);
+      frameData.writeInt(chunks);
+      for(int i = 0; i < chunks; i++) {
+	int from = i * MAX_UTF_CHARS;
+	frameData.writeUTF(s.substring(from, Math.min(s.length(), from + MAX_UTF_CHARS)));
+      }
+    }
+  }
+
+  /**
+     Read the events of the given page with a single read. */
+  LoggingEvent[] readPage(int page) throws IOException {
+    int first = page * PAGE_SIZE;
+    int last = Math.min(first + PAGE_SIZE, size) - 1;
+    long end = last + 1 < size ? offsets[last + 1] : fileLength;
+    byte[] bytes = new byte[(int) (end - offsets[first])];
+    file.seek(offsets[first]);
+    file.readFully(bytes);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    LoggingEvent[] events = new LoggingEvent[PAGE_SIZE];
+    for(int row = first; row <= last; row++) {
+      in.readInt(); // length
+      events[row - first] = read(in);
+    }
+    return events;
+  }
+
+  LoggingEvent read(DataInputStream in) throws IOException {
+    long timeStamp = in.readLong();
+    Priority priority = Priority.toPriority(in.readInt());
+    String categoryName = (String) categoryList.elementAt(in.readInt());
+    int thread = in.readInt();
+    String threadName = thread < 0 ? null : (String) threadNames.elementAt(thread);
+    String ndc = readString(in);
+    String message = readString(in);
+    ThrowableInformation throwableInfo = null;
+    int n = in.readInt();
+    if(n >= 0) {
+      String[] lines = new String[n];
+      for(int i = 0; i < n; i++) {
+	lines[i] = readString(in);
+      }
+      throwableInfo = new ThrowableInformation(lines);
+    }
+    LocationInfo locationInfo = new LocationInfo(null, null);
+    locationInfo.fullInfo = readString(in);
+
+    Category category = hierarchy.getInstance(categoryName);
+    return new LoggingEvent(null, category, timeStamp, priority, message,
+			    threadName, ndc, throwableInfo, locationInfo);
+  }
+
+  static
+  String readString(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch(tag) {
+    case NULL:
+      return null;
+    case LITERAL:
+      return in.readUTF();
+    default:
+      int chunks = in.readInt();
+      StringBuffer sbuf = new StringBuffer();
+      for(int i = 0; i < chunks; i++) {
+	sbuf.append(in.readUTF());
+      }
+      return sbuf.toString();
+    }
+  }
+
+  /**
+     A filtered view of the store. It lists the rows of the matching
+     events and is built from the indexes of the store; {@link
+     #refresh} adds the matching events added since.  */
+  public
+  class View {
+
+    final int threshold;
+    final String[] categoryNames;
+    /** Whether each category id is selected. */
+    boolean[] accepted = new boolean[0];
+    RowList rows;
+    int seen;
+
+    View(Priority threshold, String[] categoryNames) {
+      this.threshold = threshold == null ? 0 : priorityIndex(threshold);
+      this.categoryNames = categoryNames;
+      build();
+    }
+
+    /**
+       Returns the number of events in this view. */
+    public
+    int size() {
+      synchronized(EventStore.this) {
+	return rows.size;
+      }
+    }
+
+    /**
+       Returns the row in the store of the <code>i</code>th event of
+       this view. */
+    public
+    int getRow(int i) {
+      synchronized(EventStore.this) {
+	if(i < 0 || i >= rows.size) {
+	  throw new IndexOutOfBoundsException("Row "+i+" of "+rows.size+".");
+	}
+	return rows.rows[i];
+      }
+    }
+
+    /**
+       Returns the <code>i</code>th event of this view. */
+    public
+    LoggingEvent get(int i) throws IOException {
+      synchronized(EventStore.this) {
+	return EventStore.this.get(getRow(i));
+      }
+    }
+
+    /**
+       Add the matching events added to the store since this view was
+       built or last refreshed. Returns the number of events added to
+       the view.  */
+    public
+    int refresh() {
+      synchronized(EventStore.this) {
+	int before = rows.size;
+	if(categoryNames != null && accepted.length < categoryList.size()) {
+	  updateAccepted();
+	}
+	for(int row = seen; row < size; row++) {
+	  if(accepts(row)) {
+	    rows.add(row);
+	  }
+	}
+	seen = size;
+	return rows.size - before;
+      }
+    }
+
+    boolean accepts(int row) {
+      if(priorities[row] < threshold) {
+	return false;
+      }
+      if(categoryNames == null) {
+	return true;
+      }
+      return accepted[categories[row]];
+    }
+
+    /**
+       Mark the ids of the selected categories, including those that
+       appeared since the last call. */
+    void updateAccepted() {
+      accepted = new boolean[categoryList.size()];
+      for(int i = 0; i < categoryNames.length; i++) {
+	Integer id = (Integer) categoryIds.get(categoryNames[i]);
+	if(id != null) {
+	  accepted[id.intValue()] = true;
+	}
+      }
+    }
+
+    /**
+       Build the view by merging the row lists of the selected
+       priorities, or categories, and checking the other criterion in
+       the per row arrays.  */
+    void build() {
+      synchronized(EventStore.this) {
+	RowList[] lists;
+	if(categoryNames != null) {
+	  updateAccepted();
+	  Vector v = new Vector();
+	  for(int c = 0; c < accepted.length; c++) {
+	    if(accepted[c]) {
+	      v.addElement(byCategory.elementAt(c));
+	    }
+	  }
+	  lists = new RowList[v.size()];
+	  v.copyInto(lists);
+	} else {
+	  lists = new RowList[PRIORITIES.length - threshold];
+	  System.arraycopy(byPriority, threshold, lists, 0, lists.length);
+	}
+
+	RowList merged = RowList.merge(lists);
+	if(categoryNames != null && threshold > 0) {
+	  RowList kept = new RowList();
+	  for(int i = 0; i < merged.size; i++) {
+	    int row = merged.rows[i];
+	    if(priorities[row] >= threshold) {
+	      kept.add(row);
+	    }
+	  }
+	  merged = kept;
+	}
+	rows = merged;
+	seen = size;
+      }
+    }
+  }
+}
+
+/**
+   A growable, sorted list of row numbers. */
+class RowList {
+
+  int[] rows;
+  int size;
+
+  RowList() {
+    this(16);
+  }
+
+  RowList(int capacity) {
+    rows = new int[Math.max(1, capacity)];
+  }
+
+  void add(int row) {
+    if(size == rows.length) {
+      int[] r = new int[rows.length * 2];
+      System.arraycopy(rows, 0, r, 0, size);
+      rows = r;
+    }
+    rows[size++] = row;
+  }
+
+  /**
+     Merge sorted lists without duplicates into one sorted list. */
+  static
+  RowList merge(RowList[] lists) {
+    if(lists.length == 0) {
+      return new RowList();
+    }
+    while(lists.length > 1) {
+      RowList[] next = new RowList[(lists.length + 1) / 2];
+      for(int i = 0; i < next.length; i++) {
+	next[i] = (2*i + 1 < lists.length) ? merge(lists[2*i], lists[2*i + 1])
+	                                   : lists[2*i];
+      }
+      lists = next;
+    }
+    RowList result = new RowList(lists[0].size);
+    System.arraycopy(lists[0].rows, 0, result.rows, 0, lists[0].size);
+    result.size = lists[0].size;
+    return result;
+  }
+
+  static
+  RowList merge(RowList a, RowList b) {
+    RowList r = new RowList(a.size + b.size);
+    int i = 0, j = 0;
+    while(i < a.size && j < b.size) {
+      if(a.rows[i] < b.rows[j]) {
+	r.rows[r.size++] = a.rows[i++];
+      } else {
+	r.rows[r.size++] = b.rows[j++];
+      }
+    }
+    while(i < a.size) {
+      r.rows[r.size++] = a.rows[i++];
+    }
+    while(j < b.size) {
+      r.rows[r.size++] = b.rows[j++];
+    }
+    return r;
+  }
+}
@@ -0,0 +1,166 @@
+package org.apache.lucene.benchmark;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.PagedRAMDirectory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * A repeatable unit of work measured by {@link #measure}.  The work is run
+ * a number of times to warm up the JVM, then a number of measured times,
+ * and the throughput, latency and, where the JVM can tell, the allocation
+ * rate are reported.
+ *
+ * <p>Subclasses build their fixture in {@link #setUp}, which is not
+ * measured, and do one iteration of the work in {@link #run}.
+ */
+public abstract class Benchmark {
+
+  private final String name;
+
+  /** Bytes allocated by threads that already ended, see {@link
+   *  #addAllocatedBytes}. */
+  private long extraAllocatedBytes;
+
+  protected Benchmark(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Prepares one iteration; not measured. */
+  protected void setUp() throws Exception {
+  }
+
+  /** Runs one iteration and returns the number of operations it did,
+   *  e.g. documents indexed or queries run. */
+  protected abstract long run() throws Exception;
+
+  /** Releases what {@link #setUp} created; not measured. */
+  protected void tearDown() throws Exception {
+  }
+
+  /** Called by threads that {@link #run} starts, with the bytes they
+   *  allocated, as only the calling thread is measured otherwise. */
+  protected synchronized void addAllocatedBytes(long bytes) {
+    extraAllocatedBytes += bytes;
+  }
+
+  /**
+   * Runs <code>warmup</code> iterations, then <code>iterations</code>
+   * measured ones, and prints one line of results to <code>out</code>.
+   */
+  public void measure(int warmup, int iterations, PrintStream out) throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      setUp();
+      try {
+        run();
+      } finally {
+        tearDown();
+      }
+    }
+
+    long ops = 0;
+    long millis = 0;
+    long allocated = 0;
+    boolean allocationKnown = true;
+    for (int i = 0; i < iterations; i++) {
+      setUp();
+      try {
+        synchronized (this) {
+          extraAllocatedBytes = 0;
+        }
+        final long allocStart = currentThreadAllocatedBytes();
+        final long start = System.currentTimeMillis();
+        ops += run();
+        millis += System.currentTimeMillis() - start;
+        final long allocEnd = currentThreadAllocatedBytes();
+        if (allocStart < 0 || allocEnd < 0) {
+          allocationKnown = false;
+        } else {
+          synchronized (this) {
+            allocated += allocEnd - allocStart + extraAllocatedBytes;
+          }
+        }
+      } finally {
+        tearDown();
+      }
+    }
+
+    final double seconds = Math.max(millis, 1L) / 1000.0;
+    final StringBuffer sb = new StringBuffer();
+    sb.append(pad(name, 40));
+    sb.append(pad(format(ops / seconds) + " ops/s", 20));
+    sb.append(pad(format(ops == 0 ? 0.0 : (double) millis / ops) + " ms/op", 20));
+    if (allocationKnown)
+      sb.append(format(allocated / seconds / (1024 * 1024)) + " MB/s alloc");
+    else
+      sb.append("alloc n/a");
+    out.println(sb.toString());
+  }
+
+  private static Object threadBean;
+  private static Method allocatedBytesMethod;
+  private static Method threadIdMethod;
+  static {
+    // com.sun.management.ThreadMXBean is only there on newer Sun JVMs
+    try {
+      Class factory = Class.forName("java.lang.management.ManagementFactory");
+      threadBean = factory.getMethod("getThreadMXBean", new Class[0]).invoke(null, new Object[0]);
+      Class beanClass = Class.forName("com.sun.management.ThreadMXBean");
+      if (beanClass.isInstance(threadBean)) {
+        allocatedBytesMethod = beanClass.getMethod("getThreadAllocatedBytes", new Class[] {long.class});
+        threadIdMethod = Thread.class.getMethod("getId", new Class[0]);
+      }
+    } catch (Throwable t) {
+      allocatedBytesMethod = null;
+    }
+  }
+
+  /** Returns the bytes allocated so far by the calling thread, or -1
+   *  if the JVM does not tell. */
+  public static long currentThreadAllocatedBytes() {
+    if (allocatedBytesMethod == null)
+      return -1;
+    try {
+      Object id = threadIdMethod.invoke(Thread.currentThread(), new Object[0]);
+      return ((Long) allocatedBytesMethod.invoke(threadBean, new Object[] {id})).longValue();
+    } catch (Throwable t) {
+      return -1;
+    }
+  }
+
+  static String format(double value) {
+    return String.valueOf(Math.round(value * 100) / 100.0);
+  }
+
+  static String pad(String s, int width) {
+    StringBuffer sb = new StringBuffer(s);
+    while (sb.length() < width)
+      sb.append(' ');
+    return sb.append(' ').toString();
+  }
+
+  /** Returns a new, empty in-memory directory of the given type:
+   *  <code>ram</code> for a {@link RAMDirectory}, <code>paged</code> for a
+   *  {@link PagedRAMDirectory}. */
+  static Directory newDirectory(String type) {
+    if ("ram".equals(type))
+      return new RAMDirectory();
+    else if ("paged".equals(type))
+      return new PagedRAMDirectory();
+    else
+      throw new IllegalArgumentException("unknown directory type: " + type);
+  }
+
+  /** Returns the int value of system property <code>name</code>, or
+   *  <code>def</code>. */
+  static int intProperty(String name, int def) {
+    String value = System.getProperty(name);
+    return value == null ? def : Integer.parseInt(value);
+  }
+}
@@ -0,0 +1,116 @@
+package org.apache.lucene.benchmark;
+
+import java.util.Random;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/**
+ * Generates a synthetic, reproducible corpus.  Words are drawn from a
+ * vocabulary with a Zipf-like distribution, so a few terms are very
+ * common and most are rare, as in natural text.  The same seed always
+ * yields the same documents.
+ *
+ * <p>Every document has an untokenized <code>id</code>, a
+ * <code>title</code> and a <code>body</code>, and a sortable untokenized
+ * <code>date</code> (yyyyMMdd) and <code>price</code> (zero padded).
+ */
+public class CorpusGenerator {
+
+  private final Random random;
+  private final String[] vocabulary;
+  private final double[] cumulative;
+  private final int bodyLength;
+  private int nextId;
+
+  /**
+   * @param seed seed of the pseudo random sequence
+   * @param vocabularySize number of distinct words
+   * @param bodyLength average number of words of a body
+   */
+  public CorpusGenerator(long seed, int vocabularySize, int bodyLength) {
+    this.random = new Random(seed);
+    this.bodyLength = bodyLength;
+    vocabulary = new String[vocabularySize];
+    cumulative = new double[vocabularySize];
+    double sum = 0.0;
+    for (int i = 0; i < vocabularySize; i++) {
+      vocabulary[i] = word(i);
+      sum += 1.0 / (i + 1);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < vocabularySize; i++)
+      cumulative[i] /= sum;
+  }
+
+  /** Returns the word of rank <code>rank</code>, 0 being the most common. */
+  public String word(int rank) {
+    StringBuffer sb = new StringBuffer();
+    int n = rank;
+    do {
+      sb.append((char) ('a' + n % 26));
+      n /= 26;
+    } while (n > 0);
+    return sb.append(rank % 7).toString();
+  }
+
+  /** Returns a random word, common words more likely. */
+  public synchronized String nextWord() {
+    double r = random.nextDouble();
+    int lo = 0;
+    int hi = cumulative.length - 1;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (cumulative[mid] < r)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return vocabulary[lo];
+  }
+
+  /** Returns the next document; safe to call from several threads. */
+  public Document nextDocument() {
+    final int id;
+    final int length;
+    final int day;
+    final int price;
+    synchronized (this) {
+      id = nextId++;
+      length = bodyLength / 2 + random.nextInt(bodyLength + 1);
+      day = random.nextInt(3650);
+      price = random.nextInt(100000);
+    }
+    Document doc = new Document();
+    doc.add(new Field("id", Integer.toString(id), Field.Store.YES, Field.Index.UN_TOKENIZED));
+    doc.add(new Field("title", text(5), Field.Store.YES, Field.Index.TOKENIZED));
+    doc.add(new Field("body", text(length), Field.Store.NO, Field.Index.TOKENIZED));
+    doc.add(new Field("date", date(day), Field.Store.NO, Field.Index.UN_TOKENIZED));
+    doc.add(new Field("price", pad(price, 6), Field.Store.NO, Field.Index.UN_TOKENIZED));
+    return doc;
+  }
+
+  private String text(int words) {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < words; i++) {
+      if (i > 0)
+        sb.append(' ');
+      sb.append(nextWord());
+    }
+    return sb.toString();
+  }
+
+  private static String date(int day) {
+    int year = 2000 + day / 365;
+    int dayOfYear = day % 365;
+    return pad(year, 4) + pad(1 + dayOfYear / 31 % 12, 2) + pad(1 + dayOfYear % 28, 2);
+  }
+
+  private static String pad(int value, int width) {
+    String s = Integer.toString(value);
+    StringBuffer sb = new StringBuffer();
+    for (int i = s.length(); i < width; i++)
+      sb.append('0');
+    return sb.append(s).toString();
+  }
+}
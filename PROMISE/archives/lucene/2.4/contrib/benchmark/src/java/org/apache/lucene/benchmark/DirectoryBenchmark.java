@@ -0,0 +1,124 @@
+package org.apache.lucene.benchmark;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Compares {@link org.apache.lucene.store.RAMDirectory} with {@link
+ * org.apache.lucene.store.PagedRAMDirectory}.  For each, and for 1, 2, 4
+ * and 8 threads, it measures the documents indexed per second, as {@link
+ * IndexingBenchmark} does, then the queries per second of threads sharing
+ * one IndexSearcher, whose inputs all read the same files.
+ * The queries are boolean ORs of 3 terms and phrases of 2, which read both
+ * the postings and the positions.  Run with:
+ * <pre>
+ *  java -Ddocs=20000 -Dqueries=400 -Dthreads=1,2,4,8 org.apache.lucene.benchmark.DirectoryBenchmark
+ * </pre>
+ */
+public class DirectoryBenchmark extends Benchmark {
+
+  private static final String[] TYPES = new String[] {"ram", "paged"};
+
+  private final IndexSearcher searcher;
+  private final Query[] queries;
+  private final int numThreads;
+
+  public DirectoryBenchmark(String dirType, IndexSearcher searcher, Query[] queries, int numThreads) {
+    super("search " + queries.length + " queries, " + numThreads + " thread(s), " + dirType);
+    this.searcher = searcher;
+    this.queries = queries;
+    this.numThreads = numThreads;
+  }
+
+  protected long run() throws Exception {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int first = i;
+      threads[i] = new Thread() {
+          public void run() {
+            long allocStart = currentThreadAllocatedBytes();
+            try {
+              for (int q = first; q < queries.length; q += numThreads)
+                searcher.search(queries[q], null, 10);
+            } catch (Throwable t) {
+              synchronized (failure) {
+                failure[0] = t;
+              }
+            }
+            addAllocatedBytes(currentThreadAllocatedBytes() - allocStart);
+          }
+        };
+      threads[i].start();
+    }
+    for (int i = 0; i < numThreads; i++)
+      threads[i].join();
+    if (failure[0] != null)
+      throw new RuntimeException("search failed: " + failure[0]);
+    return queries.length;
+  }
+
+  private static Query[] queries(int count) {
+    // query words come from a differently seeded corpus over the same vocabulary
+    CorpusGenerator words = new CorpusGenerator(7L, 50000, 200);
+    Query[] queries = new Query[count];
+    for (int i = 0; i < count; i++) {
+      if (i % 2 == 0) {
+        BooleanQuery query = new BooleanQuery();
+        for (int j = 0; j < 3; j++)
+          query.add(new TermQuery(new Term("body", words.nextWord())), BooleanClause.Occur.SHOULD);
+        queries[i] = query;
+      } else {
+        PhraseQuery query = new PhraseQuery();
+        query.add(new Term("body", words.word(i % 5)));
+        query.add(new Term("body", words.word(i % 3)));
+        queries[i] = query;
+      }
+    }
+    return queries;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Document[] docs = IndexingBenchmark.generate(intProperty("docs", 20000));
+    Query[] queries = queries(intProperty("queries", 400));
+    String[] threads = System.getProperty("threads", "1,2,4,8").split(",");
+    final int warmup = intProperty("warmup", 2);
+    final int iterations = intProperty("iterations", 5);
+
+    for (int t = 0; t < TYPES.length; t++) {
+      for (int i = 0; i < threads.length; i++) {
+        new IndexingBenchmark(Integer.parseInt(threads[i].trim()), docs, false, TYPES[t])
+          .measure(warmup, iterations, System.out);
+      }
+
+      Directory dir = newDirectory(TYPES[t]);
+      try {
+        IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+        for (int i = 0; i < docs.length; i++)
+          writer.addDocument(docs[i]);
+        writer.optimize();
+        writer.close();
+        IndexSearcher searcher = new IndexSearcher(dir);
+        try {
+          for (int i = 0; i < threads.length; i++) {
+            new DirectoryBenchmark(TYPES[t], searcher, queries, Integer.parseInt(threads[i].trim()))
+              .measure(warmup, iterations, System.out);
+          }
+        } finally {
+          searcher.close();
+        }
+      } finally {
+        dir.close();
+      }
+    }
+  }
+}
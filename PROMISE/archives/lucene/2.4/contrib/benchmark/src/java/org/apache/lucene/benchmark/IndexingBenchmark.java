@@ -0,0 +1,135 @@
+package org.apache.lucene.benchmark;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.BulkIndexBuilder;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Measures indexing throughput, in documents per second, of one
+ * IndexWriter shared by 1, 2 and 4 threads.  This exercises
+ * DocumentsWriter and TermsHashPerField; the flush at close is included.
+ * With <code>-Dbulk=true</code> the threads add through a {@link
+ * BulkIndexBuilder} instead, each to a private writer, and the final
+ * addIndexesNoOptimize is included.  With <code>-Ddir=paged</code> the
+ * index is written to a {@link org.apache.lucene.store.PagedRAMDirectory}
+ * instead of a RAMDirectory.
+ *
+ * <p>Documents are generated before the measurement, so generating them
+ * costs nothing and causes no contention.  Run with:
+ * <pre>
+ *  java -Ddocs=20000 -Dthreads=1,2,4 -Dbulk=false -Ddir=ram org.apache.lucene.benchmark.IndexingBenchmark
+ * </pre>
+ */
+public class IndexingBenchmark extends Benchmark {
+
+  private final int numThreads;
+  private final Document[] docs;
+  private final boolean bulk;
+  private final String dirType;
+  private Directory dir;
+  private Directory[] scratch;
+  private IndexWriter writer;
+  private BulkIndexBuilder builder;
+
+  public IndexingBenchmark(int numThreads, Document[] docs, boolean bulk) {
+    this(numThreads, docs, bulk, "ram");
+  }
+
+  /** @param dirType the type of directory, see {@link
+   *  Benchmark#newDirectory} */
+  public IndexingBenchmark(int numThreads, Document[] docs, boolean bulk, String dirType) {
+    super("index " + docs.length + " docs, " + numThreads + " thread(s)" + (bulk ? ", bulk" : "") + ", " + dirType);
+    this.numThreads = numThreads;
+    this.docs = docs;
+    this.bulk = bulk;
+    this.dirType = dirType;
+  }
+
+  protected void setUp() throws Exception {
+    dir = newDirectory(dirType);
+    writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    if (bulk) {
+      scratch = new Directory[numThreads];
+      for (int i = 0; i < numThreads; i++)
+        scratch[i] = newDirectory(dirType);
+      builder = new BulkIndexBuilder(writer, scratch);
+    }
+  }
+
+  protected long run() throws Exception {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int first = i;
+      threads[i] = new Thread() {
+          public void run() {
+            long allocStart = currentThreadAllocatedBytes();
+            try {
+              for (int d = first; d < docs.length; d += numThreads) {
+                if (bulk)
+                  builder.addDocument(docs[d]);
+                else
+                  writer.addDocument(docs[d]);
+              }
+            } catch (Throwable t) {
+              synchronized (failure) {
+                failure[0] = t;
+              }
+            }
+            addAllocatedBytes(currentThreadAllocatedBytes() - allocStart);
+          }
+        };
+      threads[i].start();
+    }
+    for (int i = 0; i < numThreads; i++)
+      threads[i].join();
+    if (failure[0] != null)
+      throw new RuntimeException("indexing failed: " + failure[0]);
+    if (bulk)
+      builder.finish();
+    writer.close();
+    writer = null;
+    return docs.length;
+  }
+
+  protected void tearDown() throws Exception {
+    try {
+      if (writer != null)
+        writer.close();
+    } finally {
+      writer = null;
+      builder = null;
+      try {
+        dir.close();
+      } finally {
+        if (scratch != null) {
+          for (int i = 0; i < scratch.length; i++)
+            scratch[i].close();
+          scratch = null;
+        }
+      }
+    }
+  }
+
+  /** Generates <code>count</code> documents with the default corpus. */
+  static Document[] generate(int count) {
+    CorpusGenerator corpus = new CorpusGenerator(42L, 50000, 200);
+    Document[] docs = new Document[count];
+    for (int i = 0; i < count; i++)
+      docs[i] = corpus.nextDocument();
+    return docs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Document[] docs = generate(intProperty("docs", 20000));
+    String[] threads = System.getProperty("threads", "1,2,4").split(",");
+    boolean bulk = Boolean.valueOf(System.getProperty("bulk", "false")).booleanValue();
+    String dirType = System.getProperty("dir", "ram");
+    for (int i = 0; i < threads.length; i++) {
+      new IndexingBenchmark(Integer.parseInt(threads[i].trim()), docs, bulk, dirType)
+        .measure(intProperty("warmup", 2), intProperty("iterations", 5), System.out);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.apache.lucene.benchmark;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Measures merge throughput, in documents per second, per merge policy.
+ * An index of many small flushed segments is built unmeasured, then an
+ * <code>optimize()</code> with the policy under test merges it down to a
+ * single segment through SegmentMerger.  Merges run serially on the
+ * calling thread so that their cost is measured.  Run with:
+ * <pre>
+ *  java -Ddocs=20000 -DdocsPerSegment=100 org.apache.lucene.benchmark.MergeBenchmark
+ * </pre>
+ */
+public class MergeBenchmark extends Benchmark {
+
+  private final Document[] docs;
+  private final int docsPerSegment;
+  private final boolean byteSize;
+  private RAMDirectory dir;
+
+  public MergeBenchmark(Document[] docs, int docsPerSegment, boolean byteSize) {
+    super("optimize " + docs.length + " docs, " + (byteSize ? "LogByteSizeMergePolicy" : "LogDocMergePolicy"));
+    this.docs = docs;
+    this.docsPerSegment = docsPerSegment;
+    this.byteSize = byteSize;
+  }
+
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+    writer.setMaxBufferedDocs(docsPerSegment);
+    LogDocMergePolicy noMerges = new LogDocMergePolicy();
+    noMerges.setMergeFactor(Integer.MAX_VALUE);
+    writer.setMergePolicy(noMerges);
+    for (int i = 0; i < docs.length; i++)
+      writer.addDocument(docs[i]);
+    writer.close();
+  }
+
+  protected long run() throws Exception {
+    IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), false);
+    LogMergePolicy policy = byteSize ? (LogMergePolicy) new LogByteSizeMergePolicy() : new LogDocMergePolicy();
+    writer.setMergePolicy(policy);
+    writer.setMergeScheduler(new SerialMergeScheduler());
+    writer.optimize();
+    writer.close();
+    return docs.length;
+  }
+
+  protected void tearDown() throws Exception {
+    dir.close();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Document[] docs = IndexingBenchmark.generate(intProperty("docs", 20000));
+    int docsPerSegment = intProperty("docsPerSegment", 100);
+    int warmup = intProperty("warmup", 2);
+    int iterations = intProperty("iterations", 5);
+    new MergeBenchmark(docs, docsPerSegment, false).measure(warmup, iterations, System.out);
+    new MergeBenchmark(docs, docsPerSegment, true).measure(warmup, iterations, System.out);
+  }
+}
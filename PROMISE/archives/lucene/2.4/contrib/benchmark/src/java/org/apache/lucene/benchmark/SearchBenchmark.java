@@ -0,0 +1,127 @@
+package org.apache.lucene.benchmark;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Measures query throughput and latency of the top 10 hits of term,
+ * boolean, phrase and sorted queries over a synthetic index.  Boolean
+ * queries exercise BooleanScorer2, sorted ones FieldSortedHitQueue.  The
+ * field caches for sorting are filled by the warmup.  With
+ * <code>-Ddir=paged</code> the index is held in a {@link
+ * org.apache.lucene.store.PagedRAMDirectory} instead of a RAMDirectory.
+ * Run with:
+ * <pre>
+ *  java -Ddocs=100000 -Dqueries=200 -Ddir=ram org.apache.lucene.benchmark.SearchBenchmark
+ * </pre>
+ */
+public class SearchBenchmark extends Benchmark {
+
+  private final IndexSearcher searcher;
+  private final Query[] queries;
+  private final Sort sort;
+
+  public SearchBenchmark(String name, IndexSearcher searcher, Query[] queries, Sort sort) {
+    super(name + ", " + queries.length + " queries");
+    this.searcher = searcher;
+    this.queries = queries;
+    this.sort = sort;
+  }
+
+  protected long run() throws Exception {
+    for (int i = 0; i < queries.length; i++) {
+      if (sort == null)
+        searcher.search(queries[i], null, 10);
+      else
+        searcher.search(queries[i], null, 10, sort);
+    }
+    return queries.length;
+  }
+
+  private static Query term(String word) {
+    return new TermQuery(new Term("body", word));
+  }
+
+  private static Query bool(String[] words, BooleanClause.Occur occur) {
+    BooleanQuery query = new BooleanQuery();
+    for (int i = 0; i < words.length; i++)
+      query.add(term(words[i]), occur);
+    return query;
+  }
+
+  private static Query phrase(String[] words) {
+    PhraseQuery query = new PhraseQuery();
+    for (int i = 0; i < words.length; i++)
+      query.add(new Term("body", words[i]));
+    return query;
+  }
+
+  public static void main(String[] args) throws Exception {
+    final int numDocs = intProperty("docs", 100000);
+    final int numQueries = intProperty("queries", 200);
+    final int warmup = intProperty("warmup", 3);
+    final int iterations = intProperty("iterations", 5);
+
+    Directory dir = newDirectory(System.getProperty("dir", "ram"));
+    try {
+      IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true);
+      CorpusGenerator corpus = new CorpusGenerator(42L, 50000, 200);
+      for (int i = 0; i < numDocs; i++)
+        writer.addDocument(corpus.nextDocument());
+      writer.optimize();
+      writer.close();
+      IndexSearcher searcher = new IndexSearcher(dir);
+      try {
+        run(searcher, numQueries, warmup, iterations);
+      } finally {
+        searcher.close();
+      }
+    } finally {
+      dir.close();
+    }
+  }
+
+  private static void run(IndexSearcher searcher, int numQueries, int warmup, int iterations)
+      throws Exception {
+
+    // query words come from a differently seeded corpus over the same vocabulary
+    CorpusGenerator words = new CorpusGenerator(7L, 50000, 200);
+    Query[] common = new Query[numQueries];
+    Query[] rare = new Query[numQueries];
+    Query[] or = new Query[numQueries];
+    Query[] and = new Query[numQueries];
+    Query[] phrases = new Query[numQueries];
+    for (int i = 0; i < numQueries; i++) {
+      common[i] = term(words.word(i % 10));
+      rare[i] = term(words.nextWord());
+      String[] three = new String[] {words.nextWord(), words.nextWord(), words.nextWord()};
+      or[i] = bool(three, BooleanClause.Occur.SHOULD);
+      and[i] = bool(new String[] {words.word(i % 20), words.nextWord()}, BooleanClause.Occur.MUST);
+      phrases[i] = phrase(new String[] {words.word(i % 5), words.word(i % 3)});
+    }
+    Sort byDate = new Sort(new SortField("date", SortField.STRING));
+    Sort byPrice = new Sort(new SortField[] {new SortField("price", SortField.STRING, true), SortField.FIELD_DOC});
+
+    SearchBenchmark[] benchmarks = new SearchBenchmark[] {
+      new SearchBenchmark("term (common)", searcher, common, null),
+      new SearchBenchmark("term (random)", searcher, rare, null),
+      new SearchBenchmark("boolean OR of 3", searcher, or, null),
+      new SearchBenchmark("boolean AND of 2", searcher, and, null),
+      new SearchBenchmark("phrase of 2", searcher, phrases, null),
+      new SearchBenchmark("boolean OR sorted by date", searcher, or, byDate),
+      new SearchBenchmark("boolean OR sorted by price desc", searcher, or, byPrice),
+    };
+    for (int i = 0; i < benchmarks.length; i++)
+      benchmarks[i].measure(warmup, iterations, System.out);
+  }
+}
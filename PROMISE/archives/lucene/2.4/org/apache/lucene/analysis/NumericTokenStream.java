@@ -0,0 +1,139 @@
+package org.apache.lucene.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * Emits the terms of a single numeric value at every precision step, as
+ * encoded by {@link NumericUtils}.  Usually created by {@link
+ * org.apache.lucene.document.NumericField}, but it may also be used
+ * directly in a {@link org.apache.lucene.document.Field} to reuse the
+ * stream across documents:
+ *
+ * <pre>
+ *  NumericTokenStream stream = new NumericTokenStream(4);
+ *  Field field = new Field("price", stream);
+ *  field.setOmitNorms(true);
+ *  field.setOmitTf(true);
+ *  Document doc = new Document();
+ *  doc.add(field);
+ *  for (...) {
+ *    stream.setLongValue(value);
+ *    writer.addDocument(doc);
+ *  }
+ * </pre>
+ *
+ * <p>The value must be set before the stream is consumed.  All terms but
+ * the full precision one are emitted with a position increment of zero.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ */
+public final class NumericTokenStream extends TokenStream {
+
+  /** Token type of the full precision term. */
+  public static final String TOKEN_TYPE_FULL_PREC = "fullPrecNumeric";
+
+  /** Token type of the lower precision terms. */
+  public static final String TOKEN_TYPE_LOWER_PREC = "lowerPrecNumeric";
+
+  private final int precisionStep;
+  private int valSize = 0;
+  private long value = 0L;
+  private int shift = 0;
+
+  /** Creates a stream using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public NumericTokenStream() {
+    this(NumericUtils.PRECISION_STEP_DEFAULT);
+  }
+
+  /** Creates a stream indexing a term every
+   *  <code>precisionStep</code> bits. */
+  public NumericTokenStream(final int precisionStep) {
+    if (precisionStep < 1)
+      throw new IllegalArgumentException("precisionStep must be >=1");
+    this.precisionStep = precisionStep;
+  }
+
+  /** Sets a long value and rewinds the stream. */
+  public NumericTokenStream setLongValue(final long value) {
+    this.value = value;
+    valSize = 64;
+    shift = 0;
+    return this;
+  }
+
+  /** Sets an int value and rewinds the stream. */
+  public NumericTokenStream setIntValue(final int value) {
+    this.value = (long) value;
+    valSize = 32;
+    shift = 0;
+    return this;
+  }
+
+  /** Sets a double value and rewinds the stream. */
+  public NumericTokenStream setDoubleValue(final double value) {
+    this.value = NumericUtils.doubleToSortableLong(value);
+    valSize = 64;
+    shift = 0;
+    return this;
+  }
+
+  /** Sets a float value and rewinds the stream. */
+  public NumericTokenStream setFloatValue(final float value) {
+    this.value = (long) NumericUtils.floatToSortableInt(value);
+    valSize = 32;
+    shift = 0;
+    return this;
+  }
+
+  /** Returns the precision step. */
+  public int getPrecisionStep() {
+    return precisionStep;
+  }
+
+  public void reset() {
+    if (valSize == 0)
+      throw new IllegalStateException("call set???Value() before usage");
+    shift = 0;
+  }
+
+  public Token next(final Token reusableToken) throws IOException {
+    assert reusableToken != null;
+    if (valSize == 0)
+      throw new IllegalStateException("call set???Value() before usage");
+    if (shift >= valSize)
+      return null;
+
+    reusableToken.clear();
+
+    final char[] buffer;
+    switch (valSize) {
+      case 64:
+        buffer = reusableToken.resizeTermBuffer(NumericUtils.BUF_SIZE_LONG);
+        reusableToken.setTermLength(NumericUtils.longToPrefixCoded(value, shift, buffer));
+        break;
+
+      case 32:
+        buffer = reusableToken.resizeTermBuffer(NumericUtils.BUF_SIZE_INT);
+        reusableToken.setTermLength(NumericUtils.intToPrefixCoded((int) value, shift, buffer));
+        break;
+
+      default:
+        throw new IllegalArgumentException("valSize must be 32 or 64");
+    }
+
+    reusableToken.setType((shift == 0) ? TOKEN_TYPE_FULL_PREC : TOKEN_TYPE_LOWER_PREC);
+    reusableToken.setPositionIncrement((shift == 0) ? 1 : 0);
+    shift += precisionStep;
+    return reusableToken;
+  }
+
+  public String toString() {
+    final StringBuffer sb = new StringBuffer("(numeric,valSize=").append(valSize);
+    sb.append(",precisionStep=").append(precisionStep).append(')');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,127 @@
+package org.apache.lucene.document;
+
+import java.io.Reader;
+
+import org.apache.lucene.analysis.NumericTokenStream;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A field holding a single <code>int</code>, <code>long</code>,
+ * <code>float</code> or <code>double</code> value, indexed at several
+ * precisions so that {@link org.apache.lucene.search.NumericRangeQuery}
+ * and {@link org.apache.lucene.search.NumericRangeFilter} can match a
+ * range by visiting only a few terms.
+ *
+ * <pre>
+ *  document.add(new NumericField("price").setDoubleValue(19.99));
+ * </pre>
+ *
+ * <p>Norms and term frequencies are omitted.  If the field is stored, the
+ * value is stored as its decimal <code>String</code>.  To sort by the
+ * field use a {@link org.apache.lucene.search.SortField} with the
+ * matching <code>NUMERIC_UTILS_*_PARSER</code> of {@link
+ * org.apache.lucene.search.FieldCache} or {@link
+ * org.apache.lucene.search.ExtendedFieldCache}.
+ *
+ * <p>An instance may be reused for several documents by changing its
+ * value, but it must be created with the same precision step as the
+ * queries that search it.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ *
+ * @see NumericUtils
+ */
+public final class NumericField extends AbstractField {
+
+  private final NumericTokenStream tokenStream;
+
+  /** Creates an indexed, not stored field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public NumericField(String name) {
+    this(name, NumericUtils.PRECISION_STEP_DEFAULT, Field.Store.NO, true);
+  }
+
+  /** Creates a field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public NumericField(String name, Field.Store store, boolean index) {
+    this(name, NumericUtils.PRECISION_STEP_DEFAULT, store, index);
+  }
+
+  /** Creates an indexed, not stored field indexing a term
+   *  every <code>precisionStep</code> bits. */
+  public NumericField(String name, int precisionStep) {
+    this(name, precisionStep, Field.Store.NO, true);
+  }
+
+  /** Creates a field indexing a term every
+   *  <code>precisionStep</code> bits.
+   * @param store {@link Field.Store#YES} to store the value
+   *  as a decimal String; {@link Field.Store#COMPRESS} is
+   *  not supported
+   * @param index false to only store the value */
+  public NumericField(String name, int precisionStep, Field.Store store, boolean index) {
+    super(name, store, index ? Field.Index.ANALYZED_NO_NORMS : Field.Index.NO, Field.TermVector.NO);
+    if (store == Field.Store.COMPRESS)
+      throw new IllegalArgumentException("NumericField values cannot be compressed");
+    setOmitTf(true);
+    tokenStream = new NumericTokenStream(precisionStep);
+  }
+
+  /** Returns the terms of the current value at every
+   *  precision, or null if the field is not indexed. */
+  public TokenStream tokenStreamValue() {
+    return isIndexed() ? tokenStream : null;
+  }
+
+  /** Returns the current value as a decimal String, or
+   *  null if no value was set. */
+  public String stringValue() {
+    return (fieldsData == null) ? null : fieldsData.toString();
+  }
+
+  /** Always returns null. */
+  public Reader readerValue() {
+    return null;
+  }
+
+  /** Always returns null. */
+  public byte[] binaryValue() {
+    return null;
+  }
+
+  /** Returns the current value as a <code>Number</code>, or
+   *  null if no value was set. */
+  public Number getNumericValue() {
+    return (Number) fieldsData;
+  }
+
+  /** Sets a long value. */
+  public NumericField setLongValue(final long value) {
+    tokenStream.setLongValue(value);
+    fieldsData = new Long(value);
+    return this;
+  }
+
+  /** Sets an int value. */
+  public NumericField setIntValue(final int value) {
+    tokenStream.setIntValue(value);
+    fieldsData = new Integer(value);
+    return this;
+  }
+
+  /** Sets a double value. */
+  public NumericField setDoubleValue(final double value) {
+    tokenStream.setDoubleValue(value);
+    fieldsData = new Double(value);
+    return this;
+  }
+
+  /** Sets a float value. */
+  public NumericField setFloatValue(final float value) {
+    tokenStream.setFloatValue(value);
+    fieldsData = new Float(value);
+    return this;
+  }
+}
@@ -0,0 +1,153 @@
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Builds an index in bulk from several threads without them
+ * contending for one {@link IndexWriter}.  Each thread that calls
+ * {@link #addDocument} is given its own private IndexWriter on one of
+ * the scratch directories, so it inverts documents and flushes and
+ * merges its segments on its own; {@link #finish} then adds all
+ * scratch indexes to the target writer with {@link
+ * IndexWriter#addIndexesNoOptimize}.
+ *
+ * <p>The private writers take the analyzer, similarity, max field
+ * length, term index interval and flush settings of the target
+ * writer, do not use the compound file format and merge serially on
+ * the adding thread.  Use as many scratch directories as threads will
+ * add documents; RAMDirectory when the index fits in memory,
+ * otherwise FSDirectory on separate paths.  The scratch directories
+ * belong to the caller, which closes them, and may delete them, after
+ * {@link #finish} returned.
+ *
+ * <p>Only documents can be added; the target writer must not be
+ * changed until {@link #finish} returned.  Documents added by
+ * different threads are not in the order they were added.
+ *
+ * <p><b>NOTE:</b> This API is new and still experimental
+ * (subject to change suddenly in the next release)</p>
+ */
+public class BulkIndexBuilder {
+
+  private final IndexWriter target;
+  private final Directory[] scratch;
+  private final Slot[] slots;
+  private int slotCount;
+  private boolean closing;
+  private boolean finished;
+
+  /** The {@link Slot} of the calling thread.  It holds a slot
+   *  rather than the writer, so that the closed writers are not
+   *  kept reachable from the threads after {@link #finish}. */
+  private final ThreadLocal threadSlot = new ThreadLocal();
+
+  /** The private writer of one thread, cleared once it was
+   *  closed successfully. */
+  private static final class Slot {
+    volatile IndexWriter writer;
+
+    Slot(IndexWriter writer) {
+      this.writer = writer;
+    }
+  }
+
+  /**
+   * @param target the writer the documents are finally added to
+   * @param scratch one empty directory per thread that will add documents
+   */
+  public BulkIndexBuilder(IndexWriter target, Directory[] scratch) {
+    if (scratch.length == 0)
+      throw new IllegalArgumentException("at least one scratch directory is required");
+    this.target = target;
+    this.scratch = scratch;
+    this.slots = new Slot[scratch.length];
+  }
+
+  /** Adds a document with the analyzer of the target writer.
+   *  May be called by several threads at once. */
+  public void addDocument(Document doc) throws CorruptIndexException, IOException {
+    getWriter().addDocument(doc);
+  }
+
+  /** Adds a document with the given analyzer.  May be called by
+   *  several threads at once. */
+  public void addDocument(Document doc, Analyzer analyzer) throws CorruptIndexException, IOException {
+    getWriter().addDocument(doc, analyzer);
+  }
+
+  /** Returns the private writer of the calling thread, creating
+   *  it on the next free scratch directory on first use. */
+  private IndexWriter getWriter() throws IOException {
+    Slot slot = (Slot) threadSlot.get();
+    if (slot == null) {
+      final int index;
+      synchronized(this) {
+        if (closing)
+          throw new IllegalStateException("this BulkIndexBuilder is finished");
+        if (slotCount == scratch.length)
+          throw new IllegalStateException("more threads than scratch directories (" + scratch.length + ")");
+        index = slotCount++;
+      }
+      slot = new Slot(newWriter(scratch[index]));
+      synchronized(this) {
+        slots[index] = slot;
+      }
+      threadSlot.set(slot);
+    }
+    final IndexWriter writer = slot.writer;
+    if (writer == null)
+      throw new IllegalStateException("this BulkIndexBuilder is finished");
+    return writer;
+  }
+
+  private IndexWriter newWriter(Directory dir) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, target.getAnalyzer(), true,
+                                         new IndexWriter.MaxFieldLength(target.getMaxFieldLength()));
+    writer.setSimilarity(target.getSimilarity());
+    writer.setTermIndexInterval(target.getTermIndexInterval());
+    writer.setUseCompoundFile(false);
+    writer.setMergeScheduler(new SerialMergeScheduler());
+    final double ramBufferSizeMB = target.getRAMBufferSizeMB();
+    if (ramBufferSizeMB == IndexWriter.DISABLE_AUTO_FLUSH) {
+      writer.setMaxBufferedDocs(target.getMaxBufferedDocs());
+      writer.setRAMBufferSizeMB(IndexWriter.DISABLE_AUTO_FLUSH);
+    } else
+      writer.setRAMBufferSizeMB(ramBufferSizeMB);
+    return writer;
+  }
+
+  /**
+   * Closes the private writers and adds their indexes to the target
+   * writer.  All threads must have stopped adding documents.  The
+   * target writer is not committed or closed.  If this throws an
+   * exception it may be called again, which closes the writers that
+   * failed to close and adds all indexes.
+   */
+  public synchronized void finish() throws CorruptIndexException, IOException {
+    if (finished)
+      return;
+    closing = true;
+
+    List dirs = new ArrayList(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      final Slot slot = slots[i];
+      if (slot != null) {
+        final IndexWriter writer = slot.writer;
+        if (writer != null) {
+          writer.close();
+          slot.writer = null;
+        }
+        dirs.add(scratch[i]);
+      }
+    }
+    if (dirs.size() > 0)
+      target.addIndexesNoOptimize((Directory[]) dirs.toArray(new Directory[dirs.size()]));
+    finished = true;
+  }
+}
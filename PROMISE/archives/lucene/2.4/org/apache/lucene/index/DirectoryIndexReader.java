@@ -33,6 +33,15 @@ abstract class DirectoryIndexReader extends IndexReader {
 
   protected boolean readOnly;
 
+  /** Non-null only for readers opened by {@link
+   *  IndexWriter#getReader}; reopen() and isCurrent() then
+   *  consult the writer instead of the last commit. */
+  private IndexWriter writer;
+  private long writerChangeCount;
+  /** The segments whose files the writer keeps referenced
+   *  until this reader is closed. */
+  private SegmentInfos writerInfos;
+
   
   void init(Directory directory, SegmentInfos segmentInfos, boolean closeDirectory, boolean readOnly)
     throws IOException {
@@ -94,9 +103,44 @@ abstract class DirectoryIndexReader extends IndexReader {
     }
   }
 
+  /**
+   * Opens a read-only reader over the uncommitted segments
+   * of <code>writer</code>.  If <code>previous</code> is
+   * non-null, its SegmentReaders are shared for every
+   * segment that did not change, just like {@link #reopen}.
+   * Unless <code>previous</code> itself is returned, the
+   * returned reader releases the writer's references to the
+   * files of <code>infos</code> when it is closed.
+   */
+  static DirectoryIndexReader open(IndexWriter writer, long writerChangeCount, Directory directory, SegmentInfos infos, DirectoryIndexReader previous) throws CorruptIndexException, IOException {
+    DirectoryIndexReader reader;
+
+    if (previous != null) {
+      reader = previous.doReopen(infos);
+      if (reader != previous)
+        reader.init(directory, infos, false, true);
+    } else if (infos.size() == 1) {
+      reader = SegmentReader.get(true, infos, infos.info(0), false);
+    } else {
+      reader = new ReadOnlyMultiSegmentReader(directory, infos, false);
+    }
+
+    if (reader != previous)
+      reader.writerInfos = infos;
+    reader.writer = writer;
+    reader.writerChangeCount = writerChangeCount;
+    return reader;
+  }
+
   public final synchronized IndexReader reopen() throws CorruptIndexException, IOException {
     ensureOpen();
 
+    if (writer != null) {
+      if (isCurrent())
+        return this;
+      return writer.getReader(this);
+    }
+
     if (this.hasChanges || this.isCurrent()) {
       return this;
     }
@@ -159,6 +203,8 @@ abstract class DirectoryIndexReader extends IndexReader {
    */
   public boolean isCurrent() throws CorruptIndexException, IOException {
     ensureOpen();
+    if (writer != null)
+      return writer.isCurrent(writerChangeCount);
     return SegmentInfos.readCurrentVersion(directory) == segmentInfos.getVersion();
   }
 
@@ -172,6 +218,10 @@ abstract class DirectoryIndexReader extends IndexReader {
   }
 
   protected void doClose() throws IOException {
+    if (writerInfos != null) {
+      writer.decRefReader(writerInfos);
+      writerInfos = null;
+    }
     if(closeDirectory)
       directory.close();
   }
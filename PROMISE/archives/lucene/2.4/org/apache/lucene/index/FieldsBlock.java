@@ -0,0 +1,212 @@
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Constants and buffers of the {@link FieldsWriter#FORMAT_COMPRESSED_BLOCKS
+ * compressed block format} of stored fields.
+ *
+ * <p>The stored fields of consecutive documents, each laid out as in the
+ * other formats, are concatenated into blocks of up to {@link #MAX_DOCS}
+ * documents and about {@link #TARGET_SIZE} bytes, which are compressed
+ * together.  Short fields thus compress against the fields of neighbouring
+ * documents instead of on their own.  In the fields file a block is:
+ *
+ * <p>Block --&gt; NumDocs, DocLength<sup>NumDocs</sup>, Codec, StoredLength,
+ * Data
+ *
+ * <p>NumDocs, DocLength, StoredLength --&gt; VInt; Codec --&gt; Byte, either
+ * {@link #CODEC_NONE} or {@link #CODEC_DEFLATE}; Data --&gt;
+ * Byte<sup>StoredLength</sup>
+ *
+ * <p>The index holds, for each document, the file pointer of its block
+ * shifted left by {@link #DOC_BITS}, or'ed with its position in the block.
+ */
+final class FieldsBlock {
+
+  /** Bits of an index entry holding the position in the block. */
+  static final int DOC_BITS = 8;
+
+  static final int MAX_DOCS = 1 << DOC_BITS;
+
+  /** A block is written once it holds this many bytes. */
+  static final int TARGET_SIZE = 16 * 1024;
+
+  static final byte CODEC_NONE = 0;
+  static final byte CODEC_DEFLATE = 1;
+
+  private FieldsBlock() {}
+
+  /** Compresses <code>length</code> bytes of <code>data</code> into
+   * <code>out</code>, resetting <code>deflater</code> first.  Returns the
+   * number of compressed bytes, or -1 if they would not be fewer than
+   * <code>length</code>. */
+  static int compress(Deflater deflater, byte[] data, int length, Output out) {
+    deflater.reset();
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+    out.reset();
+    out.ensureCapacity(length);
+    while (!deflater.finished()) {
+      int n = deflater.deflate(out.bytes, out.length, length - out.length);
+      out.setLength(out.length + n);
+      if (out.length >= length)
+        return -1;
+    }
+    return out.length;
+  }
+
+  /** Reads a block of <code>storedLength</code> bytes stored with
+   * <code>codec</code> from <code>in</code> and uncompresses it into
+   * <code>data</code>, which must hold <code>length</code> bytes. */
+  static void uncompress(IndexInput in, byte codec, int storedLength, Inflater inflater,
+                         Output scratch, byte[] data, int length) throws IOException {
+    if (codec == CODEC_NONE) {
+      if (storedLength != length)
+        throw new CorruptIndexException("stored fields block of " + storedLength + " bytes, expected " + length);
+      in.readBytes(data, 0, length);
+      return;
+    }
+    if (codec != CODEC_DEFLATE)
+      throw new CorruptIndexException("unknown stored fields block codec: " + codec);
+
+    scratch.reset();
+    scratch.ensureCapacity(storedLength);
+    in.readBytes(scratch.bytes, 0, storedLength);
+    inflater.reset();
+    inflater.setInput(scratch.bytes, 0, storedLength);
+    try {
+      int n = 0;
+      while (n < length && !inflater.finished()) {
+        int count = inflater.inflate(data, n, length - n);
+        if (count == 0 && inflater.needsInput())
+          break;
+        n += count;
+      }
+      if (n != length)
+        throw new CorruptIndexException("stored fields block uncompressed to " + n + " bytes, expected " + length);
+    } catch (DataFormatException e) {
+      CorruptIndexException newException = new CorruptIndexException("stored fields block is in wrong format: " + e.toString());
+      newException.initCause(e);
+      throw newException;
+    }
+  }
+
+  /** An IndexOutput into a growable byte array.  Unlike a {@link
+   * org.apache.lucene.store.RAMOutputStream}, whose data is split
+   * into buffers of the store package, it keeps the whole block in one
+   * array, as the Deflater needs it. */
+  static final class Output extends IndexOutput {
+    byte[] bytes = new byte[1024];
+    /** The number of bytes written; the file pointer is below it after
+     * a seek backwards. */
+    int length;
+    private int pos;
+
+    void reset() {
+      length = 0;
+      pos = 0;
+    }
+
+    /** Marks the first <code>n</code> bytes of the array as written,
+     * and moves the file pointer to their end. */
+    void setLength(int n) {
+      length = n;
+      pos = n;
+    }
+
+    void ensureCapacity(int capacity) {
+      if (bytes.length < capacity) {
+        byte[] newBytes = new byte[ArrayUtil.getNextSize(capacity)];
+        System.arraycopy(bytes, 0, newBytes, 0, length);
+        bytes = newBytes;
+      }
+    }
+
+    public void writeByte(byte b) {
+      if (pos == bytes.length)
+        ensureCapacity(pos + 1);
+      bytes[pos++] = b;
+      if (pos > length)
+        length = pos;
+    }
+
+    public void writeBytes(byte[] b, int offset, int len) {
+      ensureCapacity(pos + len);
+      System.arraycopy(b, offset, bytes, pos, len);
+      pos += len;
+      if (pos > length)
+        length = pos;
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    public long getFilePointer() {
+      return pos;
+    }
+
+    /** Moves the file pointer within the bytes written so far; later
+     * writes overwrite them. */
+    public void seek(long pos) throws IOException {
+      if (pos < 0 || pos > length)
+        throw new IOException("seek to " + pos + " outside of the " + length + " bytes written");
+      this.pos = (int) pos;
+    }
+
+    public long length() {
+      return length;
+    }
+  }
+
+  /** An IndexInput over a byte array. */
+  static final class Input extends IndexInput {
+    private byte[] bytes;
+    private int length;
+    private int pos;
+
+    void reset(byte[] bytes, int length) {
+      this.bytes = bytes;
+      this.length = length;
+      this.pos = 0;
+    }
+
+    public byte readByte() throws IOException {
+      if (pos >= length)
+        throw new IOException("read past EOF");
+      return bytes[pos++];
+    }
+
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      if (pos + len > length)
+        throw new IOException("read past EOF");
+      System.arraycopy(bytes, pos, b, offset, len);
+      pos += len;
+    }
+
+    public void close() {
+    }
+
+    public long getFilePointer() {
+      return pos;
+    }
+
+    public void seek(long pos) {
+      this.pos = (int) pos;
+    }
+
+    public long length() {
+      return length;
+    }
+  }
+}
@@ -4,11 +4,16 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.CloseableThreadLocal;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -37,6 +42,15 @@ final class FieldsReader {
 
   private CloseableThreadLocal fieldsStreamTL = new CloseableThreadLocal();
 
+  /** Per thread {@link BlockCache}, in the compressed block format. */
+  private CloseableThreadLocal blockCacheTL = new CloseableThreadLocal();
+
+  /** The block caches of all threads, so that {@link #close} can release
+   *  their inflaters.  Weak, like the thread local: the cache of a thread
+   *  that died is collected, and its inflater with it. */
+  private final List blockCaches = new ArrayList();
+  private int[] copyLengths;
+
   FieldsReader(Directory d, String segment, FieldInfos fn) throws IOException {
     this(d, segment, fn, BufferedIndexInput.BUFFER_SIZE, -1, 0);
   }
@@ -122,6 +136,16 @@ final class FieldsReader {
         indexStream.close();
       }
       fieldsStreamTL.close();
+      blockCacheTL.close();
+      synchronized(blockCaches) {
+        Iterator it = blockCaches.iterator();
+        while (it.hasNext()) {
+          final BlockCache cache = (BlockCache) ((WeakReference) it.next()).get();
+          if (cache != null)
+            cache.close();
+        }
+        blockCaches.clear();
+      }
       closed = true;
     }
   }
@@ -141,42 +165,53 @@ final class FieldsReader {
   final Document doc(int n, FieldSelector fieldSelector) throws CorruptIndexException, IOException {
     seekIndex(n);
     long position = indexStream.readLong();
-    fieldsStream.seek(position);
+    final IndexInput in;
+    final long block;
+    if (format >= FieldsWriter.FORMAT_COMPRESSED_BLOCKS) {
+      block = position >>> FieldsBlock.DOC_BITS;
+      BlockCache cache = getBlockCache();
+      in = cache.load(block);
+      in.seek(cache.docStart((int) position & (FieldsBlock.MAX_DOCS - 1)));
+    } else {
+      block = -1;
+      in = fieldsStream;
+      in.seek(position);
+    }
 
     Document doc = new Document();
-    int numFields = fieldsStream.readVInt();
+    int numFields = in.readVInt();
     for (int i = 0; i < numFields; i++) {
-      int fieldNumber = fieldsStream.readVInt();
+      int fieldNumber = in.readVInt();
       FieldInfo fi = fieldInfos.fieldInfo(fieldNumber);
       FieldSelectorResult acceptField = fieldSelector == null ? FieldSelectorResult.LOAD : fieldSelector.accept(fi.name);
       
-      byte bits = fieldsStream.readByte();
+      byte bits = in.readByte();
       assert bits <= FieldsWriter.FIELD_IS_COMPRESSED + FieldsWriter.FIELD_IS_TOKENIZED + FieldsWriter.FIELD_IS_BINARY;
 
       boolean compressed = (bits & FieldsWriter.FIELD_IS_COMPRESSED) != 0;
       boolean tokenize = (bits & FieldsWriter.FIELD_IS_TOKENIZED) != 0;
       boolean binary = (bits & FieldsWriter.FIELD_IS_BINARY) != 0;
       if (acceptField.equals(FieldSelectorResult.LOAD)) {
-        addField(doc, fi, binary, compressed, tokenize);
+        addField(in, doc, fi, binary, compressed, tokenize);
       }
       else if (acceptField.equals(FieldSelectorResult.LOAD_FOR_MERGE)) {
-        addFieldForMerge(doc, fi, binary, compressed, tokenize);
+        addFieldForMerge(in, doc, fi, binary, compressed, tokenize);
       }
       else if (acceptField.equals(FieldSelectorResult.LOAD_AND_BREAK)){
-        addField(doc, fi, binary, compressed, tokenize);
+        addField(in, doc, fi, binary, compressed, tokenize);
       }
       else if (acceptField.equals(FieldSelectorResult.LAZY_LOAD)) {
-        addFieldLazy(doc, fi, binary, compressed, tokenize);
+        addFieldLazy(in, block, doc, fi, binary, compressed, tokenize);
       }
       else if (acceptField.equals(FieldSelectorResult.SIZE)){
-        skipField(binary, compressed, addFieldSize(doc, fi, binary, compressed));
+        skipField(in, binary, compressed, addFieldSize(in, doc, fi, binary, compressed));
       }
       else if (acceptField.equals(FieldSelectorResult.SIZE_AND_BREAK)){
-        addFieldSize(doc, fi, binary, compressed);
+        addFieldSize(in, doc, fi, binary, compressed);
         break;
       }
       else {
-        skipField(binary, compressed);
+        skipField(in, binary, compressed);
       }
     }
 
@@ -209,32 +244,141 @@ final class FieldsReader {
     return fieldsStream;
   }
 
+  /** If the block holding docID starts with it and holds only documents
+   *  of this segment that are not deleted in <code>deletedDocs</code>,
+   *  adds the block to <code>writer</code> without uncompressing it and
+   *  returns its number of documents.  Otherwise returns 0.  Only for the
+   *  compressed block format. */
+  final int copyBlock(int docID, IndexReader deletedDocs, FieldsWriter writer) throws IOException {
+    seekIndex(docID);
+    final long entry = indexStream.readLong();
+    if ((entry & (FieldsBlock.MAX_DOCS - 1)) != 0)
+      return 0;
+    fieldsStream.seek(entry >>> FieldsBlock.DOC_BITS);
+    final int numDocs = fieldsStream.readVInt();
+    // with shared doc stores, a block may hold documents of the next segment
+    if (docID + numDocs > size)
+      return 0;
+    if (deletedDocs != null)
+      for (int i = 0; i < numDocs; i++)
+        if (deletedDocs.isDeleted(docID + i))
+          return 0;
+    if (copyLengths == null)
+      copyLengths = new int[FieldsBlock.MAX_DOCS];
+    for (int i = 0; i < numDocs; i++)
+      copyLengths[i] = fieldsStream.readVInt();
+    final byte codec = fieldsStream.readByte();
+    final int storedLength = fieldsStream.readVInt();
+    writer.addRawBlock(copyLengths, numDocs, codec, fieldsStream, storedLength);
+    return numDocs;
+  }
+
+  /** Adds the uncompressed bytes of document docID to
+   *  <code>writer</code>.  Only for the compressed block format. */
+  final void copyDocument(int docID, FieldsWriter writer) throws IOException {
+    seekIndex(docID);
+    final long entry = indexStream.readLong();
+    final BlockCache cache = getBlockCache();
+    cache.load(entry >>> FieldsBlock.DOC_BITS);
+    final int i = (int) entry & (FieldsBlock.MAX_DOCS - 1);
+    writer.addRawDocument(cache.data, cache.docStart(i), cache.docStart(i + 1) - cache.docStart(i));
+  }
+
+  boolean isCompressedBlocks() {
+    return format >= FieldsWriter.FORMAT_COMPRESSED_BLOCKS;
+  }
+
+  private BlockCache getBlockCache() {
+    BlockCache cache = (BlockCache) blockCacheTL.get();
+    if (cache == null) {
+      cache = new BlockCache();
+      blockCacheTL.set(cache);
+      synchronized(blockCaches) {
+        Iterator it = blockCaches.iterator();
+        while (it.hasNext())
+          if (((WeakReference) it.next()).get() == null)
+            it.remove();
+        blockCaches.add(new WeakReference(cache));
+      }
+    }
+    return cache;
+  }
+
+  /** The last block read by a thread, uncompressed, so that documents
+   *  retrieved in order, and lazy fields, uncompress each block once. */
+  private final class BlockCache {
+    private final IndexInput stream = (IndexInput) cloneableFieldsStream.clone();
+    private final Inflater inflater = new Inflater();
+    private final FieldsBlock.Output scratch = new FieldsBlock.Output();
+    private final FieldsBlock.Input input = new FieldsBlock.Input();
+    private final int[] docStarts = new int[FieldsBlock.MAX_DOCS + 1];
+    private long pointer = -1;
+    private byte[] data = new byte[0];
+    private int length;
+
+    /** Returns an input over the uncompressed block at
+     *  <code>pointer</code>, uncompressing it unless it is cached. */
+    IndexInput load(long pointer) throws IOException {
+      ensureOpen();
+      if (pointer != this.pointer) {
+        this.pointer = -1;
+        stream.seek(pointer);
+        final int numDocs = stream.readVInt();
+        if (numDocs > FieldsBlock.MAX_DOCS)
+          throw new CorruptIndexException("stored fields block of " + numDocs + " documents");
+        length = 0;
+        for (int i = 0; i < numDocs; i++) {
+          docStarts[i] = length;
+          length += stream.readVInt();
+        }
+        docStarts[numDocs] = length;
+        final byte codec = stream.readByte();
+        final int storedLength = stream.readVInt();
+        if (data.length < length)
+          data = new byte[ArrayUtil.getNextSize(length)];
+        FieldsBlock.uncompress(stream, codec, storedLength, inflater, scratch, data, length);
+        this.pointer = pointer;
+      }
+      input.reset(data, length);
+      return input;
+    }
+
+    int docStart(int i) {
+      return docStarts[i];
+    }
+
+    /** Releases the memory of the inflater. */
+    void close() {
+      inflater.end();
+    }
+  }
+
   /**
    * Skip the field.  We still have to read some of the information about the field, but can skip past the actual content.
    * This will have the most payoff on large fields.
    */
-  private void skipField(boolean binary, boolean compressed) throws IOException {
-    skipField(binary, compressed, fieldsStream.readVInt());
+  private void skipField(IndexInput in, boolean binary, boolean compressed) throws IOException {
+    skipField(in, binary, compressed, in.readVInt());
   }
   
-  private void skipField(boolean binary, boolean compressed, int toRead) throws IOException {
+  private void skipField(IndexInput in, boolean binary, boolean compressed, int toRead) throws IOException {
    if (format >= FieldsWriter.FORMAT_VERSION_UTF8_LENGTH_IN_BYTES || binary || compressed) {
-     fieldsStream.seek(fieldsStream.getFilePointer() + toRead);
+     in.seek(in.getFilePointer() + toRead);
    } else {
-     fieldsStream.skipChars(toRead);
+     in.skipChars(toRead);
    }
   }
 
-  private void addFieldLazy(Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws IOException {
+  private void addFieldLazy(IndexInput in, long block, Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws IOException {
     if (binary) {
-      int toRead = fieldsStream.readVInt();
-      long pointer = fieldsStream.getFilePointer();
+      int toRead = in.readVInt();
+      long pointer = in.getFilePointer();
       if (compressed) {
-        doc.add(new LazyField(fi.name, Field.Store.COMPRESS, toRead, pointer, binary));
+        doc.add(new LazyField(fi.name, Field.Store.COMPRESS, toRead, block, pointer, binary));
       } else {
-        doc.add(new LazyField(fi.name, Field.Store.YES, toRead, pointer, binary));
+        doc.add(new LazyField(fi.name, Field.Store.YES, toRead, block, pointer, binary));
       }
-      fieldsStream.seek(pointer + toRead);
+      in.seek(pointer + toRead);
     } else {
       Field.Store store = Field.Store.YES;
       Field.Index index = getIndexType(fi, tokenize);
@@ -243,19 +387,19 @@ final class FieldsReader {
       Fieldable f;
       if (compressed) {
         store = Field.Store.COMPRESS;
-        int toRead = fieldsStream.readVInt();
-        long pointer = fieldsStream.getFilePointer();
-        f = new LazyField(fi.name, store, toRead, pointer, binary);
-        fieldsStream.seek(pointer + toRead);
+        int toRead = in.readVInt();
+        long pointer = in.getFilePointer();
+        f = new LazyField(fi.name, store, toRead, block, pointer, binary);
+        in.seek(pointer + toRead);
         f.setOmitNorms(fi.omitNorms);
       } else {
-        int length = fieldsStream.readVInt();
-        long pointer = fieldsStream.getFilePointer();
+        int length = in.readVInt();
+        long pointer = in.getFilePointer();
         if (format >= FieldsWriter.FORMAT_VERSION_UTF8_LENGTH_IN_BYTES)
-          fieldsStream.seek(pointer+length);
+          in.seek(pointer+length);
         else
-          fieldsStream.skipChars(length);
-        f = new LazyField(fi.name, store, index, termVector, length, pointer, binary);
+          in.skipChars(length);
+        f = new LazyField(fi.name, store, index, termVector, length, block, pointer, binary);
         f.setOmitNorms(fi.omitNorms);
       }
       doc.add(f);
@@ -263,27 +407,27 @@ final class FieldsReader {
 
   }
 
-  private void addFieldForMerge(Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws IOException {
+  private void addFieldForMerge(IndexInput in, Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws IOException {
     Object data;
       
     if (binary || compressed) {
-      int toRead = fieldsStream.readVInt();
+      int toRead = in.readVInt();
       final byte[] b = new byte[toRead];
-      fieldsStream.readBytes(b, 0, b.length);
+      in.readBytes(b, 0, b.length);
       data = b;
     } else {
-      data = fieldsStream.readString();
+      data = in.readString();
     }
       
     doc.add(new FieldForMerge(data, fi, binary, compressed, tokenize));
   }
   
-  private void addField(Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws CorruptIndexException, IOException {
+  private void addField(IndexInput in, Document doc, FieldInfo fi, boolean binary, boolean compressed, boolean tokenize) throws CorruptIndexException, IOException {
 
     if (binary) {
-      int toRead = fieldsStream.readVInt();
+      int toRead = in.readVInt();
       final byte[] b = new byte[toRead];
-      fieldsStream.readBytes(b, 0, b.length);
+      in.readBytes(b, 0, b.length);
       if (compressed)
         doc.add(new Field(fi.name, uncompress(b), Field.Store.COMPRESS));
       else
@@ -297,10 +441,10 @@ final class FieldsReader {
       Fieldable f;
       if (compressed) {
         store = Field.Store.COMPRESS;
-        int toRead = fieldsStream.readVInt();
+        int toRead = in.readVInt();
 
         final byte[] b = new byte[toRead];
-        fieldsStream.readBytes(b, 0, b.length);
+        in.readBytes(b, 0, b.length);
                 store,
                 index,
                 termVector);
@@ -315,8 +459,8 @@ final class FieldsReader {
     }
   }
   
-  private int addFieldSize(Document doc, FieldInfo fi, boolean binary, boolean compressed) throws IOException {
-    int size = fieldsStream.readVInt(), bytesize = binary || compressed ? size : 2*size;
+  private int addFieldSize(IndexInput in, Document doc, FieldInfo fi, boolean binary, boolean compressed) throws IOException {
+    int size = in.readVInt(), bytesize = binary || compressed ? size : 2*size;
     byte[] sizebytes = new byte[4];
     sizebytes[0] = (byte) (bytesize>>>24);
     sizebytes[1] = (byte) (bytesize>>>16);
@@ -364,24 +508,31 @@ final class FieldsReader {
   private class LazyField extends AbstractField implements Fieldable {
     private int toRead;
     private long pointer;
+    /** The block holding the field, in the compressed block format, in
+     *  which case pointer is relative to the start of the block. */
+    private final long block;
 
-    public LazyField(String name, Field.Store store, int toRead, long pointer, boolean isBinary) {
+    public LazyField(String name, Field.Store store, int toRead, long block, long pointer, boolean isBinary) {
       super(name, store, Field.Index.NO, Field.TermVector.NO);
       this.toRead = toRead;
+      this.block = block;
       this.pointer = pointer;
       this.isBinary = isBinary;
       lazy = true;
     }
 
-    public LazyField(String name, Field.Store store, Field.Index index, Field.TermVector termVector, int toRead, long pointer, boolean isBinary) {
+    public LazyField(String name, Field.Store store, Field.Index index, Field.TermVector termVector, int toRead, long block, long pointer, boolean isBinary) {
       super(name, store, index, termVector);
       this.toRead = toRead;
+      this.block = block;
       this.pointer = pointer;
       this.isBinary = isBinary;
       lazy = true;
     }
 
-    private IndexInput getFieldStream() {
+    private IndexInput getFieldStream() throws IOException {
+      if (block >= 0)
+        return getBlockCache().load(block);
       IndexInput localFieldsStream = (IndexInput) fieldsStreamTL.get();
       if (localFieldsStream == null) {
         localFieldsStream = (IndexInput) cloneableFieldsStream.clone();
@@ -422,8 +573,8 @@ final class FieldsReader {
         return null;
       else {
         if (fieldsData == null) {
-          IndexInput localFieldsStream = getFieldStream();
           try {
+            IndexInput localFieldsStream = getFieldStream();
             localFieldsStream.seek(pointer);
             if (isCompressed) {
               final byte[] b = new byte[toRead];
@@ -479,9 +630,8 @@ final class FieldsReader {
           else
             b = result;
    
-          IndexInput localFieldsStream = getFieldStream();
-
           try {
+            IndexInput localFieldsStream = getFieldStream();
             localFieldsStream.seek(pointer);
             localFieldsStream.readBytes(b, 0, toRead);
             if (isCompressed == true) {
@@ -20,7 +20,10 @@ final class FieldsWriter
 
   static final int FORMAT_VERSION_UTF8_LENGTH_IN_BYTES = 1;
 
-  static final int FORMAT_CURRENT = FORMAT_VERSION_UTF8_LENGTH_IN_BYTES;
+  /** Documents are compressed together in blocks, see {@link FieldsBlock}. */
+  static final int FORMAT_COMPRESSED_BLOCKS = 2;
+
+  static final int FORMAT_CURRENT = FORMAT_COMPRESSED_BLOCKS;
   
     private FieldInfos fieldInfos;
 
@@ -30,14 +33,29 @@ final class FieldsWriter
 
     private boolean doClose;
 
+    /** In the compressed block format, the fields file, while
+     *  fieldsStream is the buffer of the current block. */
+    private IndexOutput blocksStream;
+    private final int format;
+    private Deflater deflater;
+    private FieldsBlock.Output compressed;
+    private int[] blockDocLengths;
+    private int blockDocs;
+    private long docStart;
+
     FieldsWriter(Directory d, String segment, FieldInfos fn) throws IOException {
+      this(d, segment, fn, false);
+    }
+
+    FieldsWriter(Directory d, String segment, FieldInfos fn, boolean compressBlocks) throws IOException {
         fieldInfos = fn;
+        format = compressBlocks ? FORMAT_COMPRESSED_BLOCKS : FORMAT_VERSION_UTF8_LENGTH_IN_BYTES;
 
         boolean success = false;
         final String fieldsName = segment + "." + IndexFileNames.FIELDS_EXTENSION;
         try {
           fieldsStream = d.createOutput(fieldsName);
-          fieldsStream.writeInt(FORMAT_CURRENT);
+          fieldsStream.writeInt(format);
           success = true;
         } finally {
           if (!success) {
@@ -56,7 +74,7 @@ final class FieldsWriter
         final String indexName = segment + "." + IndexFileNames.FIELDS_INDEX_EXTENSION;
         try {
           indexStream = d.createOutput(indexName);
-          indexStream.writeInt(FORMAT_CURRENT);
+          indexStream.writeInt(format);
           success = true;
         } finally {
           if (!success) {
@@ -75,6 +93,14 @@ final class FieldsWriter
           }
         }
 
+        if (compressBlocks) {
+          blocksStream = fieldsStream;
+          fieldsStream = new FieldsBlock.Output();
+          deflater = new Deflater(Deflater.BEST_SPEED);
+          compressed = new FieldsBlock.Output();
+          blockDocLengths = new int[FieldsBlock.MAX_DOCS];
+        }
+
         doClose = true;
     }
 
@@ -83,30 +109,105 @@ final class FieldsWriter
         fieldsStream = fdt;
         indexStream = fdx;
         doClose = false;
+        format = FORMAT_VERSION_UTF8_LENGTH_IN_BYTES;
     }
 
     void setFieldsStream(IndexOutput stream) {
       this.fieldsStream = stream;
     }
 
+    /** Returns true if documents are written in compressed blocks. */
+    boolean isCompressedBlocks() {
+      return blocksStream != null;
+    }
+
+    /** Records the start of a document, before its bytes are written to
+     *  fieldsStream. */
+    private void startDocument() throws IOException {
+      if (blocksStream == null)
+        indexStream.writeLong(fieldsStream.getFilePointer());
+      else
+        docStart = fieldsStream.getFilePointer();
+    }
+
+    /** Adds the document written since {@link #startDocument} to the
+     *  current block, writing the block once it is full. */
+    private void finishDocument() throws IOException {
+      if (blocksStream != null) {
+        blockDocLengths[blockDocs++] = (int) (fieldsStream.getFilePointer() - docStart);
+        if (blockDocs == FieldsBlock.MAX_DOCS || fieldsStream.getFilePointer() >= FieldsBlock.TARGET_SIZE)
+          flushBlock();
+      }
+    }
+
+    /** Compresses and writes the current block, if any. */
+    private void flushBlock() throws IOException {
+      if (blockDocs == 0)
+        return;
+      final FieldsBlock.Output block = (FieldsBlock.Output) fieldsStream;
+      final int length = FieldsBlock.compress(deflater, block.bytes, block.length, compressed);
+      writeBlockHeader(blockDocLengths, blockDocs);
+      if (length < 0) {
+        blocksStream.writeByte(FieldsBlock.CODEC_NONE);
+        blocksStream.writeVInt(block.length);
+        blocksStream.writeBytes(block.bytes, block.length);
+      } else {
+        blocksStream.writeByte(FieldsBlock.CODEC_DEFLATE);
+        blocksStream.writeVInt(length);
+        blocksStream.writeBytes(compressed.bytes, length);
+      }
+      block.reset();
+      blockDocs = 0;
+    }
+
+    /** Writes the index entries of the documents of a block starting at
+     *  the current position of the fields file, and the lengths of the
+     *  documents. */
+    private void writeBlockHeader(int[] docLengths, int numDocs) throws IOException {
+      final long entry = blocksStream.getFilePointer() << FieldsBlock.DOC_BITS;
+      for (int i = 0; i < numDocs; i++)
+        indexStream.writeLong(entry | i);
+      blocksStream.writeVInt(numDocs);
+      for (int i = 0; i < numDocs; i++)
+        blocksStream.writeVInt(docLengths[i]);
+    }
+
     void flushDocument(int numStoredFields, RAMOutputStream buffer) throws IOException {
-      indexStream.writeLong(fieldsStream.getFilePointer());
+      startDocument();
       fieldsStream.writeVInt(numStoredFields);
       buffer.writeTo(fieldsStream);
+      finishDocument();
     }
 
     void skipDocument() throws IOException {
-      indexStream.writeLong(fieldsStream.getFilePointer());
+      startDocument();
       fieldsStream.writeVInt(0);
+      finishDocument();
     }
 
+    /** Writes the current block, so that all documents added so far can be
+     *  read, and flushes the files. */
     void flush() throws IOException {
+      if (blocksStream != null) {
+        flushBlock();
+        blocksStream.flush();
+      } else
+        fieldsStream.flush();
       indexStream.flush();
-      fieldsStream.flush();
     }
 
     final void close() throws IOException {
       if (doClose) {
+        if (blocksStream != null) {
+          // write the last block, then close the file instead of the buffer
+          try {
+            flushBlock();
+          } finally {
+            fieldsStream = blocksStream;
+            blocksStream = null;
+            deflater.end();
+          }
+        }
 
         try {
           if (fieldsStream != null) {
@@ -200,6 +301,7 @@ final class FieldsWriter
      *  fieldsStream from which we should bulk-copy all
      *  bytes. */
     final void addRawDocuments(IndexInput stream, int[] lengths, int numDocs) throws IOException {
+      assert blocksStream == null;
       long position = fieldsStream.getFilePointer();
       long start = position;
       for(int i=0;i<numDocs;i++) {
@@ -210,8 +312,44 @@ final class FieldsWriter
       assert fieldsStream.getFilePointer() == position;
     }
 
+    /** Bulk copy documents of <code>reader</code>, which is in the
+     *  compressed block format too, starting with the live document
+     *  docID.  If a block of <code>reader</code> starts with docID and holds
+     *  only live documents, it is copied as it is, without uncompressing
+     *  it, and its number of documents is returned.  Otherwise only docID
+     *  is copied, uncompressed, and 1 is returned.
+     *  @param deletedDocs the reader whose deleted documents are skipped,
+     *  or null if it has none */
+    final int addRawBlockDocuments(FieldsReader reader, int docID, IndexReader deletedDocs) throws IOException {
+      assert blocksStream != null;
+      final int copied = reader.copyBlock(docID, deletedDocs, this);
+      if (copied > 0)
+        return copied;
+      reader.copyDocument(docID, this);
+      return 1;
+    }
+
+    /** Adds a raw compressed block, read from <code>stream</code>, holding
+     *  documents of the given lengths.  The current block is written
+     *  first, even if it is not full, so that the blocks that follow can be
+     *  copied too. */
+    final void addRawBlock(int[] docLengths, int numDocs, byte codec, IndexInput stream, int storedLength) throws IOException {
+      flushBlock();
+      writeBlockHeader(docLengths, numDocs);
+      blocksStream.writeByte(codec);
+      blocksStream.writeVInt(storedLength);
+      blocksStream.copyBytes(stream, storedLength);
+    }
+
+    /** Adds the raw bytes of a document to the current block. */
+    final void addRawDocument(byte[] bytes, int offset, int length) throws IOException {
+      startDocument();
+      fieldsStream.writeBytes(bytes, offset, length);
+      finishDocument();
+    }
+
     final void addDocument(Document doc) throws IOException {
-        indexStream.writeLong(fieldsStream.getFilePointer());
+        startDocument();
 
         int storedCount = 0;
         Iterator fieldIterator = doc.getFields().iterator();
@@ -228,6 +366,7 @@ final class FieldsWriter
             if (field.isStored())
               writeField(fieldInfos.fieldInfo(field.name()), field);
         }
+        finishDocument();
     }
 
     private final byte[] compress (byte[] input, int offset, int length) {
@@ -154,6 +154,10 @@ public class FilterIndexReader extends IndexReader {
     in.setNorm(d, f, b);
   }
 
+  public long getScoringVersion() {
+    return in.getScoringVersion();
+  }
+
   public TermEnum terms() throws IOException {
     ensureOpen();
     return in.terms();
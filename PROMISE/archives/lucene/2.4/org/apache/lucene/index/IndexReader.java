@@ -91,6 +91,7 @@ public abstract class IndexReader {
 
   private boolean closed;
   protected boolean hasChanges;
+  private volatile long scoringVersion;
   
   private volatile int refCount;
   
@@ -687,6 +688,7 @@ public abstract class IndexReader {
     ensureOpen();
     acquireWriteLock();
     hasChanges = true;
+    scoringVersion++;
     doSetNorm(doc, field, value);
   }
 
@@ -868,6 +870,7 @@ public abstract class IndexReader {
     ensureOpen();
     acquireWriteLock();
     hasChanges = true;
+    scoringVersion++;
     doUndeleteAll();
   }
 
@@ -972,6 +975,43 @@ public abstract class IndexReader {
     directory.makeLock(IndexWriter.WRITE_LOCK_NAME).release();
   }
 
+  /**
+   * Expert: returns the sequential sub readers that this
+   * reader is logically composed of, in docID order, or
+   * null if this reader is atomic (e.g. a single segment).
+   * Searchers may use this to search each sub reader
+   * separately and then rebase the docIDs they find.
+   *
+   * <p><b>WARNING</b>: this API is new and experimental and
+   * may suddenly change.</p>
+   */
+  public IndexReader[] getSequentialSubReaders() {
+    return null;
+  }
+
+  /**
+   * Expert: returns the key under which {@link
+   * org.apache.lucene.search.FieldCache} and similar caches
+   * store values for this reader.  Readers that share their
+   * postings with other instances (e.g. a segment reopened
+   * only because its deletions changed) return the same key,
+   * so cached values survive the reopen.
+   */
+  public Object getFieldCacheKey() {
+    return this;
+  }
+
+  /**
+   * Expert: returns a number that changes whenever {@link
+   * #setNorm(int, String, byte)} or {@link #undeleteAll()} is
+   * called on this reader, i.e. whenever values computed from
+   * its norms and live documents, such as the score bounds
+   * cached by term scorers, may have grown.
+   */
+  public long getScoringVersion() {
+    return scoringVersion;
+  }
+
   /**
    * Expert: return the IndexCommit that this reader has
    * opened.  This method is only implemented by those
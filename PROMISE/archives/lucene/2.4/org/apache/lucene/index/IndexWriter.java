@@ -290,6 +290,8 @@ public class IndexWriter {
 
   private int termIndexInterval = DEFAULT_TERM_INDEX_INTERVAL;
 
+  private boolean compressStoredFields = false;
+
   private boolean closeDir;
   private boolean closed;
   private boolean closing;
@@ -471,6 +473,37 @@ public class IndexWriter {
     return termIndexInterval;
   }
 
+  /** Expert: Set whether the stored fields of new segments are written in
+   * compressed blocks.  The stored fields of consecutive documents are then
+   * compressed together, with a fast codec, which makes the stored fields
+   * files much smaller when documents have many short fields, and the
+   * blocks are copied without recompression when segments written this
+   * way are merged.  Retrieving a document uncompresses its whole block,
+   * about 16 KB, but the last block read by each thread is kept, so
+   * documents retrieved in order cost little more.
+   *
+   * <p>Segments are read whichever way they were written, and a merge
+   * rewrites the stored fields of the segments written the other way.
+   * Fields stored with {@link org.apache.lucene.document.Field.Store#COMPRESS}
+   * are still compressed on their own as well; use
+   * {@link org.apache.lucene.document.Field.Store#YES} with compressed blocks.
+   * Default is false.
+   */
+  public void setCompressStoredFields(boolean compress) {
+    ensureOpen();
+    this.compressStoredFields = compress;
+  }
+
+  /** Expert: Returns whether the stored fields of new segments are written
+   * in compressed blocks.
+   *
+   * @see #setCompressStoredFields(boolean)
+   */
+  public boolean getCompressStoredFields() {
+    ensureOpen(false);
+    return compressStoredFields;
+  }
+
   /**
    * Constructs an IndexWriter for the index in <code>path</code>.
    * Text will be analyzed with <code>a</code>.  If <code>create</code>
@@ -3191,6 +3224,103 @@ public class IndexWriter {
     message("commit: done");
   }
 
+  /**
+   * Expert: returns a read-only reader that searches all
+   * documents added, updated or deleted through this writer
+   * so far, without committing them.  Buffered documents
+   * and deletes are flushed to new segments and deletion
+   * files in the Directory, but no segments_N file is
+   * written and no index file is synced, so this is much
+   * cheaper than {@link #commit()} followed by {@link
+   * IndexReader#open}.
+   *
+   * <p>Calling {@link IndexReader#reopen} on the returned
+   * reader (or on any reader reopened from it) flushes this
+   * writer again and shares every SegmentReader whose
+   * segment is unchanged, so the cost of a refresh is
+   * proportional to the newly flushed or merged segments
+   * only.  {@link IndexReader#isCurrent} on such a reader
+   * returns false as soon as this writer has pending
+   * changes.  Once this writer is closed, reopen throws
+   * {@link AlreadyClosedException}.</p>
+   *
+   * <p>The returned reader must be closed by the caller;
+   * closing this writer does not close it.</p>
+   *
+   * <p><b>WARNING</b>: this API is new and experimental and
+   * may suddenly change.</p>
+   *
+   * @throws CorruptIndexException if the index is corrupt
+   * @throws IOException if there is a low-level IO error
+   */
+  public IndexReader getReader() throws CorruptIndexException, IOException {
+    return getReader(null);
+  }
+
+  /** Flushes pending changes and opens a reader over the
+   *  in-memory segmentInfos, reusing the SegmentReaders of
+   *  <code>previous</code> when it is non-null.  The writer
+   *  lock is not held while the segments are opened, so
+   *  that reader and writer are never locked in opposite
+   *  order; instead the files of the cloned segmentInfos
+   *  are incRef'd under the lock, so that a merge committed
+   *  meanwhile cannot delete them, and stay referenced
+   *  until the reader is closed. */
+  DirectoryIndexReader getReader(DirectoryIndexReader previous) throws CorruptIndexException, IOException {
+
+    ensureOpen();
+
+    if (hitOOM)
+      throw new IllegalStateException("this writer hit an OutOfMemoryError; cannot open a reader");
+
+    if (infoStream != null)
+      message("flush at getReader");
+
+    flush(true, true, true);
+
+    final SegmentInfos infos;
+    final long readerChangeCount;
+    synchronized(this) {
+      infos = (SegmentInfos) segmentInfos.clone();
+      readerChangeCount = changeCount;
+      deleter.incRef(infos, false);
+    }
+
+    DirectoryIndexReader reader = null;
+    try {
+      reader = DirectoryIndexReader.open(this, readerChangeCount, directory, infos, previous);
+    } finally {
+      // previous came back unchanged: it already holds its
+      // own references
+      if (reader == null || reader == previous)
+        decRefReader(infos);
+    }
+    return reader;
+  }
+
+  /** Releases the files that {@link #getReader} referenced
+   *  for a reader over <code>infos</code>, once that reader
+   *  is closed.  Does nothing once this writer is closed,
+   *  as the next writer's deleter removes any unreferenced
+   *  file. */
+  synchronized void decRefReader(SegmentInfos infos) throws IOException {
+    if (closed || docWriter == null)
+      return;
+    deleter.decRef(infos);
+  }
+
+  /** Returns true if no document or delete was added, and no
+   *  segment was flushed or merged, since a reader was
+   *  opened by {@link #getReader} at
+   *  <code>readerChangeCount</code>. */
+  synchronized boolean isCurrent(long readerChangeCount) {
+    if (closed || docWriter == null)
+      return false;
+    return readerChangeCount == changeCount
+      && docWriter.getNumDocsInRAM() == 0
+      && !docWriter.hasDeletes();
+  }
+
   /**
    * Flush all in-memory buffered udpates (adds and deletes)
    * to the Directory.
@@ -3571,12 +3701,14 @@ public class IndexWriter {
           if (infoStream != null)
             message("now merge\n  merge=" + merge.segString(directory) + "\n  merge=" + merge + "\n  index=" + segString());
 
+          merge.setStarted();
           mergeMiddle(merge);
           success = true;
         } catch (Throwable t) {
           handleMergeException(t, merge);
         }
       } finally {
+        merge.setFinished();
         synchronized(this) {
           try {
 
@@ -4061,7 +4193,7 @@ public class IndexWriter {
    * @deprecated -- this will be removed in 3.0 when
    * autoCommit is hardwired to false */
   private void syncPause(long sizeInBytes) {
-    if (mergeScheduler instanceof ConcurrentMergeScheduler && maxSyncPauseSeconds > 0) {
+    if ((mergeScheduler instanceof ConcurrentMergeScheduler || mergeScheduler instanceof ThrottledMergeScheduler) && maxSyncPauseSeconds > 0) {
       long pauseTime = (long) (1000*sizeInBytes/10/1024/1024);
       final long maxPauseTime = (long) (maxSyncPauseSeconds*1000);
       if (pauseTime > maxPauseTime)
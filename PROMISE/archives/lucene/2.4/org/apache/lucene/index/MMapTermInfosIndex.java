@@ -0,0 +1,135 @@
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+/**
+ * The term index of a segment read in place from a memory-mapped
+ * <code>.tii</code> file.  Only every <code>sampleInterval</code>-th
+ * index entry is kept on the heap; lookups binary search those samples,
+ * seek a per-thread enum over the mapped file to the nearest one and scan
+ * the few entries up to the wanted term.  So opening a reader costs one
+ * sequential pass over the file and <code>1/sampleInterval</code> of the
+ * heap that {@link TermInfosReader} otherwise needs for its arrays.
+ *
+ * <p>Index entries are addressed by their ordinal in the <code>.tii</code>
+ * file, entry <code>n</code> being the
+ * <code>n*indexInterval</code>-th term of the <code>.tis</code> file.
+ */
+final class MMapTermInfosIndex {
+
+  private final SegmentTermEnum indexEnum;
+  private final int indexInterval;
+  private final int sampleInterval;
+  private final int size;
+
+  private final Term[] sampleTerms;
+  private final TermInfo[] sampleInfos;
+  private final long[] sampleIndexPointers;
+  private final long[] sampleFilePointers;
+
+  /**
+   * @param indexEnum an unread enum over the mapped <code>.tii</code>
+   *  file; it is kept open and cloned per thread
+   * @param indexInterval number of <code>.tis</code> terms per index entry
+   * @param sampleInterval number of index entries per sample held on
+   *  the heap
+   */
+  MMapTermInfosIndex(SegmentTermEnum indexEnum, int indexInterval, int sampleInterval)
+    throws IOException {
+    this.indexEnum = indexEnum;
+    this.indexInterval = indexInterval;
+    this.sampleInterval = sampleInterval;
+    size = (int) indexEnum.size;
+
+    final int numSamples = size == 0 ? 0 : 1 + (size - 1) / sampleInterval;
+    sampleTerms = new Term[numSamples];
+    sampleInfos = new TermInfo[numSamples];
+    sampleIndexPointers = new long[numSamples];
+    sampleFilePointers = new long[numSamples];
+
+    final SegmentTermEnum scan = terms();
+    try {
+      for (int i = 0; scan.next(); i++) {
+        if (i % sampleInterval == 0) {
+          final int sample = i / sampleInterval;
+          sampleTerms[sample] = scan.term();
+          sampleInfos[sample] = scan.termInfo();
+          sampleIndexPointers[sample] = scan.indexPointer;
+          sampleFilePointers[sample] = scan.getFilePointer();
+        }
+      }
+    } finally {
+      scan.close();
+    }
+  }
+
+  /** Returns the number of entries in the index. */
+  int size() {
+    return size;
+  }
+
+  /** Returns a new enum over the mapped index for use by a
+   *  single thread. */
+  SegmentTermEnum terms() {
+    return (SegmentTermEnum) indexEnum.clone();
+  }
+
+  /** Returns the ordinal of the greatest index entry which is
+   *  less than or equal to term. */
+  int getIndexOffset(Term term, SegmentTermEnum scan) throws IOException {
+    int lo = 0;
+    int hi = sampleTerms.length - 1;
+    while (hi >= lo) {
+      int mid = (lo + hi) >>> 1;
+      int delta = term.compareTo(sampleTerms[mid]);
+      if (delta < 0)
+        hi = mid - 1;
+      else if (delta > 0)
+        lo = mid + 1;
+      else
+        return mid * sampleInterval;
+    }
+    if (hi < 0)
+      return -1;
+
+    int offset = seekSample(hi, scan);
+    final int end = Math.min(size, offset + sampleInterval);
+    while (offset + 1 < end && scan.next()) {
+      if (term.compareTo(scan.term()) < 0)
+        break;
+      offset++;
+    }
+    return offset;
+  }
+
+  /** Returns the term of index entry <code>offset</code>. */
+  Term term(int offset, SegmentTermEnum scan) throws IOException {
+    seek(offset, scan);
+    return scan.term();
+  }
+
+  /** Positions enumerator on the <code>.tis</code> term of
+   *  index entry <code>offset</code>. */
+  void seekEnum(SegmentTermEnum enumerator, int offset, SegmentTermEnum scan)
+    throws IOException {
+    seek(offset, scan);
+    enumerator.seek(scan.indexPointer, (offset * indexInterval) - 1,
+                    scan.term(), scan.termInfo());
+  }
+
+  private void seek(int offset, SegmentTermEnum scan) throws IOException {
+    for (int i = seekSample(offset / sampleInterval, scan); i < offset; i++)
+      scan.next();
+  }
+
+  private int seekSample(int sample, SegmentTermEnum scan) throws IOException {
+    final int offset = sample * sampleInterval;
+    scan.seek(sampleFilePointers[sample], offset, sampleTerms[sample], sampleInfos[sample]);
+    scan.indexPointer = sampleIndexPointers[sample];
+    return offset;
+  }
+
+  void close() throws IOException {
+    indexEnum.close();
+  }
+}
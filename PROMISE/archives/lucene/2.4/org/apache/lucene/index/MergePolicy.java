@@ -1,4 +1,5 @@
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RateLimiter;
 
 import java.io.IOException;
 import java.util.List;
@@ -51,6 +52,13 @@ public abstract class MergePolicy {
     boolean aborted;
     Throwable error;
 
+    private RateLimiter rateLimiter;
+    private long estimatedBytes = -1;
+    private long bytesWritten;
+    private long pausedMillis;
+    private long startTime;
+    private long endTime;
+
     public OneMerge(SegmentInfos segments, boolean useCompoundFile) {
       if (0 == segments.size())
         throw new RuntimeException("segments must include at least one segment");
@@ -87,6 +95,110 @@ public abstract class MergePolicy {
         throw new MergeAbortedException("merge is aborted: " + segString(dir));
     }
 
+    /** Sets the limiter that throttles the bytes this merge
+     *  writes, or null to let it write at full speed.  The
+     *  bytes written are only counted, and the progress only
+     *  reported, if a limiter is set when the merge starts;
+     *  it may be changed while the merge runs. */
+    public synchronized void setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+    }
+
+    /** Returns the limiter throttling this merge, or null. */
+    public synchronized RateLimiter getRateLimiter() {
+      return rateLimiter;
+    }
+
+    /** Records that the merge started running. */
+    synchronized void setStarted() {
+      startTime = System.currentTimeMillis();
+      endTime = 0;
+    }
+
+    /** Records that the merge finished running, successfully
+     *  or not. */
+    synchronized void setFinished() {
+      endTime = System.currentTimeMillis();
+    }
+
+    /** Records that the merge wrote <code>bytes</code> more bytes,
+     *  then pauses as the rate limiter, if any, requires.  The
+     *  pause happens without holding this merge's lock, so that
+     *  it can be aborted meanwhile. */
+    void addBytesWritten(long bytes) {
+      final RateLimiter limiter;
+      synchronized(this) {
+        bytesWritten += bytes;
+        limiter = rateLimiter;
+      }
+      if (limiter != null) {
+        final long paused = limiter.pause(bytes);
+        if (paused > 0) {
+          synchronized(this) {
+            pausedMillis += paused;
+          }
+        }
+      }
+    }
+
+    /** Returns the total size of the segments being merged,
+     *  which is the estimate of the bytes this merge will write. */
+    public synchronized long getEstimatedBytes() throws IOException {
+      if (estimatedBytes == -1) {
+        long bytes = 0;
+        final int numSegments = segments.size();
+        for(int i=0;i<numSegments;i++)
+          bytes += segments.info(i).sizeInBytes();
+        estimatedBytes = bytes;
+      }
+      return estimatedBytes;
+    }
+
+    /** Returns the number of bytes this merge wrote so far,
+     *  or 0 if it is not throttled. */
+    public synchronized long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    /** Returns the progress of this merge, from 0.0 before it
+     *  starts to 1.0 once it finished.  While it runs this is
+     *  the share of {@link #getEstimatedBytes} written so far,
+     *  capped below 1.0 because deletions and compound files
+     *  make the estimate inexact. */
+    public synchronized float getProgress() throws IOException {
+      if (endTime != 0)
+        return 1.0f;
+      if (startTime == 0)
+        return 0.0f;
+      final long estimate = getEstimatedBytes();
+      if (estimate == 0)
+        return 0.0f;
+      return Math.min(0.99f, (float) bytesWritten / estimate);
+    }
+
+    /** Returns the milliseconds this merge has been running, or
+     *  ran if it finished; 0 if it did not start. */
+    public synchronized long getElapsedMillis() {
+      if (startTime == 0)
+        return 0;
+      return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /** Returns the milliseconds this merge was paused by its
+     *  rate limiter. */
+    public synchronized long getPausedMillis() {
+      return pausedMillis;
+    }
+
+    /** Returns the megabytes per second this merge wrote, on
+     *  average, since it started. */
+    public synchronized double getMBPerSec() {
+      final long elapsed = getElapsedMillis();
+      if (elapsed == 0)
+        return 0.0;
+      return (bytesWritten / 1024.0 / 1024.0) / (elapsed / 1000.0);
+    }
+
     String segString(Directory dir) {
       StringBuffer b = new StringBuffer();
       final int numSegments = segments.size();
@@ -0,0 +1,143 @@
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+
+/**
+ * Wraps the Directory a merge writes to, so that the bytes the
+ * merge writes are reported to its {@link MergePolicy.OneMerge}, in
+ * chunks, which counts them and pauses as its rate limiter requires.
+ * Everything else is delegated.
+ */
+final class MergeTrackingDirectory extends Directory {
+
+  /** Bytes written between two reports to the merge. */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private final Directory dir;
+  private final MergePolicy.OneMerge merge;
+
+  MergeTrackingDirectory(Directory dir, MergePolicy.OneMerge merge) {
+    this.dir = dir;
+    this.merge = merge;
+    lockFactory = dir.getLockFactory();
+  }
+
+  public IndexOutput createOutput(String name) throws IOException {
+    return new TrackingOutput(dir.createOutput(name));
+  }
+
+  public String[] list() throws IOException {
+    return dir.list();
+  }
+
+  public boolean fileExists(String name) throws IOException {
+    return dir.fileExists(name);
+  }
+
+  public long fileModified(String name) throws IOException {
+    return dir.fileModified(name);
+  }
+
+  public void touchFile(String name) throws IOException {
+    dir.touchFile(name);
+  }
+
+  public void deleteFile(String name) throws IOException {
+    dir.deleteFile(name);
+  }
+
+  /** @deprecated */
+  public void renameFile(String from, String to) throws IOException {
+    dir.renameFile(from, to);
+  }
+
+  public long fileLength(String name) throws IOException {
+    return dir.fileLength(name);
+  }
+
+  public void sync(String name) throws IOException {
+    dir.sync(name);
+  }
+
+  public IndexInput openInput(String name) throws IOException {
+    return dir.openInput(name);
+  }
+
+  public IndexInput openInput(String name, int bufferSize) throws IOException {
+    return dir.openInput(name, bufferSize);
+  }
+
+  public Lock makeLock(String name) {
+    return dir.makeLock(name);
+  }
+
+  public void clearLock(String name) throws IOException {
+    dir.clearLock(name);
+  }
+
+  public String getLockID() {
+    return dir.getLockID();
+  }
+
+  /** Does not close the wrapped directory, which belongs to the writer. */
+  public void close() {
+  }
+
+  private final class TrackingOutput extends IndexOutput {
+    private final IndexOutput out;
+    private int pending;
+
+    TrackingOutput(IndexOutput out) {
+      this.out = out;
+    }
+
+    public void writeByte(byte b) throws IOException {
+      out.writeByte(b);
+      if (++pending >= CHUNK_SIZE)
+        report();
+    }
+
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      out.writeBytes(b, offset, length);
+      pending += length;
+      if (pending >= CHUNK_SIZE)
+        report();
+    }
+
+    private void report() throws IOException {
+      final int bytes = pending;
+      pending = 0;
+      merge.addBytesWritten(bytes);
+      merge.checkAborted(dir);
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    public void close() throws IOException {
+      out.close();
+      if (pending > 0) {
+        merge.addBytesWritten(pending);
+        pending = 0;
+      }
+    }
+
+    public long getFilePointer() {
+      return out.getFilePointer();
+    }
+
+    public void seek(long pos) throws IOException {
+      out.seek(pos);
+    }
+
+    public long length() throws IOException {
+      return out.length();
+    }
+  }
+}
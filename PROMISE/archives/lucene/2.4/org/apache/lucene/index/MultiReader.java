@@ -156,6 +156,10 @@ public class MultiReader extends IndexReader {
     subReaders[i].getTermFreqVector(docNumber - starts[i], mapper);
   }
 
+  public IndexReader[] getSequentialSubReaders() {
+    return subReaders;
+  }
+
   public boolean isOptimized() {
     return false;
   }
@@ -175,6 +175,10 @@ class MultiSegmentReader extends DirectoryIndexReader {
     subReaders[i].getTermFreqVector(docNumber - starts[i], mapper);
   }
 
+  public IndexReader[] getSequentialSubReaders() {
+    return subReaders;
+  }
+
   public boolean isOptimized() {
     return false;
   }
@@ -30,6 +30,7 @@ final class SegmentMerger {
   private Directory directory;
   private String segment;
   private int termIndexInterval = IndexWriter.DEFAULT_TERM_INDEX_INTERVAL;
+  private boolean compressStoredFields = false;
 
   private List readers = new ArrayList();
   private FieldInfos fieldInfos;
@@ -57,9 +58,14 @@ final class SegmentMerger {
   SegmentMerger(IndexWriter writer, String name, MergePolicy.OneMerge merge) {
     directory = writer.getDirectory();
     segment = name;
-    if (merge != null)
+    if (merge != null) {
       checkAbort = new CheckAbort(merge, directory);
+      // only throttled merges pay for counting their bytes
+      if (merge.getRateLimiter() != null)
+        directory = new MergeTrackingDirectory(directory, merge);
+    }
     termIndexInterval = writer.getTermIndexInterval();
+    compressStoredFields = writer.getCompressStoredFields();
   }
   
   boolean hasProx() {
@@ -251,7 +257,7 @@ final class SegmentMerger {
           }        
         };
 
-      final FieldsWriter fieldsWriter = new FieldsWriter(directory, segment, fieldInfos);
+      final FieldsWriter fieldsWriter = new FieldsWriter(directory, segment, fieldInfos, compressStoredFields);
 
       try {
         for (int i = 0; i < readers.size(); i++) {
@@ -261,7 +267,8 @@ final class SegmentMerger {
           final boolean hasMatchingReader;
           if (matchingSegmentReader != null) {
             final FieldsReader fieldsReader = matchingSegmentReader.getFieldsReader();
-            if (fieldsReader != null && !fieldsReader.canReadRawDocs()) {            
+            if (fieldsReader != null && (!fieldsReader.canReadRawDocs() ||
+                                         fieldsReader.isCompressedBlocks() != fieldsWriter.isCompressedBlocks())) {
               matchingFieldsReader = null;
               hasMatchingReader = false;
             } else {
@@ -275,7 +282,16 @@ final class SegmentMerger {
           final int maxDoc = reader.maxDoc();
           final boolean hasDeletions = reader.hasDeletions();
           for (int j = 0; j < maxDoc;) {
-              if (hasMatchingReader) {
+              if (hasMatchingReader && fieldsWriter.isCompressedBlocks()) {
+                // a whole block of live documents is copied as it is, other
+                // documents one at a time
+                final int numDocs = fieldsWriter.addRawBlockDocuments(matchingFieldsReader, j,
+                                                                      hasDeletions ? matchingSegmentReader : null);
+                j += numDocs;
+                docCount += numDocs;
+                if (checkAbort != null)
+                  checkAbort.work(300*numDocs);
+              } else if (hasMatchingReader) {
                 int start = j;
                 int numDocs = 0;
                 do {
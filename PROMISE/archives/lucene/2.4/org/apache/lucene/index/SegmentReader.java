@@ -56,6 +56,37 @@ class SegmentReader extends DirectoryIndexReader {
   
   private SegmentReader referencedSegmentReader = null;
   
+  /** Norm values shared by the {@link Norm}s of a field in readers of the
+   *  same segment, such as a reader and the readers reopened from it, or by
+   *  the fields that have the same norm for all documents.  They are copied
+   *  when one of them changes a value, see {@link Norm#copyOnWrite}. */
+  private static final class NormBytes {
+    final byte[] bytes;
+    /** True for the arrays of {@link SegmentReader#constantNorms},
+     *  which are never changed. */
+    final boolean constant;
+    private int refCount = 1;
+
+    NormBytes(byte[] bytes, boolean constant) {
+      this.bytes = bytes;
+      this.constant = constant;
+    }
+
+    synchronized NormBytes incRef() {
+      refCount++;
+      return this;
+    }
+
+    synchronized void decRef() {
+      assert refCount > 0;
+      refCount--;
+    }
+
+    synchronized boolean isShared() {
+      return constant || refCount > 1;
+    }
+  }
+
   private class Norm {
     volatile int refCount;
     boolean useSingleNormStream;
@@ -69,6 +100,8 @@ class SegmentReader extends DirectoryIndexReader {
       assert refCount > 0;
       if (refCount == 1) {
         close();
+        if (bytesRef != null)
+          bytesRef.decRef();
       }
       refCount--;
 
@@ -83,18 +116,41 @@ class SegmentReader extends DirectoryIndexReader {
       this.useSingleNormStream = useSingleNormStream;
     }
 
+    /** Creates a norm sharing the loaded values of <code>norm</code>,
+     *  for a reader reopened on the same norms. */
+    public Norm(Norm norm)
+    {
+      refCount = 1;
+      this.number = norm.number;
+      this.bytesRef = norm.bytesRef.incRef();
+    }
+
     private IndexInput in;
-    private byte[] bytes;
+    /** The values, or null until they are loaded. */
+    private NormBytes bytesRef;
     private boolean dirty;
     private int number;
     private long normSeek;
     private boolean rollbackDirty;
 
+    /** Returns the loaded values for changing them, after copying them
+     *  if they are shared, and marks this norm dirty. */
+    private synchronized byte[] copyOnWrite() {
+      if (bytesRef.isShared()) {
+        byte[] copy = new byte[bytesRef.bytes.length];
+        System.arraycopy(bytesRef.bytes, 0, copy, 0, copy.length);
+        bytesRef.decRef();
+        bytesRef = new NormBytes(copy, false);
+      }
+      dirty = true;
+      return bytesRef.bytes;
+    }
+
     private void reWrite(SegmentInfo si) throws IOException {
       si.advanceNormGen(this.number);
       IndexOutput out = directory().createOutput(si.getNormFileName(this.number));
       try {
-        out.writeBytes(bytes, maxDoc());
+        out.writeBytes(bytesRef.bytes, maxDoc());
       } finally {
         out.close();
       }
@@ -150,6 +206,10 @@ class SegmentReader extends DirectoryIndexReader {
   }
   
   Map norms = new HashMap();
+
+  /** The arrays of fields whose documents all have the same norm, by
+   *  norm value, shared with the readers reopened from this one. */
+  private NormBytes[] constantNorms = new NormBytes[256];
   
   /** The class which implements SegmentReader. */
   private static Class IMPL;
@@ -469,45 +529,24 @@ class SegmentReader extends DirectoryIndexReader {
         clone.deletedDocs = this.deletedDocs;
       }
   
+      // share the values of the norms that did not change and are
+      // loaded, until either reader changes them; openNorms opens the
+      // others, which the clone loads when it needs them
       clone.norms = new HashMap();
-      if (!normsUpToDate) {
-        for (int i = 0; i < fieldNormsChanged.length; i++) {
-          if (!fieldNormsChanged[i]) {
-            String curField = fieldInfos.fieldInfo(i).name;
-            Norm norm = (Norm) this.norms.get(curField);
-            norm.incRef();
-            clone.norms.put(curField, norm);
+      clone.constantNorms = constantNorms;
+      for (int i = 0; i < fieldNormsChanged.length; i++) {
+        if (!fieldNormsChanged[i]) {
+          String curField = fieldInfos.fieldInfo(i).name;
+          Norm norm = (Norm) this.norms.get(curField);
+          if (norm != null) {
+            synchronized(norm) {
+              if (norm.bytesRef != null)
+                clone.norms.put(curField, new Norm(norm));
+            }
           }
         }
-        
-        clone.openNorms(si.getUseCompoundFile() ? cfsReader : directory(), readBufferSize);
-      } else {
-        Iterator it = norms.keySet().iterator();
-        while (it.hasNext()) {
-          String field = (String) it.next();
-          Norm norm = (Norm) norms.get(field);
-          norm.incRef();
-          clone.norms.put(field, norm);
-        }
       }
-  
-      if (clone.singleNormStream == null) {
-        for (int i = 0; i < fieldInfos.size(); i++) {
-          FieldInfo fi = fieldInfos.fieldInfo(i);
-          if (fi.isIndexed && !fi.omitNorms) {
-            Directory d = si.getUseCompoundFile() ? cfsReader : directory();
-            String fileName = si.getNormFileName(fi.number);
-            if (si.hasSeparateNorms(fi.number)) {
-              continue;
-            }  
-  
-            if (fileName.endsWith("." + IndexFileNames.NORMS_EXTENSION)) {
-              clone.singleNormStream = d.openInput(fileName, readBufferSize);    
-              break;
-            }
-          }
-        }  
-      }    
+      clone.openNorms(si.getUseCompoundFile() ? cfsReader : directory(), readBufferSize);
   
       success = true;
     } finally {
@@ -765,20 +804,49 @@ class SegmentReader extends DirectoryIndexReader {
     return ones;
   }
 
-  private byte[] ones;
   private byte[] fakeNorms() {
-    if (ones==null) ones=createFakeNorms(maxDoc());
-    return ones;
+    return constantNorms(DefaultSimilarity.encodeNorm(1.0f)).bytes;
+  }
+
+  /** Returns the shared array of maxDoc() norms of <code>value</code>. */
+  private NormBytes constantNorms(byte value) {
+    synchronized(constantNorms) {
+      NormBytes bytesRef = constantNorms[value & 0xFF];
+      if (bytesRef == null) {
+        byte[] bytes = new byte[maxDoc()];
+        Arrays.fill(bytes, value);
+        bytesRef = constantNorms[value & 0xFF] = new NormBytes(bytes, true);
+      }
+      return bytesRef;
+    }
+  }
+
+  /** Returns the values of norms just read: if all documents have the same
+   *  norm, the array of that value shared by all such fields, so that the
+   *  field holds no array of its own, otherwise <code>bytes</code>. */
+  private NormBytes compactNorms(byte[] bytes) {
+    for (int i = 1; i < bytes.length; i++) {
+      if (bytes[i] != bytes[0])
+        return new NormBytes(bytes, false);
+    }
+    if (bytes.length == 0)
+      return new NormBytes(bytes, false);
+    return constantNorms(bytes[0]).incRef();
   }
 
   protected synchronized byte[] getNorms(String field) throws IOException {
     Norm norm = (Norm) norms.get(field);
+    if (norm == null) return null;                // not indexed, or norms not stored
     synchronized(norm) {
+      if (norm.bytesRef == null) {                // value not yet read
         byte[] bytes = new byte[maxDoc()];
         norms(field, bytes, 0);
+        norm.bytesRef = compactNorms(bytes);      // cache it
+        // it's OK to close the underlying IndexInput as we have cached the
+        // norms and will never read them again.
         norm.close();
       }
-      return norm.bytes;
+      return norm.bytesRef.bytes;
     }
   }
 
@@ -792,10 +860,13 @@ class SegmentReader extends DirectoryIndexReader {
   protected void doSetNorm(int doc, String field, byte value)
           throws IOException {
     Norm norm = (Norm) norms.get(field);
+    if (norm == null)                             // not an indexed field
       return;
 
     normsDirty = true;
 
+    getNorms(field);                              // load the values
+    norm.copyOnWrite()[doc] = value;              // set the value
   }
 
   /** Read norms into a pre-allocated array. */
@@ -810,10 +881,13 @@ class SegmentReader extends DirectoryIndexReader {
     }
     
     synchronized(norm) {
-        System.arraycopy(norm.bytes, 0, bytes, offset, maxDoc());
+      if (norm.bytesRef != null) {                // can copy from cache
+        System.arraycopy(norm.bytesRef.bytes, 0, bytes, offset, maxDoc());
         return;
       }
 
+      // Read from disk.  norm.in may be shared across multiple norms and
+      // should only be used in a synchronized context.
       IndexInput normStream;
       if (norm.useSingleNormStream) {
         normStream = singleNormStream;
@@ -827,13 +901,18 @@ class SegmentReader extends DirectoryIndexReader {
 
 
   private void openNorms(Directory cfsDir, int readBufferSize) throws IOException {
+    long nextNormSeek = SegmentMerger.NORMS_HEADER.length; //skip header (header unused for now)
     int maxDoc = maxDoc();
     for (int i = 0; i < fieldInfos.size(); i++) {
       FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (norms.containsKey(fi.name)) {
-        continue;
-      }
       if (fi.isIndexed && !fi.omitNorms) {
+        long normSeek = nextNormSeek;
+        nextNormSeek += maxDoc; // increment also if some norms are separate or shared
+        if (norms.containsKey(fi.name)) {
+          // shared with the reader this one was reopened from
+          continue;
+        }
+
         Directory d = directory();
         String fileName = si.getNormFileName(fi.number);
         if (!si.hasSeparateNorms(fi.number)) {
@@ -842,10 +921,8 @@ class SegmentReader extends DirectoryIndexReader {
         
         boolean singleNormFile = fileName.endsWith("." + IndexFileNames.NORMS_EXTENSION);
         IndexInput normInput = null;
-        long normSeek;
 
         if (singleNormFile) {
-          normSeek = nextNormSeek;
           if (singleNormStream==null) {
             singleNormStream = d.openInput(fileName, readBufferSize);
           }
@@ -970,6 +1047,13 @@ class SegmentReader extends DirectoryIndexReader {
     return fieldInfos;
   }
   
+  /** Clones made by {@link #reopenSegment} share the term
+   *  dictionary and postings of this reader, and so its
+   *  FieldCache entries. */
+  public Object getFieldCacheKey() {
+    return tis;
+  }
+
   /**
    * Return the name of the segment this reader is reading.
    */
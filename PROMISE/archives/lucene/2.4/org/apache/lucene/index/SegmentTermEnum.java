@@ -85,6 +85,12 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
     termInfo.set(ti);
   }
 
+  /** Returns the file position of the next entry, to pass
+   *  to {@link #seek} later. */
+  final long getFilePointer() {
+    return input.getFilePointer();
+  }
+
   /** Increments the enumeration to the next element.  True if one exists.*/
   public final boolean next() throws IOException {
     if (position++ >= size - 1) {
@@ -40,7 +40,8 @@ final class StoredFieldsWriter extends DocFieldConsumer {
         assert docStoreSegment != null;
         fieldsWriter = new FieldsWriter(docWriter.directory,
                                         docStoreSegment,
-                                        fieldInfos);
+                                        fieldInfos,
+                                        docWriter.writer.getCompressStoredFields());
         docWriter.addOpenFile(docStoreSegment + "." + IndexFileNames.FIELDS_EXTENSION);
         docWriter.addOpenFile(docStoreSegment + "." + IndexFileNames.FIELDS_INDEX_EXTENSION);
         lastDocID = 0;
@@ -2,6 +2,7 @@ import java.io.IOException;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.cache.Cache;
 import org.apache.lucene.util.cache.SimpleLRUCache;
 import org.apache.lucene.util.CloseableThreadLocal;
@@ -24,11 +25,16 @@ final class TermInfosReader {
   private long[] indexPointers;
   
   private SegmentTermEnum indexEnum;
+  private MMapTermInfosIndex mappedIndex;
   
   private int indexDivisor = 1;
   private int totalIndexInterval;
 
   private final static int DEFAULT_CACHE_SIZE = 1024;
+
+  /** Index entries per sample kept on the heap when the
+   *  term index is read from a memory-mapped file. */
+  final static int MAPPED_INDEX_SAMPLE_INTERVAL = 16;
   
   /**
    * Per-thread resources managed by ThreadLocal
@@ -37,6 +43,9 @@ final class TermInfosReader {
     SegmentTermEnum termEnum;
     
     Cache termInfoCache;
+
+    // enum over the mapped term index, only set when mappedIndex is used
+    SegmentTermEnum indexEnum;
   }
   
   TermInfosReader(Directory dir, String seg, FieldInfos fis)
@@ -89,6 +98,11 @@ final class TermInfosReader {
    * memory usage, at the expense of higher latency when
    * loading a TermInfo.  The default value is 1.</p>
    *
+   * <p>If the term index is read from a memory-mapped file
+   * (the segment is in an {@link MMapDirectory}) all
+   * entries are used, and the divisor instead thins out
+   * the samples of the mapped index kept on the heap.</p>
+   *
    * <b>NOTE:</b> you must call this before the term
    * index is loaded.  If the index is already loaded,
    * an IllegalStateException is thrown.
@@ -100,11 +114,12 @@ final class TermInfosReader {
     if (indexDivisor < 1)
       throw new IllegalArgumentException("indexDivisor must be > 0: got " + indexDivisor);
 
-    if (indexTerms != null)
+    if (indexTerms != null || mappedIndex != null)
       throw new IllegalStateException("index terms are already loaded");
 
     this.indexDivisor = indexDivisor;
-    totalIndexInterval = origEnum.indexInterval * indexDivisor;
+    if (!isMapped(directory))
+      totalIndexInterval = origEnum.indexInterval * indexDivisor;
   }
 
   /** Returns the indexDivisor.
@@ -119,6 +134,8 @@ final class TermInfosReader {
       origEnum.close();
     if (indexEnum != null)
       indexEnum.close();
+    if (mappedIndex != null)
+      mappedIndex.close();
     threadResources.close();
   }
 
@@ -138,7 +155,33 @@ final class TermInfosReader {
     return resources;
   }
 
+  /** Returns the enum over the mapped term index of the
+   *  calling thread. */
+  private SegmentTermEnum getMappedIndexEnum() {
+    ThreadResources resources = getThreadResources();
+    if (resources.indexEnum == null)
+      resources.indexEnum = mappedIndex.terms();
+    return resources.indexEnum;
+  }
+
+  /** Returns true if files of dir, or of the directory
+   *  holding compound file dir, are memory-mapped. */
+  private static boolean isMapped(Directory dir) {
+    if (dir instanceof CompoundFileReader)
+      dir = ((CompoundFileReader) dir).getDirectory();
+    return dir instanceof MMapDirectory;
+  }
+
   private synchronized void ensureIndexIsRead() throws IOException {
+    if (mappedIndex != null)
+      return;
+    if (isMapped(directory)) {
+      // read the index in place; indexEnum now belongs to mappedIndex
+      mappedIndex = new MMapTermInfosIndex(indexEnum, origEnum.indexInterval,
+                                           MAPPED_INDEX_SAMPLE_INTERVAL * indexDivisor);
+      indexEnum = null;
+      return;
+    }
     try {
 
       indexTerms = new Term[indexSize];
@@ -161,7 +204,9 @@ final class TermInfosReader {
   }
 
   /** Returns the offset of the greatest index entry which is less than or equal to term.*/
-  private final int getIndexOffset(Term term) {
+  private final int getIndexOffset(Term term) throws IOException {
+    if (mappedIndex != null)
+      return mappedIndex.getIndexOffset(term, getMappedIndexEnum());
     int hi = indexTerms.length - 1;
 
     while (hi >= lo) {
@@ -178,11 +223,22 @@ final class TermInfosReader {
   }
 
   private final void seekEnum(SegmentTermEnum enumerator, int indexOffset) throws IOException {
+    if (mappedIndex != null) {
+      mappedIndex.seekEnum(enumerator, indexOffset, getMappedIndexEnum());
+      return;
+    }
     enumerator.seek(indexPointers[indexOffset],
                    (indexOffset * totalIndexInterval) - 1,
                    indexTerms[indexOffset], indexInfos[indexOffset]);
   }
 
+  /** Returns the term of index entry indexOffset. */
+  private final Term indexTerm(int indexOffset) throws IOException {
+    if (mappedIndex != null)
+      return mappedIndex.term(indexOffset, getMappedIndexEnum());
+    return indexTerms[indexOffset];
+  }
+
   /** Returns the TermInfo for a Term in the set, or null. */
   TermInfo get(Term term) throws IOException {
     return get(term, true);
@@ -210,7 +266,7 @@ final class TermInfosReader {
 	&& ((enumerator.prev() != null && term.compareTo(enumerator.prev())> 0)
 	    || term.compareTo(enumerator.term()) >= 0)) {
       int enumOffset = (int)(enumerator.position/totalIndexInterval)+1;
-    || term.compareTo(indexTerms[enumOffset]) < 0) {
+    || term.compareTo(indexTerm(enumOffset)) < 0) {
 
         int numScans = enumerator.scanTo(term);
         if (enumerator.term() != null && term.compareTo(enumerator.term()) == 0) {
@@ -0,0 +1,367 @@
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RateLimiter;
+
+/** A {@link MergeScheduler} that, like {@link
+ *  ConcurrentMergeScheduler}, runs merges in background
+ *  threads, but limits the bytes per second the running
+ *  merges write together, so that merging does not take all
+ *  of the disk bandwidth away from searching and indexing.
+ *
+ *  <p>Pending merges are run smallest first, so that the
+ *  many small merges that keep the segment count low are
+ *  not held up behind a large one.</p>
+ *
+ *  <p>The rate adapts to the backlog of merges: whenever a
+ *  merge starts while others are still waiting the rate is
+ *  raised by 20%, up to {@link #setMaxMBPerSec}, and whenever
+ *  one starts with none waiting it is lowered by 10%, down
+ *  to {@link #setMinMBPerSec}.  Merges smaller than {@link
+ *  #setMaxUnthrottledMB} and merges run by optimize are not
+ *  throttled.  If more merges wait than there are threads,
+ *  the threads that are updating the index pause until the
+ *  backlog shrinks.</p>
+ *
+ *  <p>{@link #getRunningMerges} returns the running merges;
+ *  the progress and throughput of the throttled ones are
+ *  available from {@link MergePolicy.OneMerge}.</p>
+ *
+ * <p><b>NOTE:</b> This API is new and still experimental
+ * (subject to change suddenly in the next release)</p>
+ */
+
+public class ThrottledMergeScheduler extends MergeScheduler {
+
+  private int maxThreadCount = 2;
+  private int mergeThreadPriority = -1;
+  private double minMBPerSec = 5.0;
+  private double maxMBPerSec = 100.0;
+  private double maxUnthrottledMB = 10.0;
+
+  private final RateLimiter rateLimiter = new RateLimiter(20.0);
+  private final List pendingMerges = new ArrayList();
+  private final List mergeThreads = new ArrayList();
+  private int mergeThreadCount;
+
+  private IndexWriter writer;
+  private Directory dir;
+
+  /** Sets the max # simultaneous merge threads.  If more
+   *  merges than this are waiting, the thread that is calling
+   *  add/updateDocument will block until the backlog
+   *  shrinks. */
+  public synchronized void setMaxThreadCount(int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("count should be at least 1");
+    maxThreadCount = count;
+  }
+
+  /** @see #setMaxThreadCount */
+  public synchronized int getMaxThreadCount() {
+    return maxThreadCount;
+  }
+
+  /** Sets the priority that merge threads run at.  By default
+   *  it is the priority of the first thread that calls merge
+   *  plus 1. */
+  public synchronized void setMergeThreadPriority(int pri) {
+    if (pri > Thread.MAX_PRIORITY || pri < Thread.MIN_PRIORITY)
+      throw new IllegalArgumentException("priority must be in range " + Thread.MIN_PRIORITY + " .. " + Thread.MAX_PRIORITY + " inclusive");
+    mergeThreadPriority = pri;
+    final int numThreads = mergeThreads.size();
+    for(int i=0;i<numThreads;i++)
+      ((MergeThread) mergeThreads.get(i)).setThreadPriority(pri);
+  }
+
+  /** Sets the lowest rate, in megabytes per second, the
+   *  throttled merges are slowed down to.  Default is 5.0. */
+  public synchronized void setMinMBPerSec(double mbPerSec) {
+    if (mbPerSec <= 0.0 || mbPerSec > maxMBPerSec)
+      throw new IllegalArgumentException("minMBPerSec must be > 0 and <= maxMBPerSec (got " + mbPerSec + ")");
+    minMBPerSec = mbPerSec;
+    if (rateLimiter.getMBPerSec() < mbPerSec)
+      rateLimiter.setMBPerSec(mbPerSec);
+  }
+
+  /** @see #setMinMBPerSec */
+  public synchronized double getMinMBPerSec() {
+    return minMBPerSec;
+  }
+
+  /** Sets the highest rate, in megabytes per second, the
+   *  throttled merges are allowed when merges back up.
+   *  Default is 100.0. */
+  public synchronized void setMaxMBPerSec(double mbPerSec) {
+    if (mbPerSec < minMBPerSec)
+      throw new IllegalArgumentException("maxMBPerSec must be >= minMBPerSec (got " + mbPerSec + ")");
+    maxMBPerSec = mbPerSec;
+    if (rateLimiter.getMBPerSec() > mbPerSec)
+      rateLimiter.setMBPerSec(mbPerSec);
+  }
+
+  /** @see #setMaxMBPerSec */
+  public synchronized double getMaxMBPerSec() {
+    return maxMBPerSec;
+  }
+
+  /** Sets the size, in megabytes of segments to merge, below
+   *  which merges are not throttled.  Default is 10.0. */
+  public synchronized void setMaxUnthrottledMB(double mb) {
+    if (mb < 0.0)
+      throw new IllegalArgumentException("maxUnthrottledMB must be >= 0 (got " + mb + ")");
+    maxUnthrottledMB = mb;
+  }
+
+  /** @see #setMaxUnthrottledMB */
+  public synchronized double getMaxUnthrottledMB() {
+    return maxUnthrottledMB;
+  }
+
+  /** Returns the rate, in megabytes per second, throttled
+   *  merges currently write at, at most. */
+  public double getMBPerSec() {
+    return rateLimiter.getMBPerSec();
+  }
+
+  /** Returns the number of merges waiting for a thread. */
+  public synchronized int getPendingMergeCount() {
+    return pendingMerges.size();
+  }
+
+  /** Returns the merges currently running. */
+  public synchronized MergePolicy.OneMerge[] getRunningMerges() {
+    List running = new ArrayList();
+    final int numThreads = mergeThreads.size();
+    for(int i=0;i<numThreads;i++) {
+      MergePolicy.OneMerge merge = ((MergeThread) mergeThreads.get(i)).getRunningMerge();
+      if (merge != null)
+        running.add(merge);
+    }
+    return (MergePolicy.OneMerge[]) running.toArray(new MergePolicy.OneMerge[running.size()]);
+  }
+
+  private void message(String message) {
+    if (writer != null)
+      writer.message("TMS: " + message);
+  }
+
+  public void merge(IndexWriter writer)
+    throws CorruptIndexException, IOException {
+
+    synchronized(this) {
+      this.writer = writer;
+      dir = writer.getDirectory();
+      if (mergeThreadPriority == -1)
+        mergeThreadPriority = Math.min(Thread.MAX_PRIORITY, 1+Thread.currentThread().getPriority());
+    }
+
+    message("now merge");
+    message("  index: " + writer.segString());
+
+    pullMerges(writer);
+
+    synchronized(this) {
+      while(true) {
+        launchThreads(writer);
+
+        if (pendingMerges.size() <= maxThreadCount)
+          break;
+
+        message("    " + pendingMerges.size() + " merges waiting; stalling...");
+        try {
+          wait();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  /** Starts threads until every waiting merge has an idle
+   *  thread to take it, or {@link #setMaxThreadCount} threads
+   *  run.  Called with this scheduler's lock held, which is
+   *  also held by a thread deciding to exit in {@link
+   *  #nextMerge}, so no merge is queued without a thread. */
+  private synchronized void launchThreads(IndexWriter writer) {
+    while (mergeThreadCount() < maxThreadCount && idleThreadCount() < pendingMerges.size()) {
+      final MergeThread merger = new MergeThread(writer);
+      mergeThreads.add(merger);
+      message("    launch new thread [" + merger.getName() + "]");
+      merger.start();
+    }
+  }
+
+  /** Moves the merges the writer has pending to this
+   *  scheduler's queue.  This does not hold this scheduler's
+   *  lock while the writer's is taken. */
+  private void pullMerges(IndexWriter writer) throws IOException {
+    while(true) {
+      MergePolicy.OneMerge merge = writer.getNextMerge();
+      if (merge == null)
+        return;
+      writer.mergeInit(merge);
+      merge.getEstimatedBytes();
+      synchronized(this) {
+        message("  queue merge " + merge.segString(dir));
+        pendingMerges.add(merge);
+      }
+    }
+  }
+
+  /** Removes the smallest waiting merge and makes it the
+   *  running merge of <code>thread</code>, setting its rate
+   *  limiter and adapting the rate to the number of merges
+   *  still waiting.  If none waits, the thread is removed
+   *  and null is returned, so that it is no longer counted
+   *  as idle once this lock is released. */
+  private synchronized MergePolicy.OneMerge nextMerge(MergeThread thread) throws IOException {
+    final int count = pendingMerges.size();
+    if (count == 0) {
+      mergeThreads.remove(thread);
+      notifyAll();
+      return null;
+    }
+
+    int smallest = 0;
+    for(int i=1;i<count;i++)
+      if (((MergePolicy.OneMerge) pendingMerges.get(i)).getEstimatedBytes() <
+          ((MergePolicy.OneMerge) pendingMerges.get(smallest)).getEstimatedBytes())
+        smallest = i;
+    final MergePolicy.OneMerge merge = (MergePolicy.OneMerge) pendingMerges.remove(smallest);
+    notifyAll();
+
+    final double mb = merge.getEstimatedBytes() / 1024.0 / 1024.0;
+    if (merge.optimize || mb <= maxUnthrottledMB)
+      merge.setRateLimiter(null);
+    else {
+      final double current = rateLimiter.getMBPerSec();
+      final double target;
+      if (pendingMerges.size() > 0)
+        target = Math.min(maxMBPerSec, current * 1.2);
+      else
+        target = Math.max(minMBPerSec, current / 1.1);
+      if (target != current) {
+        rateLimiter.setMBPerSec(target);
+        message("  now throttling merges to " + target + " MB/sec");
+      }
+      merge.setRateLimiter(rateLimiter);
+    }
+    thread.setRunningMerge(merge);
+    return merge;
+  }
+
+  /** Does the actual merge, by calling {@link IndexWriter#merge} */
+  protected void doMerge(MergePolicy.OneMerge merge)
+    throws IOException {
+    writer.merge(merge);
+  }
+
+  public void close() {
+  }
+
+  /** Waits for all merge threads to finish. */
+  public synchronized void sync() {
+    while(mergeThreadCount() > 0) {
+      message("now wait for threads; currently " + mergeThreads.size() + " still running");
+      try {
+        wait();
+      } catch (InterruptedException e) {
+      }
+    }
+  }
+
+  /** Returns the number of merge threads that are not
+   *  running a merge.  Each of them calls {@link #nextMerge}
+   *  before it exits. */
+  private synchronized int idleThreadCount() {
+    int count = 0;
+    final int numThreads = mergeThreads.size();
+    for(int i=0;i<numThreads;i++)
+      if (((MergeThread) mergeThreads.get(i)).getRunningMerge() == null)
+        count++;
+    return count;
+  }
+
+  /** Returns the number of merge threads that were started
+   *  and did not exit yet. */
+  private synchronized int mergeThreadCount() {
+    return mergeThreads.size();
+  }
+
+  /** Called when an exception is hit in a background merge
+   *  thread */
+  protected void handleMergeException(Throwable exc) {
+    throw new MergePolicy.MergeException(exc, dir);
+  }
+
+  private class MergeThread extends Thread {
+
+    private final IndexWriter writer;
+    private MergePolicy.OneMerge runningMerge;
+
+    MergeThread(IndexWriter writer) {
+      this.writer = writer;
+      setThreadPriority(mergeThreadPriority);
+      setDaemon(true);
+      setName("Lucene Throttled Merge Thread #" + mergeThreadCount++);
+    }
+
+    synchronized void setRunningMerge(MergePolicy.OneMerge merge) {
+      runningMerge = merge;
+    }
+
+    synchronized MergePolicy.OneMerge getRunningMerge() {
+      return runningMerge;
+    }
+
+    void setThreadPriority(int pri) {
+      try {
+        setPriority(pri);
+      } catch (NullPointerException npe) {
+      } catch (SecurityException se) {
+      }
+    }
+
+    public void run() {
+      try {
+        message("  merge thread: start");
+
+        while(true) {
+          MergePolicy.OneMerge merge = nextMerge(this);
+          if (merge == null)
+            break;
+          try {
+            doMerge(merge);
+          } finally {
+            setRunningMerge(null);
+          }
+          message("  merge thread: merged " + merge.getBytesWritten() + " bytes in " +
+                  merge.getElapsedMillis() + " msec (" + merge.getPausedMillis() + " msec paused)");
+          // a finished merge may have cascaded into new ones
+          pullMerges(writer);
+        }
+
+        message("  merge thread: done");
+
+      } catch (Throwable exc) {
+        if (!(exc instanceof MergePolicy.MergeAbortedException))
+          handleMergeException(exc);
+      } finally {
+        synchronized(ThrottledMergeScheduler.this) {
+          if (mergeThreads.remove(this)) {
+            // died on an exception: the merges still queued
+            // need a thread, or finishMerges would wait forever
+            launchThreads(writer);
+          }
+          ThrottledMergeScheduler.this.notifyAll();
+        }
+      }
+    }
+  }
+}
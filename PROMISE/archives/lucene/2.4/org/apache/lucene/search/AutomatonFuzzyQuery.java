@@ -0,0 +1,46 @@
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+
+/** A {@link FuzzyQuery} that enumerates the matching terms with an
+ * {@link AutomatonFuzzyTermEnum}.  It matches the same terms with the same
+ * scores, but instead of computing the edit distance of every term that
+ * shares the prefix it skips the ranges of the term dictionary that cannot
+ * be within the edit distance, which makes it much faster on fields with
+ * many terms, particularly with a short or empty prefix.
+ */
+public class AutomatonFuzzyQuery extends FuzzyQuery {
+
+  /**
+   * Create a new AutomatonFuzzyQuery that will match terms with a similarity
+   * of at least <code>minimumSimilarity</code> to <code>term</code>.
+   * If a <code>prefixLength</code> &gt; 0 is specified, a common prefix
+   * of that length is also required.
+   *
+   * @see FuzzyQuery#FuzzyQuery(Term, float, int)
+   */
+  public AutomatonFuzzyQuery(Term term, float minimumSimilarity, int prefixLength) throws IllegalArgumentException {
+    super(term, minimumSimilarity, prefixLength);
+  }
+
+  /**
+   * Calls {@link #AutomatonFuzzyQuery(Term, float, int) AutomatonFuzzyQuery(term, minimumSimilarity, 0)}.
+   */
+  public AutomatonFuzzyQuery(Term term, float minimumSimilarity) throws IllegalArgumentException {
+    this(term, minimumSimilarity, defaultPrefixLength);
+  }
+
+  /**
+   * Calls {@link #AutomatonFuzzyQuery(Term, float, int) AutomatonFuzzyQuery(term, 0.5f, 0)}.
+   */
+  public AutomatonFuzzyQuery(Term term) {
+    this(term, defaultMinSimilarity, defaultPrefixLength);
+  }
+
+  protected FilteredTermEnum getEnum(IndexReader reader) throws IOException {
+    return new AutomatonFuzzyTermEnum(reader, getTerm(), getMinSimilarity(), getPrefixLength());
+  }
+}
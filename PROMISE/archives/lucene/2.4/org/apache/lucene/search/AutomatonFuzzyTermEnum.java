@@ -0,0 +1,248 @@
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/** Enumerates the same terms as {@link FuzzyTermEnum}, with the same
+ * {@link #difference()}, without visiting every term that shares the
+ * prefix.
+ *
+ * <p>The terms are run through a {@link LevenshteinAutomaton} accepting the
+ * strings within the largest edit distance any term may have from the search
+ * term and still be similar enough.  When a term leads the automaton to a
+ * dead state, no term starting with the characters read so far can match, so
+ * the enumeration seeks directly to the smallest string greater than the term
+ * that leads to a live state, skipping the whole range in between.  Only the
+ * terms that are accepted are compared exactly, from the distance the
+ * automaton computed.  The states of the characters a term shares with the
+ * previous one are reused.
+ *
+ * <p>Term enumerations are always ordered by Term.compareTo().  Each term in
+ * the enumeration is greater than all that precede it.
+ */
+public final class AutomatonFuzzyTermEnum extends FilteredTermEnum {
+
+  private final IndexReader reader;
+  private final String field;
+  private final String prefix;
+  private final int textLength;
+
+  private final float minimumSimilarity;
+  private final float scale_factor;
+
+  private final LevenshteinAutomaton automaton;
+
+  /** states[i] is the state reached by the first i characters of chars */
+  private final int[][] states;
+  private final char[] chars;
+  /** Number of characters in chars whose states are valid, all live. */
+  private int validChars = 0;
+  private final int[] scratch;
+
+  private TermEnum actualEnum;
+  private Term currentTerm = null;
+  private float similarity;
+  private boolean endEnum = false;
+
+  /**
+   * Creates an enumeration of the terms of <code>reader</code> which share
+   * a prefix of length <code>prefixLength</code> with <code>term</code> and
+   * have a fuzzy similarity &gt; <code>minSimilarity</code>, as defined by
+   * {@link FuzzyTermEnum}.
+   * <p>
+   * After calling the constructor the enumeration is already pointing to the first
+   * valid term if such a term exists.
+   *
+   * @param reader Delivers terms.
+   * @param term Pattern term.
+   * @param minSimilarity Minimum required similarity for terms from the reader.
+   * @param prefixLength Length of required common prefix.
+   * @throws IOException
+   */
+  public AutomatonFuzzyTermEnum(IndexReader reader, Term term, final float minSimilarity, final int prefixLength) throws IOException {
+    if (minSimilarity >= 1.0f)
+      throw new IllegalArgumentException("minimumSimilarity cannot be greater than or equal to 1");
+    else if (minSimilarity < 0.0f)
+      throw new IllegalArgumentException("minimumSimilarity cannot be less than 0");
+    if (prefixLength < 0)
+      throw new IllegalArgumentException("prefixLength cannot be less than 0");
+
+    this.reader = reader;
+    this.minimumSimilarity = minSimilarity;
+    this.scale_factor = 1.0f / (1.0f - minimumSimilarity);
+    this.field = term.field();
+
+    final String fullText = term.text();
+    final int realPrefixLength = prefixLength > fullText.length() ? fullText.length() : prefixLength;
+    this.prefix = fullText.substring(0, realPrefixLength);
+    final String text = fullText.substring(realPrefixLength);
+    this.textLength = text.length();
+
+    // the largest distance allowed, for terms at least as long as the text
+    this.automaton = new LevenshteinAutomaton(text, calculateMaxDistance(textLength));
+
+    // a live state is never reached by more than textLength + maxDistance characters
+    final int maxLength = textLength + automaton.getMaxDistance() + 1;
+    this.states = new int[maxLength + 1][automaton.stateSize()];
+    this.chars = new char[maxLength];
+    this.scratch = new int[automaton.stateSize()];
+    automaton.start(states[0]);
+
+    actualEnum = reader.terms(new Term(field, prefix));
+    findMatch();
+  }
+
+  /** Increments the enumeration to the next element.  True if one exists. */
+  public boolean next() throws IOException {
+    currentTerm = null;
+    if (endEnum)
+      return false;
+    if (!actualEnum.next()) {
+      endEnum = true;
+      return false;
+    }
+    return findMatch();
+  }
+
+  /** Advances from the current term of the actual enumeration to the first
+   * matching term, seeking past the ranges the automaton rejects. */
+  private boolean findMatch() throws IOException {
+    while (true) {
+      final Term term = actualEnum.term();
+      if (term == null || term.field() != field || !term.text().startsWith(prefix)) {
+        endEnum = true;
+        return false;
+      }
+
+      final String text = term.text();
+      final int length = text.length() - prefix.length();
+      final int read = run(text);
+      if (read == length) {
+        if (isSimilar(length)) {
+          currentTerm = term;
+          return true;
+        }
+        // not accepted, but terms starting with this one may be
+        if (!actualEnum.next()) {
+          endEnum = true;
+          return false;
+        }
+        continue;
+      }
+
+      final String target = nextLiveString(read);
+      if (target == null) {
+        endEnum = true;
+        return false;
+      }
+      actualEnum.close();
+      actualEnum = reader.terms(new Term(field, prefix + target));
+    }
+  }
+
+  /** Runs the automaton on the characters of <code>text</code> after the
+   * prefix, from the states of the characters it shares with the previous
+   * run.  Returns the number of characters read before a dead state was
+   * reached, or the number of characters if none was. */
+  private int run(String text) {
+    final int start = prefix.length();
+    final int length = text.length() - start;
+    final int common = validChars < length ? validChars : length;
+    int i = 0;
+    while (i < common && chars[i] == text.charAt(start + i))
+      i++;
+    for (; i < length; i++) {
+      final char c = text.charAt(start + i);
+      automaton.step(states[i], c, states[i + 1]);
+      chars[i] = c;
+      if (!automaton.isLive(states[i + 1])) {
+        validChars = i;
+        return i;
+      }
+    }
+    validChars = length;
+    return length;
+  }
+
+  /** Returns the smallest string greater than the last run which leads to a
+   * live state, given that its first <code>read + 1</code> characters lead
+   * to a dead one, or null if there is none. */
+  private String nextLiveString(int read) {
+    for (int i = read; i >= 0; i--) {
+      final int c = automaton.nextLiveChar(states[i], chars[i], scratch);
+      if (c >= 0) {
+        final StringBuffer buffer = new StringBuffer(i + 1);
+        buffer.append(chars, 0, i);
+        buffer.append((char) c);
+        return buffer.toString();
+      }
+    }
+    return null;
+  }
+
+  /** Computes the similarity of the last run, which read
+   * <code>length</code> characters, and returns whether it is enough. */
+  private boolean isSimilar(int length) {
+    final int distance = automaton.distance(states[length]);
+    if (distance > automaton.getMaxDistance())
+      return false;
+    similarity = similarity(distance, length);
+    return similarity > minimumSimilarity;
+  }
+
+  /** The similarity of {@link FuzzyTermEnum}, for a target of length
+   * <code>m</code> at edit distance <code>distance</code> from the text. */
+  private float similarity(int distance, int m) {
+    final int n = textLength;
+    final int prefixLength = prefix.length();
+    if (n == 0)
+      return prefixLength == 0 ? 0.0f : 1.0f - ((float) m / prefixLength);
+    if (m == 0)
+      return prefixLength == 0 ? 0.0f : 1.0f - ((float) n / prefixLength);
+    if (distance > calculateMaxDistance(m))
+      return 0.0f;
+    return 1.0f - ((float) distance / (float) (prefixLength + Math.min(n, m)));
+  }
+
+  private int calculateMaxDistance(int m) {
+    return (int) ((1-minimumSimilarity) * (Math.min(textLength, m) + prefix.length()));
+  }
+
+  /** Returns true if <code>term</code> is similar enough to the search
+   * term. */
+  protected boolean termCompare(Term term) {
+    if (term.field() != field || !term.text().startsWith(prefix))
+      return false;
+    final int length = term.text().length() - prefix.length();
+    return run(term.text()) == length && isSimilar(length);
+  }
+
+  public float difference() {
+    return (float)((similarity - minimumSimilarity) * scale_factor);
+  }
+
+  protected boolean endEnum() {
+    return endEnum;
+  }
+
+  public Term term() {
+    return currentTerm;
+  }
+
+  public int docFreq() {
+    if (currentTerm == null)
+      return -1;
+    return actualEnum.docFreq();
+  }
+
+  public void close() throws IOException {
+    if (actualEnum != null)
+      actualEnum.close();
+    actualEnum = null;
+    currentTerm = null;
+    endEnum = true;
+  }
+}
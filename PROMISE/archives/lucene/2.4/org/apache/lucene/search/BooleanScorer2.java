@@ -249,6 +249,16 @@ class BooleanScorer2 extends Scorer {
    * <br>When this method is used the {@link #explain(int)} method should not be used.
    */
   public void score(HitCollector hc) throws IOException {
+    if (requiredScorers.size() == 0 && prohibitedScorers.size() == 0
+        && optionalScorers.size() > 1 && minNrShouldMatch <= 1
+        && countingSumScorer == null
+        && hc.minCompetitiveScore() > Float.NEGATIVE_INFINITY) {
+      // the collector skips non-competitive hits: prune if the scores are bounded
+      Scorer[] scorers = (Scorer[]) optionalScorers.toArray(new Scorer[optionalScorers.size()]);
+      if (MaxScorePruner.score(scorers, getSimilarity(), hc)) {
+        return;
+      }
+    }
     if (allowDocsOutOfOrder && requiredScorers.size() == 0
             && prohibitedScorers.size() < 32) {
       BooleanScorer bs = new BooleanScorer(getSimilarity(), minNrShouldMatch);
@@ -306,6 +316,21 @@ class BooleanScorer2 extends Scorer {
     return sum * coordinator.coordFactor();
   }
 
+  /** Returns the sum of the bounds of the required and optional scorers
+   * times the largest coordination factor.
+   */
+  public float maxScore() throws IOException {
+    float sum = 0.0f;
+    for (int i = 0; i < requiredScorers.size(); i++)
+      sum += ((Scorer) requiredScorers.get(i)).maxScore();
+    for (int i = 0; i < optionalScorers.size(); i++)
+      sum += ((Scorer) optionalScorers.get(i)).maxScore();
+    float maxCoord = 0.0f;
+    for (int i = 0; i <= coordinator.maxCoord; i++)
+      maxCoord = Math.max(maxCoord, getSimilarity().coord(i, coordinator.maxCoord));
+    return sum * maxCoord;
+  }
+
   /** Skips to the first match beyond the current whose document number is
    * greater than or equal to a given target.
    * 
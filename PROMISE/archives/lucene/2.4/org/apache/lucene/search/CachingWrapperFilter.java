@@ -1,4 +1,7 @@
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.OpenBitSetDISI;
+import org.apache.lucene.util.SortedVIntList;
 import java.util.BitSet;
 import java.util.WeakHashMap;
 import java.util.Map;
@@ -7,10 +10,20 @@ import java.io.IOException;
 /**
  * Wraps another filter's result and caches it.  The purpose is to allow
  * filters to simply filter, and then wrap with this class to add caching.
+ *
+ * <p>The result is computed and cached per segment, so after a reopen
+ * only new segments are filtered again; the wrapped filter must therefore
+ * not depend on the document numbers of a composite reader.  Each
+ * segment's result is cached as a {@link SortedVIntList} if the matches
+ * are sparse and as an {@link OpenBitSet} otherwise, whichever is smaller.
+ * Results are held by a {@link DocIdSetCache}, which may be shared and
+ * bounded.
  */
 public class CachingWrapperFilter extends Filter {
   protected Filter filter;
 
+  private transient DocIdSetCache docIdSetCache;
+
   /**
    * A transient Filter cache.  To cache Filters even when using {@link RemoteSearchable} use
    * {@link RemoteCachingWrapperFilter} instead.
@@ -21,7 +34,25 @@ public class CachingWrapperFilter extends Filter {
    * @param filter Filter to cache results of
    */
   public CachingWrapperFilter(Filter filter) {
+    this(filter, null);
+  }
+
+  /**
+   * @param filter Filter to cache results of
+   * @param docIdSetCache cache to hold the results in, or null for a
+   *  private cache without bound
+   */
+  public CachingWrapperFilter(Filter filter, DocIdSetCache docIdSetCache) {
     this.filter = filter;
+    this.docIdSetCache = docIdSetCache;
+  }
+
+  /** Returns the cache holding the results of this filter. */
+  public synchronized DocIdSetCache getDocIdSetCache() {
+    if (docIdSetCache == null) {
+      docIdSetCache = new DocIdSetCache(Long.MAX_VALUE);
+    }
+    return docIdSetCache;
   }
 
   /**
@@ -47,23 +78,112 @@ public class CachingWrapperFilter extends Filter {
   }
   
   public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
-    if (cache == null) {
-      cache = new WeakHashMap();
+    IndexReader[] subReaders = reader.getSequentialSubReaders();
+    if (subReaders == null || subReaders.length == 0) {
+      return getSegmentDocIdSet(reader);
+    }
+    DocIdSet[] docIdSets = new DocIdSet[subReaders.length];
+    int[] starts = new int[subReaders.length];
+    int maxDoc = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      starts[i] = maxDoc;
+      docIdSets[i] = getDocIdSet(subReaders[i]);
+      maxDoc += subReaders[i].maxDoc();
     }
+    return new MultiDocIdSet(docIdSets, starts);
+  }
 
-      DocIdSet cached = (DocIdSet) cache.get(reader);
-      if (cached != null) {
-        return cached;
+  private DocIdSet getSegmentDocIdSet(IndexReader reader) throws IOException {
+    DocIdSetCache cache = getDocIdSetCache();
+    DocIdSet cached = cache.get(filter, reader);
+    if (cached != null) {
+      return cached;
+    }
+    final DocIdSet docIdSet = docIdSetToCache(filter.getDocIdSet(reader), reader);
+    cache.put(filter, reader, docIdSet);
+    return docIdSet;
+  }
+
+  /**
+   * Returns the smaller of a {@link SortedVIntList} and an {@link
+   * OpenBitSet} holding the documents of <code>docIdSet</code>.
+   * @param docIdSet the result of the wrapped filter for reader
+   * @param reader a segment
+   */
+  protected DocIdSet docIdSetToCache(DocIdSet docIdSet, IndexReader reader) throws IOException {
+    final long bitSetBytes = ((reader.maxDoc() + 63L) >>> 6) * 8;
+    if (docIdSet instanceof OpenBitSet) {
+      OpenBitSet bits = (OpenBitSet) docIdSet;
+      // a sparse list takes at least one byte per document
+      if (bits.cardinality() >= bitSetBytes) {
+        return bits;
       }
+      SortedVIntList list = new SortedVIntList(bits);
+      return list.getByteSize() < bitSetBytes ? (DocIdSet) list : bits;
+    }
+    SortedVIntList list = new SortedVIntList(docIdSet.iterator());
+    if (list.getByteSize() < bitSetBytes) {
+      return list;
     }
+    return new OpenBitSetDISI(list.iterator(), reader.maxDoc());
+  }
 
-    final DocIdSet docIdSet = filter.getDocIdSet(reader);
+  /** The documents of a composite reader, made of the sets of its
+   *  sub readers. */
+  private static final class MultiDocIdSet extends DocIdSet {
+    private final DocIdSet[] docIdSets;
+    private final int[] starts;
 
-      cache.put(reader, docIdSet);
+    MultiDocIdSet(DocIdSet[] docIdSets, int[] starts) {
+      this.docIdSets = docIdSets;
+      this.starts = starts;
     }
 
-    return docIdSet;
-    
+    public DocIdSetIterator iterator() {
+      return new DocIdSetIterator() {
+        private int segment = -1;
+        private DocIdSetIterator current;
+        private int doc = -1;
+
+        public int doc() {
+          return doc;
+        }
+
+        public boolean next() throws IOException {
+          while (current == null || !current.next()) {
+            if (!nextSegment())
+              return false;
+          }
+          doc = starts[segment] + current.doc();
+          return true;
+        }
+
+        public boolean skipTo(int target) throws IOException {
+          while (segment + 1 < starts.length && starts[segment + 1] <= target) {
+            if (!nextSegment())
+              return false;
+          }
+          if (current == null && !nextSegment())
+            return false;
+          while (!current.skipTo(Math.max(0, target - starts[segment]))) {
+            if (!nextSegment())
+              return false;
+          }
+          doc = starts[segment] + current.doc();
+          return true;
+        }
+
+        private boolean nextSegment() {
+          if (++segment >= docIdSets.length) {
+            current = null;
+            doc = Integer.MAX_VALUE;
+            return false;
+          }
+          current = docIdSets[segment].iterator();
+          return true;
+        }
+      };
+    }
   }
 
   public String toString() {
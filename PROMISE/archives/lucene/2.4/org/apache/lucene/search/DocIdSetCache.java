@@ -0,0 +1,177 @@
+package org.apache.lucene.search;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.SortedVIntList;
+
+/**
+ * A cache of the {@link DocIdSet}s of filters per segment, bounded by the
+ * bytes the sets take, evicting the least recently used set first.  One
+ * cache may be shared by any number of {@link CachingWrapperFilter}s, so
+ * that a bound holds for all of them; equal filters share their entries.
+ * Entries of readers that were garbage collected are dropped.
+ *
+ * <p>Hit, miss and eviction counts are kept for monitoring, and {@link
+ * #toString()} reports them.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ */
+public class DocIdSetCache {
+
+  private final long maxBytes;
+  private final LinkedHashMap map = new LinkedHashMap(16, 0.75f, true);
+  private final ReferenceQueue queue = new ReferenceQueue();
+
+  private long byteSize;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /** Creates a cache holding at most <code>maxBytes</code> bytes of
+   *  sets.  A set larger than that is not cached. */
+  public DocIdSetCache(long maxBytes) {
+    if (maxBytes < 0)
+      throw new IllegalArgumentException("maxBytes must be >= 0 (got " + maxBytes + ")");
+    this.maxBytes = maxBytes;
+  }
+
+  /** Returns the set cached for filter and reader, or null. */
+  synchronized DocIdSet get(Filter filter, IndexReader reader) {
+    purge();
+    Entry entry = (Entry) map.get(new Key(filter, reader, null));
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.docIdSet;
+  }
+
+  /** Caches docIdSet for filter and reader, evicting the least
+   *  recently used sets as needed. */
+  synchronized void put(Filter filter, IndexReader reader, DocIdSet docIdSet) {
+    final long size = byteSize(docIdSet);
+    if (size > maxBytes)
+      return;
+    purge();
+    Entry old = (Entry) map.put(new Key(filter, reader, queue), new Entry(docIdSet, size));
+    if (old != null)
+      byteSize -= old.size;
+    byteSize += size;
+    Iterator it = map.values().iterator();
+    while (byteSize > maxBytes && it.hasNext()) {
+      Entry eldest = (Entry) it.next();
+      it.remove();
+      byteSize -= eldest.size;
+      evictionCount++;
+    }
+  }
+
+  /** Removes all cached sets; the statistics are kept. */
+  public synchronized void clear() {
+    map.clear();
+    byteSize = 0;
+  }
+
+  /** Returns the number of cached sets. */
+  public synchronized int size() {
+    purge();
+    return map.size();
+  }
+
+  /** Returns the bytes taken by the cached sets. */
+  public synchronized long getByteSize() {
+    purge();
+    return byteSize;
+  }
+
+  /** Returns the bound given at construction. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Returns how often a cached set was found. */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns how often a set had to be computed. */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns how many sets were evicted to respect the bound. */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public synchronized String toString() {
+    return "DocIdSetCache(size=" + map.size() + ", bytes=" + byteSize + "/" + maxBytes
+      + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + ")";
+  }
+
+  /** Returns the approximate heap size of a set built by {@link
+   *  CachingWrapperFilter#docIdSetToCache}. */
+  static long byteSize(DocIdSet docIdSet) {
+    if (docIdSet instanceof SortedVIntList)
+      return ((SortedVIntList) docIdSet).getByteSize();
+    if (docIdSet instanceof OpenBitSet)
+      return ((OpenBitSet) docIdSet).getBits().length * 8L;
+    return 0;
+  }
+
+  /** Drops the entries of readers that were garbage collected. */
+  private void purge() {
+    Reference ref;
+    while ((ref = queue.poll()) != null) {
+      Entry entry = (Entry) map.remove(ref);
+      if (entry != null)
+        byteSize -= entry.size;
+    }
+  }
+
+  private static final class Entry {
+    final DocIdSet docIdSet;
+    final long size;
+
+    Entry(DocIdSet docIdSet, long size) {
+      this.docIdSet = docIdSet;
+      this.size = size;
+    }
+  }
+
+  /** Weakly references the reader once stored; lookup keys are built
+   *  without a queue and compare equal to stored keys of the same
+   *  reader and an equal filter. */
+  private static final class Key extends WeakReference {
+    private final Filter filter;
+    private final int hash;
+
+    Key(Filter filter, IndexReader reader, ReferenceQueue queue) {
+      super(reader, queue);
+      this.filter = filter;
+      this.hash = filter.hashCode() ^ System.identityHashCode(reader);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      Object reader = get();
+      return reader != null && reader == other.get() && filter.equals(other.filter);
+    }
+  }
+}
@@ -1,4 +1,5 @@
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.NumericUtils;
 
 import java.io.IOException;
 
@@ -8,20 +9,42 @@ import java.io.IOException;
  *
  **/
 public interface ExtendedFieldCache extends FieldCache {
-  public interface LongParser {
+  public interface LongParser extends Parser {
     /**
      * Return an long representation of this field's value.
      */
     public long parseLong(String string);
   }
 
-  public interface DoubleParser {
+  public interface DoubleParser extends Parser {
     /**
      * Return an long representation of this field's value.
      */
     public double parseDouble(String string);
   }
 
+  /** Parses long values indexed by {@link
+   * org.apache.lucene.document.NumericField}, using only the full
+   * precision terms of the field. */
+  public static final LongParser NUMERIC_UTILS_LONG_PARSER = new LongParser() {
+    public long parseLong(String val) {
+      if (NumericUtils.getPrefixCodedLongShift(val) > 0)
+        throw new FieldCacheImpl.StopFillCacheException();
+      return NumericUtils.prefixCodedToLong(val);
+    }
+  };
+
+  /** Parses double values indexed by {@link
+   * org.apache.lucene.document.NumericField}, using only the full
+   * precision terms of the field. */
+  public static final DoubleParser NUMERIC_UTILS_DOUBLE_PARSER = new DoubleParser() {
+    public double parseDouble(String val) {
+      if (NumericUtils.getPrefixCodedLongShift(val) > 0)
+        throw new FieldCacheImpl.StopFillCacheException();
+      return NumericUtils.sortableLongToDouble(NumericUtils.prefixCodedToLong(val));
+    }
+  };
+
   public static ExtendedFieldCache EXT_DEFAULT = new ExtendedFieldCacheImpl();
 
   /**
@@ -33,7 +33,7 @@ class ExtendedFieldCacheImpl extends FieldCacheImpl implements ExtendedFieldCach
     return (long[]) longsCache.get(reader, new Entry(field, parser));
   }
 
-  Cache longsCache = new Cache() {
+  Cache longsCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -53,6 +53,7 @@ class ExtendedFieldCacheImpl extends FieldCacheImpl implements ExtendedFieldCach
             retArray[termDocs.doc()] = termval;
           }
         } while (termEnum.next());
+      } catch (StopFillCacheException stop) {
       } finally {
         termDocs.close();
         termEnum.close();
@@ -71,7 +72,7 @@ class ExtendedFieldCacheImpl extends FieldCacheImpl implements ExtendedFieldCach
     return (double[]) doublesCache.get(reader, new Entry(field, parser));
   }
 
-  Cache doublesCache = new Cache() {
+  Cache doublesCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -91,6 +92,7 @@ class ExtendedFieldCacheImpl extends FieldCacheImpl implements ExtendedFieldCach
             retArray[termDocs.doc()] = termval;
           }
         } while (termEnum.next());
+      } catch (StopFillCacheException stop) {
       } finally {
         termDocs.close();
         termEnum.close();
@@ -1,4 +1,5 @@
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.NumericUtils;
 import java.io.IOException;
 
 /**
@@ -31,10 +32,17 @@ public interface FieldCache {
     }
   }
 
+  /** Marker interface of all parsers, so that a {@link SortField}
+   * can sort by values parsed by any of them.
+   * @see SortField#SortField(String, FieldCache.Parser, boolean)
+   */
+  public interface Parser {
+  }
+
   /** Interface to parse bytes from document fields.
    * @see FieldCache#getBytes(IndexReader, String, FieldCache.ByteParser)
    */
-  public interface ByteParser {
+  public interface ByteParser extends Parser {
     /** Return a single Byte representation of this field's value. */
     public byte parseByte(String string);
   }
@@ -42,7 +50,7 @@ public interface FieldCache {
   /** Interface to parse shorts from document fields.
    * @see FieldCache#getShorts(IndexReader, String, FieldCache.ShortParser)
    */
-  public interface ShortParser {
+  public interface ShortParser extends Parser {
     /** Return a short representation of this field's value. */
     public short parseShort(String string);
   }
@@ -50,7 +58,7 @@ public interface FieldCache {
   /** Interface to parse ints from document fields.
    * @see FieldCache#getInts(IndexReader, String, FieldCache.IntParser)
    */
-  public interface IntParser {
+  public interface IntParser extends Parser {
     /** Return an integer representation of this field's value. */
     public int parseInt(String string);
   }
@@ -58,11 +66,33 @@ public interface FieldCache {
   /** Interface to parse floats from document fields.
    * @see FieldCache#getFloats(IndexReader, String, FieldCache.FloatParser)
    */
-  public interface FloatParser {
+  public interface FloatParser extends Parser {
     /** Return an float representation of this field's value. */
     public float parseFloat(String string);
   }
 
+  /** Parses int values indexed by {@link
+   * org.apache.lucene.document.NumericField}, using only the full
+   * precision terms of the field. */
+  public static final IntParser NUMERIC_UTILS_INT_PARSER = new IntParser() {
+    public int parseInt(String val) {
+      if (NumericUtils.getPrefixCodedIntShift(val) > 0)
+        throw new FieldCacheImpl.StopFillCacheException();
+      return NumericUtils.prefixCodedToInt(val);
+    }
+  };
+
+  /** Parses float values indexed by {@link
+   * org.apache.lucene.document.NumericField}, using only the full
+   * precision terms of the field. */
+  public static final FloatParser NUMERIC_UTILS_FLOAT_PARSER = new FloatParser() {
+    public float parseFloat(String val) {
+      if (NumericUtils.getPrefixCodedIntShift(val) > 0)
+        throw new FieldCacheImpl.StopFillCacheException();
+      return NumericUtils.sortableIntToFloat(NumericUtils.prefixCodedToInt(val));
+    }
+  };
+
   /** Expert: The cache used internally by sorting and range query classes. */
   public static FieldCache DEFAULT = new FieldCacheImpl();
 
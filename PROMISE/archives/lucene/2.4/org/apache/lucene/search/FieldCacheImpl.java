@@ -4,6 +4,7 @@ import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -13,6 +14,13 @@ import java.util.WeakHashMap;
  * Expert: The default cache implementation, storing all values in memory.
  * A WeakHashMap is used for storage.
  *
+ * <p>Values are cached per {@link IndexReader#getFieldCacheKey() segment}.
+ * The value for a reader made of several segments is assembled from the
+ * cached values of its segments, so after a reopen only the new segments
+ * are un-inverted.  The assembled value is cached under the key of the
+ * composite reader too, so that it is built once per reader rather than
+ * once per lookup.
+ *
  * <p>Created: May 19, 2004 4:40:36 PM
  *
  * @since   lucene 1.4
@@ -28,14 +36,27 @@ implements FieldCache {
     protected abstract Object createValue(IndexReader reader, Object key)
         throws IOException;
 
+    /**
+     * Builds the value for a reader that has sequential sub readers
+     * out of the values cached for each sub reader.  Returns null if
+     * values of this cache cannot be combined, in which case the value
+     * is computed by {@link #createValue} over the whole reader.  Either
+     * way the result is cached under the key of <code>reader</code>.
+     */
+    protected Object mergeValues(IndexReader reader, IndexReader[] subReaders, Object key)
+        throws IOException {
+      return null;
+    }
+
     public Object get(IndexReader reader, Object key) throws IOException {
       Map innerCache;
       Object value;
+      final Object readerKey = reader.getFieldCacheKey();
       synchronized (readerCache) {
-        innerCache = (Map) readerCache.get(reader);
+        innerCache = (Map) readerCache.get(readerKey);
         if (innerCache == null) {
           innerCache = new HashMap();
-          readerCache.put(reader, innerCache);
+          readerCache.put(readerKey, innerCache);
           value = null;
         } else {
           value = innerCache.get(key);
@@ -49,7 +70,7 @@ implements FieldCache {
         synchronized (value) {
           CreationPlaceholder progress = (CreationPlaceholder) value;
           if (progress.value == null) {
-            progress.value = createValue(reader, key);
+            progress.value = buildValue(reader, key);
             synchronized (readerCache) {
               innerCache.put(key, progress.value);
             }
@@ -59,6 +80,45 @@ implements FieldCache {
       }
       return value;
     }
+
+    private Object buildValue(IndexReader reader, Object key) throws IOException {
+      IndexReader[] subReaders = reader.getSequentialSubReaders();
+      if (subReaders != null && subReaders.length > 0) {
+        Object value = mergeValues(reader, subReaders, key);
+        if (value != null)
+          return value;
+      }
+      return createValue(reader, key);
+    }
+  }
+
+  /** Expert: Internal cache of one array entry per document.  The
+   *  array of a composite reader is the concatenation of the arrays of
+   *  its sub readers. */
+  abstract static class ArrayCache extends Cache {
+
+    protected Object mergeValues(IndexReader reader, IndexReader[] subReaders, Object key)
+        throws IOException {
+      Object retArray = null;
+      int start = 0;
+      for (int i = 0; i < subReaders.length; i++) {
+        Object subArray = get(subReaders[i], key);
+        if (retArray == null)
+          retArray = Array.newInstance(subArray.getClass().getComponentType(), reader.maxDoc());
+        int length = Array.getLength(subArray);
+        System.arraycopy(subArray, 0, retArray, start, length);
+        start += length;
+      }
+      return retArray;
+    }
+  }
+
+  /**
+   * Thrown by a parser to stop filling the cache before the end of the
+   * field's terms, e.g. once only lower precision terms of a {@link
+   * org.apache.lucene.document.NumericField} remain.
+   */
+  static final class StopFillCacheException extends RuntimeException {
   }
 
   static final class CreationPlaceholder {
@@ -76,6 +136,14 @@ implements FieldCache {
       this.locale = locale;
     }
 
+    /** Creates one of these objects for a sort type with a custom parser. */
+    Entry (String field, int type, Parser parser) {
+      this.field = field.intern();
+      this.type = type;
+      this.custom = parser;
+      this.locale = null;
+    }
+
     /** Creates one of these objects for a custom comparator. */
     Entry (String field, Object custom) {
       this.field = field.intern();
@@ -141,7 +209,7 @@ implements FieldCache {
     return (byte[]) bytesCache.get(reader, new Entry(field, parser));
   }
 
-  Cache bytesCache = new Cache() {
+  Cache bytesCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -178,7 +246,7 @@ implements FieldCache {
     return (short[]) shortsCache.get(reader, new Entry(field, parser));
   }
 
-  Cache shortsCache = new Cache() {
+  Cache shortsCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -215,7 +283,7 @@ implements FieldCache {
     return (int[]) intsCache.get(reader, new Entry(field, parser));
   }
 
-  Cache intsCache = new Cache() {
+  Cache intsCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -235,6 +303,7 @@ implements FieldCache {
             retArray[termDocs.doc()] = termval;
           }
         } while (termEnum.next());
+      } catch (StopFillCacheException stop) {
       } finally {
         termDocs.close();
         termEnum.close();
@@ -254,7 +323,7 @@ implements FieldCache {
     return (float[]) floatsCache.get(reader, new Entry(field, parser));
   }
 
-  Cache floatsCache = new Cache() {
+  Cache floatsCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -274,6 +343,7 @@ implements FieldCache {
             retArray[termDocs.doc()] = termval;
           }
         } while (termEnum.next());
+      } catch (StopFillCacheException stop) {
       } finally {
         termDocs.close();
         termEnum.close();
@@ -287,7 +357,7 @@ implements FieldCache {
     return (String[]) stringsCache.get(reader, field);
   }
 
-  Cache stringsCache = new Cache() {
+  Cache stringsCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object fieldKey)
         throws IOException {
@@ -363,6 +433,61 @@ implements FieldCache {
       StringIndex value = new StringIndex (retArray, mterms);
       return value;
     }
+
+    protected Object mergeValues(IndexReader reader, IndexReader[] subReaders, Object fieldKey)
+        throws IOException {
+      final int numSubs = subReaders.length;
+      final StringIndex[] subIndexes = new StringIndex[numSubs];
+      final int[][] ordMaps = new int[numSubs][];
+      final int[] upto = new int[numSubs];
+      int maxTerms = 1;
+      for (int i = 0; i < numSubs; i++) {
+        subIndexes[i] = (StringIndex) get(subReaders[i], fieldKey);
+        ordMaps[i] = new int[subIndexes[i].lookup.length];
+        upto[i] = 1;
+        maxTerms += subIndexes[i].lookup.length - 1;
+      }
+
+      /* merge the sorted per-segment lookups, remembering for
+       * every segment where each of its ords ended up */
+      String[] mterms = new String[maxTerms];
+      int t = 1;
+      while (true) {
+        String min = null;
+        for (int i = 0; i < numSubs; i++) {
+          final String[] lookup = subIndexes[i].lookup;
+          if (upto[i] < lookup.length && (min == null || lookup[upto[i]].compareTo(min) < 0))
+            min = lookup[upto[i]];
+        }
+        if (min == null)
+          break;
+        mterms[t] = min;
+        for (int i = 0; i < numSubs; i++) {
+          final String[] lookup = subIndexes[i].lookup;
+          if (upto[i] < lookup.length && lookup[upto[i]].equals(min))
+            ordMaps[i][upto[i]++] = t;
+        }
+        t++;
+      }
+
+      if (t < mterms.length) {
+        String[] terms = new String[t];
+        System.arraycopy (mterms, 0, terms, 0, t);
+        mterms = terms;
+      }
+
+      final int[] retArray = new int[reader.maxDoc()];
+      int start = 0;
+      for (int i = 0; i < numSubs; i++) {
+        final int[] subOrder = subIndexes[i].order;
+        final int[] ordMap = ordMaps[i];
+        for (int doc = 0; doc < subOrder.length; doc++)
+          retArray[start + doc] = ordMap[subOrder[doc]];
+        start += subOrder.length;
+      }
+
+      return new StringIndex (retArray, mterms);
+    }
   };
 
   /** The pattern used to detect integer values in a field */
@@ -431,7 +556,7 @@ implements FieldCache {
     return (Comparable[]) customCache.get(reader, new Entry(field, comparator));
   }
 
-  Cache customCache = new Cache() {
+  Cache customCache = new ArrayCache() {
 
     protected Object createValue(IndexReader reader, Object entryKey)
         throws IOException {
@@ -33,7 +33,7 @@ extends PriorityQueue {
     this.fields = new SortField[n];
     for (int i=0; i<n; ++i) {
       String fieldname = fields[i].getField();
-      comparators[i] = getCachedComparator (reader, fieldname, fields[i].getType(), fields[i].getLocale(), fields[i].getFactory());
+      comparators[i] = getCachedComparator (reader, fieldname, fields[i].getType(), fields[i].getLocale(), fields[i].getFactory(), fields[i].getParser());
       
       if (comparators[i].sortType() == SortField.STRING) {
     	  this.fields[i] = new SortField (fieldname, fields[i].getLocale(), fields[i].getReverse());
@@ -125,13 +125,17 @@ extends PriorityQueue {
     return fields;
   }
   
-  static ScoreDocComparator getCachedComparator (IndexReader reader, String field, int type, Locale locale, SortComparatorSource factory)
+  static ScoreDocComparator getCachedComparator (IndexReader reader, String field, int type, Locale locale, SortComparatorSource factory, FieldCache.Parser parser)
   throws IOException {
     if (type == SortField.DOC) return ScoreDocComparator.INDEXORDER;
     if (type == SortField.SCORE) return ScoreDocComparator.RELEVANCE;
-    FieldCacheImpl.Entry entry = (factory != null)
-      ? new FieldCacheImpl.Entry (field, factory)
-      : new FieldCacheImpl.Entry (field, type, locale);
+    FieldCacheImpl.Entry entry;
+    if (factory != null)
+      entry = new FieldCacheImpl.Entry (field, factory);
+    else if (parser != null)
+      entry = new FieldCacheImpl.Entry (field, type, parser);
+    else
+      entry = new FieldCacheImpl.Entry (field, type, locale);
     return (ScoreDocComparator)Comparators.get(reader, entry);
   }
 
@@ -145,36 +149,36 @@ extends PriorityQueue {
       String fieldname = entry.field;
       int type = entry.type;
       Locale locale = entry.locale;
-      SortComparatorSource factory = (SortComparatorSource) entry.custom;
+      FieldCache.Parser parser = (entry.custom instanceof FieldCache.Parser) ? (FieldCache.Parser) entry.custom : null;
       ScoreDocComparator comparator;
       switch (type) {
         case SortField.AUTO:
           comparator = comparatorAuto (reader, fieldname);
           break;
         case SortField.INT:
-          comparator = comparatorInt (reader, fieldname);
+          comparator = comparatorInt (reader, fieldname, parser);
           break;
         case SortField.FLOAT:
-          comparator = comparatorFloat (reader, fieldname);
+          comparator = comparatorFloat (reader, fieldname, parser);
           break;
         case SortField.LONG:
-          comparator = comparatorLong(reader, fieldname);
+          comparator = comparatorLong (reader, fieldname, parser);
           break;
         case SortField.DOUBLE:
-          comparator = comparatorDouble(reader, fieldname);
+          comparator = comparatorDouble (reader, fieldname, parser);
           break;
         case SortField.SHORT:
-          comparator = comparatorShort(reader, fieldname);
+          comparator = comparatorShort (reader, fieldname, parser);
           break;
         case SortField.BYTE:
-          comparator = comparatorByte(reader, fieldname);
+          comparator = comparatorByte (reader, fieldname, parser);
           break;
         case SortField.STRING:
           if (locale != null) comparator = comparatorStringLocale (reader, fieldname, locale);
           else comparator = comparatorString (reader, fieldname);
           break;
         case SortField.CUSTOM:
-          comparator = factory.newComparator (reader, fieldname);
+          comparator = ((SortComparatorSource) entry.custom).newComparator (reader, fieldname);
           break;
         default:
           throw new RuntimeException ("unknown field type: "+type);
@@ -187,13 +191,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing bytes.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg integer values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorByte(final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorByte (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final byte[] fieldOrder = FieldCache.DEFAULT.getBytes(reader, field);
+    final byte[] fieldOrder = (parser == null)
+      ? FieldCache.DEFAULT.getBytes (reader, field)
+      : FieldCache.DEFAULT.getBytes (reader, field, (FieldCache.ByteParser) parser);
     return new ScoreDocComparator() {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -218,13 +225,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing shorts.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg integer values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorShort(final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorShort (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final short[] fieldOrder = FieldCache.DEFAULT.getShorts(reader, field);
+    final short[] fieldOrder = (parser == null)
+      ? FieldCache.DEFAULT.getShorts (reader, field)
+      : FieldCache.DEFAULT.getShorts (reader, field, (FieldCache.ShortParser) parser);
     return new ScoreDocComparator() {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -249,13 +259,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing integers.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg integer values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorInt (final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorInt (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final int[] fieldOrder = FieldCache.DEFAULT.getInts (reader, field);
+    final int[] fieldOrder = (parser == null)
+      ? FieldCache.DEFAULT.getInts (reader, field)
+      : FieldCache.DEFAULT.getInts (reader, field, (FieldCache.IntParser) parser);
     return new ScoreDocComparator() {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -280,13 +293,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing integers.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg integer values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorLong (final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorLong (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final long[] fieldOrder = ExtendedFieldCache.EXT_DEFAULT.getLongs (reader, field);
+    final long[] fieldOrder = (parser == null)
+      ? ExtendedFieldCache.EXT_DEFAULT.getLongs (reader, field)
+      : ExtendedFieldCache.EXT_DEFAULT.getLongs (reader, field, (ExtendedFieldCache.LongParser) parser);
     return new ScoreDocComparator() {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -312,13 +328,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing floats.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg float values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorFloat (final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorFloat (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final float[] fieldOrder = FieldCache.DEFAULT.getFloats (reader, field);
+    final float[] fieldOrder = (parser == null)
+      ? FieldCache.DEFAULT.getFloats (reader, field)
+      : FieldCache.DEFAULT.getFloats (reader, field, (FieldCache.FloatParser) parser);
     return new ScoreDocComparator () {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -343,13 +362,16 @@ extends PriorityQueue {
    * Returns a comparator for sorting hits according to a field containing doubles.
    * @param reader  Index to use.
    * @param fieldname  Fieldable containg float values.
+   * @param parser  Parses the terms of the field, or <code>null</code> for the default parser.
    * @return  Comparator for sorting hits.
    * @throws IOException If an error occurs reading the index.
    */
-  static ScoreDocComparator comparatorDouble(final IndexReader reader, final String fieldname)
+  static ScoreDocComparator comparatorDouble (final IndexReader reader, final String fieldname, final FieldCache.Parser parser)
   throws IOException {
     final String field = fieldname.intern();
-    final double[] fieldOrder = ExtendedFieldCache.EXT_DEFAULT.getDoubles (reader, field);
+    final double[] fieldOrder = (parser == null)
+      ? ExtendedFieldCache.EXT_DEFAULT.getDoubles (reader, field)
+      : ExtendedFieldCache.EXT_DEFAULT.getDoubles (reader, field, (ExtendedFieldCache.DoubleParser) parser);
     return new ScoreDocComparator () {
 
       public final int compare (final ScoreDoc i, final ScoreDoc j) {
@@ -456,11 +478,11 @@ extends PriorityQueue {
     if (lookupArray instanceof FieldCache.StringIndex) {
       return comparatorString (reader, field);
     } else if (lookupArray instanceof int[]) {
-      return comparatorInt (reader, field);
+      return comparatorInt (reader, field, null);
     } else if (lookupArray instanceof long[]) {
-      return comparatorLong (reader, field);
+      return comparatorLong (reader, field, null);
     } else if (lookupArray instanceof float[]) {
-      return comparatorFloat (reader, field);
+      return comparatorFloat (reader, field, null);
     } else if (lookupArray instanceof String[]) {
       return comparatorString (reader, field);
     } else {
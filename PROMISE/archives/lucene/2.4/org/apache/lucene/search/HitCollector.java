@@ -24,4 +24,20 @@ public abstract class HitCollector {
    * between 0 and 1.
    */
   public abstract void collect(int doc, float score);
+
+  /** Expert: Returns the score a document must reach to still be of
+   * interest to this collector.  Scorers that can bound their scores may
+   * skip, without collecting them, documents that score below it.  The
+   * value may grow while documents are collected, and is re-read by such
+   * scorers after every collected document.
+   *
+   * <p>The default, <code>Float.NEGATIVE_INFINITY</code>, means every
+   * matching document is collected.
+   *
+   * @see TopScoreDocCollector
+   * @see Scorer#maxScore()
+   */
+  public float minCompetitiveScore() {
+    return Float.NEGATIVE_INFINITY;
+  }
 }
@@ -3,9 +3,13 @@ import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.PriorityQueue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /** Implements search over a single IndexReader.
  *
@@ -15,11 +19,31 @@ import java.io.IOException;
  * 
  * <p>Note that you can only access Hits from an IndexSearcher as long as it is
  * not yet closed, otherwise an IOException will be thrown. 
+ *
+ * <p>If {@link #setSortPerSegment} is enabled, sorted searches are run
+ * segment by segment and the per-segment hits merged, so sort values are
+ * taken from the per-segment {@link FieldCache} entries, which remain
+ * valid when the reader is reopened.
+ *
+ * <p>If {@link #setPruneNonCompetitive} is enabled, {@link
+ * #search(Query, Filter, int)} may skip documents that cannot make it
+ * into the top hits, at the price of an inexact {@link TopDocs#totalHits}.
+ *
+ * <p>If a {@link SearchThreadPool} is supplied, top-N searches (with or
+ * without a {@link Sort}) score each segment of the reader on a pool
+ * thread and merge the per-segment results, so that a single query over
+ * a large multi-segment index can use several CPUs.
  */
 public class IndexSearcher extends Searcher {
   IndexReader reader;
   private boolean closeReader;
 
+  private SearchThreadPool pool;
+  private boolean sortPerSegment;
+  private boolean pruneNonCompetitive;
+  private IndexReader[] subReaders;
+  private int[] docStarts;
+
   /** Creates a searcher searching the index in the named directory.
    * @throws CorruptIndexException if the index is corrupt
    * @throws IOException if there is a low-level IO error
@@ -41,9 +65,83 @@ public class IndexSearcher extends Searcher {
     this(r, false);
   }
   
+  /** Creates a searcher searching the provided index, scoring its
+   * segments concurrently on the threads of <code>pool</code>.
+   * The pool is not closed when this searcher is closed.
+   */
+  public IndexSearcher(IndexReader r, SearchThreadPool pool) {
+    this(r, false);
+    this.pool = pool;
+  }
+
   private IndexSearcher(IndexReader r, boolean closeReader) {
     reader = r;
     this.closeReader = closeReader;
+
+    List subReadersList = new ArrayList();
+    gatherSubReaders(subReadersList, r);
+    subReaders = (IndexReader[]) subReadersList.toArray(new IndexReader[subReadersList.size()]);
+    docStarts = new int[subReaders.length];
+    int maxDoc = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      docStarts[i] = maxDoc;
+      maxDoc += subReaders[i].maxDoc();
+    }
+  }
+
+  private static void gatherSubReaders(List allSubReaders, IndexReader r) {
+    IndexReader[] subReaders = r.getSequentialSubReaders();
+    if (subReaders == null) {
+      allSubReaders.add(r);
+    } else {
+      for (int i = 0; i < subReaders.length; i++) {
+        gatherSubReaders(allSubReaders, subReaders[i]);
+      }
+    }
+  }
+
+  /** Return the {@link SearchThreadPool} this searches with, or null
+   * if segments are searched sequentially. */
+  public SearchThreadPool getSearchThreadPool() {
+    return pool;
+  }
+
+  /** Sets whether sorted searches are run segment by segment, with
+   * their hits merged, instead of over the whole reader.  Sorting per
+   * segment takes sort values from per-segment {@link FieldCache}
+   * entries, which a reopened reader shares for its unchanged
+   * segments, so no top-level arrays need to be loaded after a reopen.
+   * It is always done when searching with a {@link SearchThreadPool}.
+   * The default is false.
+   * <p><b>WARNING</b>: custom {@link SortComparatorSource}s get a
+   * segment reader and per-segment docIDs when this is enabled.
+   */
+  public void setSortPerSegment(boolean sortPerSegment) {
+    this.sortPerSegment = sortPerSegment;
+  }
+
+  /** Returns whether sorted searches are run segment by segment.
+   * @see #setSortPerSegment */
+  public boolean getSortPerSegment() {
+    return sortPerSegment;
+  }
+
+  /** Sets whether {@link #search(Query, Filter, int)} collects with a
+   * {@link TopScoreDocCollector}, letting scorers that can bound their
+   * scores, such as disjunctions of term queries, skip documents that
+   * cannot make it into the top hits.  The {@link TopDocs#totalHits
+   * totalHits} of the result then only count the scored matches, a
+   * lower bound of the number of matches.  The default is false, so
+   * totalHits is exact.
+   */
+  public void setPruneNonCompetitive(boolean pruneNonCompetitive) {
+    this.pruneNonCompetitive = pruneNonCompetitive;
+  }
+
+  /** Returns whether top-N searches skip non-competitive documents.
+   * @see #setPruneNonCompetitive */
+  public boolean getPruneNonCompetitive() {
+    return pruneNonCompetitive;
   }
 
   /** Return the {@link IndexReader} this searches. */
@@ -78,20 +176,54 @@ public class IndexSearcher extends Searcher {
     return reader.maxDoc();
   }
 
+  /** Finds the top <code>n</code> hits for <code>query</code>, applying
+   * <code>filter</code> if non-null.  If {@link #setPruneNonCompetitive}
+   * is enabled, documents that cannot make it into the top
+   * <code>n</code> may be skipped without being scored, in which case
+   * the {@link TopDocs#totalHits totalHits} of the result only count the
+   * scored matches.  Otherwise every match is counted.
+   */
+  public TopDocs search(Query query, Filter filter, int n)
+    throws IOException {
+
+    if (n <= 0)
+      throw new IllegalArgumentException("nDocs must be > 0");
+
+    Weight weight = createWeight(query);
+    if (isParallel())
+      return searchSegments(weight, filter, n, null, pruneNonCompetitive);
+
+    TopDocCollector collector = newTopDocCollector(n, pruneNonCompetitive);
+    search(weight, filter, collector);
+    return collector.topDocs();
+  }
+
   public TopDocs search(Weight weight, Filter filter, final int nDocs)
        throws IOException {
 
       throw new IllegalArgumentException("nDocs must be > 0");
 
+    if (isParallel())
+      return searchSegments(weight, filter, nDocs, null, false);
+
     TopDocCollector collector = new TopDocCollector(nDocs);
     search(weight, filter, collector);
     return collector.topDocs();
   }
 
+  private static TopDocCollector newTopDocCollector(int nDocs, boolean prune) {
+    if (prune)
+      return new TopScoreDocCollector(nDocs, !BooleanQuery.getAllowDocsOutOfOrder());
+    return new TopDocCollector(nDocs);
+  }
+
   public TopFieldDocs search(Weight weight, Filter filter, final int nDocs,
                              Sort sort)
       throws IOException {
 
+    if (isParallel() || (sortPerSegment && subReaders.length > 1))
+      return (TopFieldDocs) searchSegments(weight, filter, nDocs, resolveAutoFields(sort), false);
+
     TopFieldDocCollector collector =
       new TopFieldDocCollector(reader, sort, nDocs);
     search(weight, filter, collector);
@@ -100,6 +232,157 @@ public class IndexSearcher extends Searcher {
 
   public void search(Weight weight, Filter filter,
                      final HitCollector results) throws IOException {
+    search(reader, weight, filter, results);
+  }
+
+  private boolean isParallel() {
+    return pool != null && subReaders.length > 1;
+  }
+
+  /** Replaces AUTO sort fields by the type the first term of the field
+   * has in the whole index, so that every segment sorts by, and the
+   * merge compares, values of the same type. */
+  private Sort resolveAutoFields(Sort sort) throws IOException {
+    SortField[] fields = sort.getSort();
+    SortField[] resolved = null;
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i].getType() != SortField.AUTO)
+        continue;
+      String field = fields[i].getField().intern();
+      TermEnum enumerator = reader.terms(new Term(field));
+      int type;
+      try {
+        Term term = enumerator.term();
+        if (term == null || term.field() != field)
+          continue;
+        type = autoType(term.text().trim());
+      } finally {
+        enumerator.close();
+      }
+      if (resolved == null)
+        resolved = (SortField[]) fields.clone();
+      resolved[i] = new SortField(field, type, fields[i].getReverse());
+    }
+    return resolved == null ? sort : new Sort(resolved);
+  }
+
+  private static int autoType(String termtext) {
+    try {
+      Integer.parseInt(termtext);
+      return SortField.INT;
+    } catch (NumberFormatException nfe1) {
+    }
+    try {
+      Long.parseLong(termtext);
+      return SortField.LONG;
+    } catch (NumberFormatException nfe2) {
+    }
+    try {
+      Float.parseFloat(termtext);
+      return SortField.FLOAT;
+    } catch (NumberFormatException nfe3) {
+    }
+    return SortField.STRING;
+  }
+
+  /** Searches every segment, on the pool if there is one, and merges
+   * the per-segment top hits, in segment order, into one result. */
+  private TopDocs searchSegments(Weight weight, Filter filter, int nDocs, Sort sort,
+                                 boolean prune)
+      throws IOException {
+    SegmentSearch[] searches = new SegmentSearch[subReaders.length];
+    for (int i = 0; i < subReaders.length; i++) {
+      searches[i] = new SegmentSearch(subReaders[i], docStarts[i], weight, filter, nDocs, sort, prune);
+    }
+    if (pool != null) {
+      pool.invokeAll(searches);
+    } else {
+      for (int i = 0; i < searches.length; i++)
+        searches[i].run();
+    }
+
+    PriorityQueue hq = (sort == null) ? (PriorityQueue) new HitQueue(nDocs)
+      : new FieldDocSortedHitQueue(null, nDocs);
+    int totalHits = 0;
+    float maxScore = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < searches.length; i++) {
+      if (searches[i].ioe != null)
+        throw searches[i].ioe;
+      TopDocs docs = searches[i].docs;
+      totalHits += docs.totalHits;
+      maxScore = Math.max(maxScore, docs.getMaxScore());
+      if (sort != null)
+        ((FieldDocSortedHitQueue) hq).setFields(((TopFieldDocs) docs).fields);
+      ScoreDoc[] scoreDocs = docs.scoreDocs;
+      for (int j = 0; j < scoreDocs.length; j++) {
+        if (!hq.insert(scoreDocs[j]))
+          break;
+      }
+    }
+
+    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+    for (int i = hq.size()-1; i >= 0; i--)
+      scoreDocs[i] = (ScoreDoc) hq.pop();
+
+    if (sort == null)
+      return new TopDocs(totalHits, scoreDocs, maxScore);
+    return new TopFieldDocs(totalHits, scoreDocs, ((FieldDocSortedHitQueue) hq).getFields(), maxScore);
+  }
+
+  /** Computes the top hits of one segment, with docIDs (and index
+   * order sort values) already rebased to the top-level reader. */
+  private static class SegmentSearch implements Runnable {
+    private final IndexReader reader;
+    private final int docStart;
+    private final Weight weight;
+    private final Filter filter;
+    private final int nDocs;
+    private final Sort sort;
+    private final boolean prune;
+    TopDocs docs;
+    IOException ioe;
+
+    SegmentSearch(IndexReader reader, int docStart, Weight weight, Filter filter, int nDocs,
+                  Sort sort, boolean prune) {
+      this.reader = reader;
+      this.docStart = docStart;
+      this.weight = weight;
+      this.filter = filter;
+      this.nDocs = nDocs;
+      this.sort = sort;
+      this.prune = prune;
+    }
+
+    public void run() {
+      try {
+        TopDocCollector collector = (sort == null) ? newTopDocCollector(nDocs, prune)
+          : new TopFieldDocCollector(reader, sort, nDocs);
+        search(reader, weight, filter, collector);
+        docs = collector.topDocs();
+      } catch (IOException e) {
+        ioe = e;
+        return;
+      }
+
+      ScoreDoc[] scoreDocs = docs.scoreDocs;
+      for (int i = 0; i < scoreDocs.length; i++) {
+        scoreDocs[i].doc += docStart;
+      }
+      if (sort != null) {
+        SortField[] fields = ((TopFieldDocs) docs).fields;
+        for (int j = 0; j < fields.length; j++) {
+          if (fields[j].getType() != SortField.DOC)
+            continue;
+          for (int i = 0; i < scoreDocs.length; i++) {
+            ((FieldDoc) scoreDocs[i]).fields[j] = new Integer(scoreDocs[i].doc);
+          }
+        }
+      }
+    }
+  }
+
+  private static void search(IndexReader reader, Weight weight, Filter filter,
+                             final HitCollector results) throws IOException {
 
     Scorer scorer = weight.scorer(reader);
     if (scorer == null)
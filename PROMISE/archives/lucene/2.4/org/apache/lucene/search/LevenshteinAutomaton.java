@@ -0,0 +1,132 @@
+package org.apache.lucene.search;
+
+import java.util.Arrays;
+
+/** A deterministic automaton accepting the strings within a maximum
+ * Levenshtein distance of a text, used by {@link AutomatonFuzzyTermEnum}.
+ *
+ * <p>A state is a row of the edit distance matrix: after reading a string
+ * <code>s</code>, entry <code>i</code> is the distance between
+ * <code>s</code> and the first <code>i</code> characters of the text, with
+ * distances above the maximum all stored as <code>maxDistance + 1</code>.
+ * States are computed as characters are read rather than built up front, so
+ * a state costs O(text length) and no table is materialized.  A state is
+ * live if some entry is within the maximum, that is if some extension of the
+ * string read so far may be accepted, and accepting if its last entry is.
+ *
+ * <p>All characters that do not occur in the text lead to the same state,
+ * which is what makes it cheap to find the smallest character leading to a
+ * live state, see {@link #nextLiveChar}.
+ */
+final class LevenshteinAutomaton {
+
+  private final char[] text;
+  private final int maxDistance;
+
+  /** The distinct characters of the text, sorted. */
+  private final char[] alphabet;
+
+  LevenshteinAutomaton(String text, int maxDistance) {
+    this.text = text.toCharArray();
+    this.maxDistance = maxDistance;
+
+    char[] sorted = (char[]) this.text.clone();
+    Arrays.sort(sorted);
+    int size = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (size == 0 || sorted[i] != sorted[size - 1])
+        sorted[size++] = sorted[i];
+    }
+    this.alphabet = new char[size];
+    System.arraycopy(sorted, 0, alphabet, 0, size);
+  }
+
+  /** Returns the number of entries of a state. */
+  int stateSize() {
+    return text.length + 1;
+  }
+
+  int getMaxDistance() {
+    return maxDistance;
+  }
+
+  /** Stores the start state, reached by the empty string, into
+   * <code>state</code>. */
+  void start(int[] state) {
+    final int dead = maxDistance + 1;
+    for (int i = 0; i <= text.length; i++)
+      state[i] = i < dead ? i : dead;
+  }
+
+  /** Stores the state reached from <code>state</code> by reading
+   * <code>c</code> into <code>next</code>. */
+  void step(int[] state, char c, int[] next) {
+    final int dead = maxDistance + 1;
+    int left = state[0] + 1;
+    next[0] = left < dead ? left : dead;
+    for (int i = 1; i <= text.length; i++) {
+      int d = text[i - 1] == c ? state[i - 1] : state[i - 1] + 1;
+      if (state[i] + 1 < d)
+        d = state[i] + 1;
+      if (left + 1 < d)
+        d = left + 1;
+      left = d < dead ? d : dead;
+      next[i] = left;
+    }
+  }
+
+  /** Returns true if some string starting with the strings leading to
+   * <code>state</code> may be accepted. */
+  boolean isLive(int[] state) {
+    for (int i = 0; i <= text.length; i++) {
+      if (state[i] <= maxDistance)
+        return true;
+    }
+    return false;
+  }
+
+  /** Returns the edit distance between the text and the strings leading to
+   * <code>state</code>, or a value above the maximum if it is not an
+   * accepting state. */
+  int distance(int[] state) {
+    return state[text.length];
+  }
+
+  /** Returns the smallest character greater than <code>c</code> leading
+   * from <code>state</code> to a live state, or -1 if there is none.
+   * @param scratch a state used for the computation
+   */
+  int nextLiveChar(int[] state, char c, int[] scratch) {
+    if (c == Character.MAX_VALUE)
+      return -1;
+
+    // the smallest character above c that is not in the text
+    int other = c + 1;
+    int i = Arrays.binarySearch(alphabet, (char) other);
+    if (i < 0)
+      i = -i - 1;
+    for (int j = i; j < alphabet.length && alphabet[j] == other; j++)
+      other++;
+    if (other > Character.MAX_VALUE)
+      other = -1;
+
+    // try the characters of the text above c and that one in order
+    for (; i < alphabet.length; i++) {
+      if (other >= 0 && other < alphabet[i]) {
+        step(state, (char) other, scratch);
+        if (isLive(scratch))
+          return other;
+        other = -1;
+      }
+      step(state, alphabet[i], scratch);
+      if (isLive(scratch))
+        return alphabet[i];
+    }
+    if (other >= 0) {
+      step(state, (char) other, scratch);
+      if (isLive(scratch))
+        return other;
+    }
+    return -1;
+  }
+}
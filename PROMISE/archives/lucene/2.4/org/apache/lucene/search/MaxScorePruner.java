@@ -0,0 +1,144 @@
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+/** Scores a disjunction of scorers for a collector that reports a {@link
+ * HitCollector#minCompetitiveScore() minimum competitive score}, with the
+ * MaxScore algorithm.  The scorers are ordered by their {@link
+ * Scorer#maxScore() upper bounds}.  Those whose bounds together stay below
+ * the collector's minimum are non-essential: they cannot produce a
+ * competitive hit on their own, so they are only positioned, with skipTo,
+ * on candidate documents of the other scorers, and not at all once a
+ * candidate is known to fall short.  As the minimum rises more scorers,
+ * usually those of common terms, become non-essential.
+ *
+ * <p>Documents are collected in order, scored like {@link BooleanScorer2}
+ * scores them.  Non-competitive documents may not be collected at all.
+ */
+final class MaxScorePruner {
+
+  /** Bounds are scaled by this before they are compared to the minimum,
+   *  so float rounding of sums taken in a different order never prunes a
+   *  competitive document. */
+  private static final float SLACK = 1.0001f;
+
+  private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  private final Scorer[] scorers;
+  private final int[] docs;
+  private final float[] cumulativeBounds;
+  private final float[] coordFactors;
+  private final float boundFactor;
+
+  private MaxScorePruner(Scorer[] scorers, float[] bounds, float[] coordFactors, float maxCoord) {
+    // insertion sort by increasing bound; disjunctions are small
+    for (int i = 1; i < scorers.length; i++) {
+      for (int j = i; j > 0 && bounds[j - 1] > bounds[j]; j--) {
+        float bound = bounds[j];
+        bounds[j] = bounds[j - 1];
+        bounds[j - 1] = bound;
+        Scorer scorer = scorers[j];
+        scorers[j] = scorers[j - 1];
+        scorers[j - 1] = scorer;
+      }
+    }
+    this.scorers = scorers;
+    this.docs = new int[scorers.length];
+    this.cumulativeBounds = new float[scorers.length];
+    float sum = 0.0f;
+    for (int i = 0; i < scorers.length; i++) {
+      sum += bounds[i];
+      cumulativeBounds[i] = sum;
+    }
+    this.coordFactors = coordFactors;
+    this.boundFactor = maxCoord * SLACK;
+  }
+
+  /** Scores the disjunction of <code>scorers</code>, none of which was
+   * advanced yet, into <code>hc</code>.
+   * @return false, without advancing any scorer, if the score of some
+   * scorer or the coordination factor cannot be bounded
+   */
+  static boolean score(Scorer[] scorers, Similarity similarity, HitCollector hc)
+    throws IOException {
+    final float[] bounds = new float[scorers.length];
+    for (int i = 0; i < scorers.length; i++) {
+      bounds[i] = scorers[i].maxScore();
+      if (!(bounds[i] >= 0.0f && bounds[i] < Float.POSITIVE_INFINITY))
+        return false;
+    }
+    final float[] coordFactors = new float[scorers.length + 1];
+    float maxCoord = 0.0f;
+    for (int i = 0; i <= scorers.length; i++) {
+      coordFactors[i] = similarity.coord(i, scorers.length);
+      if (coordFactors[i] > maxCoord)
+        maxCoord = coordFactors[i];
+    }
+    if (!(maxCoord < Float.POSITIVE_INFINITY))
+      return false;
+
+    Scorer[] sorted = new Scorer[scorers.length];
+    System.arraycopy(scorers, 0, sorted, 0, scorers.length);
+    new MaxScorePruner(sorted, bounds, coordFactors, maxCoord).score(hc);
+    return true;
+  }
+
+  private void score(HitCollector hc) throws IOException {
+    final int n = scorers.length;
+    for (int i = 0; i < n; i++)
+      docs[i] = scorers[i].next() ? scorers[i].doc() : NO_MORE_DOCS;
+
+    float minScore = hc.minCompetitiveScore();
+    int firstEssential = firstEssential(minScore, 0);
+    while (firstEssential < n) {
+      int doc = NO_MORE_DOCS;
+      for (int i = firstEssential; i < n; i++) {
+        if (docs[i] < doc)
+          doc = docs[i];
+      }
+      if (doc == NO_MORE_DOCS)
+        break;
+
+      float sum = 0.0f;
+      int nrMatchers = 0;
+      for (int i = firstEssential; i < n; i++) {
+        if (docs[i] == doc) {
+          sum += scorers[i].score();
+          nrMatchers++;
+          docs[i] = scorers[i].next() ? scorers[i].doc() : NO_MORE_DOCS;
+        }
+      }
+
+      boolean competitive = true;
+      for (int i = firstEssential - 1; i >= 0; i--) {
+        if ((sum + cumulativeBounds[i]) * boundFactor < minScore) {
+          competitive = false;
+          break;
+        }
+        if (docs[i] < doc)
+          docs[i] = scorers[i].skipTo(doc) ? scorers[i].doc() : NO_MORE_DOCS;
+        if (docs[i] == doc) {
+          sum += scorers[i].score();
+          nrMatchers++;
+        }
+      }
+
+      if (competitive) {
+        hc.collect(doc, sum * coordFactors[nrMatchers]);
+        float newMinScore = hc.minCompetitiveScore();
+        if (newMinScore > minScore) {
+          minScore = newMinScore;
+          firstEssential = firstEssential(minScore, firstEssential);
+        }
+      }
+    }
+  }
+
+  /** Returns the index of the first scorer, from <code>from</code> on,
+   *  that together with all scorers before it may reach minScore. */
+  private int firstEssential(float minScore, int from) {
+    while (from < scorers.length && cumulativeBounds[from] * boundFactor < minScore)
+      from++;
+    return from;
+  }
+}
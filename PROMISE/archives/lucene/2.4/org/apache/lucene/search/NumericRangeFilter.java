@@ -0,0 +1,256 @@
+package org.apache.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.OpenBitSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Filter that restricts search results to a range of numeric values in
+ * a field indexed with {@link org.apache.lucene.document.NumericField}.
+ *
+ * <p>Unlike {@link RangeFilter}, which visits every term between its
+ * bounds, the range is split by {@link NumericUtils} into sub ranges of
+ * decreasing precision, so only a few terms per precision step are
+ * enumerated whatever the number of distinct values in the range.  The
+ * precision step must be the one the field was indexed with.
+ *
+ * <p>Instances are created by the static factory methods; a
+ * <code>null</code> bound is open ended.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ *
+ * @see NumericRangeQuery
+ */
+public final class NumericRangeFilter extends Filter {
+
+  private final String field;
+  private final int precisionStep;
+  private final int valSize;
+  private final Number min;
+  private final Number max;
+  private final boolean minInclusive;
+  private final boolean maxInclusive;
+  private final boolean isFloatingPoint;
+
+  private NumericRangeFilter(final String field, final int precisionStep, final int valSize,
+                             final boolean isFloatingPoint, Number min, Number max,
+                             final boolean minInclusive, final boolean maxInclusive) {
+    if (field == null)
+      throw new NullPointerException("field cannot be null");
+    if (precisionStep < 1)
+      throw new IllegalArgumentException("precisionStep must be >=1");
+    this.field = field.intern();
+    this.precisionStep = precisionStep;
+    this.valSize = valSize;
+    this.isFloatingPoint = isFloatingPoint;
+    this.min = min;
+    this.max = max;
+    this.minInclusive = minInclusive;
+    this.maxInclusive = maxInclusive;
+  }
+
+  /** Creates a filter over a <code>long</code> field. */
+  public static NumericRangeFilter newLongRange(final String field, final int precisionStep,
+    Long min, Long max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeFilter(field, precisionStep, 64, false, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over a <code>long</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeFilter newLongRange(final String field,
+    Long min, Long max, final boolean minInclusive, final boolean maxInclusive) {
+    return newLongRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over an <code>int</code> field. */
+  public static NumericRangeFilter newIntRange(final String field, final int precisionStep,
+    Integer min, Integer max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeFilter(field, precisionStep, 32, false, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over an <code>int</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeFilter newIntRange(final String field,
+    Integer min, Integer max, final boolean minInclusive, final boolean maxInclusive) {
+    return newIntRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over a <code>double</code> field. */
+  public static NumericRangeFilter newDoubleRange(final String field, final int precisionStep,
+    Double min, Double max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeFilter(field, precisionStep, 64, true, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over a <code>double</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeFilter newDoubleRange(final String field,
+    Double min, Double max, final boolean minInclusive, final boolean maxInclusive) {
+    return newDoubleRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over a <code>float</code> field. */
+  public static NumericRangeFilter newFloatRange(final String field, final int precisionStep,
+    Float min, Float max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeFilter(field, precisionStep, 32, true, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a filter over a <code>float</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeFilter newFloatRange(final String field,
+    Float min, Float max, final boolean minInclusive, final boolean maxInclusive) {
+    return newFloatRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Returns the field name for this filter */
+  public String getField() { return field; }
+  /** Returns the precision step the field must be indexed with */
+  public int getPrecisionStep() { return precisionStep; }
+  /** Returns the lower bound, or null if open ended */
+  public Number getMin() { return min; }
+  /** Returns the upper bound, or null if open ended */
+  public Number getMax() { return max; }
+  /** Returns <code>true</code> if the lower bound is inclusive */
+  public boolean includesMin() { return minInclusive; }
+  /** Returns <code>true</code> if the upper bound is inclusive */
+  public boolean includesMax() { return maxInclusive; }
+
+  /**
+   * Returns the inclusive [lower, upper] prefix coded term pairs that
+   * exactly cover this range; empty if the range is empty.
+   */
+  List getTermRanges() {
+    final List ranges = new ArrayList();
+    if (valSize == 64) {
+      long minBound = Long.MIN_VALUE;
+      if (min != null) {
+        minBound = isFloatingPoint ? NumericUtils.doubleToSortableLong(min.doubleValue()) : min.longValue();
+        if (!minInclusive) {
+          if (minBound == Long.MAX_VALUE) return ranges;
+          minBound++;
+        }
+      }
+      long maxBound = Long.MAX_VALUE;
+      if (max != null) {
+        maxBound = isFloatingPoint ? NumericUtils.doubleToSortableLong(max.doubleValue()) : max.longValue();
+        if (!maxInclusive) {
+          if (maxBound == Long.MIN_VALUE) return ranges;
+          maxBound--;
+        }
+      }
+      NumericUtils.splitLongRange(new NumericUtils.LongRangeBuilder() {
+        public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+          ranges.add(new String[] {minPrefixCoded, maxPrefixCoded});
+        }
+      }, precisionStep, minBound, maxBound);
+    } else {
+      int minBound = Integer.MIN_VALUE;
+      if (min != null) {
+        minBound = isFloatingPoint ? NumericUtils.floatToSortableInt(min.floatValue()) : min.intValue();
+        if (!minInclusive) {
+          if (minBound == Integer.MAX_VALUE) return ranges;
+          minBound++;
+        }
+      }
+      int maxBound = Integer.MAX_VALUE;
+      if (max != null) {
+        maxBound = isFloatingPoint ? NumericUtils.floatToSortableInt(max.floatValue()) : max.intValue();
+        if (!maxInclusive) {
+          if (maxBound == Integer.MIN_VALUE) return ranges;
+          maxBound--;
+        }
+      }
+      NumericUtils.splitIntRange(new NumericUtils.IntRangeBuilder() {
+        public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+          ranges.add(new String[] {minPrefixCoded, maxPrefixCoded});
+        }
+      }, precisionStep, minBound, maxBound);
+    }
+    return ranges;
+  }
+
+  /**
+   * Returns a DocIdSet with documents that should be
+   * permitted in search results.
+   */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    final OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+    final List ranges = getTermRanges();
+    if (ranges.isEmpty())
+      return bits;
+
+    final TermDocs termDocs = reader.termDocs();
+    try {
+      for (int i = 0; i < ranges.size(); i++) {
+        final String[] range = (String[]) ranges.get(i);
+        final String upper = range[1];
+        final TermEnum enumerator = reader.terms(new Term(field, range[0]));
+        try {
+          do {
+            final Term term = enumerator.term();
+            if (term == null || term.field() != field || term.text().compareTo(upper) > 0)
+              break;
+            termDocs.seek(enumerator);
+            while (termDocs.next()) {
+              bits.set(termDocs.doc());
+            }
+          } while (enumerator.next());
+        } finally {
+          enumerator.close();
+        }
+      }
+    } finally {
+      termDocs.close();
+    }
+    return bits;
+  }
+
+  String toString(String defaultField) {
+    final StringBuffer sb = new StringBuffer();
+    if (!field.equals(defaultField))
+      sb.append(field).append(':');
+    return sb.append(minInclusive ? '[' : '{')
+      .append((min == null) ? "*" : min.toString())
+      .append(" TO ")
+      .append((max == null) ? "*" : max.toString())
+      .append(maxInclusive ? ']' : '}')
+      .toString();
+  }
+
+  public String toString() {
+    return toString(null);
+  }
+
+  /** Returns true if <code>o</code> is equal to this. */
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof NumericRangeFilter)) return false;
+    NumericRangeFilter other = (NumericRangeFilter) o;
+    return field == other.field
+      && precisionStep == other.precisionStep
+      && valSize == other.valSize
+      && isFloatingPoint == other.isFloatingPoint
+      && (min == null ? other.min == null : min.equals(other.min))
+      && (max == null ? other.max == null : max.equals(other.max))
+      && minInclusive == other.minInclusive
+      && maxInclusive == other.maxInclusive;
+  }
+
+  /** Returns a hash code value for this object.*/
+  public int hashCode() {
+    int h = field.hashCode();
+    h ^= precisionStep ^ 0x64365465;
+    h ^= (min == null) ? 0x14fa55fb : min.hashCode();
+    h = (h << 1) | (h >>> 31);
+    h ^= (max == null) ? 0x733fa5fe : max.hashCode();
+    h ^= (minInclusive ? 0x14fa55fb : 0) ^ (maxInclusive ? 0x733fa5fe : 0);
+    return h;
+  }
+}
@@ -0,0 +1,121 @@
+package org.apache.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.ToStringUtils;
+
+import java.io.IOException;
+
+/**
+ * A range query over a field indexed with {@link
+ * org.apache.lucene.document.NumericField}.  It returns a constant score
+ * equal to its boost for all documents in the range, and, like {@link
+ * ConstantScoreRangeQuery}, has no upper bound on the number of values it
+ * covers.  Only a few terms per precision step are visited, see {@link
+ * NumericRangeFilter}.
+ *
+ * <p>Instances are created by the static factory methods; a
+ * <code>null</code> bound is open ended.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ */
+public final class NumericRangeQuery extends Query {
+
+  private final NumericRangeFilter filter;
+
+  private NumericRangeQuery(final NumericRangeFilter filter) {
+    this.filter = filter;
+  }
+
+  /** Creates a query over a <code>long</code> field. */
+  public static NumericRangeQuery newLongRange(final String field, final int precisionStep,
+    Long min, Long max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeQuery(NumericRangeFilter.newLongRange(field, precisionStep, min, max, minInclusive, maxInclusive));
+  }
+
+  /** Creates a query over a <code>long</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeQuery newLongRange(final String field,
+    Long min, Long max, final boolean minInclusive, final boolean maxInclusive) {
+    return newLongRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a query over an <code>int</code> field. */
+  public static NumericRangeQuery newIntRange(final String field, final int precisionStep,
+    Integer min, Integer max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeQuery(NumericRangeFilter.newIntRange(field, precisionStep, min, max, minInclusive, maxInclusive));
+  }
+
+  /** Creates a query over an <code>int</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeQuery newIntRange(final String field,
+    Integer min, Integer max, final boolean minInclusive, final boolean maxInclusive) {
+    return newIntRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a query over a <code>double</code> field. */
+  public static NumericRangeQuery newDoubleRange(final String field, final int precisionStep,
+    Double min, Double max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeQuery(NumericRangeFilter.newDoubleRange(field, precisionStep, min, max, minInclusive, maxInclusive));
+  }
+
+  /** Creates a query over a <code>double</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeQuery newDoubleRange(final String field,
+    Double min, Double max, final boolean minInclusive, final boolean maxInclusive) {
+    return newDoubleRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Creates a query over a <code>float</code> field. */
+  public static NumericRangeQuery newFloatRange(final String field, final int precisionStep,
+    Float min, Float max, final boolean minInclusive, final boolean maxInclusive) {
+    return new NumericRangeQuery(NumericRangeFilter.newFloatRange(field, precisionStep, min, max, minInclusive, maxInclusive));
+  }
+
+  /** Creates a query over a <code>float</code> field using {@link
+   *  NumericUtils#PRECISION_STEP_DEFAULT}. */
+  public static NumericRangeQuery newFloatRange(final String field,
+    Float min, Float max, final boolean minInclusive, final boolean maxInclusive) {
+    return newFloatRange(field, NumericUtils.PRECISION_STEP_DEFAULT, min, max, minInclusive, maxInclusive);
+  }
+
+  /** Returns the filter this query matches with */
+  public NumericRangeFilter getFilter() { return filter; }
+  /** Returns the field name for this query */
+  public String getField() { return filter.getField(); }
+  /** Returns the precision step the field must be indexed with */
+  public int getPrecisionStep() { return filter.getPrecisionStep(); }
+  /** Returns the lower bound, or null if open ended */
+  public Number getMin() { return filter.getMin(); }
+  /** Returns the upper bound, or null if open ended */
+  public Number getMax() { return filter.getMax(); }
+  /** Returns <code>true</code> if the lower bound is inclusive */
+  public boolean includesMin() { return filter.includesMin(); }
+  /** Returns <code>true</code> if the upper bound is inclusive */
+  public boolean includesMax() { return filter.includesMax(); }
+
+  public Query rewrite(IndexReader reader) throws IOException {
+    Query q = new ConstantScoreQuery(filter);
+    q.setBoost(getBoost());
+    return q;
+  }
+
+  /** Prints a user-readable version of this query. */
+  public String toString(String field) {
+    return filter.toString(field) + ToStringUtils.boost(getBoost());
+  }
+
+  /** Returns true if <code>o</code> is equal to this. */
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof NumericRangeQuery)) return false;
+    NumericRangeQuery other = (NumericRangeQuery) o;
+    return this.getBoost() == other.getBoost() && filter.equals(other.filter);
+  }
+
+  /** Returns a hash code value for this object.*/
+  public int hashCode() {
+    return filter.hashCode() ^ Float.floatToIntBits(getBoost()) ^ 0x3a7b1c5e;
+  }
+}
@@ -63,6 +63,17 @@ public abstract class Scorer extends DocIdSetIterator {
    */
   public abstract float score() throws IOException;
 
+  /** Expert: Returns an upper bound of the {@link #score() score} of every
+   * document this scorer matches, used to skip documents that cannot be
+   * competitive for a {@link HitCollector#minCompetitiveScore() collector}.
+   * The default returns <code>Float.POSITIVE_INFINITY</code>, meaning
+   * no bound is known.
+   * <br>This may be called before {@link #next()} is called the first time.
+   */
+  public float maxScore() throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /** Returns an explanation of the score for a document.
    * <br>When this method is used, the {@link #next()}, {@link #skipTo(int)} and
    * {@link #score(HitCollector)} methods should not be used.
@@ -0,0 +1,185 @@
+package org.apache.lucene.search;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.apache.lucene.store.AlreadyClosedException;
+
+/**
+ * A fixed set of daemon threads on which an {@link
+ * IndexSearcher} scores the segments of its reader
+ * concurrently.  The threads are started once and reused
+ * for every query, so no thread is created per search.
+ *
+ * <p>One pool may be shared by any number of searchers.
+ * Closing a searcher does not close its pool; call {@link
+ * #close} once no searcher uses it anymore.</p>
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ *
+ * @see IndexSearcher#IndexSearcher(org.apache.lucene.index.IndexReader, SearchThreadPool)
+ */
+public class SearchThreadPool {
+
+  private final LinkedList queue = new LinkedList();
+  private final Thread[] threads;
+  private boolean closed;
+
+  /** Creates a pool and starts <code>numThreads</code>
+   *  worker threads. */
+  public SearchThreadPool(int numThreads) {
+    if (numThreads < 1)
+      throw new IllegalArgumentException("numThreads must be >= 1 (got " + numThreads + ")");
+    threads = new Thread[numThreads];
+    for(int i=0;i<numThreads;i++) {
+      threads[i] = new Worker("SearchThreadPool thread #" + (i+1));
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  /** Returns the number of worker threads. */
+  public int getThreadCount() {
+    return threads.length;
+  }
+
+  /** Stops the worker threads once the tasks already
+   *  queued have run.  Further searches through this pool
+   *  throw {@link AlreadyClosedException}. */
+  public void close() {
+    synchronized(queue) {
+      closed = true;
+      queue.notifyAll();
+    }
+  }
+
+  /** Runs all tasks on the pool and returns once every one
+   *  of them has finished.  The calling thread runs the
+   *  tasks no worker has taken yet itself, so the call
+   *  completes even if every worker is busy.  A
+   *  RuntimeException or Error thrown by a task is rethrown
+   *  here. */
+  void invokeAll(Runnable[] tasks) {
+    final Batch batch = new Batch(tasks.length);
+    synchronized(queue) {
+      if (closed)
+        throw new AlreadyClosedException("this SearchThreadPool is closed");
+      for(int i=0;i<tasks.length;i++)
+        queue.addLast(new BatchTask(batch, tasks[i]));
+      queue.notifyAll();
+    }
+    BatchTask task;
+    while((task = takeTask(batch)) != null)
+      task.run();
+    batch.waitForAll();
+  }
+
+  /** Removes and returns the first queued task of the given
+   *  batch, or null if the workers took them all. */
+  private BatchTask takeTask(Batch batch) {
+    synchronized(queue) {
+      Iterator it = queue.iterator();
+      while(it.hasNext()) {
+        BatchTask task = (BatchTask) it.next();
+        if (task.batch == batch) {
+          it.remove();
+          return task;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** Returns the next queued task, waiting for one, or null
+   *  once the pool is closed and the queue is empty.  An
+   *  interrupt does not stop a worker, as tasks might be
+   *  left in the queue. */
+  private Runnable nextTask() {
+    synchronized(queue) {
+      while(queue.isEmpty()) {
+        if (closed)
+          return null;
+        try {
+          queue.wait();
+        } catch (InterruptedException ie) {
+          // keep serving the queue until close()
+        }
+      }
+      return (Runnable) queue.removeFirst();
+    }
+  }
+
+  private class Worker extends Thread {
+    Worker(String name) {
+      super(name);
+    }
+
+    public void run() {
+      Runnable task;
+      while((task = nextTask()) != null)
+        task.run();
+    }
+  }
+
+  /** Counts down the tasks of one invokeAll call and keeps
+   *  the first unchecked exception any of them threw. */
+  private static class Batch {
+    private int remaining;
+    private Throwable exc;
+
+    Batch(int count) {
+      remaining = count;
+    }
+
+    synchronized void done(Throwable t) {
+      if (t != null && exc == null)
+        exc = t;
+      if (--remaining == 0)
+        notifyAll();
+    }
+
+    /** Waits until all tasks are done.  Tasks that already
+     *  started cannot be abandoned, so an interrupt does not
+     *  end the wait, but it is restored before returning. */
+    synchronized void waitForAll() {
+      boolean interrupted = false;
+      while(remaining > 0) {
+        try {
+          wait();
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+      if (interrupted)
+        Thread.currentThread().interrupt();
+      if (exc instanceof RuntimeException)
+        throw (RuntimeException) exc;
+      if (exc instanceof Error)
+        throw (Error) exc;
+      if (exc != null)
+        throw new RuntimeException(exc.toString());
+    }
+  }
+
+  private static class BatchTask implements Runnable {
+    final Batch batch;
+    private final Runnable task;
+
+    BatchTask(Batch batch, Runnable task) {
+      this.batch = batch;
+      this.task = task;
+    }
+
+    public void run() {
+      Throwable exc = null;
+      try {
+        task.run();
+      } catch (Throwable t) {
+        exc = t;
+      } finally {
+        batch.done(exc);
+      }
+    }
+  }
+}
@@ -74,6 +74,7 @@ implements Serializable {
 
   private String field;
   private SortComparatorSource factory;
+  private FieldCache.Parser parser;
 
   /** Creates a sort by terms in the given field where the type of term value
    * is determined dynamically ({@link #AUTO AUTO}).
@@ -140,6 +141,39 @@ implements Serializable {
     this.reverse = reverse;
   }
 
+  /** Creates a sort by terms in the given field, parsed to numeric values
+   * by the given parser, e.g. {@link FieldCache#NUMERIC_UTILS_INT_PARSER}
+   * for a field indexed with {@link org.apache.lucene.document.NumericField}.
+   * The type of the sort follows from the parser's interface.
+   * @param field  Name of field to sort by, cannot be <code>null</code>.
+   * @param parser Parser of the terms; cannot be <code>null</code>.
+   */
+  public SortField (String field, FieldCache.Parser parser) {
+    this(field, parser, false);
+  }
+
+  /** Creates a sort, possibly in reverse, by terms in the given field,
+   * parsed to numeric values by the given parser.
+   * @param field  Name of field to sort by, cannot be <code>null</code>.
+   * @param parser Parser of the terms; cannot be <code>null</code>.
+   * @param reverse True if natural order should be reversed.
+   * @throws IllegalArgumentException if the parser is not one of the
+   *  numeric parser interfaces of {@link FieldCache} or {@link ExtendedFieldCache}
+   */
+  public SortField (String field, FieldCache.Parser parser, boolean reverse) {
+    this.field = field.intern();
+    this.reverse = reverse;
+    this.parser = parser;
+    if (parser instanceof FieldCache.IntParser) this.type = INT;
+    else if (parser instanceof FieldCache.FloatParser) this.type = FLOAT;
+    else if (parser instanceof FieldCache.ShortParser) this.type = SHORT;
+    else if (parser instanceof FieldCache.ByteParser) this.type = BYTE;
+    else if (parser instanceof ExtendedFieldCache.LongParser) this.type = LONG;
+    else if (parser instanceof ExtendedFieldCache.DoubleParser) this.type = DOUBLE;
+    else
+      throw new IllegalArgumentException("Parser instance does not subclass existing numeric parser from FieldCache or ExtendedFieldCache");
+  }
+
   /** Creates a sort with a custom comparison function.
    * @param field Name of field to sort by; cannot be <code>null</code>.
    * @param comparator Returns a comparator for sorting hits.
@@ -196,6 +230,14 @@ implements Serializable {
     return factory;
   }
 
+  /** Returns the parser of the term values, or <code>null</code> if the
+   * default parser of the sort type is used.
+   * @return Parser, or <code>null</code>.
+   */
+  public FieldCache.Parser getParser() {
+    return parser;
+  }
+
   public String toString() {
     StringBuffer buffer = new StringBuffer();
     switch (type) {
@@ -1,5 +1,10 @@
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 
 /** Expert: A <code>Scorer</code> for documents matching a <code>Term</code>.
@@ -17,6 +22,11 @@ final class TermScorer extends Scorer {
   private static final int SCORE_CACHE_SIZE = 32;
   private float[] scoreCache = new float[SCORE_CACHE_SIZE];
 
+  // only set if the score can be bounded, see maxScore()
+  private final IndexReader reader;
+  private final Term term;
+  private float maxTfNorm = -1.0f;
+
   /** Construct a <code>TermScorer</code>.
    * @param weight The weight of the <code>Term</code> in the query.
    * @param td An iterator over the documents matching the <code>Term</code>.
@@ -25,11 +35,23 @@ final class TermScorer extends Scorer {
    */
   TermScorer(Weight weight, TermDocs td, Similarity similarity,
              byte[] norms) {
+    this(weight, td, similarity, norms, null, null);
+  }
+
+  /** Construct a <code>TermScorer</code> that can bound its scores.
+   * @param reader The reader <code>td</code> was obtained from.
+   * @param term The <code>Term</code> whose documents <code>td</code> iterates.
+   * @see #maxScore()
+   */
+  TermScorer(Weight weight, TermDocs td, Similarity similarity,
+             byte[] norms, IndexReader reader, Term term) {
     super(similarity);
     this.weight = weight;
     this.termDocs = td;
     this.norms = norms;
     this.weightValue = weight.getValue();
+    this.reader = reader;
+    this.term = term;
 
     for (int i = 0; i < SCORE_CACHE_SIZE; i++)
       scoreCache[i] = getSimilarity().tf(i) * weightValue;
@@ -86,6 +108,135 @@ final class TermScorer extends Scorer {
 
   }
 
+  /** Returns the weight times the largest <code>tf(freq) * norm</code> of
+   * the term over the documents of the reader.  That product is computed
+   * per segment, with one pass over the term's postings in the segment the
+   * first time it is needed, and cached by {@link MaxTfNormCache}, so a
+   * reopened reader only computes it for its new or changed segments.
+   */
+  public float maxScore() throws IOException {
+    if (reader == null || weightValue < 0.0f)
+      return Float.POSITIVE_INFINITY;
+    if (maxTfNorm < 0.0f)
+      maxTfNorm = maxTfNorm(reader, 0);
+    return maxTfNorm * weightValue;
+  }
+
+  /** Returns the largest <code>tf(freq) * norm</code> of the term in the
+   *  segments of <code>r</code>, whose first document is
+   *  <code>docBase</code> in the norms of this scorer. */
+  private float maxTfNorm(IndexReader r, int docBase) throws IOException {
+    IndexReader[] subReaders = r.getSequentialSubReaders();
+    if (subReaders == null)
+      return MaxTfNormCache.get(r, term, getSimilarity(), norms, docBase);
+    float max = 0.0f;
+    for (int i = 0; i < subReaders.length; i++) {
+      max = Math.max(max, maxTfNorm(subReaders[i], docBase));
+      docBase += subReaders[i].maxDoc();
+    }
+    return max;
+  }
+
+  /** Caches the largest <code>tf(freq) * norm</code> of terms per segment
+   * reader.  Readers whose segment did not change are shared by a reopened
+   * reader, so their bounds are kept.  A bound is recomputed when {@link
+   * IndexReader#getScoringVersion()} of its reader changed.  Only the
+   * {@link #MAX_TERMS} most recently used terms are kept per reader.
+   */
+  static final class MaxTfNormCache {
+
+    static final int MAX_TERMS = 1024;
+
+    private static final Map readerCache = new WeakHashMap();
+
+    private MaxTfNormCache() {}
+
+    /** Returns the bound of <code>term</code> in the segment reader
+     *  <code>reader</code>, whose norms start at <code>docBase</code> in
+     *  <code>norms</code>. */
+    static float get(IndexReader reader, Term term, Similarity similarity,
+                     byte[] norms, int docBase) throws IOException {
+      final Key key = new Key(term, similarity);
+      final long version = reader.getScoringVersion();
+      Map terms;
+      synchronized (readerCache) {
+        terms = (Map) readerCache.get(reader);
+        if (terms == null) {
+          terms = new LinkedHashMap(16, 0.75f, true) {
+              protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_TERMS;
+              }
+            };
+          readerCache.put(reader, terms);
+        }
+        Bound bound = (Bound) terms.get(key);
+        if (bound != null && bound.version == version)
+          return bound.value;
+      }
+
+      final float value = compute(reader, term, similarity, norms, docBase);
+      synchronized (readerCache) {
+        terms.put(key, new Bound(value, version));
+      }
+      return value;
+    }
+
+    private static float compute(IndexReader reader, Term term, Similarity similarity,
+                                 byte[] norms, int docBase) throws IOException {
+      final float[] normDecoder = Similarity.getNormDecoder();
+      final int[] docs = new int[32];
+      final int[] freqs = new int[32];
+      float max = 0.0f;
+      TermDocs termDocs = reader.termDocs(term);
+      try {
+        int count;
+        while ((count = termDocs.read(docs, freqs)) > 0) {
+          for (int i = 0; i < count; i++) {
+            float tfNorm = similarity.tf(freqs[i]);
+            if (norms != null)
+              tfNorm *= normDecoder[norms[docBase + docs[i]] & 0xFF];
+            if (tfNorm > max)
+              max = tfNorm;
+          }
+        }
+      } finally {
+        termDocs.close();
+      }
+      return max;
+    }
+
+    private static final class Key {
+      final Term term;
+      final Similarity similarity;
+
+      Key(Term term, Similarity similarity) {
+        this.term = term;
+        this.similarity = similarity;
+      }
+
+      public boolean equals(Object o) {
+        if (!(o instanceof Key))
+          return false;
+        Key other = (Key) o;
+        return term.equals(other.term) && similarity == other.similarity;
+      }
+
+      public int hashCode() {
+        return term.hashCode() ^ System.identityHashCode(similarity);
+      }
+    }
+
+    private static final class Bound {
+      final float value;
+      final long version;
+
+      Bound(float value, long version) {
+        this.value = value;
+        this.version = version;
+      }
+    }
+  }
+
   /** Skips to the first match beyond the current whose document number is
    * greater than or equal to a given target. 
    * <br>The implementation uses {@link TermDocs#skipTo(int)}.
@@ -0,0 +1,64 @@
+package org.apache.lucene.search;
+
+/** A {@link TopDocCollector} that lets scorers skip documents which cannot
+ * enter its queue of top hits.  Once the queue is full, {@link
+ * #minCompetitiveScore()} returns the score of the weakest hit in it, and
+ * scorers that can bound their scores, such as disjunctions of term
+ * queries, stop scoring documents that cannot beat it.  For a top-10
+ * search over common terms most of their postings are then skipped.
+ *
+ * <p>Since skipped documents are never collected, {@link #getTotalHits()}
+ * only counts the collected documents and is a lower bound of the number
+ * of matches.  Use a {@link TopDocCollector} where the exact count is
+ * needed.
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ */
+public class TopScoreDocCollector extends TopDocCollector {
+
+  private final int numHits;
+  private final boolean docsScoredInOrder;
+
+  /** Construct to collect a given number of hits from documents scored
+   * in order of document number.
+   * @param numHits the maximum number of hits to collect
+   */
+  public TopScoreDocCollector(int numHits) {
+    this(numHits, true);
+  }
+
+  /** Construct to collect a given number of hits.
+   * @param numHits the maximum number of hits to collect
+   * @param docsScoredInOrder false if documents may be collected out of
+   * order, as with {@link BooleanQuery#setAllowDocsOutOfOrder}.  If true, a
+   * document scoring no more than the weakest hit is rejected at once,
+   * since it would also lose the tie on its larger document number.
+   */
+  public TopScoreDocCollector(int numHits, boolean docsScoredInOrder) {
+    super(numHits);
+    this.numHits = numHits;
+    this.docsScoredInOrder = docsScoredInOrder;
+  }
+
+  public void collect(int doc, float score) {
+    if (docsScoredInOrder && score > 0.0f && isFull()
+        && score <= ((ScoreDoc) hq.top()).score) {
+      totalHits++;
+      return;
+    }
+    super.collect(doc, score);
+  }
+
+  /** Returns 0 until <code>numHits</code> documents were collected, as
+   * documents that do not score above 0 are never collected, and then the
+   * score of the weakest hit collected so far.
+   */
+  public float minCompetitiveScore() {
+    return isFull() ? ((ScoreDoc) hq.top()).score : 0.0f;
+  }
+
+  private boolean isFull() {
+    return numHits > 0 && hq.size() == numHits;
+  }
+}
@@ -0,0 +1,230 @@
+package org.apache.lucene.store;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * A memory-resident {@link Directory} for many concurrent readers and
+ * writers, such as in-memory indexes used as caches.
+ *
+ * <p>It differs from {@link RAMDirectory} in two ways:
+ * <ul>
+ * <li>The files are spread over a number of maps, each with its own lock,
+ * by the hash of their name, so operations on different files seldom wait
+ * for each other, while all operations of RAMDirectory synchronize on the
+ * directory.</li>
+ * <li>Files are stored in pages of {@link #DEFAULT_PAGE_SIZE} bytes or a
+ * given power of two, instead of 1KB buffers, which makes for fewer, larger
+ * objects on the heap.  Inputs take the table of pages when they are
+ * opened and then read, and are cloned, without any synchronization.</li>
+ * </ul>
+ *
+ * <p>Locking is by default implemented by the {@link
+ * SingleInstanceLockFactory} but can be changed with {@link
+ * #setLockFactory}.
+ */
+public class PagedRAMDirectory extends Directory {
+
+  /** The default size of a page, 64KB. */
+  public static final int DEFAULT_PAGE_SIZE = 1 << 16;
+
+  /** Number of file maps; a power of two. */
+  private static final int STRIPES = 16;
+
+  private final HashMap[] stripes = new HashMap[STRIPES];
+  private final int pageShift;
+
+  /** Constructs an empty {@link Directory} with pages of {@link
+   *  #DEFAULT_PAGE_SIZE} bytes. */
+  public PagedRAMDirectory() {
+    this(DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Constructs an empty {@link Directory} with pages of
+   * <code>pageSize</code> bytes.  Large pages waste more memory on small
+   * files, small ones make more objects.
+   *
+   * @param pageSize a power of two, at least 1024
+   */
+  public PagedRAMDirectory(int pageSize) {
+    if (pageSize < 1024 || (pageSize & (pageSize - 1)) != 0)
+      throw new IllegalArgumentException("pageSize must be a power of two, at least 1024: " + pageSize);
+    int shift = 0;
+    while ((1 << shift) < pageSize)
+      shift++;
+    pageShift = shift;
+    for (int i = 0; i < STRIPES; i++)
+      stripes[i] = new HashMap();
+    setLockFactory(new SingleInstanceLockFactory());
+  }
+
+  /**
+   * Creates a new <code>PagedRAMDirectory</code> instance holding a copy of
+   * the files of <code>dir</code>, which can be used to load a disk-based
+   * index into memory.
+   *
+   * @see RAMDirectory#RAMDirectory(Directory)
+   */
+  public PagedRAMDirectory(Directory dir) throws IOException {
+    this();
+    Directory.copy(dir, this, false);
+  }
+
+  private static int stripeIndex(String name) {
+    int h = name.hashCode();
+    h ^= (h >>> 16) ^ (h >>> 8);
+    return h & (STRIPES - 1);
+  }
+
+  private HashMap stripe(String name) {
+    return stripes[stripeIndex(name)];
+  }
+
+  private PagedRAMFile getFile(String name) {
+    final HashMap stripe = stripe(name);
+    synchronized (stripe) {
+      return (PagedRAMFile) stripe.get(name);
+    }
+  }
+
+  private PagedRAMFile getExistingFile(String name) throws FileNotFoundException {
+    PagedRAMFile file = getFile(name);
+    if (file == null)
+      throw new FileNotFoundException(name);
+    return file;
+  }
+
+  /** Returns an array of strings, one for each file in the directory.
+   *  Files created or deleted while the directory is listed may or may
+   *  not be included. */
+  public final String[] list() {
+    ensureOpen();
+    ArrayList names = new ArrayList();
+    for (int i = 0; i < STRIPES; i++) {
+      synchronized (stripes[i]) {
+        names.addAll(stripes[i].keySet());
+      }
+    }
+    return (String[]) names.toArray(new String[names.size()]);
+  }
+
+  /** Returns true iff the named file exists in this directory. */
+  public final boolean fileExists(String name) {
+    ensureOpen();
+    return getFile(name) != null;
+  }
+
+  /** Returns the time the named file was last modified.
+   * @throws IOException if the file does not exist
+   */
+  public final long fileModified(String name) throws IOException {
+    ensureOpen();
+    return getExistingFile(name).getLastModified();
+  }
+
+  /** Set the modified time of an existing file to now.
+   * @throws IOException if the file does not exist
+   */
+  public void touchFile(String name) throws IOException {
+    ensureOpen();
+    PagedRAMFile file = getExistingFile(name);
+
+    long ts2, ts1 = System.currentTimeMillis();
+    do {
+      try {
+        Thread.sleep(0, 1);
+      } catch (InterruptedException e) {}
+      ts2 = System.currentTimeMillis();
+    } while(ts1 == ts2);
+
+    file.setLastModified(ts2);
+  }
+
+  /** Returns the length in bytes of a file in the directory.
+   * @throws IOException if the file does not exist
+   */
+  public final long fileLength(String name) throws IOException {
+    ensureOpen();
+    return getExistingFile(name).getLength();
+  }
+
+  /** Return total size in bytes of all files in this directory, quantized
+   *  to the page size.  This visits every file. */
+  public final long sizeInBytes() {
+    ensureOpen();
+    long size = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      synchronized (stripes[i]) {
+        Iterator it = stripes[i].values().iterator();
+        while (it.hasNext())
+          size += ((PagedRAMFile) it.next()).sizeInBytes();
+      }
+    }
+    return size;
+  }
+
+  /** Removes an existing file in the directory.  Inputs already open on
+   *  it can still read it.
+   * @throws IOException if the file does not exist
+   */
+  public void deleteFile(String name) throws IOException {
+    ensureOpen();
+    final HashMap stripe = stripe(name);
+    synchronized (stripe) {
+      if (stripe.remove(name) == null)
+        throw new FileNotFoundException(name);
+    }
+  }
+
+  /** Renames an existing file in the directory.
+   * @throws FileNotFoundException if from does not exist
+   * @deprecated
+   */
+  public final void renameFile(String from, String to) throws IOException {
+    ensureOpen();
+    final int fromIndex = stripeIndex(from);
+    final int toIndex = stripeIndex(to);
+    final HashMap fromStripe = stripes[fromIndex];
+    final HashMap toStripe = stripes[toIndex];
+    // lock both maps, always the lower one first
+    synchronized (stripes[Math.min(fromIndex, toIndex)]) {
+      synchronized (stripes[Math.max(fromIndex, toIndex)]) {
+        PagedRAMFile file = (PagedRAMFile) fromStripe.remove(from);
+        if (file == null)
+          throw new FileNotFoundException(from);
+        toStripe.put(to, file);
+      }
+    }
+  }
+
+  /** Creates a new, empty file in the directory with the given name. Returns a stream writing this file. */
+  public IndexOutput createOutput(String name) throws IOException {
+    ensureOpen();
+    PagedRAMFile file = new PagedRAMFile(pageShift);
+    final HashMap stripe = stripe(name);
+    synchronized (stripe) {
+      stripe.put(name, file);
+    }
+    return new PagedRAMOutputStream(file);
+  }
+
+  /** Returns a stream reading an existing file. */
+  public IndexInput openInput(String name) throws IOException {
+    ensureOpen();
+    return new PagedRAMInputStream(getExistingFile(name));
+  }
+
+  /** Closes the store to future operations, releasing associated memory. */
+  public void close() {
+    isOpen = false;
+    for (int i = 0; i < STRIPES; i++) {
+      synchronized (stripes[i]) {
+        stripes[i].clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.apache.lucene.store;
+
+/**
+ * A file of a {@link PagedRAMDirectory}: a table of pages, all of the same
+ * power of two size, of which only the last may be partially filled.
+ *
+ * <p>The table is only ever appended to, and grown by copying it into a
+ * larger one, so a table returned by {@link #getPages} keeps holding the
+ * pages that existed then.  Inputs take such a snapshot when they are
+ * opened and read without synchronizing.
+ */
+final class PagedRAMFile {
+
+  private final int pageShift;
+  private byte[][] pages = new byte[4][];
+  private int numPages;
+  private long length;
+  private long lastModified = System.currentTimeMillis();
+
+  PagedRAMFile(int pageShift) {
+    this.pageShift = pageShift;
+  }
+
+  int getPageShift() {
+    return pageShift;
+  }
+
+  synchronized long getLength() {
+    return length;
+  }
+
+  synchronized void setLength(long length) {
+    this.length = length;
+  }
+
+  synchronized long getLastModified() {
+    return lastModified;
+  }
+
+  synchronized void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+
+  /** Appends a new page and returns it. */
+  synchronized byte[] addPage() {
+    if (numPages == pages.length) {
+      byte[][] newPages = new byte[2 * pages.length][];
+      System.arraycopy(pages, 0, newPages, 0, numPages);
+      pages = newPages;
+    }
+    byte[] page = new byte[1 << pageShift];
+    pages[numPages++] = page;
+    return page;
+  }
+
+  synchronized byte[] getPage(int index) {
+    return pages[index];
+  }
+
+  synchronized int numPages() {
+    return numPages;
+  }
+
+  /** Returns the current table of pages, which holds at least
+   *  <code>(getLength() + pageSize - 1) / pageSize</code> pages. */
+  synchronized byte[][] getPages() {
+    return pages;
+  }
+
+  synchronized long sizeInBytes() {
+    return (long) numPages << pageShift;
+  }
+}
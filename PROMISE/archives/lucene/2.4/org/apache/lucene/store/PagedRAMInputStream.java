@@ -0,0 +1,90 @@
+package org.apache.lucene.store;
+
+import java.io.IOException;
+
+/**
+ * An {@link IndexInput} reading a {@link PagedRAMFile}.
+ *
+ * <p>The table of pages and the length of the file are read once, when the
+ * input is opened, so reading never synchronizes on the file, unlike {@link
+ * RAMInputStream} which does on every buffer switch.  Clones share the
+ * pages and copy only the position.
+ */
+final class PagedRAMInputStream extends IndexInput implements Cloneable {
+
+  private final byte[][] pages;
+  private final int pageShift;
+  private final int pageSize;
+  private final long length;
+
+  /** The current page, or null if it is not loaded yet. */
+  private byte[] page;
+  private int pageIndex;
+  private int pos;
+  /** The number of bytes of the file in the current page. */
+  private int limit;
+
+  PagedRAMInputStream(PagedRAMFile file) {
+    synchronized (file) {
+      pages = file.getPages();
+      length = file.getLength();
+    }
+    pageShift = file.getPageShift();
+    pageSize = 1 << pageShift;
+  }
+
+  public byte readByte() throws IOException {
+    if (pos >= limit)
+      nextPage();
+    return page[pos++];
+  }
+
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    while (len > 0) {
+      if (pos >= limit)
+        nextPage();
+      final int remaining = limit - pos;
+      final int count = len < remaining ? len : remaining;
+      System.arraycopy(page, pos, b, offset, count);
+      offset += count;
+      len -= count;
+      pos += count;
+    }
+  }
+
+  /** Loads the page holding the current position: the page seeked to if
+   *  none is loaded, otherwise the next one. */
+  private void nextPage() throws IOException {
+    if (page != null) {
+      pageIndex++;
+      pos = 0;
+    }
+    final long pageStart = (long) pageIndex << pageShift;
+    if (pageStart + pos >= length)
+      throw new IOException("Read past EOF");
+    page = pages[pageIndex];
+    final long remaining = length - pageStart;
+    limit = remaining > pageSize ? pageSize : (int) remaining;
+  }
+
+  public long getFilePointer() {
+    return ((long) pageIndex << pageShift) + pos;
+  }
+
+  public void seek(long pos) {
+    final int index = (int) (pos >>> pageShift);
+    if (index != pageIndex) {
+      page = null;
+      limit = 0;
+      pageIndex = index;
+    }
+    this.pos = (int) pos & (pageSize - 1);
+  }
+
+  public long length() {
+    return length;
+  }
+
+  public void close() {
+  }
+}
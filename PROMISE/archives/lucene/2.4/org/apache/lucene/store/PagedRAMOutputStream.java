@@ -0,0 +1,92 @@
+package org.apache.lucene.store;
+
+import java.io.IOException;
+
+/**
+ * An {@link IndexOutput} writing a {@link PagedRAMFile}.  The file's
+ * length is updated on {@link #flush}, {@link #seek} and {@link #close}.
+ */
+final class PagedRAMOutputStream extends IndexOutput {
+
+  private final PagedRAMFile file;
+  private final int pageShift;
+  private final int pageSize;
+
+  /** The current page, or null if it is not loaded yet. */
+  private byte[] page;
+  private int pageIndex;
+  private int pos;
+
+  PagedRAMOutputStream(PagedRAMFile file) {
+    this.file = file;
+    pageShift = file.getPageShift();
+    pageSize = 1 << pageShift;
+  }
+
+  public void writeByte(byte b) {
+    if (page == null || pos == pageSize)
+      nextPage();
+    page[pos++] = b;
+  }
+
+  public void writeBytes(byte[] b, int offset, int len) {
+    assert b != null;
+    while (len > 0) {
+      if (page == null || pos == pageSize)
+        nextPage();
+      final int remaining = pageSize - pos;
+      final int count = len < remaining ? len : remaining;
+      System.arraycopy(b, offset, page, pos, count);
+      offset += count;
+      len -= count;
+      pos += count;
+    }
+  }
+
+  /** Loads the page holding the current position, adding pages to the
+   *  file as needed: the page seeked to if none is loaded, otherwise the
+   *  next one. */
+  private void nextPage() {
+    if (page != null) {
+      pageIndex++;
+      pos = 0;
+    }
+    while (file.numPages() <= pageIndex)
+      file.addPage();
+    page = file.getPage(pageIndex);
+  }
+
+  private void setFileLength() {
+    final long pointer = getFilePointer();
+    if (pointer > file.getLength())
+      file.setLength(pointer);
+  }
+
+  public long getFilePointer() {
+    return ((long) pageIndex << pageShift) + pos;
+  }
+
+  public void seek(long pos) {
+    setFileLength();
+    final int index = (int) (pos >>> pageShift);
+    if (index != pageIndex) {
+      page = null;
+      pageIndex = index;
+    }
+    this.pos = (int) pos & (pageSize - 1);
+  }
+
+  public long length() {
+    setFileLength();
+    return file.getLength();
+  }
+
+  public void flush() {
+    file.setLastModified(System.currentTimeMillis());
+    setFileLength();
+  }
+
+  public void close() {
+    flush();
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.lucene.store;
+
+/**
+ * Limits the rate at which bytes are written, by making the writing
+ * threads pause.  One instance may be shared by several threads, in
+ * which case the limit applies to the bytes all of them write together.
+ * Time spent not writing is not saved up for later bursts.
+ *
+ * <p><b>NOTE:</b> This API is new and still experimental
+ * (subject to change suddenly in the next release)</p>
+ */
+public class RateLimiter {
+
+  private double mbPerSec;
+  private double bytesPerMilli;
+  private long nextTime;
+
+  /** Creates a limiter allowing <code>mbPerSec</code> megabytes
+   *  per second. */
+  public RateLimiter(double mbPerSec) {
+    setMBPerSec(mbPerSec);
+  }
+
+  /** Sets the allowed megabytes per second; takes effect for the
+   *  bytes passed to the next call to {@link #pause}. */
+  public synchronized void setMBPerSec(double mbPerSec) {
+    if (mbPerSec <= 0.0)
+      throw new IllegalArgumentException("mbPerSec must be > 0 (got " + mbPerSec + ")");
+    this.mbPerSec = mbPerSec;
+    bytesPerMilli = mbPerSec * 1024 * 1024 / 1000.0;
+  }
+
+  /** Returns the allowed megabytes per second. */
+  public synchronized double getMBPerSec() {
+    return mbPerSec;
+  }
+
+  /** Records that <code>bytes</code> were just written and pauses
+   *  the calling thread for as long as needed to stay under the
+   *  allowed rate.  Call this every few dozen kilobytes, as the
+   *  clock is only accurate to a few milliseconds.  An interrupt
+   *  ends the pause early and is preserved.
+   *
+   *  @return the number of milliseconds paused */
+  public long pause(long bytes) {
+    final long targetTime;
+    synchronized(this) {
+      final long now = System.currentTimeMillis();
+      if (nextTime < now)
+        nextTime = now;
+      nextTime += (long) (bytes / bytesPerMilli);
+      targetTime = nextTime;
+    }
+    final long start = System.currentTimeMillis();
+    final long pauseMillis = targetTime - start;
+    if (pauseMillis <= 0)
+      return 0;
+    try {
+      Thread.sleep(pauseMillis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    return System.currentTimeMillis() - start;
+  }
+}
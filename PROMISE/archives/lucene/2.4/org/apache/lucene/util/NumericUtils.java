@@ -0,0 +1,304 @@
+package org.apache.lucene.util;
+
+/**
+ * Encodes numeric values as sortable index terms at several precisions,
+ * and splits numeric ranges into the few terms that cover them.
+ *
+ * <p>A value is indexed once per precision step: the full value, then the
+ * value with its lowest <code>precisionStep</code> bits stripped, then with
+ * <code>2*precisionStep</code> bits stripped, and so on.  Each such term is
+ * prefixed by the number of stripped bits (the <em>shift</em>), so terms of
+ * the same shift sort together and in numeric order.  A range is then matched
+ * by the lower-precision terms for its inner part and full-precision terms
+ * only near its bounds, so the number of terms visited grows with the number
+ * of bits, not with the number of distinct values in the range.
+ *
+ * <p>Every encoded char is at most 7 bits wide, so terms stay compact in the
+ * UTF-8 term dictionary.  Doubles and floats are converted to sortable longs
+ * and ints first ({@link #doubleToSortableLong}, {@link #floatToSortableInt}).
+ *
+ * <p><b>WARNING</b>: this API is new and experimental and
+ * may suddenly change.</p>
+ *
+ * @see org.apache.lucene.document.NumericField
+ * @see org.apache.lucene.search.NumericRangeQuery
+ */
+public final class NumericUtils {
+
+  private NumericUtils() {}
+
+  /** The default precision step used by {@link
+   *  org.apache.lucene.document.NumericField} and {@link
+   *  org.apache.lucene.search.NumericRangeQuery}. */
+  public static final int PRECISION_STEP_DEFAULT = 4;
+
+  /** First char of terms encoding a long: the shift is
+   *  added to it. */
+  public static final char SHIFT_START_LONG = (char) 0x20;
+
+  /** Maximum length of a long encoded by {@link
+   *  #longToPrefixCoded(long, int, char[])}. */
+  public static final int BUF_SIZE_LONG = 63/7 + 2;
+
+  /** First char of terms encoding an int: the shift is
+   *  added to it. */
+  public static final char SHIFT_START_INT = (char) 0x60;
+
+  /** Maximum length of an int encoded by {@link
+   *  #intToPrefixCoded(int, int, char[])}. */
+  public static final int BUF_SIZE_INT = 31/7 + 2;
+
+  /**
+   * Encodes <code>val</code> with its lowest <code>shift</code> bits
+   * stripped into <code>buffer</code>, which must be at least {@link
+   * #BUF_SIZE_LONG} long.
+   * @return the number of chars written
+   */
+  public static int longToPrefixCoded(final long val, final int shift, final char[] buffer) {
+    if (shift > 63 || shift < 0)
+      throw new IllegalArgumentException("Illegal shift value, must be 0..63");
+    int nChars = (63 - shift) / 7 + 1;
+    final int len = nChars + 1;
+    buffer[0] = (char) (SHIFT_START_LONG + shift);
+    long sortableBits = val ^ 0x8000000000000000L;
+    sortableBits >>>= shift;
+    while (nChars >= 1) {
+      buffer[nChars--] = (char) (sortableBits & 0x7f);
+      sortableBits >>>= 7;
+    }
+    return len;
+  }
+
+  /** Returns <code>val</code>, with its lowest <code>shift</code> bits
+   *  stripped, as a prefix coded term. */
+  public static String longToPrefixCoded(final long val, final int shift) {
+    final char[] buffer = new char[BUF_SIZE_LONG];
+    final int len = longToPrefixCoded(val, shift, buffer);
+    return new String(buffer, 0, len);
+  }
+
+  /** Returns <code>val</code> at full precision as a prefix
+   *  coded term. */
+  public static String longToPrefixCoded(final long val) {
+    return longToPrefixCoded(val, 0);
+  }
+
+  /**
+   * Encodes <code>val</code> with its lowest <code>shift</code> bits
+   * stripped into <code>buffer</code>, which must be at least {@link
+   * #BUF_SIZE_INT} long.
+   * @return the number of chars written
+   */
+  public static int intToPrefixCoded(final int val, final int shift, final char[] buffer) {
+    if (shift > 31 || shift < 0)
+      throw new IllegalArgumentException("Illegal shift value, must be 0..31");
+    int nChars = (31 - shift) / 7 + 1;
+    final int len = nChars + 1;
+    buffer[0] = (char) (SHIFT_START_INT + shift);
+    int sortableBits = val ^ 0x80000000;
+    sortableBits >>>= shift;
+    while (nChars >= 1) {
+      buffer[nChars--] = (char) (sortableBits & 0x7f);
+      sortableBits >>>= 7;
+    }
+    return len;
+  }
+
+  /** Returns <code>val</code>, with its lowest <code>shift</code> bits
+   *  stripped, as a prefix coded term. */
+  public static String intToPrefixCoded(final int val, final int shift) {
+    final char[] buffer = new char[BUF_SIZE_INT];
+    final int len = intToPrefixCoded(val, shift, buffer);
+    return new String(buffer, 0, len);
+  }
+
+  /** Returns <code>val</code> at full precision as a prefix
+   *  coded term. */
+  public static String intToPrefixCoded(final int val) {
+    return intToPrefixCoded(val, 0);
+  }
+
+  /** Returns the shift of a term encoded by {@link
+   *  #longToPrefixCoded(long, int)}.
+   * @throws NumberFormatException if the term does not
+   *  encode a long */
+  public static int getPrefixCodedLongShift(final String prefixCoded) {
+    final int shift = prefixCoded.charAt(0) - SHIFT_START_LONG;
+    if (shift > 63 || shift < 0)
+      throw new NumberFormatException("Invalid shift value in prefixCoded string (is encoded value really a LONG?)");
+    return shift;
+  }
+
+  /** Returns the shift of a term encoded by {@link
+   *  #intToPrefixCoded(int, int)}.
+   * @throws NumberFormatException if the term does not
+   *  encode an int */
+  public static int getPrefixCodedIntShift(final String prefixCoded) {
+    final int shift = prefixCoded.charAt(0) - SHIFT_START_INT;
+    if (shift > 31 || shift < 0)
+      throw new NumberFormatException("Invalid shift value in prefixCoded string (is encoded value really an INT?)");
+    return shift;
+  }
+
+  /** Decodes a term encoded by {@link #longToPrefixCoded(long,
+   *  int)}; the stripped low bits are returned as zeros.
+   * @throws NumberFormatException if the term does not
+   *  encode a long */
+  public static long prefixCodedToLong(final String prefixCoded) {
+    final int shift = getPrefixCodedLongShift(prefixCoded);
+    long sortableBits = 0L;
+    for (int i = 1, len = prefixCoded.length(); i < len; i++) {
+      sortableBits <<= 7;
+      final char ch = prefixCoded.charAt(i);
+      if (ch > 0x7f)
+        throw new NumberFormatException("Invalid prefixCoded numerical value representation (char "
+                                        + Integer.toHexString((int) ch) + " at position " + i + " is invalid)");
+      sortableBits |= (long) ch;
+    }
+    return (sortableBits << shift) ^ 0x8000000000000000L;
+  }
+
+  /** Decodes a term encoded by {@link #intToPrefixCoded(int,
+   *  int)}; the stripped low bits are returned as zeros.
+   * @throws NumberFormatException if the term does not
+   *  encode an int */
+  public static int prefixCodedToInt(final String prefixCoded) {
+    final int shift = getPrefixCodedIntShift(prefixCoded);
+    int sortableBits = 0;
+    for (int i = 1, len = prefixCoded.length(); i < len; i++) {
+      sortableBits <<= 7;
+      final char ch = prefixCoded.charAt(i);
+      if (ch > 0x7f)
+        throw new NumberFormatException("Invalid prefixCoded numerical value representation (char "
+                                        + Integer.toHexString((int) ch) + " at position " + i + " is invalid)");
+      sortableBits |= (int) ch;
+    }
+    return (sortableBits << shift) ^ 0x80000000;
+  }
+
+  /** Converts a double to a long that sorts in the same
+   *  order, including negative values and infinities. */
+  public static long doubleToSortableLong(double val) {
+    long f = Double.doubleToLongBits(val);
+    if (f < 0)
+      f ^= 0x7fffffffffffffffL;
+    return f;
+  }
+
+  /** Inverse of {@link #doubleToSortableLong}. */
+  public static double sortableLongToDouble(long val) {
+    if (val < 0)
+      val ^= 0x7fffffffffffffffL;
+    return Double.longBitsToDouble(val);
+  }
+
+  /** Converts a float to an int that sorts in the same
+   *  order, including negative values and infinities. */
+  public static int floatToSortableInt(float val) {
+    int f = Float.floatToIntBits(val);
+    if (f < 0)
+      f ^= 0x7fffffff;
+    return f;
+  }
+
+  /** Inverse of {@link #floatToSortableInt}. */
+  public static float sortableIntToFloat(int val) {
+    if (val < 0)
+      val ^= 0x7fffffff;
+    return Float.intBitsToFloat(val);
+  }
+
+  /**
+   * Splits the inclusive long range <code>[minBound, maxBound]</code>
+   * into the sub ranges that, at their precision, cover it exactly, and
+   * passes each of them to <code>builder</code>.
+   */
+  public static void splitLongRange(final LongRangeBuilder builder,
+    final int precisionStep, final long minBound, final long maxBound) {
+    splitRange(builder, 64, precisionStep, minBound, maxBound);
+  }
+
+  /**
+   * Splits the inclusive int range <code>[minBound, maxBound]</code>
+   * into the sub ranges that, at their precision, cover it exactly, and
+   * passes each of them to <code>builder</code>.
+   */
+  public static void splitIntRange(final IntRangeBuilder builder,
+    final int precisionStep, final int minBound, final int maxBound) {
+    splitRange(builder, 32, precisionStep, (long) minBound, (long) maxBound);
+  }
+
+  private static void splitRange(final Object builder, final int valSize,
+    final int precisionStep, long minBound, long maxBound) {
+    if (precisionStep < 1)
+      throw new IllegalArgumentException("precisionStep must be >=1");
+    if (minBound > maxBound)
+      return;
+    for (int shift = 0; ; shift += precisionStep) {
+      final long diff = 1L << (shift + precisionStep);
+      final long mask = ((1L << precisionStep) - 1L) << shift;
+      final boolean hasLower = (minBound & mask) != 0L;
+      final boolean hasUpper = (maxBound & mask) != mask;
+      final long nextMinBound = (hasLower ? (minBound + diff) : minBound) & ~mask;
+      final long nextMaxBound = (hasUpper ? (maxBound - diff) : maxBound) & ~mask;
+      final boolean lowerWrapped = nextMinBound < minBound;
+      final boolean upperWrapped = nextMaxBound > maxBound;
+
+      if (shift + precisionStep >= valSize || nextMinBound > nextMaxBound || lowerWrapped || upperWrapped) {
+        addRange(builder, valSize, minBound, maxBound, shift);
+        break;
+      }
+
+      if (hasLower)
+        addRange(builder, valSize, minBound, minBound | mask, shift);
+      if (hasUpper)
+        addRange(builder, valSize, maxBound & ~mask, maxBound, shift);
+
+      minBound = nextMinBound;
+      maxBound = nextMaxBound;
+    }
+  }
+
+  private static void addRange(final Object builder, final int valSize,
+    long minBound, long maxBound, final int shift) {
+    maxBound |= (1L << shift) - 1L;
+    if (valSize == 64)
+      ((LongRangeBuilder) builder).addRange(minBound, maxBound, shift);
+    else
+      ((IntRangeBuilder) builder).addRange((int) minBound, (int) maxBound, shift);
+  }
+
+  /** Receives the sub ranges computed by {@link
+   *  #splitLongRange}.  Override either method. */
+  public static abstract class LongRangeBuilder {
+
+    /** Called with the inclusive bounds of one sub range,
+     *  as prefix coded terms. */
+    public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+      throw new UnsupportedOperationException();
+    }
+
+    /** Called with the inclusive bounds of one sub range
+     *  and the shift of its terms. */
+    public void addRange(final long min, final long max, final int shift) {
+      addRange(longToPrefixCoded(min, shift), longToPrefixCoded(max, shift));
+    }
+  }
+
+  /** Receives the sub ranges computed by {@link
+   *  #splitIntRange}.  Override either method. */
+  public static abstract class IntRangeBuilder {
+
+    /** Called with the inclusive bounds of one sub range,
+     *  as prefix coded terms. */
+    public void addRange(String minPrefixCoded, String maxPrefixCoded) {
+      throw new UnsupportedOperationException();
+    }
+
+    /** Called with the inclusive bounds of one sub range
+     *  and the shift of its terms. */
+    public void addRange(final int min, final int max, final int shift) {
+      addRange(intToPrefixCoded(min, shift), intToPrefixCoded(max, shift));
+    }
+  }
+}